@@ -0,0 +1,97 @@
+package org.openlca.core.database;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import org.openlca.core.model.AbstractEntity;
+import org.openlca.core.model.RefEntity;
+import org.openlca.core.model.RootEntity;
+import org.openlca.core.model.descriptors.Descriptor;
+
+/**
+ * The listeners of a database. The DAOs of a database notify these listeners
+ * when they insert, update, or delete data sets. Modifications in transactions
+ * of the database are reported as a whole after the transaction was committed,
+ * see {@link IDatabaseListener#databaseModified()}. Note that modifications
+ * via native SQL statements are not reported.
+ */
+public final class DatabaseListeners {
+
+	private final List<IDatabaseListener> listeners = new CopyOnWriteArrayList<>();
+
+	public void add(IDatabaseListener listener) {
+		if (listener != null) {
+			listeners.add(listener);
+		}
+	}
+
+	public void remove(IDatabaseListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the first registered listener of the given type or registers the
+	 * listener of the given supplier if there is no such listener yet. This can
+	 * be used for sharing caches per database.
+	 */
+	public synchronized <T extends IDatabaseListener> T getOrAdd(
+			Class<T> type, Supplier<T> fn) {
+		for (var listener : listeners) {
+			if (type.isInstance(listener))
+				return type.cast(listener);
+		}
+		var listener = fn.get();
+		listeners.add(listener);
+		return listener;
+	}
+
+	void fireInserted(AbstractEntity entity) {
+		var d = descriptorOf(entity);
+		if (d == null)
+			return;
+		for (var listener : listeners) {
+			listener.modelInserted(d);
+		}
+	}
+
+	void fireUpdated(AbstractEntity entity) {
+		var d = descriptorOf(entity);
+		if (d == null)
+			return;
+		for (var listener : listeners) {
+			listener.modelUpdated(d);
+		}
+	}
+
+	void fireDeleted(AbstractEntity entity) {
+		var d = descriptorOf(entity);
+		if (d == null)
+			return;
+		for (var listener : listeners) {
+			listener.modelDeleted(d);
+		}
+	}
+
+	void fireCleared() {
+		for (var listener : listeners) {
+			listener.databaseCleared();
+		}
+	}
+
+	void fireModified() {
+		for (var listener : listeners) {
+			listener.databaseModified();
+		}
+	}
+
+	private Descriptor descriptorOf(AbstractEntity entity) {
+		if (listeners.isEmpty())
+			return null;
+		if (entity instanceof RootEntity root)
+			return Descriptor.of(root);
+		if (entity instanceof RefEntity ref)
+			return Descriptor.of(ref);
+		return null;
+	}
+}
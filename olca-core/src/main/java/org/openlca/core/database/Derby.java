@@ -46,6 +46,7 @@ public class Derby implements IDatabase {
 
 	private boolean closed = false;
 	private HikariDataSource connectionPool;
+	private final DatabaseListeners listeners = new DatabaseListeners();
 
 	public static Derby createInMemory() {
 		int i = memInstances.incrementAndGet();
@@ -56,6 +57,13 @@ public class Derby implements IDatabase {
 		return db;
 	}
 
+	/**
+	 * Returns true if this is an in-memory database.
+	 */
+	public boolean isInMemory() {
+		return url != null && url.startsWith("jdbc:derby:memory:");
+	}
+
 	/**
 	 * Restores an in-memory database from a backup folder.
 	 */
@@ -185,6 +193,11 @@ public class Derby implements IDatabase {
 		return fileStorageLocation;
 	}
 
+	@Override
+	public DatabaseListeners listeners() {
+		return listeners;
+	}
+
 	/**
 	 * Set the location where files of data that are not stored directly in the
 	 * database should be saved (e.g. external files of sources).
@@ -63,6 +63,12 @@ public interface IDatabase extends EntityStore, Closeable {
 	 */
 	File getFileStorageLocation();
 
+	/**
+	 * Returns the listeners of this database that are notified when data sets
+	 * are inserted, updated, or deleted via the DAOs of this database.
+	 */
+	DatabaseListeners listeners();
+
 	/**
 	 * Clears the cache of the entity manager of this database. You should always
 	 * call this method when you modified the database (via native SQL queries)
@@ -281,12 +287,15 @@ public interface IDatabase extends EntityStore, Closeable {
 		}
 		NativeSql.on(this).runUpdate("UPDATE SEQUENCE SET SEQ_COUNT = 0");
 		this.clearCache();
+		listeners().fireCleared();
 	}
 
 	/**
 	 * Executes the given function in a transaction. It closes the provided entity
 	 * manager when the function is done. When the function fails with an
-	 * exception the transaction is rolled back.
+	 * exception the transaction is rolled back. After the transaction was
+	 * committed, the listeners of the database are notified, so that they can
+	 * drop cached data that may be modified by the transaction.
 	 *
 	 * @param fn the function that should be executed within a transaction
 	 */
@@ -303,6 +312,7 @@ public interface IDatabase extends EntityStore, Closeable {
 		} finally {
 			em.close();
 		}
+		listeners().fireModified();
 	}
 
 }
@@ -10,4 +10,20 @@ public interface IDatabaseListener {
 
 	void modelDeleted(Descriptor descriptor);
 
+	/**
+	 * Is called when all data were deleted from the database.
+	 */
+	default void databaseCleared() {
+	}
+
+	/**
+	 * Is called when data were modified without notifications for the single
+	 * data sets, e.g. in a transaction of the database. Listeners that cache
+	 * data of the database should drop these data then. By default, this
+	 * calls {@link #databaseCleared()}.
+	 */
+	default void databaseModified() {
+		databaseCleared();
+	}
+
 }
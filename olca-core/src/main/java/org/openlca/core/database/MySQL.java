@@ -18,6 +18,7 @@ public class MySQL implements IDatabase {
 	private final EntityManagerFactory entityFactory;
 	private final HikariDataSource connectionPool;
 	private File fileDir;
+	private final DatabaseListeners listeners = new DatabaseListeners();
 
 	private MySQL(Config config) {
 		this.name = config.database;
@@ -50,6 +51,11 @@ public class MySQL implements IDatabase {
 		return fileDir;
 	}
 
+	@Override
+	public DatabaseListeners listeners() {
+		return listeners;
+	}
+
 	public void setFileStorageLocation(File dir) {
 		this.fileDir = dir;
 	}
@@ -0,0 +1,388 @@
+package org.openlca.core.database.usage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.IDatabaseListener;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.ParameterScope;
+import org.openlca.core.model.descriptors.Descriptor;
+import org.openlca.formula.Formulas;
+
+/**
+ * An inverted index of the identifiers that are used in the parameter names,
+ * formulas, and parameter redefinitions of a database. It maps the lower-cased
+ * identifiers to the places where they are used. The index is built once by
+ * scanning the respective tables and is then updated incrementally for the
+ * entities that are modified via the DAOs; it is dropped when data are
+ * modified in a transaction of the database. When formulas or parameters are
+ * modified via native SQL statements, {@link #reindex(ModelType, long)} or
+ * {@link #invalidate()} need to be called explicitly. Thus, the index is only
+ * used for searches; renaming a parameter still scans the formula tables.
+ */
+public final class ParameterIndex implements IDatabaseListener {
+
+	private final IDatabase db;
+	private HashMap<String, Set<Ref>> refs;
+	private HashMap<Owner, Set<String>> owners;
+
+	private ParameterIndex(IDatabase db) {
+		this.db = db;
+	}
+
+	/**
+	 * Returns the parameter index of the given database. The index is shared
+	 * by all searches on that database.
+	 */
+	public static ParameterIndex of(IDatabase db) {
+		return db.listeners().getOrAdd(
+				ParameterIndex.class, () -> new ParameterIndex(db));
+	}
+
+	/**
+	 * The field in which an identifier is used.
+	 */
+	public enum Field {
+
+		/** The name of a parameter (the definition of the identifier). */
+		DEFINITION,
+
+		/** The formula of a parameter. */
+		PARAMETER_FORMULA,
+
+		/** The amount formula of an exchange. */
+		EXCHANGE_FORMULA,
+
+		/** The cost formula of an exchange. */
+		COST_FORMULA,
+
+		/** The formula of an allocation factor. */
+		ALLOCATION_FORMULA,
+
+		/** The formula of an impact factor. */
+		IMPACT_FORMULA,
+
+		/** The name of a parameter redefinition. */
+		REDEFINITION,
+	}
+
+	/**
+	 * A reference to an identifier.
+	 *
+	 * @param type    the type of the root entity that contains the reference:
+	 *                {@code PARAMETER} for global parameters, {@code PROCESS}
+	 *                or {@code IMPACT_CATEGORY} for local parameters and
+	 *                formulas, and {@code PRODUCT_SYSTEM} or {@code PROJECT}
+	 *                for parameter redefinitions
+	 * @param owner   the ID of that root entity
+	 * @param field   the field that contains the identifier
+	 * @param id      the ID of the row that contains the field, e.g. the ID of
+	 *                the exchange
+	 * @param context the ID of the context of a parameter redefinition or 0 if
+	 *                it redefines a global parameter; 0 for other fields
+	 */
+	public record Ref(
+			ModelType type, long owner, Field field, long id, long context) {
+
+		/**
+		 * Returns true if the reference is a definition of a local parameter.
+		 */
+		public boolean isLocalDefinition() {
+			return field == Field.DEFINITION && type != ModelType.PARAMETER;
+		}
+	}
+
+	private record Owner(ModelType type, long id) {
+	}
+
+	/**
+	 * Returns the references of the given identifier. The identifier is
+	 * matched case-insensitively.
+	 */
+	public synchronized List<Ref> get(String identifier) {
+		var key = norm(identifier);
+		if (key.isEmpty())
+			return new ArrayList<>();
+		var set = refs().get(key);
+		return set != null
+				? new ArrayList<>(set)
+				: new ArrayList<>();
+	}
+
+	/**
+	 * Returns the IDs of the processes and impact categories that define a
+	 * local parameter with the given name.
+	 */
+	public Set<Long> localDefinitionsOf(String name) {
+		var ids = new HashSet<Long>();
+		for (var ref : get(name)) {
+			if (ref.isLocalDefinition()) {
+				ids.add(ref.owner);
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Drops the index. It is built again on the next access.
+	 */
+	public synchronized void invalidate() {
+		refs = null;
+		owners = null;
+	}
+
+	/**
+	 * Updates the references of the given root entity. Only global parameters,
+	 * processes, impact categories, product systems, and projects can contain
+	 * references.
+	 */
+	public synchronized void reindex(ModelType type, long id) {
+		if (refs == null || type == null)
+			return;
+		switch (type) {
+			case PARAMETER, PROCESS, IMPACT_CATEGORY,
+					PRODUCT_SYSTEM, PROJECT -> {
+				remove(new Owner(type, id));
+				new Scan().owner(type, id);
+			}
+			default -> {
+			}
+		}
+	}
+
+	/**
+	 * Updates the references of the owners of the given references, e.g. after
+	 * these owners were modified via native SQL.
+	 */
+	public synchronized void reindex(Collection<Ref> refs) {
+		if (refs == null)
+			return;
+		var updated = new HashSet<Owner>();
+		for (var ref : refs) {
+			if (updated.add(new Owner(ref.type, ref.owner))) {
+				reindex(ref.type, ref.owner);
+			}
+		}
+	}
+
+	@Override
+	public void modelInserted(Descriptor d) {
+		onChange(d);
+	}
+
+	@Override
+	public void modelUpdated(Descriptor d) {
+		onChange(d);
+	}
+
+	@Override
+	public void modelDeleted(Descriptor d) {
+		onChange(d);
+	}
+
+	@Override
+	public void databaseCleared() {
+		invalidate();
+	}
+
+	private void onChange(Descriptor d) {
+		if (d != null) {
+			reindex(d.type, d.id);
+		}
+	}
+
+	private HashMap<String, Set<Ref>> refs() {
+		if (refs != null)
+			return refs;
+		refs = new HashMap<>();
+		owners = new HashMap<>();
+		var scan = new Scan();
+		scan.parameters(null);
+		scan.exchanges(null);
+		scan.allocationFactors(null);
+		scan.impactFactors(null);
+		scan.redefs(null, null);
+		return refs;
+	}
+
+	private void remove(Owner owner) {
+		var keys = owners.remove(owner);
+		if (keys == null)
+			return;
+		for (var key : keys) {
+			var set = refs.get(key);
+			if (set == null)
+				continue;
+			set.removeIf(ref -> ref.type == owner.type && ref.owner == owner.id);
+			if (set.isEmpty()) {
+				refs.remove(key);
+			}
+		}
+	}
+
+	private void add(String identifier, Ref ref) {
+		var key = norm(identifier);
+		if (key.isEmpty())
+			return;
+		refs.computeIfAbsent(key, $ -> new HashSet<>()).add(ref);
+		owners.computeIfAbsent(new Owner(ref.type, ref.owner),
+				$ -> new HashSet<>()).add(key);
+	}
+
+	private void addFormula(String formula, Ref ref) {
+		if (formula == null || formula.isBlank())
+			return;
+		// the lexer of the formula module does not fail on invalid formulas
+		for (var variable : Formulas.getVariables(formula)) {
+			add(variable, ref);
+		}
+	}
+
+	static String norm(String s) {
+		return s == null || s.isBlank()
+				? ""
+				: s.trim().toLowerCase();
+	}
+
+	/**
+	 * Scans the tables for references, optionally restricted to a single
+	 * owner.
+	 */
+	private class Scan {
+
+		void owner(ModelType type, long id) {
+			switch (type) {
+				case PARAMETER -> parameters(" where id = " + id);
+				case PROCESS -> {
+					parameters(" where f_owner = " + id);
+					exchanges(" where f_owner = " + id);
+					allocationFactors(" where f_process = " + id);
+				}
+				case IMPACT_CATEGORY -> {
+					parameters(" where f_owner = " + id);
+					impactFactors(" where f_impact_category = " + id);
+				}
+				case PRODUCT_SYSTEM -> redefs(" where sys.id = " + id, null);
+				case PROJECT -> redefs(null, " where proj.id = " + id);
+				default -> {
+				}
+			}
+		}
+
+		void parameters(String filter) {
+			var sql = "select id, f_owner, scope, name, formula from tbl_parameters";
+			NativeSql.on(db).query(with(sql, filter), r -> {
+				long paramId = r.getLong(1);
+				long owner = r.getLong(2);
+				var scope = ParameterScope.fromString(r.getString(3));
+				var type = owner == 0 || scope == ParameterScope.GLOBAL
+						? ModelType.PARAMETER
+						: scope == ParameterScope.IMPACT
+						? ModelType.IMPACT_CATEGORY
+						: ModelType.PROCESS;
+				if (type == ModelType.PARAMETER) {
+					owner = paramId;
+				}
+				add(r.getString(4),
+						new Ref(type, owner, Field.DEFINITION, paramId, 0));
+				addFormula(r.getString(5),
+						new Ref(type, owner, Field.PARAMETER_FORMULA, paramId, 0));
+				return true;
+			});
+		}
+
+		void exchanges(String filter) {
+			var sql = "select id, f_owner, resulting_amount_formula, cost_formula"
+					+ " from tbl_exchanges";
+			var where = filter != null
+					? filter + " and"
+					: " where";
+			sql += where + " (resulting_amount_formula is not null"
+					+ " or cost_formula is not null)";
+			NativeSql.on(db).query(sql, r -> {
+				long exchangeId = r.getLong(1);
+				long owner = r.getLong(2);
+				addFormula(r.getString(3), new Ref(ModelType.PROCESS, owner,
+						Field.EXCHANGE_FORMULA, exchangeId, 0));
+				addFormula(r.getString(4), new Ref(ModelType.PROCESS, owner,
+						Field.COST_FORMULA, exchangeId, 0));
+				return true;
+			});
+		}
+
+		void allocationFactors(String filter) {
+			var sql = "select id, f_process, formula from tbl_allocation_factors";
+			NativeSql.on(db).query(with(sql, filter), r -> {
+				addFormula(r.getString(3), new Ref(ModelType.PROCESS,
+						r.getLong(2), Field.ALLOCATION_FORMULA, r.getLong(1), 0));
+				return true;
+			});
+		}
+
+		void impactFactors(String filter) {
+			var sql = "select id, f_impact_category, formula from tbl_impact_factors";
+			NativeSql.on(db).query(with(sql, filter), r -> {
+				addFormula(r.getString(3), new Ref(ModelType.IMPACT_CATEGORY,
+						r.getLong(2), Field.IMPACT_FORMULA, r.getLong(1), 0));
+				return true;
+			});
+		}
+
+		/**
+		 * Scans the parameter redefinitions. The owners of the redefinitions
+		 * are parameter sets of product systems and variants of projects;
+		 * these are mapped to their product systems and projects.
+		 */
+		void redefs(String systemFilter, String projectFilter) {
+			var roots = new TLongObjectHashMap<Owner>();
+			if (systemFilter != null || projectFilter == null) {
+				var sql = "select sys.id, params.id from tbl_product_systems sys"
+						+ " inner join tbl_parameter_redef_sets params"
+						+ " on params.f_product_system = sys.id";
+				NativeSql.on(db).query(with(sql, systemFilter), r -> {
+					roots.put(r.getLong(2),
+							new Owner(ModelType.PRODUCT_SYSTEM, r.getLong(1)));
+					return true;
+				});
+			}
+			if (projectFilter != null || systemFilter == null) {
+				var sql = "select proj.id, var.id from tbl_projects proj"
+						+ " inner join tbl_project_variants var"
+						+ " on var.f_project = proj.id";
+				NativeSql.on(db).query(with(sql, projectFilter), r -> {
+					roots.put(r.getLong(2),
+							new Owner(ModelType.PROJECT, r.getLong(1)));
+					return true;
+				});
+			}
+			if (roots.isEmpty())
+				return;
+
+			var sql = "select id, f_owner, name, f_context from tbl_parameter_redefs";
+			if (systemFilter != null || projectFilter != null) {
+				sql += " where f_owner " + Search.eqIn(roots.keySet());
+			}
+			NativeSql.on(db).query(sql, r -> {
+				var root = roots.get(r.getLong(2));
+				if (root == null)
+					return true;
+				add(r.getString(3), new Ref(root.type, root.id,
+						Field.REDEFINITION, r.getLong(1), r.getLong(4)));
+				return true;
+			});
+		}
+
+		private String with(String sql, String filter) {
+			return filter != null
+					? sql + filter
+					: sql;
+		}
+	}
+}
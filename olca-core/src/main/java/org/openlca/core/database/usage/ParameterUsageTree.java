@@ -3,6 +3,7 @@ package org.openlca.core.database.usage;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Supplier;
@@ -11,12 +12,14 @@ import org.openlca.core.database.EntityCache;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.ParameterDao;
-import org.openlca.core.database.ProductSystemDao;
-import org.openlca.core.database.ProjectDao;
+import org.openlca.core.database.usage.ParameterIndex.Field;
+import org.openlca.core.database.usage.ParameterIndex.Ref;
 import org.openlca.core.model.RootEntity;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.Parameter;
 import org.openlca.core.model.ParameterRedef;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.Project;
 import org.openlca.core.model.descriptors.RootDescriptor;
 import org.openlca.core.model.descriptors.Descriptor;
 import org.openlca.core.model.descriptors.FlowDescriptor;
@@ -183,6 +186,12 @@ public class ParameterUsageTree {
 
 		private final HashMap<Long, Node> roots = new HashMap<>();
 
+		/**
+		 * The references of the parameter name from the parameter index. Only
+		 * the rows of these references are loaded from the database.
+		 */
+		private final List<Ref> refs;
+
 		/**
 		 * This is only needed when we search for the usages of a global parameter. This
 		 * set then contains the IDs of the entities that have a local parameter with
@@ -197,6 +206,7 @@ public class ParameterUsageTree {
 			this.param = null;
 			this.owner = null;
 			this.cache = EntityCache.create(db);
+			this.refs = ParameterIndex.of(db).get(name);
 		}
 
 		Search(Parameter param, RootDescriptor owner, IDatabase db) {
@@ -205,17 +215,11 @@ public class ParameterUsageTree {
 			this.owner = owner;
 
 			if (owner == null) {
-				var sql = "select f_owner, name from tbl_parameters";
-				NativeSql.on(db).query(sql, r -> {
-					long ownerID = r.getLong(1);
-					if (r.wasNull() || ownerID <= 0)
-						return true;
-					var name = r.getString(2);
-					if (matches(name)) {
-						hasLocalDef.add(ownerID);
+				for (var ref : refs) {
+					if (ref.isLocalDefinition()) {
+						hasLocalDef.add(ref.owner());
 					}
-					return true;
-				});
+				}
 			}
 		}
 
@@ -241,10 +245,12 @@ public class ParameterUsageTree {
 		}
 
 		private void exchanges() {
+			var ids = idsOf(Field.EXCHANGE_FORMULA, Field.COST_FORMULA);
+			if (ids.isEmpty())
+				return;
 			String sql = "SELECT f_owner, f_flow, resulting_amount_formula,"
 					+ " cost_formula FROM tbl_exchanges "
-					+ " WHERE resulting_amount_formula IS NOT NULL"
-					+ " OR cost_formula IS NOT NULL";
+					+ " WHERE id" + eqIn(ids);
 			NativeSql.on(db).query(sql, r -> {
 				var amountFormula = r.getString(3);
 				var costFormula = r.getString(4);
@@ -268,8 +274,11 @@ public class ParameterUsageTree {
 		}
 
 		private void allocationFactors() {
+			var ids = idsOf(Field.ALLOCATION_FORMULA);
+			if (ids.isEmpty())
+				return;
 			var sql = "SELECT id, f_process, formula FROM " +
-					"tbl_allocation_factors WHERE formula IS NOT NULL";
+					"tbl_allocation_factors WHERE id" + eqIn(ids);
 			NativeSql.on(db).query(sql, r -> {
 				var formula = r.getString(3);
 				if (!matches(formula))
@@ -288,13 +297,16 @@ public class ParameterUsageTree {
 		}
 
 		private void impacts() {
+			var ids = idsOf(Field.IMPACT_FORMULA);
+			if (ids.isEmpty())
+				return;
 			String sql = "SELECT cat.id AS category," +
 					"  fac.f_flow AS flow," +
 					"  fac.formula AS FORMULA" +
 					"  FROM tbl_impact_factors fac" +
 					"  INNER JOIN tbl_impact_categories cat" +
 					"  ON fac.f_impact_category = cat.id" +
-					"  WHERE fac.formula IS NOT NULL";
+					"  WHERE fac.id" + eqIn(ids);
 			NativeSql.on(db).query(sql, r -> {
 				String formula = r.getString(3);
 				if (!matches(formula))
@@ -325,8 +337,14 @@ public class ParameterUsageTree {
 
 		private void parameters() {
 
+			var ids = idsOf(Field.DEFINITION, Field.PARAMETER_FORMULA);
+			if (ids.isEmpty())
+				return;
+			var params = new ParameterDao(db).getForIds(longSet(ids));
+
 			// collect the parameter owners: id -> owner id
-			var sql = "select id, f_owner from tbl_parameters";
+			var sql = "select id, f_owner from tbl_parameters where id"
+					+ eqIn(ids);
 			var owners = new TLongLongHashMap();
 			NativeSql.on(db).query(sql, r -> {
 				long id = r.getLong(1);
@@ -339,7 +357,7 @@ public class ParameterUsageTree {
 
 			if (owner != null) {
 				// search only in formulas of local parameters
-				for (var p : new ParameterDao(db).getAll()) {
+				for (var p : params) {
 					long ownerID = owners.get(p.id);
 					if (ownerID != owner.id
 							|| p.isInputParameter
@@ -355,7 +373,7 @@ public class ParameterUsageTree {
 				// search only in global formulas and in local
 				// formulas where there is no local definition
 				// of a parameter with the same name
-				for (var p : new ParameterDao(db).getAll()) {
+				for (var p : params) {
 					long ownerID = owners.get(p.id);
 					if (hasLocalDef.contains(ownerID)
 							|| !matches(p.formula))
@@ -372,7 +390,7 @@ public class ParameterUsageTree {
 			}
 
 			// search via all text matches
-			for (var p : new ParameterDao(db).getAll()) {
+			for (var p : params) {
 				var nameMatch = matches(p.name);
 				var formulaMatch = !nameMatch
 						&& !p.isInputParameter
@@ -393,7 +411,10 @@ public class ParameterUsageTree {
 		}
 
 		private void systemRedefs() {
-			for (var system : new ProductSystemDao(db).getAll()) {
+			var ids = ownersOf(ModelType.PRODUCT_SYSTEM);
+			if (ids.isEmpty())
+				return;
+			for (var system : db.getAll(ProductSystem.class, ids)) {
 				for (var paramset : system.parameterSets) {
 					for (var redef : paramset.parameters) {
 						if (!matches(redef))
@@ -411,7 +432,10 @@ public class ParameterUsageTree {
 		}
 
 		private void projectRedefs() {
-			for (var project : new ProjectDao(db).getAll()) {
+			var ids = ownersOf(ModelType.PROJECT);
+			if (ids.isEmpty())
+				return;
+			for (var project : db.getAll(Project.class, ids)) {
 				for (var variant : project.variants) {
 					for (var redef : variant.parameterRedefs) {
 						if (!matches(redef))
@@ -428,6 +452,38 @@ public class ParameterUsageTree {
 			}
 		}
 
+		private TLongHashSet idsOf(Field... fields) {
+			var ids = new TLongHashSet();
+			for (var ref : refs) {
+				for (var field : fields) {
+					if (ref.field() == field) {
+						ids.add(ref.id());
+					}
+				}
+			}
+			return ids;
+		}
+
+		private TLongHashSet ownersOf(ModelType type) {
+			var ids = new TLongHashSet();
+			for (var ref : refs) {
+				if (ref.field() == Field.REDEFINITION && ref.type() == type) {
+					ids.add(ref.owner());
+				}
+			}
+			return ids;
+		}
+
+		private static String eqIn(TLongHashSet ids) {
+			return org.openlca.core.database.usage.Search.eqIn(ids);
+		}
+
+		private static Set<Long> longSet(TLongHashSet ids) {
+			var set = new HashSet<Long>(ids.size());
+			ids.forEach(set::add);
+			return set;
+		}
+
 		private boolean matches(String formula) {
 			if (formula == null)
 				return false;
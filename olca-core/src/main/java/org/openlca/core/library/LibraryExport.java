@@ -7,6 +7,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ImpactCategoryDao;
+import org.openlca.core.library.reader.LibCache;
 import org.openlca.core.matrix.ImpactBuilder;
 import org.openlca.core.matrix.MatrixConfig;
 import org.openlca.core.matrix.MatrixData;
@@ -106,6 +107,8 @@ public class LibraryExport implements Runnable {
 			// dependencies are collected during the export, so this should be the
 			// last step
 			info.writeTo(lib);
+			// the matrices of an existing library could have been replaced
+			LibCache.shared().invalidate(lib);
 		} catch (Exception e) {
 			throw new RuntimeException("failed to wait for export to finish", e);
 		}
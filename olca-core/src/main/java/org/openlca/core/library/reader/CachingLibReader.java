@@ -13,18 +13,30 @@ public class CachingLibReader implements LibReader {
 
 	private final MatrixCache cache;
 	private final LibReader reader;
+	private final MappedLibReader mapped;
 	private TechIndex techIndex;
 	private EnviIndex enviIndex;
 	private ImpactIndex impactIndex;
 	private double[] costs;
 
-	private CachingLibReader(LibReader reader) {
+	private CachingLibReader(LibReader reader, MappedLibReader mapped) {
 		this.reader = Objects.requireNonNull(reader);
-		this.cache = new MatrixCache();
+		this.mapped = mapped;
+		this.cache = new MatrixCache(reader.library());
 	}
 
 	public static CachingLibReader of(LibReader reader) {
-		return new CachingLibReader(reader);
+		return new CachingLibReader(reader, null);
+	}
+
+	/**
+	 * Creates a caching reader on top of the given reader. The columns and
+	 * diagonals of the dense matrices that are mapped by the given mapped
+	 * reader are read from these mappings and are not copied into the cache.
+	 * The mapped reader is typically wrapped by the given reader.
+	 */
+	public static CachingLibReader of(LibReader reader, MappedLibReader mapped) {
+		return new CachingLibReader(reader, mapped);
 	}
 
 	MatrixCache cache() {
@@ -65,6 +77,11 @@ public class CachingLibReader implements LibReader {
 		var cached = cache.matrixOf(m);
 		if (cached != null)
 			return cached;
+		var sparse = sparseMatrixOf(m);
+		if (sparse != null) {
+			cache.put(m, sparse);
+			return sparse;
+		}
 		var matrix = reader.matrixOf(m);
 		if (matrix != null) {
 			cache.put(m, matrix);
@@ -82,33 +99,61 @@ public class CachingLibReader implements LibReader {
 
 	@Override
 	public double[] diagonalOf(LibMatrix m) {
+		if (isMapped(m))
+			return reader.diagonalOf(m);
 		var cached = cache.diagonalOf(m);
 		if (cached != null)
 			return cached;
 		// read a full matrix if it is sparse
-		var f = MatrixFile.of(library(), m);
-		if (f.hasMatrix()) {
-			cache.put(m, f.matrix());
-			return f.matrix().diag();
+		var sparse = sparseMatrixOf(m);
+		if (sparse != null) {
+			cache.put(m, sparse);
+			return sparse.diag();
 		}
 		var diag = reader.diagonalOf(m);
-		cache.putDiagonal(m, diag);
+		cache.shareDiagonal(m, diag);
 		return diag;
 	}
 
 	@Override
 	public double[] columnOf(LibMatrix m, int j) {
+		if (isMapped(m))
+			return reader.columnOf(m, j);
 		var cached = cache.columnOf(m, j);
 		if (cached != null)
 			return cached;
 		// read a full matrix if it is sparse
-		var f = MatrixFile.of(library(), m);
-		if (f.hasMatrix()) {
-			cache.put(m, f.matrix());
-			return f.matrix().getColumn(j);
+		var sparse = sparseMatrixOf(m);
+		if (sparse != null) {
+			cache.put(m, sparse);
+			return sparse.getColumn(j);
 		}
 		var column = reader.columnOf(m, j);
-		cache.putColumn(m, j, column);
+		cache.shareColumn(m, j, column);
 		return column;
 	}
+
+	/**
+	 * Returns the given matrix if it is stored as sparse matrix in the
+	 * library. Sparse matrices are shared via the {@link LibCache} between
+	 * the readers of the same library.
+	 */
+	private MatrixReader sparseMatrixOf(LibMatrix m) {
+		var lib = library();
+		if (lib == null)
+			return null;
+		return LibCache.shared().sparseMatrixOf(lib, m);
+	}
+
+	private boolean isMapped(LibMatrix m) {
+		return mapped != null
+			&& cache.matrixOf(m) == null
+			&& mapped.isMapped(m);
+	}
+
+	@Override
+	public void dispose() {
+		cache.clear();
+		reader.dispose();
+	}
 }
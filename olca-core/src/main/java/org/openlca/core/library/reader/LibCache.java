@@ -0,0 +1,143 @@
+package org.openlca.core.library.reader;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openlca.core.library.LibMatrix;
+import org.openlca.core.library.Library;
+import org.openlca.core.matrix.format.MatrixReader;
+import org.openlca.core.results.providers.cache.CachePolicy;
+import org.openlca.core.results.providers.cache.CacheStats;
+import org.openlca.core.results.providers.cache.VectorCache;
+
+/**
+ * A process-wide cache of the matrix columns and diagonals that are read from
+ * the files of data libraries. All library readers share this cache, so that
+ * concurrent calculations with the same library (e.g. in a calculation
+ * server) read these values only once from disk. The cache is thread-safe and
+ * bounded; by default, it can use an eighth of the maximum heap size.
+ * <p>
+ * Sparse matrices, that are stored in .npz files, are always read completely.
+ * The cache keeps weak references to these matrices, so that the readers of
+ * the same library share a single copy of them as long as they are used by
+ * at least one reader.
+ * <p>
+ * The cached arrays and matrices are shared between the readers and must not
+ * be modified.
+ */
+public final class LibCache {
+
+	private static volatile LibCache shared;
+
+	private final VectorCache cache;
+	private final ConcurrentMap<Key, VectorCache.Region> regions;
+	private final ConcurrentMap<Key, WeakReference<MatrixReader>> sparse;
+
+	private LibCache(CachePolicy policy) {
+		cache = VectorCache.of(policy);
+		regions = new ConcurrentHashMap<>();
+		sparse = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Returns the shared cache of this process.
+	 */
+	public static LibCache shared() {
+		var cache = shared;
+		if (cache != null)
+			return cache;
+		synchronized (LibCache.class) {
+			if (shared == null) {
+				var maxBytes = Runtime.getRuntime().maxMemory() / 8;
+				shared = new LibCache(CachePolicy.ofBytes(maxBytes));
+			}
+			return shared;
+		}
+	}
+
+	/**
+	 * Replaces the shared cache with a new cache with the given policy.
+	 */
+	public static synchronized void configure(CachePolicy policy) {
+		shared = new LibCache(policy);
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	public void clear() {
+		cache.clear();
+		sparse.clear();
+	}
+
+	/**
+	 * Removes the cached values of the given library. This needs to be called
+	 * when the matrices of a library are replaced.
+	 */
+	public void invalidate(Library lib) {
+		var folder = folderOf(lib);
+		for (var e : regions.entrySet()) {
+			if (e.getKey().folder.equals(folder)) {
+				e.getValue().clear();
+			}
+		}
+		sparse.keySet().removeIf(key -> key.folder.equals(folder));
+	}
+
+	/**
+	 * Returns the given matrix of the library if it is stored as sparse
+	 * matrix, otherwise {@code null}. The matrix is read only once when
+	 * multiple readers request it at the same time.
+	 */
+	MatrixReader sparseMatrixOf(Library lib, LibMatrix m) {
+		var key = new Key(folderOf(lib), m);
+		var matrix = new MatrixReader[1];
+		sparse.compute(key, ($, ref) -> {
+			var cached = ref != null ? ref.get() : null;
+			if (cached != null) {
+				matrix[0] = cached;
+				return ref;
+			}
+			var f = MatrixFile.of(lib, m);
+			if (!f.hasMatrix())
+				return null;
+			matrix[0] = f.matrix();
+			return new WeakReference<>(f.matrix());
+		});
+		return matrix[0];
+	}
+
+	double[] columnOf(Library lib, LibMatrix m, int j) {
+		return regionOf(lib, m).get(j);
+	}
+
+	void putColumn(Library lib, LibMatrix m, int j, double[] column) {
+		regionOf(lib, m).put(j, column);
+	}
+
+	double[] diagonalOf(Library lib, LibMatrix m) {
+		return regionOf(lib, m).get(-1);
+	}
+
+	void putDiagonal(Library lib, LibMatrix m, double[] diagonal) {
+		regionOf(lib, m).put(-1, diagonal);
+	}
+
+	private VectorCache.Region regionOf(Library lib, LibMatrix m) {
+		var key = new Key(folderOf(lib), m);
+		return regions.computeIfAbsent(key, $ -> cache.region());
+	}
+
+	private static String folderOf(Library lib) {
+		return lib.folder().getAbsolutePath();
+	}
+
+	/**
+	 * The diagonal of a matrix is stored with the index -1 in the region of
+	 * that matrix. The same keys are used for the sparse matrices.
+	 */
+	private record Key(String folder, LibMatrix matrix) {
+	}
+}
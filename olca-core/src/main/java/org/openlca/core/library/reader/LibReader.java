@@ -109,8 +109,8 @@ public interface LibReader {
 		}
 
 		public LibReader create() {
-			var direct = DirectLibReader.of(lib, db);
-			var caching = CachingLibReader.of(wrapDecryption(direct));
+			var mapped = MappedLibReader.of(DirectLibReader.of(lib, db));
+			var caching = CachingLibReader.of(wrapDecryption(mapped), mapped);
 			if (lib.hasMatrix(LibMatrix.A)
 				&& !lib.hasMatrix(LibMatrix.INV)) {
 				return solver != null
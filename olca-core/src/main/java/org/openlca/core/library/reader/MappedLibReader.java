@@ -0,0 +1,139 @@
+package org.openlca.core.library.reader;
+
+import java.io.File;
+import java.nio.DoubleBuffer;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openlca.core.library.LibMatrix;
+import org.openlca.core.library.Library;
+import org.openlca.core.matrix.format.MatrixReader;
+import org.openlca.core.matrix.index.EnviIndex;
+import org.openlca.core.matrix.index.ImpactIndex;
+import org.openlca.core.matrix.index.TechIndex;
+
+/**
+ * A library reader that maps the dense .npy matrices of a library into memory
+ * instead of opening and reading the files on each call. Each file is mapped
+ * once, and columns, rows, and diagonals are then copied directly from the
+ * mapped pages, which the operating system shares between processes that
+ * read the same library. All other data, like sparse matrices and the
+ * indices, are read with the wrapped reader.
+ * <p>
+ * The reader is thread-safe.
+ */
+public class MappedLibReader implements LibReader {
+
+	private final LibReader reader;
+	private final ConcurrentHashMap<LibMatrix, Optional<MappedNpy>> mapped;
+
+	private MappedLibReader(LibReader reader) {
+		this.reader = Objects.requireNonNull(reader);
+		this.mapped = new ConcurrentHashMap<>();
+	}
+
+	public static MappedLibReader of(LibReader reader) {
+		return new MappedLibReader(reader);
+	}
+
+	@Override
+	public Library library() {
+		return reader.library();
+	}
+
+	@Override
+	public TechIndex techIndex() {
+		return reader.techIndex();
+	}
+
+	@Override
+	public EnviIndex enviIndex() {
+		return reader.enviIndex();
+	}
+
+	@Override
+	public ImpactIndex impactIndex() {
+		return reader.impactIndex();
+	}
+
+	@Override
+	public MatrixReader matrixOf(LibMatrix m) {
+		return reader.matrixOf(m);
+	}
+
+	@Override
+	public double[] costs() {
+		return reader.costs();
+	}
+
+	@Override
+	public double[] diagonalOf(LibMatrix m) {
+		var npy = mappedOf(m);
+		return npy != null
+				? npy.diag()
+				: reader.diagonalOf(m);
+	}
+
+	@Override
+	public double[] columnOf(LibMatrix m, int j) {
+		var npy = mappedOf(m);
+		return npy != null
+				? npy.column(j)
+				: reader.columnOf(m, j);
+	}
+
+	/**
+	 * Returns the row with the given index of the given matrix, or
+	 * {@code null} if that matrix is not stored as dense .npy file.
+	 */
+	public double[] rowOf(LibMatrix m, int i) {
+		var npy = mappedOf(m);
+		return npy != null
+				? npy.row(i)
+				: null;
+	}
+
+	/**
+	 * Returns a read-only view of the given column of the mapped matrix. For
+	 * matrices that are stored in column-major order (which is the case for
+	 * the matrices that openLCA writes), the view is backed directly by the
+	 * mapped file. Returns {@code null} if the matrix is not stored as dense
+	 * .npy file.
+	 */
+	public DoubleBuffer columnBufferOf(LibMatrix m, int j) {
+		var npy = mappedOf(m);
+		return npy != null
+				? npy.columnView(j)
+				: null;
+	}
+
+	/**
+	 * Returns true if the given matrix is stored as dense .npy file and is
+	 * thus read from the mapping of that file.
+	 */
+	public boolean isMapped(LibMatrix m) {
+		return mappedOf(m) != null;
+	}
+
+	private MappedNpy mappedOf(LibMatrix m) {
+		if (m == null)
+			return null;
+		return mapped.computeIfAbsent(m, $ -> {
+			var file = new File(library().folder(), m.name() + ".npy");
+			return file.exists()
+					? Optional.ofNullable(MappedNpy.of(file))
+					: Optional.empty();
+		}).orElse(null);
+	}
+
+	/**
+	 * Releases the mappings of this reader. The mapped memory is unmapped by
+	 * the garbage collector when it is not referenced anymore.
+	 */
+	@Override
+	public void dispose() {
+		mapped.clear();
+		reader.dispose();
+	}
+}
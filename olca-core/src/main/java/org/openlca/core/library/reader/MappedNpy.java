@@ -0,0 +1,149 @@
+package org.openlca.core.library.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.openlca.npy.NpyDataType;
+import org.openlca.npy.NpyHeader;
+
+/**
+ * A dense matrix of 64-bit floating point numbers that is mapped from an .npy
+ * file into memory. The operating system loads the pages of the file on
+ * demand and can share them between processes that map the same file.
+ * <p>
+ * A single mapping is limited to 2 GB. Thus, the data are mapped in segments
+ * that contain complete columns (when the file is stored in column-major
+ * order) or complete rows (when stored in row-major order).
+ */
+final class MappedNpy {
+
+	final int rows;
+	final int columns;
+	private final boolean columnMajor;
+	private final DoubleBuffer[] segments;
+	private final int linesPerSegment;
+	private final int lineLength;
+
+	private MappedNpy(int rows, int columns, boolean columnMajor,
+			DoubleBuffer[] segments, int linesPerSegment) {
+		this.rows = rows;
+		this.columns = columns;
+		this.columnMajor = columnMajor;
+		this.segments = segments;
+		this.linesPerSegment = linesPerSegment;
+		this.lineLength = columnMajor ? rows : columns;
+	}
+
+	/**
+	 * Maps the given file into memory. Returns {@code null} if the file does
+	 * not contain a 2-dimensional array of 64-bit floating point numbers.
+	 */
+	static MappedNpy of(File file) {
+		try (var channel = FileChannel.open(
+				file.toPath(), StandardOpenOption.READ)) {
+			var header = NpyHeader.read(channel);
+			var dict = header.dict();
+			if (dict.dimensions() != 2 || dict.dataType() != NpyDataType.f8)
+				return null;
+			int rows = dict.sizeOfDimension(0);
+			int columns = dict.sizeOfDimension(1);
+			boolean columnMajor = dict.hasFortranOrder();
+			var order = header.byteOrder() != null
+					? header.byteOrder()
+					: ByteOrder.LITTLE_ENDIAN;
+
+			int lines = columnMajor ? columns : rows;
+			int lineLength = Math.max(1, columnMajor ? rows : columns);
+			int linesPerSegment = Math.max(1, (Integer.MAX_VALUE / 8) / lineLength);
+			int segmentCount = lines == 0
+					? 0
+					: (lines - 1) / linesPerSegment + 1;
+			var segments = new DoubleBuffer[segmentCount];
+			for (int s = 0; s < segmentCount; s++) {
+				int first = s * linesPerSegment;
+				int count = Math.min(linesPerSegment, lines - first);
+				long offset = header.dataOffset() + 8L * first * lineLength;
+				long size = 8L * count * lineLength;
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, offset, size)
+						.order(order)
+						.asDoubleBuffer();
+			}
+			return new MappedNpy(rows, columns, columnMajor, segments,
+					linesPerSegment);
+		} catch (IOException e) {
+			throw new RuntimeException("failed to map file " + file, e);
+		}
+	}
+
+	double get(int row, int column) {
+		return columnMajor
+				? valueOf(column, row)
+				: valueOf(row, column);
+	}
+
+	double[] column(int j) {
+		if (!columnMajor)
+			return strided(j, rows);
+		var column = new double[rows];
+		segmentOf(j).get(offsetOf(j), column);
+		return column;
+	}
+
+	double[] row(int i) {
+		if (columnMajor)
+			return strided(i, columns);
+		var row = new double[columns];
+		segmentOf(i).get(offsetOf(i), row);
+		return row;
+	}
+
+	double[] diag() {
+		int n = Math.min(rows, columns);
+		var diag = new double[n];
+		for (int i = 0; i < n; i++) {
+			diag[i] = valueOf(i, i);
+		}
+		return diag;
+	}
+
+	/**
+	 * Returns a read-only view of the given column without copying the data,
+	 * if the matrix is stored in column-major order. Otherwise, the column is
+	 * copied into a new buffer.
+	 */
+	DoubleBuffer columnView(int j) {
+		if (!columnMajor)
+			return DoubleBuffer.wrap(column(j)).asReadOnlyBuffer();
+		return segmentOf(j)
+				.slice(offsetOf(j), rows)
+				.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Collects the values of the given position in each line (row or column)
+	 * of the storage order.
+	 */
+	private double[] strided(int pos, int lines) {
+		var values = new double[lines];
+		for (int line = 0; line < lines; line++) {
+			values[line] = valueOf(line, pos);
+		}
+		return values;
+	}
+
+	private double valueOf(int line, int pos) {
+		return segmentOf(line).get(offsetOf(line) + pos);
+	}
+
+	private DoubleBuffer segmentOf(int line) {
+		return segments[line / linesPerSegment];
+	}
+
+	private int offsetOf(int line) {
+		return (line % linesPerSegment) * lineLength;
+	}
+}
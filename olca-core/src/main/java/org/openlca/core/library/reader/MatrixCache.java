@@ -2,47 +2,74 @@ package org.openlca.core.library.reader;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
 import org.openlca.core.library.LibMatrix;
+import org.openlca.core.library.Library;
 import org.openlca.core.matrix.format.MatrixReader;
 
 import java.util.EnumMap;
 
+/**
+ * The cache of a library reader. Full matrices and values that are specific
+ * to a reader (e.g. columns of a computed inverse) are stored in this cache.
+ * Columns and diagonals that are read from the library files are stored in
+ * the shared {@link LibCache} so that they can be reused by other readers;
+ * sparse matrices of the library are also shared via the {@link LibCache}
+ * and are only referenced by this cache.
+ * The methods of this cache are synchronized so that a reader can be used in
+ * parallel calculations.
+ */
 class MatrixCache {
 
-  private final EnumMap<LibMatrix, MatrixReader> matrices;
+	private final Library lib;
+	private final EnumMap<LibMatrix, MatrixReader> matrices;
 	private final EnumMap<LibMatrix, double[]> diagonals;
 	private final EnumMap<LibMatrix, TIntObjectHashMap<double[]>> columns;
 
-	MatrixCache() {
+	MatrixCache(Library lib) {
+		this.lib = lib;
 		matrices = new EnumMap<>(LibMatrix.class);
 		diagonals = new EnumMap<>(LibMatrix.class);
 		columns = new EnumMap<>(LibMatrix.class);
 	}
 
-	MatrixReader matrixOf(LibMatrix m) {
+	synchronized MatrixReader matrixOf(LibMatrix m) {
 		return matrices.get(m);
 	}
 
-	void put(LibMatrix m, MatrixReader matrix) {
+	synchronized void put(LibMatrix m, MatrixReader matrix) {
 		matrices.put(m, matrix);
 	}
 
-	double[] diagonalOf(LibMatrix m) {
+	synchronized double[] diagonalOf(LibMatrix m) {
 		var cached = diagonals.get(m);
 		if (cached != null)
 			return cached;
 		var matrix = matrices.get(m);
 		if (matrix == null)
-			return null;
+			return lib != null
+				? LibCache.shared().diagonalOf(lib, m)
+				: null;
 		var diag = matrix.diag();
 		diagonals.put(m, diag);
 		return diag;
 	}
 
-	void putDiagonal(LibMatrix m, double[] diag) {
+	synchronized void putDiagonal(LibMatrix m, double[] diag) {
 		diagonals.put(m, diag);
 	}
 
-	double[] columnOf(LibMatrix m, int j) {
+	/**
+	 * Puts the given diagonal that was read from the library files into the
+	 * shared cache.
+	 */
+	void shareDiagonal(LibMatrix m, double[] diag) {
+		if (lib == null || diag == null) {
+			putDiagonal(m, diag);
+			return;
+		}
+		LibCache.shared().putDiagonal(lib, m, diag);
+	}
+
+	synchronized double[] columnOf(LibMatrix m, int j) {
 		var cache = columns.computeIfAbsent(
 			m, $ -> new TIntObjectHashMap<>());
 		var cached = cache.get(j);
@@ -50,25 +77,39 @@ class MatrixCache {
 			return cached;
 		var matrix = matrices.get(m);
 		if (matrix == null)
-			return null;
+			return lib != null
+				? LibCache.shared().columnOf(lib, m, j)
+				: null;
 		var column = matrix.getColumn(j);
 		cache.put(j, column);
 		return column;
 	}
 
-	void putColumn(LibMatrix m, int j, double[] column) {
+	synchronized void putColumn(LibMatrix m, int j, double[] column) {
 		var cache = columns.computeIfAbsent(
 			m, $ -> new TIntObjectHashMap<>());
 		cache.put(j, column);
 	}
 
-	void clear() {
+	/**
+	 * Puts the given column that was read from the library files into the
+	 * shared cache.
+	 */
+	void shareColumn(LibMatrix m, int j, double[] column) {
+		if (lib == null || column == null) {
+			putColumn(m, j, column);
+			return;
+		}
+		LibCache.shared().putColumn(lib, m, j, column);
+	}
+
+	synchronized void clear() {
 		matrices.clear();
 		diagonals.clear();
 		columns.clear();
 	}
 
-	void clearValuesOf(LibMatrix m) {
+	synchronized void clearValuesOf(LibMatrix m) {
 		matrices.remove(m);
 		diagonals.remove(m);
 		columns.remove(m);
@@ -181,5 +181,6 @@ public class SolvingLibReader implements LibReader {
 			factorization.dispose();
 			factorization = null;
 		}
+		reader.dispose();
 	}
 }
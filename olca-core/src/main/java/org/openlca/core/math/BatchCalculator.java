@@ -0,0 +1,506 @@
+package org.openlca.core.math;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.library.reader.LibReaderRegistry;
+import org.openlca.core.matrix.Demand;
+import org.openlca.core.matrix.FormulaCells;
+import org.openlca.core.matrix.MatrixData;
+import org.openlca.core.matrix.ParameterTable;
+import org.openlca.core.matrix.cache.ExchangeStore;
+import org.openlca.core.matrix.format.DenseMatrix;
+import org.openlca.core.matrix.index.MatrixIndex;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.matrix.solvers.Factorization;
+import org.openlca.core.matrix.solvers.MatrixSolver;
+import org.openlca.core.model.CalculationSetup;
+import org.openlca.core.model.ParameterRedef;
+import org.openlca.core.results.LcaResult;
+import org.openlca.core.results.providers.FactorizationSolver;
+import org.openlca.core.results.providers.ResultProvider;
+import org.openlca.core.results.providers.SolverContext;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Calculates the total results of a calculation setup for a batch of
+ * scenarios, e.g. for screenings with many functional units or for parameter
+ * sweeps. A scenario has a demand, which is an amount of the reference flow
+ * of the setup or of another product or waste flow of the system, and a set
+ * of parameter redefinitions that are applied in addition to the
+ * redefinitions of the setup.
+ * <p>
+ * The technology index and the matrices are built once for the setup. For
+ * scenarios with parameter redefinitions, only the matrix entries that depend
+ * on formulas are evaluated again; see {@link FormulaCells}. Scenarios with
+ * the same redefinitions share their matrices, and all scenarios with the
+ * technology matrix of the setup share a single factorization of it. For each
+ * matrix set, the solutions of the demanded technosphere flows are calculated
+ * together for one unit of these flows, with a single factorization; see
+ * {@link ResultProvider#solutionsOf(int[])}. These unit results are then
+ * scaled by the demands of the scenarios. The matrix sets are calculated in
+ * parallel.
+ * <p>
+ * Product systems with sub-systems or result providers and systems that are
+ * linked to libraries are calculated for each scenario separately with a
+ * {@link SystemCalculator}.
+ */
+public class BatchCalculator {
+
+	private final IDatabase db;
+	private LibReaderRegistry libraries;
+	private MatrixSolver solver;
+	private ExchangeStore exchangeStore;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	public BatchCalculator(IDatabase db) {
+		this.db = db;
+	}
+
+	public BatchCalculator withLibraries(LibReaderRegistry libraries) {
+		this.libraries = libraries;
+		return this;
+	}
+
+	public BatchCalculator withSolver(MatrixSolver solver) {
+		this.solver = solver;
+		return this;
+	}
+
+	/**
+	 * Sets the store from which the exchanges of the processes are read when
+	 * the matrices are built; see {@link ExchangeStore}.
+	 */
+	public BatchCalculator withExchangeStore(ExchangeStore store) {
+		this.exchangeStore = store;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of threads that are used to calculate the
+	 * scenarios with different parameter redefinitions in parallel. The
+	 * default is the number of available processors.
+	 */
+	public BatchCalculator withThreads(int threads) {
+		this.threads = Math.max(1, threads);
+		return this;
+	}
+
+	/**
+	 * A scenario of a batch calculation.
+	 *
+	 * @param amount     the amount of the reference flow, given in the unit
+	 *                   and flow property of the calculation setup; it is
+	 *                   ignored when the scenario has an explicit demand
+	 * @param parameters the parameter redefinitions of the scenario which
+	 *                   are applied after the redefinitions of the setup
+	 * @param demand     an explicit demand of the scenario, e.g. of another
+	 *                   product of the system, or {@code null} when the
+	 *                   demand is the amount of the reference flow of the
+	 *                   setup; the demanded flow must be a product output or
+	 *                   waste input of the system
+	 */
+	public record Scenario(
+		double amount, List<ParameterRedef> parameters, Demand demand) {
+
+		public static Scenario of(double amount) {
+			return of(amount, List.of());
+		}
+
+		public static Scenario of(double amount, List<ParameterRedef> parameters) {
+			return new Scenario(amount, parameters != null
+				? parameters
+				: List.of(), null);
+		}
+
+		public static Scenario of(Demand demand) {
+			return of(demand, List.of());
+		}
+
+		public static Scenario of(Demand demand, List<ParameterRedef> parameters) {
+			Objects.requireNonNull(demand);
+			return new Scenario(demand.value(), parameters != null
+				? parameters
+				: List.of(), demand);
+		}
+
+		public boolean hasDemand() {
+			return demand != null;
+		}
+	}
+
+	/**
+	 * Calculates the total results of the given scenarios for the given setup.
+	 * The parameter redefinitions of the setup are the baseline of the
+	 * scenarios and the amount of the setup is replaced by the amounts or
+	 * demands of the scenarios.
+	 */
+	public BatchResult calculate(
+		CalculationSetup setup, List<Scenario> scenarios) {
+		if (scenarios == null || scenarios.isEmpty())
+			return new BatchResult(null, null, null, null, null);
+		var techIndex = TechIndex.of(db, setup);
+		for (var techFlow : techIndex) {
+			if (!techFlow.isProcess() || techFlow.isFromLibrary())
+				return calculateSeparately(setup, scenarios);
+		}
+
+		var base = MatrixData.of(db, techIndex)
+			.withSetup(setup)
+			.withExchangeStore(exchangeStore)
+			.withFormulaCells(true)
+			.build();
+		if (base.hasLibraryLinks())
+			return calculateSeparately(setup, scenarios);
+		var cells = base.formulaCells;
+		base.formulaCells = null;
+
+		// group the scenarios by their parameter redefinitions; the scenarios
+		// without redefinitions can share the base matrices
+		var groups = new LinkedHashMap<List<RedefKey>, List<Integer>>();
+		boolean withFormulas = cells != null && !cells.isEmpty();
+		for (int i = 0; i < scenarios.size(); i++) {
+			var key = withFormulas
+				? keyOf(scenarios.get(i).parameters())
+				: List.<RedefKey>of();
+			groups.computeIfAbsent(key, $ -> new ArrayList<>()).add(i);
+		}
+
+		ParameterTable table = null;
+		boolean withRedefs = groups.keySet().stream()
+			.anyMatch(key -> !key.isEmpty());
+		if (withFormulas && withRedefs) {
+			var contexts = new HashSet<>(techIndex.getProcessIds());
+			if (base.impactIndex != null) {
+				base.impactIndex.content().forEach(
+					impact -> contexts.add(impact.id));
+			}
+			table = ParameterTable.of(db, contexts);
+		}
+
+		var result = emptyResult(base, scenarios.size());
+		var demands = demandsOf(setup, scenarios);
+		var demandIdx = new int[demands.length];
+		for (int i = 0; i < demands.length; i++) {
+			demandIdx[i] = techIndex.of(demands[i].techFlow());
+			if (demandIdx[i] < 0)
+				throw new IllegalArgumentException("the demand "
+					+ demands[i].techFlow() + " is not part of the system");
+		}
+
+		var solver = this.solver != null
+			? this.solver
+			: MatrixSolver.get();
+		var factorization = solver.factorize(base.techMatrix);
+
+		var pool = Executors.newFixedThreadPool(
+			Math.min(threads, groups.size()));
+		try {
+			var futures = new ArrayList<Future<?>>(groups.size());
+			var params = table;
+			for (var group : groups.values()) {
+				futures.add(pool.submit(() -> {
+					var first = scenarios.get(group.get(0));
+					var data = params != null && !first.parameters().isEmpty()
+						? cells.applyTo(base, params.interpreterOf(
+						joinParameters(setup, first.parameters())))
+						: base;
+					var techFlows = new TIntHashSet();
+					for (int col : group) {
+						techFlows.add(demandIdx[col]);
+					}
+					var units = unitResultsOf(
+						solver, factorization, data, techFlows.toArray(),
+						data.techMatrix == base.techMatrix);
+					for (int col : group) {
+						units.get(demandIdx[col])
+							.putTo(result, col, demands[col].value());
+					}
+				}));
+			}
+			for (var future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("batch calculation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(
+				"failed to calculate batch scenario", e.getCause());
+		} finally {
+			pool.shutdownNow();
+			factorization.dispose();
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates the results of the given matrices for one unit of each of the
+	 * given technosphere flows. The solutions are calculated together with a
+	 * single factorization of the technology matrix: the factorization of the
+	 * setup when the matrices share its technology matrix, otherwise a
+	 * refactorization of the matrix with that factorization as pattern.
+	 */
+	private TIntObjectHashMap<UnitResult> unitResultsOf(
+		MatrixSolver solver, Factorization factorization, MatrixData data,
+		int[] techFlows, boolean shared) {
+		var context = SolverContext.of(data).withSolver(solver);
+		ResultProvider provider;
+		double[][] solutions;
+		if (shared) {
+			// the shared factorization is not used by multiple threads at once
+			synchronized (factorization) {
+				provider = FactorizationSolver.solve(
+					context.withFactorization(factorization));
+				solutions = provider.solutionsOf(techFlows);
+			}
+		} else {
+			provider = FactorizationSolver.solve(
+				context.withFactorizationPattern(factorization));
+			solutions = provider.solutionsOf(techFlows);
+		}
+		provider.dispose();
+
+		var units = new TIntObjectHashMap<UnitResult>(techFlows.length);
+		for (int i = 0; i < techFlows.length; i++) {
+			units.put(techFlows[i], unitResultOf(solver, data, solutions[i]));
+		}
+		return units;
+	}
+
+	private UnitResult unitResultOf(
+		MatrixSolver solver, MatrixData data, double[] s) {
+		var flows = data.enviMatrix != null
+			? solver.multiply(data.enviMatrix, s)
+			: null;
+		var impacts = flows != null && data.impactMatrix != null
+			? solver.multiply(data.impactMatrix, flows)
+			: null;
+		double costs = 0;
+		if (data.costVector != null) {
+			for (int i = 0; i < s.length; i++) {
+				costs += data.costVector[i] * s[i];
+			}
+		}
+		return new UnitResult(flows, impacts, costs);
+	}
+
+	private BatchResult emptyResult(MatrixData data, int size) {
+		var flows = data.enviIndex != null && data.enviMatrix != null
+			? new DenseMatrix(data.enviIndex.size(), size)
+			: null;
+		var impacts = flows != null && data.impactIndex != null
+			&& data.impactMatrix != null
+			? new DenseMatrix(data.impactIndex.size(), size)
+			: null;
+		var costs = data.costVector != null
+			? new double[size]
+			: null;
+		return new BatchResult(
+			flows != null ? data.enviIndex : null,
+			impacts != null ? data.impactIndex : null,
+			flows, impacts, costs);
+	}
+
+	private BatchResult calculateSeparately(
+		CalculationSetup setup, List<Scenario> scenarios) {
+		var calculator = new SystemCalculator(db)
+			.withLibraries(libraries)
+			.withSolver(solver)
+			.withExchangeStore(exchangeStore);
+		Factorization pattern = null;
+		BatchResult batch = null;
+		for (int col = 0; col < scenarios.size(); col++) {
+			var scenario = scenarios.get(col);
+			var scenarioSetup = setup.copy()
+				.withParameters(joinParameters(setup, scenario.parameters()));
+			if (!scenario.hasDemand()) {
+				scenarioSetup.withAmount(scenario.amount());
+			}
+			var result = calculator
+				.withFactorizationPattern(pattern)
+				.calculate(scenarioSetup);
+			if (batch == null) {
+				batch = emptyResult(result, scenarios.size());
+			}
+			putTo(batch, col, result, scenario.demand());
+
+			// keep the symbolic analysis of the first reusable factorization
+			// as pattern, so that the result can be disposed directly
+			if (pattern == null
+				&& result.provider() instanceof FactorizationSolver s) {
+				pattern = s.factorization().analysis();
+			}
+			result.dispose();
+		}
+		return batch != null
+			? batch
+			: new BatchResult(null, null, null, null, null);
+	}
+
+	private BatchResult emptyResult(LcaResult result, int size) {
+		var p = result.provider();
+		var flows = p.hasFlows()
+			? new DenseMatrix(p.enviIndex().size(), size)
+			: null;
+		var impacts = p.hasImpacts()
+			? new DenseMatrix(p.impactIndex().size(), size)
+			: null;
+		var costs = p.hasCosts()
+			? new double[size]
+			: null;
+		return new BatchResult(
+			flows != null ? p.enviIndex() : null,
+			impacts != null ? p.impactIndex() : null,
+			flows, impacts, costs);
+	}
+
+	/**
+	 * Copies the total results into the given column of the batch. When an
+	 * explicit demand is given, the results of one unit of the demanded flow
+	 * are scaled by the demand instead.
+	 */
+	private void putTo(
+		BatchResult batch, int col, LcaResult result, Demand demand) {
+		var p = result.provider();
+		int idx = -1;
+		if (demand != null) {
+			idx = p.techIndex().of(demand.techFlow());
+			if (idx < 0)
+				throw new IllegalArgumentException("the demand "
+					+ demand.techFlow() + " is not part of the system");
+		}
+		if (batch.totalFlows() != null && p.hasFlows()) {
+			putColumn(batch.totalFlows(), col, batch.enviIndex(),
+				p.enviIndex(), idx < 0
+					? p.totalFlows()
+					: scale(p.totalFlowsOfOne(idx), demand.value()));
+		}
+		if (batch.totalImpacts() != null && p.hasImpacts()) {
+			putColumn(batch.totalImpacts(), col, batch.impactIndex(),
+				p.impactIndex(), idx < 0
+					? p.totalImpacts()
+					: scale(p.totalImpactsOfOne(idx), demand.value()));
+		}
+		if (batch.totalCosts() != null) {
+			batch.totalCosts()[col] = idx < 0
+				? p.totalCosts()
+				: p.totalCostsOfOne(idx) * demand.value();
+		}
+	}
+
+	private static double[] scale(double[] values, double factor) {
+		var scaled = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			scaled[i] = values[i] * factor;
+		}
+		return scaled;
+	}
+
+	/**
+	 * Copies the values of a result into a column of a batch matrix. The
+	 * indices of the results of the same setup are normally equal but this
+	 * is not guaranteed for systems with sub-systems, so the rows are mapped.
+	 */
+	private <T> void putColumn(DenseMatrix m, int col, MatrixIndex<T> target,
+		MatrixIndex<T> source, double[] values) {
+		for (int i = 0; i < values.length; i++) {
+			int row = source == target
+				? i
+				: target.of(source.at(i));
+			if (row >= 0 && row < m.rows) {
+				m.set(row, col, values[i]);
+			}
+		}
+	}
+
+	private static List<ParameterRedef> joinParameters(
+		CalculationSetup setup, List<ParameterRedef> parameters) {
+		if (parameters == null || parameters.isEmpty())
+			return setup.parameters();
+		if (setup.parameters().isEmpty())
+			return parameters;
+		var joined = new ArrayList<>(setup.parameters());
+		joined.addAll(parameters);
+		return joined;
+	}
+
+	/**
+	 * Returns the demands of the given scenarios. For scenarios without an
+	 * explicit demand, this is the demand of the reference flow of the setup.
+	 */
+	private static Demand[] demandsOf(
+		CalculationSetup setup, List<Scenario> scenarios) {
+		var ref = Demand.of(setup).techFlow();
+		var demands = new Demand[scenarios.size()];
+		for (int i = 0; i < demands.length; i++) {
+			var scenario = scenarios.get(i);
+			demands[i] = scenario.hasDemand()
+				? scenario.demand()
+				: Demand.of(ref, demandOf(setup, scenario.amount()));
+		}
+		return demands;
+	}
+
+	/**
+	 * Returns the demand value of the given scenario amount. As the demand is
+	 * linear in the amount, it is derived from the demand of the setup.
+	 */
+	private static double demandOf(CalculationSetup setup, double amount) {
+		double setupAmount = setup.amount();
+		return setupAmount != 0
+			? setup.demand() * amount / setupAmount
+			: setup.copy().withAmount(amount).demand();
+	}
+
+	private static List<RedefKey> keyOf(List<ParameterRedef> redefs) {
+		if (redefs == null || redefs.isEmpty())
+			return List.of();
+		var key = new ArrayList<RedefKey>(redefs.size());
+		for (var redef : redefs) {
+			if (redef == null || redef.name == null)
+				continue;
+			key.add(new RedefKey(
+				redef.contextId != null ? redef.contextId : 0L,
+				redef.name.trim().toLowerCase(),
+				redef.value));
+		}
+		return key;
+	}
+
+	private record RedefKey(long context, String name, double value) {
+	}
+
+	/**
+	 * The total results of a matrix set for one unit of a technosphere flow.
+	 */
+	private record UnitResult(double[] flows, double[] impacts, double costs) {
+
+		void putTo(BatchResult result, int col, double demand) {
+			if (result.totalFlows() != null && flows != null) {
+				var m = result.totalFlows();
+				for (int row = 0; row < flows.length; row++) {
+					m.set(row, col, flows[row] * demand);
+				}
+			}
+			if (result.totalImpacts() != null && impacts != null) {
+				var m = result.totalImpacts();
+				for (int row = 0; row < impacts.length; row++) {
+					m.set(row, col, impacts[row] * demand);
+				}
+			}
+			if (result.totalCosts() != null) {
+				result.totalCosts()[col] = costs * demand;
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package org.openlca.core.math;
+
+import org.openlca.core.matrix.format.DenseMatrix;
+import org.openlca.core.matrix.index.EnviIndex;
+import org.openlca.core.matrix.index.ImpactIndex;
+
+/**
+ * The compact result of a batch calculation; see {@link BatchCalculator}. The
+ * columns of the result matrices are the scenarios of the batch in the order
+ * in which they were given to the calculator.
+ *
+ * @param enviIndex    the index of the rows of the total flows; can be
+ *                     {@code null} when there are no elementary flows
+ * @param impactIndex  the index of the rows of the total impacts; is
+ *                     {@code null} when no impact method was selected
+ * @param totalFlows   the total inventory results of the scenarios; is
+ *                     {@code null} when there is no flow index
+ * @param totalImpacts the total impact assessment results of the scenarios;
+ *                     is {@code null} when there is no impact index
+ * @param totalCosts   the total life cycle costs of the scenarios; is
+ *                     {@code null} when the costs were not calculated
+ */
+public record BatchResult(
+	EnviIndex enviIndex,
+	ImpactIndex impactIndex,
+	DenseMatrix totalFlows,
+	DenseMatrix totalImpacts,
+	double[] totalCosts) {
+
+	/**
+	 * Returns the number of scenarios of this result.
+	 */
+	public int size() {
+		if (totalFlows != null)
+			return totalFlows.columns;
+		if (totalImpacts != null)
+			return totalImpacts.columns;
+		return totalCosts != null
+			? totalCosts.length
+			: 0;
+	}
+}
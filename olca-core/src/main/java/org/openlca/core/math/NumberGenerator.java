@@ -1,10 +1,25 @@
 package org.openlca.core.math;
 
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 public abstract class NumberGenerator {
 
-	public abstract double next();
+	/**
+	 * Generates the next number using the random number generator of the
+	 * current thread. Note that the generated numbers are not reproducible in
+	 * this case.
+	 */
+	public double next() {
+		return next(ThreadLocalRandom.current());
+	}
+
+	/**
+	 * Generates the next number using the given random number generator. A
+	 * number generator has no internal state, thus, the generated sequence is
+	 * fully determined by the given random number generator.
+	 */
+	public abstract double next(RandomGenerator random);
 
 	public static NumberGenerator normal(double mean, double standardDeviation) {
 		return new Normal(mean, standardDeviation);
@@ -42,8 +57,8 @@ public abstract class NumberGenerator {
 		}
 
 		@Override
-		public double next() {
-			var rand = ThreadLocalRandom.current().nextGaussian();
+		public double next(RandomGenerator random) {
+			var rand = random.nextGaussian();
 			return rand * std + mean;
 		}
 	}
@@ -73,8 +88,8 @@ public abstract class NumberGenerator {
 		}
 
 		@Override
-		public double next() {
-			return Math.exp(normal.next()) * factor;
+		public double next(RandomGenerator random) {
+			return Math.exp(normal.next(random)) * factor;
 		}
 	}
 
@@ -89,9 +104,8 @@ public abstract class NumberGenerator {
 		}
 
 		@Override
-		public double next() {
-			var rand = ThreadLocalRandom.current();
-			return min + rand.nextDouble() * range;
+		public double next(RandomGenerator random) {
+			return min + random.nextDouble() * range;
 		}
 	}
 
@@ -111,10 +125,10 @@ public abstract class NumberGenerator {
 		 * see http://en.wikipedia.org/wiki/Triangular_distribution
 		 */
 		@Override
-		public double next() {
+		public double next(RandomGenerator random) {
 			if (max == min)
 				return mode;
-			double u = ThreadLocalRandom.current().nextDouble();
+			double u = random.nextDouble();
 			double fMode = (mode - min) / (max - min);
 			if (u <= fMode)
 				return min + Math.sqrt(u * (max - min) * (mode - min));
@@ -131,7 +145,7 @@ public abstract class NumberGenerator {
 		}
 
 		@Override
-		public double next() {
+		public double next(RandomGenerator random) {
 			return val;
 		}
 	}
@@ -0,0 +1,366 @@
+package org.openlca.core.math;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.library.reader.LibReaderRegistry;
+import org.openlca.core.matrix.Demand;
+import org.openlca.core.matrix.MatrixData;
+import org.openlca.core.matrix.ParameterTable;
+import org.openlca.core.matrix.cache.ExchangeStore;
+import org.openlca.core.matrix.format.Matrix;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.matrix.solvers.Factorization;
+import org.openlca.core.matrix.solvers.MatrixSolver;
+import org.openlca.core.model.AllocationMethod;
+import org.openlca.core.model.CalculationSetup;
+import org.openlca.core.model.Project;
+import org.openlca.core.model.ProjectVariant;
+import org.openlca.core.results.LcaResult;
+import org.openlca.core.results.providers.FactorizationSolver;
+import org.openlca.core.results.providers.ResultProviders;
+import org.openlca.core.results.providers.SolverContext;
+
+/**
+ * Calculates the results of the variants of a project. Variants of the same
+ * product system and allocation method share their matrix structures: the
+ * indices and matrices are built once for the first variant of such a group,
+ * and for the other variants, only the matrix entries that depend on formulas
+ * are evaluated again with their parameter redefinitions. The variants of a
+ * group are then solved in parallel. When no entry of the technology matrix
+ * depends on a formula, the variants of a group only differ in their demands
+ * and the other matrices, and the technology matrix is factorized only once
+ * for all variants of the group. Otherwise, the symbolic analysis of the
+ * factorization of the first variant is reused where possible.
+ * <p>
+ * Product systems with sub-systems or result providers are calculated for
+ * each variant separately with a {@link SystemCalculator}, as the results of
+ * the sub-systems depend on the parameter redefinitions of the variant.
+ */
+public class ProjectCalculator {
+
+	private final IDatabase db;
+	private LibReaderRegistry libraries;
+	private MatrixSolver solver;
+	private ExchangeStore exchangeStore;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	public ProjectCalculator(IDatabase db) {
+		this.db = db;
+	}
+
+	public ProjectCalculator withLibraries(LibReaderRegistry libraries) {
+		this.libraries = libraries;
+		return this;
+	}
+
+	public ProjectCalculator withSolver(MatrixSolver solver) {
+		this.solver = solver;
+		return this;
+	}
+
+	/**
+	 * Sets the store from which the exchanges of the processes are read when
+	 * the matrices are built; see {@link ExchangeStore}.
+	 */
+	public ProjectCalculator withExchangeStore(ExchangeStore store) {
+		this.exchangeStore = store;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of threads that are used to solve the variants
+	 * of a group in parallel. The default is the number of available
+	 * processors.
+	 */
+	public ProjectCalculator withThreads(int threads) {
+		this.threads = Math.max(1, threads);
+		return this;
+	}
+
+	/**
+	 * Creates the calculation setup of the given project variant.
+	 */
+	public static CalculationSetup setupOf(
+		Project project, ProjectVariant variant) {
+		return CalculationSetup.of(variant.productSystem)
+			.withUnit(variant.unit)
+			.withFlowPropertyFactor(variant.flowPropertyFactor)
+			.withAmount(variant.amount)
+			.withAllocation(variant.allocationMethod)
+			.withImpactMethod(project.impactMethod)
+			.withNwSet(project.nwSet)
+			.withParameters(variant.parameterRedefs)
+			.withCosts(project.isWithCosts)
+			.withRegionalization(project.isWithRegionalization);
+	}
+
+	/**
+	 * Calculates the results of the enabled variants of the given project.
+	 */
+	public Map<ProjectVariant, LcaResult> calculate(Project project) {
+		var results = new HashMap<ProjectVariant, LcaResult>();
+		if (project == null)
+			return results;
+
+		// group the variants by product system and allocation method
+		var groups = new LinkedHashMap<GroupKey, List<Job>>();
+		for (var v : project.variants) {
+			if (v.isDisabled || v.productSystem == null)
+				continue;
+			var key = new GroupKey(v.productSystem.id, v.allocationMethod);
+			groups.computeIfAbsent(key, $ -> new ArrayList<>())
+				.add(new Job(v, setupOf(project, v)));
+		}
+
+		for (var jobs : groups.values()) {
+			var techIndex = TechIndex.of(db, jobs.get(0).setup);
+			if (hasSubSystems(techIndex)) {
+				calculateSeparately(jobs, results);
+			} else {
+				calculateShared(techIndex, jobs, results);
+			}
+		}
+		return results;
+	}
+
+	private boolean hasSubSystems(TechIndex techIndex) {
+		for (var techFlow : techIndex) {
+			if (!techFlow.isProcess())
+				return true;
+		}
+		return false;
+	}
+
+	private void calculateSeparately(
+		List<Job> jobs, Map<ProjectVariant, LcaResult> results) {
+		var calculator = new SystemCalculator(db)
+			.withLibraries(libraries)
+			.withSolver(solver)
+			.withExchangeStore(exchangeStore);
+		Factorization pattern = null;
+		for (var job : jobs) {
+			var result = calculator
+				.withFactorizationPattern(pattern)
+				.calculate(job.setup);
+			if (pattern == null) {
+				pattern = patternOf(result);
+			}
+			results.put(job.variant, result);
+		}
+	}
+
+	private void calculateShared(TechIndex techIndex, List<Job> jobs,
+		Map<ProjectVariant, LcaResult> results) {
+
+		// build the matrices for the first variant
+		var first = jobs.get(0);
+		var base = MatrixData.of(db, techIndex)
+			.withSetup(first.setup)
+			.withExchangeStore(exchangeStore)
+			.withFormulaCells(true)
+			.build();
+		if (jobs.size() == 1) {
+			results.put(first.variant, solve(base, null));
+			return;
+		}
+
+		// the parameters of the processes and LCIA categories of the group;
+		// only needed when there are matrix entries with formulas
+		var cells = base.formulaCells;
+		base.formulaCells = null;
+		ParameterTable parameters = null;
+		if (cells != null && !cells.isEmpty()) {
+			var contexts = new HashSet<>(techIndex.getProcessIds());
+			if (base.impactIndex != null) {
+				base.impactIndex.content().forEach(
+					impact -> contexts.add(impact.id));
+			}
+			parameters = ParameterTable.of(db, contexts);
+		}
+		var table = parameters;
+
+		// when the technology matrix is the same for all variants, we
+		// factorize it once and share the factorization with all results
+		SharedFactorization shared = null;
+		Factorization pattern = null;
+		if ((cells == null || !cells.hasTechCells()) && !base.hasLibraryLinks()) {
+			var matrixSolver = solver != null ? solver : MatrixSolver.get();
+			shared = new SharedFactorization(
+				matrixSolver.factorize(base.techMatrix), jobs.size());
+			results.put(first.variant, solveShared(base, shared));
+		} else {
+			var firstResult = solve(base, null);
+			results.put(first.variant, firstResult);
+			pattern = patternOf(firstResult);
+		}
+		var sharedFactorization = shared;
+		var factorizationPattern = pattern;
+
+		// solve the other variants in parallel
+		var rest = jobs.subList(1, jobs.size());
+		var pool = Executors.newFixedThreadPool(Math.min(threads, rest.size()));
+		try {
+			var futures = new ArrayList<Future<LcaResult>>(rest.size());
+			for (var job : rest) {
+				futures.add(pool.submit(() -> {
+					var data = table != null
+						? cells.applyTo(base,
+							table.interpreterOf(job.setup.parameters()))
+						: copyOf(base);
+					data.demand = Demand.of(job.setup);
+					return sharedFactorization != null
+						? solveShared(data, sharedFactorization)
+						: solve(data, factorizationPattern);
+				}));
+			}
+			for (int i = 0; i < rest.size(); i++) {
+				results.put(rest.get(i).variant, futures.get(i).get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("project calculation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(
+				"failed to calculate project variant", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private LcaResult solve(MatrixData data, Factorization pattern) {
+		var context = SolverContext.of(db, data)
+			.withLibraries(libraries)
+			.withSolver(solver)
+			.withFactorizationPattern(pattern);
+		return new LcaResult(ResultProviders.solve(context));
+	}
+
+	/**
+	 * Solves the given data with a handle of the shared factorization which
+	 * is then owned by the result.
+	 */
+	private LcaResult solveShared(MatrixData data, SharedFactorization shared) {
+		var context = SolverContext.of(db, data)
+			.withLibraries(libraries)
+			.withSolver(solver)
+			.withOwnedFactorization(shared.handle());
+		return new LcaResult(FactorizationSolver.solve(context));
+	}
+
+	/**
+	 * Returns the symbolic analysis of the factorization of the given result,
+	 * if available. Only the analysis is kept as pattern, so that the numeric
+	 * factors of the result are not retained and the pattern stays valid when
+	 * the result is disposed.
+	 */
+	private Factorization patternOf(LcaResult result) {
+		return result.provider() instanceof FactorizationSolver s
+			? s.factorization().analysis()
+			: null;
+	}
+
+	/**
+	 * Creates a copy of the given data that shares the indices and matrices,
+	 * so that the demand can be set for a variant.
+	 */
+	private MatrixData copyOf(MatrixData base) {
+		var data = new MatrixData();
+		data.techIndex = base.techIndex;
+		data.enviIndex = base.enviIndex;
+		data.impactIndex = base.impactIndex;
+		data.techMatrix = base.techMatrix;
+		data.enviMatrix = base.enviMatrix;
+		data.impactMatrix = base.impactMatrix;
+		data.costVector = base.costVector;
+		return data;
+	}
+
+	/**
+	 * A factorization of a technology matrix that is shared by the results of
+	 * the variants of a group. Each result owns a handle of that
+	 * factorization, and the factorization is disposed when the handles of
+	 * all results are disposed. As not every factorization can be used by
+	 * multiple threads at the same time, the calls to the factorization are
+	 * synchronized.
+	 */
+	private static class SharedFactorization {
+
+		private final Factorization factorization;
+		private int handles;
+
+		SharedFactorization(Factorization factorization, int handles) {
+			this.factorization = factorization;
+			this.handles = handles;
+		}
+
+		Factorization handle() {
+			return new Handle();
+		}
+
+		private synchronized void release() {
+			handles--;
+			if (handles == 0 && !factorization.isDisposed()) {
+				factorization.dispose();
+			}
+		}
+
+		private class Handle implements Factorization {
+
+			private boolean disposed;
+
+			@Override
+			public int size() {
+				return factorization.size();
+			}
+
+			@Override
+			public double[] solve(int i, double val) {
+				synchronized (SharedFactorization.this) {
+					return factorization.solve(i, val);
+				}
+			}
+
+			@Override
+			public double[] solve(double[] b) {
+				synchronized (SharedFactorization.this) {
+					return factorization.solve(b);
+				}
+			}
+
+			@Override
+			public Matrix solve(Matrix b) {
+				synchronized (SharedFactorization.this) {
+					return factorization.solve(b);
+				}
+			}
+
+			@Override
+			public synchronized void dispose() {
+				if (disposed)
+					return;
+				disposed = true;
+				release();
+			}
+
+			@Override
+			public synchronized boolean isDisposed() {
+				return disposed;
+			}
+		}
+	}
+
+	private record GroupKey(long systemId, AllocationMethod method) {
+	}
+
+	private record Job(ProjectVariant variant, CalculationSetup setup) {
+	}
+}
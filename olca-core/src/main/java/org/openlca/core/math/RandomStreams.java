@@ -0,0 +1,66 @@
+package org.openlca.core.math;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Creates independent streams of random numbers for simulations. The stream of
+ * a simulation run is fully determined by the seed of the simulation and the
+ * index of the run. Thus, a run can be replayed from these two values, and a
+ * simulation can be split into ranges of runs that are calculated in
+ * different threads or processes and merged afterwards.
+ * <p>
+ * The seed of a stream is derived from the simulation seed and the run index
+ * in the same way as {@link SplittableRandom} derives the seeds of its splits
+ * (SplitMix64), which gives statistically independent streams for different
+ * run indices.
+ */
+public final class RandomStreams {
+
+	/**
+	 * The odd constant of the golden ratio that is used as the increment of
+	 * the seeds in SplitMix64.
+	 */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final long seed;
+
+	private RandomStreams(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Creates the random streams for the given simulation seed.
+	 */
+	public static RandomStreams of(long seed) {
+		return new RandomStreams(seed);
+	}
+
+	/**
+	 * Creates the random streams with a random seed. The seed can be requested
+	 * via {@link #seed()} so that the simulation can be replayed later.
+	 */
+	public static RandomStreams random() {
+		return new RandomStreams(ThreadLocalRandom.current().nextLong());
+	}
+
+	public long seed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the random number generator of the given run. Calling this
+	 * method with the same run index always returns a generator that produces
+	 * the same sequence of numbers.
+	 */
+	public RandomGenerator run(long index) {
+		return new SplittableRandom(mix(seed + GOLDEN_GAMMA * (index + 1)));
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -8,6 +8,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ImpactMethodDao;
@@ -15,17 +21,21 @@ import org.openlca.core.database.NativeSql;
 import org.openlca.core.library.reader.LibReaderRegistry;
 import org.openlca.core.matrix.MatrixData;
 import org.openlca.core.matrix.ParameterTable;
+import org.openlca.core.matrix.format.Matrix;
+import org.openlca.core.matrix.format.MatrixReader;
 import org.openlca.core.matrix.index.EnviIndex;
 import org.openlca.core.matrix.index.ImpactIndex;
 import org.openlca.core.matrix.index.LongPair;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.matrix.solvers.Factorization;
 import org.openlca.core.matrix.solvers.MatrixSolver;
 import org.openlca.core.model.CalculationSetup;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.ProductSystem;
 import org.openlca.core.results.LcaResult;
 import org.openlca.core.results.SimulationResult;
+import org.openlca.core.results.providers.FactorizationSolver;
 import org.openlca.core.results.providers.ResultProvider;
 import org.openlca.core.results.providers.ResultProviders;
 import org.openlca.core.results.providers.SimpleResultProvider;
@@ -101,6 +111,36 @@ public class Simulator {
 	private LibReaderRegistry libraries;
 	private MatrixSolver solver;
 
+	/**
+	 * The number of threads that are used in `nextRuns`.
+	 */
+	private int threads = 1;
+
+	/**
+	 * The random number streams of the simulation runs. By default, these are
+	 * initialized with a random seed.
+	 */
+	private RandomStreams streams = RandomStreams.random();
+
+	/**
+	 * The index of the next simulation run.
+	 */
+	private long runIndex;
+
+	/**
+	 * The workers of the simulation. The first worker always operates on the
+	 * nodes of this simulator; further workers operate on copies of these
+	 * nodes. They are created lazily when runs are executed in parallel.
+	 */
+	private final List<Worker> workers = new ArrayList<>();
+
+	/**
+	 * The thread pool that executes the runs in `nextRuns`. It is created
+	 * lazily and kept for the lifetime of the simulator; it is shut down in
+	 * `dispose`.
+	 */
+	private ExecutorService pool;
+
 	private Simulator(IDatabase db) {
 		this.db = db;
 	}
@@ -121,6 +161,52 @@ public class Simulator {
 		return this;
 	}
 
+	/**
+	 * Sets the seed of the random numbers of the simulation. The random numbers
+	 * of a simulation run only depend on this seed and the index of the run,
+	 * so that each run can be replayed, regardless of the number of threads
+	 * that are used.
+	 */
+	public Simulator withSeed(long seed) {
+		this.streams = RandomStreams.of(seed);
+		return this;
+	}
+
+	/**
+	 * Returns the seed of the random numbers of this simulation. If no seed was
+	 * set, this is the randomly initialized seed of this simulator.
+	 */
+	public long seed() {
+		return streams.seed();
+	}
+
+	/**
+	 * Sets the index of the next simulation run (which is 0 by default). With
+	 * the same seed, a simulation can be split into ranges of runs that are
+	 * calculated separately, e.g. in different processes, and merged later.
+	 */
+	public Simulator withRunIndex(long index) {
+		this.runIndex = Math.max(0, index);
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads that are used to execute simulation runs in
+	 * `nextRuns`. Each thread works on its own copies of the matrices,
+	 * uncertainty distributions, and formula interpreters of the simulation.
+	 * Thus, the memory consumption of the simulation grows linearly with the
+	 * number of threads.
+	 */
+	public Simulator withThreads(int threads) {
+		int n = Math.max(1, threads);
+		if (pool != null && n != this.threads) {
+			pool.shutdown();
+			pool = null;
+		}
+		this.threads = n;
+		return this;
+	}
+
 	/**
 	 * Get the result of the simulation.
 	 */
@@ -152,78 +238,304 @@ public class Simulator {
 	 */
 	public LcaResult nextRun() {
 		try {
+			var next = worker(0).run(streams.run(runIndex++));
+			var run = Run.of(next, pinnedProducts);
+			run.appendTo(getResult());
+			return next;
+		} catch (Throwable e) {
+			Logger log = LoggerFactory.getLogger(this.getClass());
+			log.trace("simulation run failed", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Executes the given number of simulation runs using the number of threads
+	 * configured via `withThreads`. The runs are distributed over workers that
+	 * hold their own copies of the simulation data, and the results of the
+	 * runs are appended to the simulation result in the order of the runs.
+	 * Runs that failed (e.g. because of a singular matrix) are skipped.
+	 *
+	 * @param count the number of simulation runs that should be executed
+	 * @return the number of runs that finished without errors
+	 */
+	public int nextRuns(int count) {
+		if (count <= 0)
+			return 0;
+		int workerCount = Math.min(threads, count);
+		for (int i = 0; i < workerCount; i++) {
+			worker(i);
+		}
 
-			// generate the numbers and calculate the overall result
+		// execute the runs; each worker takes the next run index from a
+		// shared counter and stores its result at that index, so that we
+		// can merge them in a deterministic order
+		var runs = new Run[count];
+		long firstRun = runIndex;
+		runIndex += count;
+		var counter = new AtomicInteger(0);
+		var tasks = new ArrayList<Callable<Void>>(workerCount);
+		for (int i = 0; i < workerCount; i++) {
+			var worker = workers.get(i);
+			tasks.add(() -> {
+				int idx;
+				while ((idx = counter.getAndIncrement()) < count) {
+					var random = streams.run(firstRun + idx);
+					runs[idx] = worker.runDetached(random, pinnedProducts);
+				}
+				return null;
+			});
+		}
+		try {
+			for (var future : pool().invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		} catch (ExecutionException e) {
+			Logger log = LoggerFactory.getLogger(this.getClass());
+			log.error("simulation runs failed", e);
+			return 0;
+		}
+
+		// merge the results in the order of the runs
+		var result = getResult();
+		int successful = 0;
+		for (var run : runs) {
+			if (run == null)
+				continue;
+			run.appendTo(result);
+			successful++;
+		}
+		return successful;
+	}
+
+	private ExecutorService pool() {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(threads, runnable -> {
+				var thread = new Thread(runnable, "olca-simulator");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return pool;
+	}
+
+	private Worker worker(int i) {
+		while (workers.size() <= i) {
+			workers.add(workers.isEmpty()
+					? new Worker(root, subNodes, nodeIndex)
+					: workers.get(0).copy());
+		}
+		return workers.get(i);
+	}
+
+	/**
+	 * A worker executes the simulation runs on a set of nodes. Different
+	 * workers never share mutable data, so that they can run in parallel.
+	 */
+	private class Worker {
+
+		private final Node root;
+		private final List<Node> subNodes;
+		private final Map<Long, Node> nodeIndex;
+
+		Worker(Node root, List<Node> subNodes, Map<Long, Node> nodeIndex) {
+			this.root = root;
+			this.subNodes = subNodes;
+			this.nodeIndex = nodeIndex;
+		}
+
+		/**
+		 * Creates a copy of this worker with copies of the nodes of this
+		 * worker. The copied sub-nodes keep the topological order.
+		 */
+		Worker copy() {
+			var index = new HashMap<Long, Node>();
+			var subs = new ArrayList<Node>(subNodes.size());
 			for (var sub : subNodes) {
-				generateData(sub);
-				sub.lastResult = solve(sub.data);
+				var copy = sub.copy();
+				subs.add(copy);
+				index.put(copy.providerId, copy);
 			}
-			generateData(root);
-			var next = solve(root.data);
-			var provider = next.provider();
-			var result = getResult();
-			result.append(next);
+			var rootCopy = root.copy();
+			index.put(rootCopy.providerId, rootCopy);
+			return new Worker(rootCopy, subs, index);
+		}
 
-			// calculate results of possible pinned products
-			for (var product : pinnedProducts) {
-				int idx = next.techIndex().of(product);
-				if (idx < 0)
-					continue;
-				var pin = result.pin(product);
-				if (provider.hasFlows()) {
-					pin.withDirectFlows(next.provider().directFlowsOf(idx));
-					pin.withUpstreamFlows(provider.totalFlowsOf(idx));
-				}
-				if (provider.hasImpacts()) {
-					pin.withDirectImpacts(provider.directImpactsOf(idx));
-					pin.withUpstreamImpacts(provider.totalImpactsOf(idx));
+		/**
+		 * Generates the numbers with the given random number generator and
+		 * calculates the overall result.
+		 */
+		LcaResult run(RandomGenerator random) {
+			for (var sub : subNodes) {
+				generateData(sub, random);
+				sub.lastResult = solve(sub);
+			}
+			generateData(root, random);
+			return solve(root);
+		}
+
+		/**
+		 * Executes a run and collects the result vectors of that run so that
+		 * the calculated result can be disposed. Returns `null` when the run
+		 * failed.
+		 */
+		Run runDetached(RandomGenerator random, Set<TechFlow> pinned) {
+			try {
+				var next = run(random);
+				var run = Run.of(next, pinned);
+				next.dispose();
+				return run;
+			} catch (Throwable e) {
+				Logger log = LoggerFactory.getLogger(Simulator.class);
+				log.trace("simulation run failed", e);
+				return null;
+			}
+		}
+
+		private void generateData(Node node, RandomGenerator random) {
+			FormulaInterpreter fi = node.parameters.simulate(random);
+			node.data.simulate(fi, random);
+
+			if (node.subSystems != null) {
+				for (TechFlow subLink : node.subSystems) {
+					// add the LCI result of the sub-system
+					Node sub = nodeIndex.get(subLink.providerId());
+					if (sub == null)
+						continue;
+					if (sub.lastResult == null || !sub.lastResult.hasEnviFlows())
+						continue; // should not happen
+					int col = node.data.techIndex.of(subLink);
+					if (col < 0)
+						continue;
+					sub.lastResult.enviIndex().each((i, f) -> {
+						double val = sub.lastResult.provider().totalFlows()[i];
+						int row = node.data.enviIndex.of(f);
+						if (row >= 0) {
+							var fm = node.data.enviMatrix.asMutable();
+							fm.set(row, col, val);
+							node.data.enviMatrix = fm;
+						}
+					});
 				}
-				pin.add();
 			}
-			return next;
-		} catch (Throwable e) {
-			Logger log = LoggerFactory.getLogger(this.getClass());
-			log.trace("simulation run failed", e);
-			return null;
 		}
 	}
 
-	private LcaResult solve(MatrixData data) {
-		var context = SolverContext.of(db, data)
+	private LcaResult solve(Node node) {
+		var context = SolverContext.of(db, node.data)
 				.withSolver(solver)
 				.withLibraries(libraries);
+
+		// when the technology matrix does not change, we factorize it only
+		// once and calculate just the matrix-vector products in each run
+		if (node.hasConstantTechMatrix && !context.hasLibraryLinks()) {
+			context.withFactorization(
+					node.factorization.of(context.solver(), node.data.techMatrix));
+		} else if (node.factorizationPattern != null) {
+			context.withFactorizationPattern(node.factorizationPattern);
+		}
+
 		var provider = ResultProviders.solveLazy(context);
+
+		// the technology matrix of the next run has the same structure, so
+		// that we can try to reuse the symbolic analysis of the factorization
+		if (!node.hasConstantTechMatrix
+				&& provider instanceof FactorizationSolver fs) {
+			var analysis = fs.factorization().analysis();
+			if (analysis != null) {
+				node.factorizationPattern = analysis;
+			}
+		}
 		return new LcaResult(provider);
 	}
 
-	private void generateData(Node node) {
-		FormulaInterpreter fi = node.parameters.simulate();
-		node.data.simulate(fi);
+	/**
+	 * Disposes the resources that are allocated by this simulator, like the
+	 * factorizations of technology matrices that are reused in the simulation
+	 * runs. This should be called when the simulator is not needed anymore.
+	 * Results of this simulator that are still in use should be disposed
+	 * before.
+	 */
+	public void dispose() {
+		if (pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+		for (var node : nodeIndex.values()) {
+			node.dispose();
+		}
+		for (var worker : workers) {
+			for (var node : worker.nodeIndex.values()) {
+				node.dispose();
+			}
+		}
+	}
 
-		if (node.subSystems != null) {
-			for (TechFlow subLink : node.subSystems) {
-				// add the LCI result of the sub-system
-				Node sub = nodeIndex.get(subLink.providerId());
-				if (sub == null)
-					continue;
-				if (sub.lastResult == null || !sub.lastResult.hasEnviFlows())
-					continue; // should not happen
-				int col = node.data.techIndex.of(subLink);
-				if (col < 0)
+	/**
+	 * Contains the result vectors of a single simulation run.
+	 */
+	private record Run(
+			double[] totalFlows,
+			double[] totalImpacts,
+			List<Pin> pins) {
+
+		static Run of(LcaResult r, Set<TechFlow> pinnedProducts) {
+			var provider = r.provider();
+			var totalFlows = r.hasEnviFlows()
+					? provider.totalFlows()
+					: null;
+			var totalImpacts = r.hasImpacts()
+					? provider.totalImpacts()
+					: null;
+
+			// calculate results of possible pinned products
+			var pins = new ArrayList<Pin>(pinnedProducts.size());
+			for (var product : pinnedProducts) {
+				int idx = r.techIndex().of(product);
+				if (idx < 0)
 					continue;
-				sub.lastResult.enviIndex().each((i, f) -> {
-					double val = sub.lastResult.provider().totalFlows()[i];
-					int row = node.data.enviIndex.of(f);
-					if (row >= 0) {
-						var fm = node.data.enviMatrix.asMutable();
-						fm.set(row, col, val);
-						node.data.enviMatrix = fm;
-					}
-				});
+				double[] directFlows = null;
+				double[] upstreamFlows = null;
+				if (provider.hasFlows()) {
+					directFlows = provider.directFlowsOf(idx);
+					upstreamFlows = provider.totalFlowsOf(idx);
+				}
+				double[] directImpacts = null;
+				double[] upstreamImpacts = null;
+				if (provider.hasImpacts()) {
+					directImpacts = provider.directImpactsOf(idx);
+					upstreamImpacts = provider.totalImpactsOf(idx);
+				}
+				pins.add(new Pin(product, directFlows, upstreamFlows,
+						directImpacts, upstreamImpacts));
+			}
+			return new Run(totalFlows, totalImpacts, pins);
+		}
+
+		void appendTo(SimulationResult result) {
+			result.append(totalFlows, totalImpacts);
+			for (var pin : pins) {
+				result.pin(pin.product)
+						.withDirectFlows(pin.directFlows)
+						.withUpstreamFlows(pin.upstreamFlows)
+						.withDirectImpacts(pin.directImpacts)
+						.withUpstreamImpacts(pin.upstreamImpacts)
+						.add();
 			}
 		}
 	}
 
+	private record Pin(
+			TechFlow product,
+			double[] directFlows,
+			double[] upstreamFlows,
+			double[] directImpacts,
+			double[] upstreamImpacts) {
+	}
+
 	private void init(IDatabase db, CalculationSetup setup) {
 
 		// if the calculation target is a process, the simulation graph
@@ -372,8 +684,35 @@ public class Simulator {
 		final MatrixData data;
 		final ParameterTable parameters;
 
+		/**
+		 * Is true when the technology matrix of this node has no values that
+		 * change between simulation runs. In this case, we can reuse the
+		 * factorization of that matrix.
+		 */
+		final boolean hasConstantTechMatrix;
+
+		/**
+		 * The factorization of a constant technology matrix which is shared
+		 * with the copies of this node.
+		 */
+		final SharedFactorization factorization;
+
 		Set<TechFlow> subSystems;
 		LcaResult lastResult;
+		Factorization factorizationPattern;
+
+		private Node(Node other) {
+			this.providerId = other.providerId;
+			this.provider = other.provider;
+			this.hasConstantTechMatrix = other.hasConstantTechMatrix;
+			this.factorization = other.factorization;
+			this.data = hasConstantTechMatrix
+					? other.data.copyWithSharedTechMatrix()
+					: other.data.copy();
+			this.parameters = other.parameters.copy();
+			this.subSystems = other.subSystems;
+			this.lastResult = other.lastResult;
+		}
 
 		Node(CalculationSetup setup, IDatabase db,
 				Map<TechFlow, LcaResult> subResults) {
@@ -408,6 +747,85 @@ public class Simulator {
 			}
 			parameters = ParameterTable.forSimulation(
 					db, paramContexts, setup.parameters());
+
+			// we do not need to generate values for the technology matrix when
+			// it has no uncertainty distributions and no formulas with
+			// uncertain parameters
+			var techUncertainties = data.techUncertainties;
+			hasConstantTechMatrix = techUncertainties == null
+					|| !techUncertainties.isVariable(parameters.hasUncertainties());
+			if (hasConstantTechMatrix) {
+				data.techUncertainties = null;
+			}
+			factorization = new SharedFactorization();
+		}
+
+		/**
+		 * Creates a copy of this node with own copies of the matrices,
+		 * uncertainty distributions, and parameters that are modified in a
+		 * simulation run. A constant technology matrix and its factorization
+		 * are shared with the copy.
+		 */
+		Node copy() {
+			return new Node(this);
+		}
+
+		void dispose() {
+			factorization.dispose();
+			factorizationPattern = null;
+		}
+	}
+
+	/**
+	 * A factorization of a constant technology matrix that is calculated once
+	 * and then shared by a node and its copies in the workers. As not every
+	 * factorization can be used by multiple threads at the same time, the
+	 * calls to the underlying factorization are synchronized. The solvers of
+	 * the simulation runs do not own this factorization, thus, it is only
+	 * disposed when the simulator is disposed.
+	 */
+	private static class SharedFactorization implements Factorization {
+
+		private Factorization f;
+
+		synchronized Factorization of(MatrixSolver solver, MatrixReader matrix) {
+			if (f == null || f.isDisposed()) {
+				f = solver.factorize(matrix);
+			}
+			return this;
+		}
+
+		@Override
+		public synchronized int size() {
+			return f.size();
+		}
+
+		@Override
+		public synchronized double[] solve(int i, double val) {
+			return f.solve(i, val);
+		}
+
+		@Override
+		public synchronized double[] solve(double[] b) {
+			return f.solve(b);
+		}
+
+		@Override
+		public synchronized Matrix solve(Matrix b) {
+			return f.solve(b);
+		}
+
+		@Override
+		public synchronized void dispose() {
+			if (f != null && !f.isDisposed()) {
+				f.dispose();
+			}
+			f = null;
+		}
+
+		@Override
+		public synchronized boolean isDisposed() {
+			return f == null || f.isDisposed();
 		}
 	}
 
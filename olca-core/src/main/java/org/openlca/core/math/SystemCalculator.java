@@ -8,8 +8,10 @@ import java.util.Map;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.library.reader.LibReaderRegistry;
 import org.openlca.core.matrix.MatrixData;
+import org.openlca.core.matrix.cache.ExchangeStore;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.matrix.solvers.Factorization;
 import org.openlca.core.matrix.solvers.MatrixSolver;
 import org.openlca.core.model.CalculationSetup;
 import org.openlca.core.model.ProductSystem;
@@ -18,6 +20,7 @@ import org.openlca.core.results.LcaResult;
 import org.openlca.core.results.providers.ResultModelProvider;
 import org.openlca.core.results.providers.ResultProviders;
 import org.openlca.core.results.providers.SolverContext;
+import org.openlca.core.results.providers.cache.CachePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +41,9 @@ public class SystemCalculator {
 	private final IDatabase db;
 	private LibReaderRegistry libraries;
 	private MatrixSolver solver;
+	private Factorization factorizationPattern;
+	private CachePolicy cachePolicy;
+	private ExchangeStore exchangeStore;
 
 	public SystemCalculator(IDatabase db) {
 		this.db = db;
@@ -53,19 +59,51 @@ public class SystemCalculator {
 		return this;
 	}
 
+	/**
+	 * Sets the factorization of a technology matrix that has probably the same
+	 * sparsity pattern as the technology matrix of the next calculation, e.g.
+	 * from a previous calculation of the same product system with other
+	 * parameter values. The solver can then try to reuse the symbolic analysis
+	 * of this factorization. This is only applied for the top-level system of
+	 * a calculation and not for its sub-systems.
+	 */
+	public SystemCalculator withFactorizationPattern(Factorization pattern) {
+		this.factorizationPattern = pattern;
+		return this;
+	}
+
+	/**
+	 * Sets the policy of the caches of results that are calculated on demand;
+	 * see {@link SolverContext#withCachePolicy}.
+	 */
+	public SystemCalculator withCachePolicy(CachePolicy policy) {
+		this.cachePolicy = policy;
+		return this;
+	}
+
+	/**
+	 * Sets the store from which the exchanges of the processes are read when
+	 * the matrices are built; see {@link ExchangeStore}.
+	 */
+	public SystemCalculator withExchangeStore(ExchangeStore store) {
+		this.exchangeStore = store;
+		return this;
+	}
+
 	public LcaResult calculate(CalculationSetup setup) {
-		return solve(setup, DEFAULT);
+		return solve(setup, DEFAULT, factorizationPattern);
 	}
 
 	public LcaResult calculateLazy(CalculationSetup setup) {
-		return solve(setup, LAZY);
+		return solve(setup, LAZY, factorizationPattern);
 	}
 
 	public LcaResult calculateEager(CalculationSetup setup) {
-		return solve(setup, EAGER);
+		return solve(setup, EAGER, factorizationPattern);
 	}
 
-	private LcaResult solve(CalculationSetup setup, int type) {
+	private LcaResult solve(
+			CalculationSetup setup, int type, Factorization pattern) {
 		log.info("calculate result for {}", setup.target());
 		var techIndex = TechIndex.of(db, setup);
 		var subs = solveSubSystems(setup, techIndex);
@@ -73,10 +111,13 @@ public class SystemCalculator {
 		var data = MatrixData.of(db, techIndex)
 				.withSetup(setup)
 				.withSubResults(subs)
+				.withExchangeStore(exchangeStore)
 				.build();
 		var context = SolverContext.of(db, data)
 				.withLibraries(libraries)
-				.withSolver(solver);
+				.withSolver(solver)
+				.withFactorizationPattern(pattern)
+				.withCachePolicy(cachePolicy);
 
 		var provider = switch (type) {
 			case LAZY -> ResultProviders.solveLazy(context);
@@ -149,7 +190,7 @@ public class SystemCalculator {
 					.withAllocation(setup.allocation())
 					.withImpactMethod(setup.impactMethod())
 					.withNwSet(setup.nwSet());
-			var subResult = calculate(subSetup);
+			var subResult = solve(subSetup, DEFAULT, null);
 			subResults.put(pp, subResult);
 		}
 		return subResults;
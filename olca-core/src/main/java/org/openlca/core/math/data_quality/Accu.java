@@ -74,6 +74,34 @@ class Accu {
 		}
 	}
 
+	/**
+	 * Adds the accumulated values of the given accumulator, which must have the
+	 * same setup and shape, to this accumulator.
+	 */
+	void add(Accu other) {
+		if (other == null)
+			return;
+		if (totalWeights != null) {
+			other.totalWeights.iterate((row, col, w) -> {
+				if (w != 0) {
+					totalWeights.set(row, col, totalWeights.get(row, col) + w);
+				}
+			});
+		}
+		for (int dqi = 0; dqi < accuValues.length; dqi++) {
+			var matrix = accuValues[dqi];
+			other.accuValues[dqi].iterate((row, col, value) -> {
+				if (value == 0)
+					return;
+				double previous = matrix.get(row, col);
+				double next = aggType == AggregationType.MAXIMUM
+						? Math.max(previous, value)
+						: previous + value;
+				matrix.set(row, col, next);
+			});
+		}
+	}
+
 	ByteMatrix[] finish() {
 		var byteMatrices = new ByteMatrix[accuValues.length];
 		for (int i = 0; i < accuValues.length; i++) {
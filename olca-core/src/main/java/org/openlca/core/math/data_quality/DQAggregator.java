@@ -0,0 +1,184 @@
+package org.openlca.core.math.data_quality;
+
+import java.util.stream.IntStream;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import org.openlca.core.matrix.format.ByteMatrix;
+import org.openlca.core.matrix.format.CSCMatrix;
+import org.openlca.core.results.providers.ResultProvider;
+
+/**
+ * Aggregates the DQI values of the intervention flows of a system along the
+ * non-zero entries of the scaled intervention matrix `B * diag(s)` and the
+ * impact matrix `C`. The non-zero entries are first collected from the result
+ * provider in compressed column formats. The aggregation then runs in parallel
+ * over blocks of technosphere flows, with separate accumulators for each block
+ * that are merged in block order at the end.
+ */
+class DQAggregator {
+
+	private final DQSetup setup;
+	private final DQData data;
+	private final ResultProvider result;
+
+	private final int n;
+	private final int m;
+	private final int k;
+	private final int q;
+
+	ByteMatrix[] enviAgg;
+	ByteMatrix[] impactAgg;
+	ByteMatrix[] techImpactAgg;
+
+	DQAggregator(DQSetup setup, DQData data, ResultProvider result) {
+		this.setup = setup;
+		this.data = data;
+		this.result = result;
+		n = result.techIndex().size();
+		m = result.enviIndex().size();
+		k = result.hasImpacts()
+				? result.impactIndex().size()
+				: 0;
+		q = data.enviIndicatorCount();
+	}
+
+	void run() {
+		var flows = scaledFlows();
+		var factors = k > 0
+				? impactFactors()
+				: null;
+		var processAcc = factors != null
+				? new Accu(setup, k, n)
+				: null;
+
+		int parts = Math.max(1,
+				Math.min(n, 4 * Runtime.getRuntime().availableProcessors()));
+		var blocks = new Block[parts];
+		IntStream.range(0, parts).parallel().forEach(part -> {
+			var block = new Block(factors, processAcc);
+			int start = (int) ((long) part * n / parts);
+			int end = (int) ((long) (part + 1) * n / parts);
+			for (int techFlow = start; techFlow < end; techFlow++) {
+				block.add(flows, techFlow);
+			}
+			blocks[part] = block;
+		});
+
+		var enviAcc = blocks[0].enviAcc;
+		var impactAcc = blocks[0].impactAcc;
+		for (int part = 1; part < parts; part++) {
+			enviAcc.add(blocks[part].enviAcc);
+			if (impactAcc != null) {
+				impactAcc.add(blocks[part].impactAcc);
+			}
+		}
+
+		enviAgg = enviAcc.finish();
+		impactAgg = impactAcc != null
+				? impactAcc.finish()
+				: null;
+		techImpactAgg = processAcc != null
+				? processAcc.finish()
+				: null;
+	}
+
+	/**
+	 * Collects the non-zero entries of the scaled intervention matrix
+	 * `B * diag(s)`. The values are read sequentially from the result provider
+	 * as providers are not required to be thread-safe.
+	 */
+	private CSCMatrix scaledFlows() {
+		var pointers = new int[n + 1];
+		var rows = new TIntArrayList();
+		var values = new TDoubleArrayList();
+		for (int techFlow = 0; techFlow < n; techFlow++) {
+			pointers[techFlow] = rows.size();
+			double s = result.scalingFactorOf(techFlow);
+			if (s == 0)
+				continue;
+			result.iterateFlowColumnOf(techFlow).eachNonZero((row, value) -> {
+				double scaled = s * value;
+				if (scaled == 0)
+					return;
+				rows.add(row);
+				values.add(scaled);
+			});
+		}
+		pointers[n] = rows.size();
+		return new CSCMatrix(
+				m, n, values.toArray(), pointers, rows.toArray());
+	}
+
+	/**
+	 * Collects the non-zero entries of the impact matrix `C` column by column.
+	 */
+	private CSCMatrix impactFactors() {
+		var pointers = new int[m + 1];
+		var rows = new TIntArrayList();
+		var values = new TDoubleArrayList();
+		for (int enviFlow = 0; enviFlow < m; enviFlow++) {
+			pointers[enviFlow] = rows.size();
+			result.iterateImpactColumnOf(enviFlow).eachNonZero((row, value) -> {
+				rows.add(row);
+				values.add(value);
+			});
+		}
+		pointers[m] = rows.size();
+		return new CSCMatrix(
+				k, m, values.toArray(), pointers, rows.toArray());
+	}
+
+	/**
+	 * The accumulators of a block of technosphere flows. The accumulator of the
+	 * impact contributions is shared between the blocks as each block only
+	 * writes into the columns of its own technosphere flows.
+	 */
+	private class Block {
+
+		private final CSCMatrix factors;
+		private final Accu enviAcc;
+		private final Accu impactAcc;
+		private final Accu processAcc;
+		private final byte[] dqiValues = new byte[q];
+
+		Block(CSCMatrix factors, Accu processAcc) {
+			this.factors = factors;
+			this.enviAcc = new Accu(setup, m);
+			this.impactAcc = factors != null
+					? new Accu(setup, k)
+					: null;
+			this.processAcc = processAcc;
+		}
+
+		void add(CSCMatrix flows, int techFlow) {
+			int end = flows.columnPointers[techFlow + 1];
+			for (int i = flows.columnPointers[techFlow]; i < end; i++) {
+				int enviFlow = flows.rowIndices[i];
+				double enviVal = flows.values[i];
+
+				// fill the DQI values
+				for (int dqi = 0; dqi < q; dqi++) {
+					var dqMatrix = data.enviData(dqi);
+					dqiValues[dqi] = dqMatrix != null
+							? dqMatrix.get(enviFlow, techFlow)
+							: 0;
+				}
+
+				// add the intervention DQI values
+				enviAcc.add(enviFlow, dqiValues, enviVal);
+				if (factors == null)
+					continue;
+
+				// add the impact values
+				int fEnd = factors.columnPointers[enviFlow + 1];
+				for (int f = factors.columnPointers[enviFlow]; f < fEnd; f++) {
+					int impact = factors.rowIndices[f];
+					double impactVal = factors.values[f] * enviVal;
+					impactAcc.add(impact, dqiValues, impactVal);
+					processAcc.add(impact, techFlow, dqiValues, impactVal);
+				}
+			}
+		}
+	}
+}
@@ -1,13 +1,9 @@
 package org.openlca.core.math.data_quality;
 
-import java.util.List;
-
-import gnu.trove.map.hash.TLongObjectHashMap;
 import org.openlca.core.database.IDatabase;
-import org.openlca.core.database.NativeSql;
+import org.openlca.core.matrix.cache.DQStore;
 import org.openlca.core.matrix.format.DenseByteMatrix;
 import org.openlca.core.matrix.index.EnviIndex;
-import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
 import org.openlca.core.model.DQSystem;
 
@@ -73,12 +69,23 @@ public record DQData(
 
 		private final DQSetup setup;
 		private final IDatabase db;
+		private DQStore store;
 
 		private Builder(DQSetup setup, IDatabase db) {
 			this.setup = setup;
 			this.db = db;
 		}
 
+		/**
+		 * Loads the data quality entries from the given store, e.g. from the
+		 * shared store of the database. By default, the entries are loaded
+		 * into a new store that is only used for building the data.
+		 */
+		public Builder withStore(DQStore store) {
+			this.store = store;
+			return this;
+		}
+
 		public DQData build(TechIndex techIndex, EnviIndex enviIndex) {
 			if (setup == null || db == null || techIndex == null)
 				return new DQData(null, null, null, null);
@@ -97,35 +104,28 @@ public record DQData(
 			var k = system.indicators.size();
 			var n = techIndex.size();
 			var data = new DenseByteMatrix(k, n);
+			int maxScore = system.getScoreCount();
 
-			// query the process table
-			var sql = "select id, f_dq_system, dq_entry from tbl_processes";
-			NativeSql.on(db).query(sql, r -> {
+			for (var entry : store().get(techIndex)) {
 
 				// check that we have a valid entry
-				long systemId = r.getLong(2);
-				if (systemId != system.id)
-					return true;
-				var dqEntry = r.getString(3);
-				if (dqEntry == null)
-					return true;
-				var providers = techIndex.getProviders(r.getLong(1));
+				if (entry.dqSystem() != system.id || entry.dqValues() == null)
+					continue;
+				var providers = techIndex.getProviders(entry.processId());
 				if (providers.isEmpty())
-					return true;
+					continue;
 
 				// store the values of the entry
-				int[] values = system.toValues(dqEntry);
+				var values = entry.dqValues();
 				int _k = Math.min(k, values.length);
 				for (int row = 0; row < _k; row++) {
-					byte value = (byte) values[row];
+					byte value = score(values[row], maxScore);
 					for (var provider : providers) {
 						int col = techIndex.of(provider);
 						data.set(row, col, value);
 					}
 				}
-				return true;
-			});
-
+			}
 			return data;
 		}
 
@@ -139,60 +139,50 @@ public record DQData(
 			// allocate a BMatrix for each indicator
 			var n = system.indicators.size();
 			var data = new DenseByteMatrix[n];
+			int maxScore = system.getScoreCount();
 
 			for (int i = 0; i < n; i++) {
 				data[i] = new DenseByteMatrix(enviIndex.size(), techIndex.size());
 			}
 
-			// collect the processes (providers) of the result with a
-			// matching data quality system
-			var providers = new TLongObjectHashMap<List<TechFlow>>();
-			var sql = "select id, f_exchange_dq_system from tbl_processes";
-			NativeSql.on(db).query(sql, r -> {
-				long sysID = r.getLong(2);
-				if (sysID != system.id)
-					return true;
-				var processID = r.getLong(1);
-				var products = techIndex.getProviders(processID);
+			// collect the matching data quality entries of the exchanges of the
+			// processes (providers) with a matching data quality system
+			for (var entry : store().get(techIndex)) {
+				if (entry.exchangeDqSystem() != system.id)
+					continue;
+				var products = techIndex.getProviders(entry.processId());
 				if (products.isEmpty())
-					return true;
-				providers.put(processID, products);
-				return true;
-			});
-
-			// now, scan the exchanges table and collect all
-			// matching data quality entries
-			sql = "select f_owner, f_flow, f_location, dq_entry from tbl_exchanges";
-			NativeSql.on(db).query(sql, r -> {
-
-				// check that we have a valid entry
-				var products = providers.get(r.getLong(1));
-				if (products == null)
-					return true;
-				long flowID = r.getLong(2);
-				long locationID = r.getLong(3);
-				var dqEntry = r.getString(4);
-				if (dqEntry == null)
-					return true;
-				int row = enviIndex.of(flowID, locationID);
-				if (row < 0)
-					return true;
-
-				// store the values
-				int[] values = system.toValues(dqEntry);
-				int _n = Math.min(n, values.length);
-				for (int i = 0; i < _n; i++) {
-					var matrix = data[i];
-					byte value = (byte) values[i];
-					for (var product : products) {
-						int col = techIndex.of(product);
-						matrix.set(row, col, value);
+					continue;
+
+				for (int x = 0; x < entry.exchangeCount(); x++) {
+					int row = enviIndex.of(
+							entry.flowIds()[x], entry.locationIds()[x]);
+					if (row < 0)
+						continue;
+
+					// store the values
+					for (int i = 0; i < n; i++) {
+						var matrix = data[i];
+						byte value = score(entry.exchangeValue(x, i), maxScore);
+						for (var product : products) {
+							int col = techIndex.of(product);
+							matrix.set(row, col, value);
+						}
 					}
 				}
-				return true;
-			});
-
+			}
 			return data;
 		}
+
+		private DQStore store() {
+			if (store == null) {
+				store = DQStore.create(db);
+			}
+			return store;
+		}
+
+		private static byte score(byte value, int maxScore) {
+			return value > maxScore ? 0 : value;
+		}
 	}
 }
@@ -1,6 +1,7 @@
 package org.openlca.core.math.data_quality;
 
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.matrix.cache.DQStore;
 import org.openlca.core.matrix.format.ByteMatrix;
 import org.openlca.core.matrix.index.EnviFlow;
 import org.openlca.core.matrix.index.TechFlow;
@@ -54,6 +55,24 @@ public class DQResult {
 	public static DQResult of(IDatabase db, DQSetup setup, ResultProvider result) {
 		var data = DQData.of(setup, db).build(
 				result.techIndex(), result.enviIndex());
+		return of(setup, data, result);
+	}
+
+	/**
+	 * Calculates the data quality result with the entries of the given store,
+	 * e.g. the shared store of the database when many results of the same
+	 * processes are calculated.
+	 */
+	public static DQResult of(
+			IDatabase db, DQSetup setup, ResultProvider result, DQStore store) {
+		var data = DQData.of(setup, db)
+				.withStore(store)
+				.build(result.techIndex(), result.enviIndex());
+		return of(setup, data, result);
+	}
+
+	private static DQResult of(
+			DQSetup setup, DQData data, ResultProvider result) {
 		var r = new DQResult(setup, data, result);
 		r.aggregate();
 		return r;
@@ -159,63 +178,10 @@ public class DQResult {
 				|| !dqData.hasEnviData())
 			return;
 
-		int n = result.techIndex().size();
-		int m = result.enviIndex().size();
-		int k = result.hasImpacts()
-				? result.impactIndex().size()
-				: 0;
-		boolean hasImpacts = k != 0;
-		int q = dqData.enviIndicatorCount();
-
-		var enviAcc = new Accu(setup, m);
-		var impactAcc = hasImpacts
-				? new Accu(setup, k)
-				: null;
-		var processAcc = hasImpacts
-				? new Accu(setup, k, n)
-				: null;
-
-		byte[] dqiValues = new byte[q];
-		for (int techFlow = 0; techFlow < n; techFlow++) {
-			for (int enviFlow = 0; enviFlow < m; enviFlow++) {
-
-				double enviVal = result.directFlowOf(enviFlow, techFlow);
-				if (enviVal == 0)
-					continue;
-
-				// fill the DQI values
-				for (int dqi = 0; dqi < q; dqi++) {
-					var dqMatrix = dqData.enviData(dqi);
-					if (dqMatrix == null) {
-						dqiValues[dqi] = 0;
-						continue;
-					}
-					dqiValues[dqi] = dqMatrix.get(enviFlow, techFlow);
-				}
-
-				// add the intervention DQI values
-				enviAcc.add(enviFlow, dqiValues, enviVal);
-
-				// add the impact values
-				if (hasImpacts) {
-					for (int impact = 0; impact < k; impact++) {
-						double factor = result.impactFactorOf(impact, enviFlow);
-						if (factor == 0)
-							continue;
-						double impactVal = factor * enviVal;
-						impactAcc.add(impact, dqiValues, impactVal);
-						processAcc.add(impact, techFlow, dqiValues, impactVal);
-					}
-				}
-			}
-		}
-
-		enviAgg = enviAcc.finish();
-		impactAgg = impactAcc != null
-				? impactAcc.finish()
-				: null;
-		techImpactAgg = processAcc != null
-				? processAcc.finish()
-				: null;
+		var aggregator = new DQAggregator(setup, dqData, result);
+		aggregator.run();
+		enviAgg = aggregator.enviAgg;
+		impactAgg = aggregator.impactAgg;
+		techImpactAgg = aggregator.techImpactAgg;
 	}
 }
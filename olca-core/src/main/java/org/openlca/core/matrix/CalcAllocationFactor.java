@@ -11,6 +11,7 @@ public class CalcAllocationFactor {
 	private double amount;
 	private boolean evaluated;
 	private String formula;
+	private CompiledFormula compiled;
 
 	private CalcAllocationFactor(long processID) {
 		this.processID = processID;
@@ -28,11 +29,19 @@ public class CalcAllocationFactor {
 			factor.evaluated = true;
 		} else {
 			factor.formula = formula;
+			factor.compiled = CompiledFormula.of(formula);
 			factor.evaluated = false;
 		}
 		return factor;
 	}
 
+	/**
+	 * Returns true if the value of this factor is calculated from a formula.
+	 */
+	public boolean hasFormula() {
+		return formula != null;
+	}
+
 	/**
 	 * Get the value of the allocation factor. If no formula is bound to the factor,
 	 * simply the value of the factor is returned. Otherwise, the value of the
@@ -44,16 +53,7 @@ public class CalcAllocationFactor {
 			return amount;
 		if (interpreter == null)
 			return amount;
-		try {
-			var scope = interpreter.getScope(processID);
-			amount = scope.isPresent()
-					? scope.get().eval(formula)
-					: interpreter.eval(formula);
-		} catch (Exception e) {
-			var log = LoggerFactory.getLogger(getClass());
-			log.error("failed to evaluate formula of allocation factor: "
-					+ formula);
-		}
+		amount = eval(interpreter);
 		evaluated = true;
 		return amount;
 	}
@@ -61,11 +61,34 @@ public class CalcAllocationFactor {
 	/**
 	 * If the allocation factor is bound to a formula, this formula is always
 	 * evaluated. No cached value is returned in contrast to the `get` method.
+	 * Also, the evaluated value is not cached, so that this method can be
+	 * called with different interpreters in parallel. The formula is compiled
+	 * once as this method is called in each iteration of a simulation.
 	 */
 	public double force(FormulaInterpreter interpreter) {
-		if (formula == null)
+		if (compiled == null || interpreter == null)
+			return amount;
+		try {
+			return compiled.eval(interpreter.getScopeOrGlobal(processID));
+		} catch (Exception e) {
+			var log = LoggerFactory.getLogger(getClass());
+			log.error("failed to evaluate formula of allocation factor: "
+					+ formula);
+			return amount;
+		}
+	}
+
+	private double eval(FormulaInterpreter interpreter) {
+		try {
+			var scope = interpreter.getScope(processID);
+			return scope.isPresent()
+					? scope.get().eval(formula)
+					: interpreter.eval(formula);
+		} catch (Exception e) {
+			var log = LoggerFactory.getLogger(getClass());
+			log.error("failed to evaluate formula of allocation factor: "
+					+ formula);
 			return amount;
-		evaluated = false;
-		return get(interpreter);
+		}
 	}
 }
@@ -86,6 +86,17 @@ public class CalcExchange {
 
 	public double matrixValue(FormulaInterpreter interpreter,
 		double allocationFactor) {
+		return matrixValue(interpreter, amount, allocationFactor);
+	}
+
+	/**
+	 * Calculates the matrix value of this exchange for the given amount instead
+	 * of the amount stored in this exchange. This does not modify the state of
+	 * this exchange, so that it can be shared between uncertainty cells that
+	 * generate their values in parallel.
+	 */
+	public double matrixValue(FormulaInterpreter interpreter,
+		double amount, double allocationFactor) {
 
 		double a = amount;
 		if (Strings.notEmpty(formula) && interpreter != null) {
@@ -99,7 +110,17 @@ public class CalcExchange {
 			}
 		}
 
-		a *= (conversionFactor * allocationFactor);
+		return matrixValueOf(a, allocationFactor);
+	}
+
+	/**
+	 * Converts the given amount into the matrix value of this exchange without
+	 * evaluating the formula of this exchange. This is used when the formula
+	 * is evaluated separately, e.g. from a {@link CompiledFormula} in a
+	 * simulation.
+	 */
+	public double matrixValueOf(double amount, double allocationFactor) {
+		double a = amount * (conversionFactor * allocationFactor);
 		if (isAvoided) {
 			// avoided product or waste flows
 			if (flowType == FlowType.PRODUCT_FLOW)
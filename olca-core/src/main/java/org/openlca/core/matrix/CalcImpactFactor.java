@@ -37,6 +37,14 @@ public class CalcImpactFactor {
 	}
 
 	public double matrixValue(FormulaInterpreter interpreter) {
+		return matrixValue(interpreter, amount);
+	}
+
+	/**
+	 * Calculates the matrix value of this factor for the given amount instead
+	 * of the amount stored in this factor without modifying it.
+	 */
+	public double matrixValue(FormulaInterpreter interpreter, double amount) {
 
 		double a = amount;
 		if (Strings.notEmpty(formula) && interpreter != null) {
@@ -50,7 +58,15 @@ public class CalcImpactFactor {
 			}
 		}
 
-		a *= conversionFactor;
+		return matrixValueOf(a);
+	}
+
+	/**
+	 * Converts the given amount into the matrix value of this factor without
+	 * evaluating the formula of this factor.
+	 */
+	public double matrixValueOf(double amount) {
+		double a = amount * conversionFactor;
 		return isInput ? -a : a;
 	}
 }
@@ -0,0 +1,110 @@
+package org.openlca.core.matrix;
+
+import java.io.StringReader;
+import java.util.LinkedHashSet;
+
+import org.openlca.expressions.Expression;
+import org.openlca.expressions.ExpressionException;
+import org.openlca.expressions.FormulaParser;
+import org.openlca.expressions.InterpreterException;
+import org.openlca.expressions.ParseException;
+import org.openlca.expressions.Scope;
+import org.openlca.expressions.TokenMgrError;
+
+/**
+ * A formula that is parsed once into an expression tree that can be evaluated
+ * repeatedly against the scopes of a formula interpreter. A call of
+ * {@link Scope#eval(String)} parses the formula and the formulas of all
+ * dependent variables again for each evaluation which is expensive when the
+ * same formulas are evaluated in each iteration of a simulation.
+ * <p>
+ * The compiled expression resolves its variables directly from the scope. If
+ * the scope contains variables that are bound to formulas, these are
+ * evaluated by the scope itself, possibly with cached values from a previous
+ * evaluation. Thus, compiled formulas should be evaluated against scopes in
+ * which the formula variables are bound again when their inputs change, like
+ * the scopes of a {@link ParameterTable} in a simulation. When the compiled
+ * expression cannot be evaluated, the evaluation falls back to
+ * {@link Scope#eval(String)}, so that errors are reported in the same way.
+ */
+public final class CompiledFormula {
+
+	private final String formula;
+	private final Expression expression;
+	private final String[] variables;
+
+	private CompiledFormula(
+		String formula, Expression expression, String[] variables) {
+		this.formula = formula;
+		this.expression = expression;
+		this.variables = variables;
+	}
+
+	/**
+	 * Compiles the given formula. Returns {@code null} if the formula is empty.
+	 * Invalid formulas are not compiled but evaluated with the scope when
+	 * {@link #eval(Scope)} is called.
+	 */
+	public static CompiledFormula of(String formula) {
+		if (formula == null || formula.isBlank())
+			return null;
+		try {
+			var parser = new FormulaParser(
+				new StringReader(formula.toLowerCase()));
+			parser.parse();
+			var expression = parser.getExpression();
+			expression.check();
+			var vars = new LinkedHashSet<String>();
+			for (var v : parser.getVariables()) {
+				var name = v.getVariableName();
+				if (name != null) {
+					vars.add(name.trim().toLowerCase());
+				}
+			}
+			return new CompiledFormula(
+				formula, expression, vars.toArray(String[]::new));
+		} catch (ParseException | ExpressionException | TokenMgrError e) {
+			// the token manager of the parser throws an error for invalid
+			// characters; other errors of the JVM are not caught here
+			return new CompiledFormula(formula, null, new String[0]);
+		}
+	}
+
+	/**
+	 * Returns the source of this formula.
+	 */
+	public String formula() {
+		return formula;
+	}
+
+	/**
+	 * Returns the lower-cased names of the variables of this formula. This is
+	 * empty when the formula could not be compiled.
+	 */
+	public String[] variables() {
+		return variables;
+	}
+
+	/**
+	 * Returns true if the formula could be compiled.
+	 */
+	public boolean isCompiled() {
+		return expression != null;
+	}
+
+	/**
+	 * Evaluates the formula in the given scope.
+	 */
+	public double eval(Scope scope) throws InterpreterException {
+		if (expression != null) {
+			try {
+				if (expression.evaluate(scope) instanceof Double d)
+					return d;
+			} catch (Exception e) {
+				// fall back to the evaluation of the scope which clears possible
+				// evaluation states of formula variables and reports the error
+			}
+		}
+		return scope.eval(formula);
+	}
+}
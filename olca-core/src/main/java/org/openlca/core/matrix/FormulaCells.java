@@ -0,0 +1,220 @@
+package org.openlca.core.matrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openlca.core.matrix.format.MatrixReader;
+import org.openlca.expressions.FormulaInterpreter;
+import org.openlca.util.Strings;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Contains the entries of the matrices of a calculation that depend on
+ * formulas. With this, the matrices can be updated for other parameter
+ * redefinitions (e.g. of the variants of a project) without building them
+ * again: only the values of these entries are evaluated again and the
+ * structure of the matrices and indices is shared.
+ * <p>
+ * A cell of the technology or intervention matrix is recorded when at least
+ * one of the exchanges that are mapped to it has a formula or an allocation
+ * factor with a formula. The values of the other exchanges of such a cell are
+ * stored as a fixed sum. The same is done for the entries of the cost vector.
+ * For the impact matrix, the factors with formulas are recorded.
+ */
+public class FormulaCells {
+
+	private final TLongObjectHashMap<Cell> techCells = new TLongObjectHashMap<>();
+	private final TLongObjectHashMap<Cell> enviCells = new TLongObjectHashMap<>();
+	private final TIntObjectHashMap<Cell> costCells = new TIntObjectHashMap<>();
+	private final TLongObjectHashMap<ImpactCell> impactCells = new TLongObjectHashMap<>();
+
+	/**
+	 * Returns true if there are no matrix entries that depend on formulas.
+	 */
+	public boolean isEmpty() {
+		return techCells.isEmpty()
+			&& enviCells.isEmpty()
+			&& costCells.isEmpty()
+			&& impactCells.isEmpty();
+	}
+
+	/**
+	 * Returns true if there are entries of the technology matrix that depend
+	 * on formulas.
+	 */
+	public boolean hasTechCells() {
+		return !techCells.isEmpty();
+	}
+
+	void add(boolean isTech, int row, int col, CalcExchange exchange,
+		CalcAllocationFactor factor, double value) {
+		var cells = isTech ? techCells : enviCells;
+		long key = key(row, col);
+		var cell = cells.get(key);
+		if (cell == null) {
+			cell = new Cell(row, col);
+			cells.put(key, cell);
+		}
+		boolean isFormula = Strings.notEmpty(exchange.formula)
+			|| (factor != null && factor.hasFormula());
+		cell.add(exchange, factor, value, isFormula);
+	}
+
+	void addCost(int col, CalcExchange exchange,
+		CalcAllocationFactor factor, double cost) {
+		var cell = costCells.get(col);
+		if (cell == null) {
+			cell = new Cell(0, col);
+			costCells.put(col, cell);
+		}
+		boolean isFormula = Strings.notEmpty(exchange.costFormula)
+			|| (factor != null && factor.hasFormula());
+		cell.add(exchange, factor, cost, isFormula);
+	}
+
+	/**
+	 * Records the factor that was set to the given cell of the impact matrix.
+	 * As the cells of the impact matrix are set and not summed up, a factor
+	 * without formula removes a previously recorded factor.
+	 */
+	void setImpact(int row, int col, CalcImpactFactor factor) {
+		long key = key(row, col);
+		if (factor == null || Strings.nullOrEmpty(factor.formula)) {
+			impactCells.remove(key);
+			return;
+		}
+		impactCells.put(key, new ImpactCell(row, col, factor, factor.isInput));
+	}
+
+	/**
+	 * Removes the recorded cells that do not depend on formulas.
+	 */
+	void prune() {
+		techCells.retainEntries((key, cell) -> cell.terms != null);
+		enviCells.retainEntries((key, cell) -> cell.terms != null);
+		costCells.retainEntries((key, cell) -> cell.terms != null);
+	}
+
+	/**
+	 * Creates a copy of the given matrix data with the entries that depend on
+	 * formulas evaluated by the given interpreter. The copy shares the indices,
+	 * the demand, and the matrices without formula entries with the given
+	 * data; matrices with formula entries are copied. Thus, the given data are
+	 * not modified and can be shared between the copies.
+	 */
+	public MatrixData applyTo(MatrixData data, FormulaInterpreter interpreter) {
+		var copy = new MatrixData();
+		copy.demand = data.demand;
+		copy.techIndex = data.techIndex;
+		copy.enviIndex = data.enviIndex;
+		copy.impactIndex = data.impactIndex;
+		copy.techMatrix = update(data.techMatrix, techCells, interpreter);
+		copy.enviMatrix = update(data.enviMatrix, enviCells, interpreter);
+
+		copy.impactMatrix = data.impactMatrix;
+		if (data.impactMatrix != null && !impactCells.isEmpty()) {
+			var m = data.impactMatrix.asMutableCopy();
+			impactCells.forEachValue(cell -> {
+				m.set(cell.row, cell.col, cell.valueOf(interpreter));
+				return true;
+			});
+			copy.impactMatrix = m;
+		}
+
+		copy.costVector = data.costVector;
+		if (data.costVector != null && !costCells.isEmpty()) {
+			var costs = Arrays.copyOf(data.costVector, data.costVector.length);
+			costCells.forEachValue(cell -> {
+				costs[cell.col] = cell.costOf(interpreter);
+				return true;
+			});
+			copy.costVector = costs;
+		}
+		return copy;
+	}
+
+	private MatrixReader update(MatrixReader matrix,
+		TLongObjectHashMap<Cell> cells, FormulaInterpreter interpreter) {
+		if (matrix == null || cells.isEmpty())
+			return matrix;
+		var m = matrix.asMutableCopy();
+		cells.forEachValue(cell -> {
+			m.set(cell.row, cell.col, cell.valueOf(interpreter));
+			return true;
+		});
+		return m;
+	}
+
+	private static long key(int row, int col) {
+		return ((long) row << 32) | (col & 0xffffffffL);
+	}
+
+	private static class Cell {
+
+		final int row;
+		final int col;
+		double fixed;
+		List<Term> terms;
+
+		Cell(int row, int col) {
+			this.row = row;
+			this.col = col;
+		}
+
+		void add(CalcExchange exchange, CalcAllocationFactor factor,
+			double value, boolean isFormula) {
+			if (!isFormula) {
+				fixed += value;
+				return;
+			}
+			if (terms == null) {
+				terms = new ArrayList<>(1);
+			}
+			terms.add(new Term(exchange, factor));
+		}
+
+		double valueOf(FormulaInterpreter interpreter) {
+			double sum = fixed;
+			for (var term : terms) {
+				double af = term.factor != null
+					? term.factor.force(interpreter)
+					: 1;
+				sum += term.exchange.matrixValue(interpreter, af);
+			}
+			return sum;
+		}
+
+		double costOf(FormulaInterpreter interpreter) {
+			double sum = fixed;
+			for (var term : terms) {
+				double af = term.factor != null
+					? term.factor.force(interpreter)
+					: 1;
+				sum += term.exchange.costValue(interpreter, af);
+			}
+			return sum;
+		}
+	}
+
+	private record Term(CalcExchange exchange, CalcAllocationFactor factor) {
+	}
+
+	/**
+	 * A factor of the impact matrix. The direction is stored separately as
+	 * default factors of regionalized calculations are shared between
+	 * columns with different directions.
+	 */
+	private record ImpactCell(
+		int row, int col, CalcImpactFactor factor, boolean isInput) {
+
+		double valueOf(FormulaInterpreter interpreter) {
+			double value = factor.matrixValue(interpreter);
+			return factor.isInput == isInput
+				? value
+				: -value;
+		}
+	}
+}
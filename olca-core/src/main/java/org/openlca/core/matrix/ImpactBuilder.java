@@ -5,8 +5,8 @@ import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ImpactCategoryDao;
 import org.openlca.core.database.NativeSql;
 import org.openlca.core.matrix.cache.ConversionTable;
-import org.openlca.core.matrix.format.Matrix;
 import org.openlca.core.matrix.format.MatrixBuilder;
+import org.openlca.core.matrix.format.MatrixReader;
 import org.openlca.core.matrix.index.EnviIndex;
 import org.openlca.core.matrix.index.ImpactIndex;
 import org.openlca.core.matrix.index.LongPair;
@@ -33,6 +33,8 @@ public final class ImpactBuilder {
 	private final ImpactIndex impactIndex;
 	private final FormulaInterpreter interpreter;
 	private final boolean withUncertainties;
+	private final boolean withTripletBuild;
+	private final FormulaCells formulaCells;
 
 	private final ConversionTable conversions;
 	private MatrixBuilder matrix;
@@ -63,6 +65,8 @@ public final class ImpactBuilder {
 		}
 
 		withUncertainties = config.withUncertainties;
+		withTripletBuild = config.withTripletBuild;
+		formulaCells = config.formulaCells;
 		conversions = ConversionTable.create(db);
 	}
 
@@ -77,7 +81,9 @@ public final class ImpactBuilder {
 	public ImpactData build() {
 
 		// allocate and fill the matrices
-		matrix = new MatrixBuilder();
+		matrix = withTripletBuild
+				? MatrixBuilder.ofTriplets()
+				: new MatrixBuilder();
 		matrix.minSize(impactIndex.size(), flowIndex.size());
 		uncertainties = withUncertainties
 				? new UMatrix()
@@ -96,6 +102,9 @@ public final class ImpactBuilder {
 				int impactIdx = impactIndex.of(impact);
 				if (impactIdx >= 0) {
 					matrix.set(impactIdx, flowIdx, 1);
+					if (formulaCells != null) {
+						formulaCells.setImpact(impactIdx, flowIdx, null);
+					}
 				}
 			}
 		});
@@ -103,7 +112,7 @@ public final class ImpactBuilder {
 		var data = new ImpactData();
 		data.flowIndex = flowIndex;
 		data.impactIndex = impactIndex;
-		data.impactMatrix = matrix.finish();
+		data.impactMatrix = matrix.finishReader();
 		data.impactUncertainties = uncertainties;
 		return data;
 	}
@@ -144,6 +153,9 @@ public final class ImpactBuilder {
 				int row = impactIndex.of(impactId);
 				int col = flowIndex.of(flowId);
 				matrix.set(row, col, f.matrixValue(interpreter));
+				if (formulaCells != null) {
+					formulaCells.setImpact(row, col, f);
+				}
 
 				// set possible uncertainties
 				if (uncertainties != null) {
@@ -223,6 +235,9 @@ public final class ImpactBuilder {
 				if (addIt) {
 					int col = flowIndex.of(flowId, locationId);
 					matrix.set(row, col, f.matrixValue(interpreter));
+					if (formulaCells != null) {
+						formulaCells.setImpact(row, col, f);
+					}
 					if (uncertainties != null) {
 						uncertainties.add(row, col, f);
 					}
@@ -255,6 +270,9 @@ public final class ImpactBuilder {
 						: idxFlow.isInput();
 
 				matrix.set(row, col, factor.matrixValue(interpreter));
+				if (formulaCells != null) {
+					formulaCells.setImpact(row, col, factor);
+				}
 				if (uncertainties != null) {
 					uncertainties.add(row, col, factor);
 				}
@@ -297,7 +315,7 @@ public final class ImpactBuilder {
 	public static class ImpactData {
 		public EnviIndex flowIndex;
 		public ImpactIndex impactIndex;
-		public Matrix impactMatrix;
+		public MatrixReader impactMatrix;
 		public UMatrix impactUncertainties;
 
 		/**
@@ -324,8 +342,10 @@ public final class ImpactBuilder {
 		private final IDatabase db;
 		private final EnviIndex flows;
 		private boolean withUncertainties;
+		private boolean withTripletBuild;
 		private FormulaInterpreter interpreter;
 		private ImpactIndex impacts;
+		private FormulaCells formulaCells;
 
 		private Config(IDatabase db, EnviIndex flows) {
 			this.db = db;
@@ -336,6 +356,7 @@ public final class ImpactBuilder {
 			this.db = conf.db;
 			this.flows = flows;
 			this.withUncertainties = conf.withUncertainties;
+			this.withTripletBuild = conf.withTripletBuild;
 			this.interpreter = conf.interpreter;
 			this.impacts = conf.impactIndex;
 		}
@@ -345,11 +366,25 @@ public final class ImpactBuilder {
 			return this;
 		}
 
+		public Config withTripletBuild(boolean b) {
+			this.withTripletBuild = b;
+			return this;
+		}
+
 		public Config withInterpreter(FormulaInterpreter interpreter) {
 			this.interpreter = interpreter;
 			return this;
 		}
 
+		/**
+		 * Records the factors with formulas in the given cells; see
+		 * {@link FormulaCells}.
+		 */
+		public Config withFormulaCells(FormulaCells cells) {
+			this.formulaCells = cells;
+			return this;
+		}
+
 		public Config withImpacts(ImpactIndex impacts) {
 			this.impacts = impacts;
 			return this;
@@ -1,6 +1,10 @@
 package org.openlca.core.matrix;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import org.openlca.core.database.LocationDao;
 import org.openlca.core.matrix.cache.ExchangeTable;
@@ -11,8 +15,11 @@ import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
 import org.openlca.core.matrix.uncertainties.UMatrix;
 import org.openlca.core.model.descriptors.LocationDescriptor;
+import org.openlca.util.Strings;
 
+import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
 
 public class InventoryBuilder {
 
@@ -26,8 +33,10 @@ public class InventoryBuilder {
 
 	private final MatrixBuilder techBuilder;
 	private final MatrixBuilder enviBuilder;
+	private final Object formulaLock = new Object();
 	private UMatrix techUncerts;
 	private UMatrix enviUncerts;
+	private FormulaCells formulaCells;
 	private double[] costs;
 
 	public InventoryBuilder(MatrixConfig conf) {
@@ -56,12 +65,19 @@ public class InventoryBuilder {
 		}
 
 		// create the matrix structures
-		techBuilder = new MatrixBuilder();
-		enviBuilder = new MatrixBuilder();
+		techBuilder = conf.withTripletBuild
+			? MatrixBuilder.ofTriplets()
+			: new MatrixBuilder();
+		enviBuilder = conf.withTripletBuild
+			? MatrixBuilder.ofTriplets()
+			: new MatrixBuilder();
 		if (conf.withUncertainties) {
 			techUncerts = new UMatrix();
 			enviUncerts = new UMatrix();
 		}
+		if (conf.withFormulaCells) {
+			formulaCells = new FormulaCells();
+		}
 		if (conf.withCosts) {
 			costs = new double[conf.techIndex.size()];
 		}
@@ -81,31 +97,34 @@ public class InventoryBuilder {
 		// product data
 		data.techIndex = techIndex;
 		techBuilder.minSize(n, n);
-		data.techMatrix = techBuilder.finish();
+		data.techMatrix = techBuilder.finishReader();
 		data.techUncertainties = techUncerts;
 
 		// optional elementary flows
 		if (m > 0) {
 			data.enviIndex = flowIndex;
 			enviBuilder.minSize(m, n);
-			data.enviMatrix = enviBuilder.finish();
+			data.enviMatrix = enviBuilder.finishReader();
 			data.enviUncertainties = enviUncerts;
 		}
 
 		// optional costs
 		data.costVector = costs;
+
+		if (formulaCells != null) {
+			formulaCells.prune();
+			data.formulaCells = formulaCells;
+		}
 		return data;
 	}
 
 	private void fillMatrices() {
 		// fill the matrices with process data
-		var exchanges = new ExchangeTable(conf.db);
-		exchanges.each(techIndex, exchange -> {
-			var products = techIndex.getProviders(exchange.processId);
-			for (TechFlow product : products) {
-				putExchangeValue(product, exchange);
-			}
-		});
+		if (conf.withParallelBuild) {
+			fillParallel();
+		} else {
+			fillSequential();
+		}
 
 		// now put the entries of the sub-system into the matrices
 		var subSystems = new HashSet<TechFlow>();
@@ -150,10 +169,98 @@ public class InventoryBuilder {
 		}
 	}
 
-	private void putExchangeValue(TechFlow provider, CalcExchange e) {
+	private void fillSequential() {
+		Consumer<CalcExchange> fn = exchange -> {
+			var products = techIndex.getProviders(exchange.processId);
+			for (TechFlow product : products) {
+				putExchangeValue(product, exchange, this::put);
+			}
+		};
+		var store = conf.exchangeStore;
+		if (store == null) {
+			new ExchangeTable(conf.db).each(techIndex, fn);
+		} else if (conf.withUncertainties || conf.withFormulaCells) {
+			// the uncertainty matrices and formula cells keep references to
+			// the exchanges
+			store.each(techIndex, fn);
+		} else {
+			store.eachShared(techIndex, fn);
+		}
+	}
+
+	/**
+	 * Splits the processes of the index into partitions with disjoint column
+	 * ranges. The exchanges of these partitions are linked and evaluated in
+	 * parallel, and the resulting entries are then put into the matrices in
+	 * the order of the partitions. Thus, the rows of the intervention index
+	 * are assigned in a deterministic order.
+	 */
+	private void fillParallel() {
+		var processes = new TLongArrayList();
+		var seen = new TLongHashSet();
+		techIndex.each((i, p) -> {
+			if (p.isProcess() && seen.add(p.providerId())) {
+				processes.add(p.providerId());
+			}
+		});
+		int n = processes.size();
+		if (n == 0)
+			return;
+
+		// without an exchange store, we need to load the exchanges first
+		var store = conf.exchangeStore;
+		TLongObjectHashMap<List<CalcExchange>> exchanges = null;
+		if (store == null) {
+			var map = new TLongObjectHashMap<List<CalcExchange>>();
+			new ExchangeTable(conf.db).each(techIndex, e -> {
+				var list = map.get(e.processId);
+				if (list == null) {
+					list = new ArrayList<>();
+					map.put(e.processId, list);
+				}
+				list.add(e);
+			});
+			exchanges = map;
+		}
+		var loaded = exchanges;
+
+		int parts = Math.min(n, 4 * Runtime.getRuntime().availableProcessors());
+		var buffers = new Buffer[parts];
+		IntStream.range(0, parts).parallel().forEach(k -> {
+			var buffer = new Buffer();
+			Consumer<CalcExchange> fn = exchange -> {
+				var products = techIndex.getProviders(exchange.processId);
+				for (TechFlow product : products) {
+					putExchangeValue(product, exchange, buffer);
+				}
+			};
+			int start = (int) ((long) k * n / parts);
+			int end = (int) ((long) (k + 1) * n / parts);
+			for (int i = start; i < end; i++) {
+				long processId = processes.get(i);
+				if (loaded == null) {
+					store.each(processId, fn);
+					continue;
+				}
+				var list = loaded.get(processId);
+				if (list != null) {
+					list.forEach(fn);
+				}
+			}
+			buffers[k] = buffer;
+		});
+
+		for (var buffer : buffers) {
+			for (var e : buffer.entries) {
+				put(e.matrix, e.row, e.provider, e.exchange, e.factor, e.value, e.cost);
+			}
+		}
+	}
+
+	private void putExchangeValue(TechFlow provider, CalcExchange e, Sink sink) {
 		if (e.isElementary()) {
 			// elementary flows
-			addIntervention(provider, e);
+			add(enviBuilder, -1, provider, e, sink);
 			return;
 		}
 
@@ -162,10 +269,10 @@ public class InventoryBuilder {
 			if (linkedProvider != null) {
 				// linked product input or waste output
 				int row = techIndex.of(linkedProvider);
-				add(row, provider, techBuilder, e);
+				add(techBuilder, row, provider, e, sink);
 			} else {
 				// unlinked product input or waste output
-				addIntervention(provider, e);
+				add(enviBuilder, -1, provider, e, sink);
 			}
 			return;
 		}
@@ -173,40 +280,78 @@ public class InventoryBuilder {
 		if (provider.matches(e.processId, e.flowId)) {
 			// the reference product or waste flow
 			int idx = techIndex.of(provider);
-			add(idx, provider, techBuilder, e);
+			add(techBuilder, idx, provider, e, sink);
 			return;
 		}
 
 		if (!conf.hasAllocation()) {
 			// non-allocated output products or waste inputs
-			addIntervention(provider, e);
+			add(enviBuilder, -1, provider, e, sink);
 		}
 	}
 
-	private void addIntervention(TechFlow provider, CalcExchange e) {
-		int row = flowIndex.register(provider, e, flows, locations);
-		add(row, provider, enviBuilder, e);
-	}
-
-	private void add(int row, TechFlow provider, MatrixBuilder matrix,
-		CalcExchange exchange) {
-
-		int col = techIndex.of(provider);
-		if (row < 0 || col < 0)
-			return;
+	/**
+	 * Calculates the matrix value and costs of the given exchange and passes
+	 * them to the sink. For interventions, the row is resolved in the sink.
+	 */
+	private void add(MatrixBuilder matrix, int row, TechFlow provider,
+		CalcExchange exchange, Sink sink) {
 
 		var allocationFactor = allocationIndex != null && exchange.isAllocatable()
 			? allocationIndex.getFactor(provider, exchange.exchangeId)
 			: null;
+
+		// the formula interpreter is not thread-safe
+		if (conf.withParallelBuild && hasFormulas(exchange, allocationFactor)) {
+			synchronized (formulaLock) {
+				addValues(matrix, row, provider, exchange, allocationFactor, sink);
+			}
+		} else {
+			addValues(matrix, row, provider, exchange, allocationFactor, sink);
+		}
+	}
+
+	private void addValues(MatrixBuilder matrix, int row, TechFlow provider,
+		CalcExchange exchange, CalcAllocationFactor allocationFactor, Sink sink) {
 		var af = allocationFactor != null
 			? allocationFactor.get(conf.interpreter)
 			: 1;
-
 		double value = exchange.matrixValue(conf.interpreter, af);
+		double cost = conf.withCosts
+			? exchange.costValue(conf.interpreter, af)
+			: 0;
+		sink.put(matrix, row, provider, exchange, allocationFactor, value, cost);
+	}
+
+	private boolean hasFormulas(CalcExchange e, CalcAllocationFactor af) {
+		return Strings.notEmpty(e.formula)
+			|| (conf.withCosts && Strings.notEmpty(e.costFormula))
+			|| (af != null && af.hasFormula());
+	}
+
+	private void put(MatrixBuilder matrix, int row, TechFlow provider,
+		CalcExchange exchange, CalcAllocationFactor allocationFactor,
+		double value, double cost) {
+
+		if (matrix == enviBuilder) {
+			row = flowIndex.register(provider, exchange, flows, locations);
+		}
+		int col = techIndex.of(provider);
+		if (row < 0 || col < 0)
+			return;
+
 		matrix.add(row, col, value);
 
 		if (conf.withCosts) {
-			costs[col] += exchange.costValue(conf.interpreter, af);
+			costs[col] += cost;
+		}
+
+		if (formulaCells != null) {
+			formulaCells.add(matrix == techBuilder, row, col,
+				exchange, allocationFactor, value);
+			if (conf.withCosts) {
+				formulaCells.addCost(col, exchange, allocationFactor, cost);
+			}
 		}
 
 		if (conf.withUncertainties) {
@@ -218,4 +363,38 @@ public class InventoryBuilder {
 			}
 		}
 	}
+
+	@FunctionalInterface
+	private interface Sink {
+		void put(MatrixBuilder matrix, int row, TechFlow provider,
+			CalcExchange exchange, CalcAllocationFactor allocationFactor,
+			double value, double cost);
+	}
+
+	/**
+	 * Collects the entries of a partition when the matrices are built in
+	 * parallel.
+	 */
+	private static class Buffer implements Sink {
+
+		private final List<Entry> entries = new ArrayList<>();
+
+		@Override
+		public void put(MatrixBuilder matrix, int row, TechFlow provider,
+			CalcExchange exchange, CalcAllocationFactor factor,
+			double value, double cost) {
+			entries.add(new Entry(
+				matrix, row, provider, exchange, factor, value, cost));
+		}
+	}
+
+	private record Entry(
+		MatrixBuilder matrix,
+		int row,
+		TechFlow provider,
+		CalcExchange exchange,
+		CalcAllocationFactor factor,
+		double value,
+		double cost) {
+	}
 }
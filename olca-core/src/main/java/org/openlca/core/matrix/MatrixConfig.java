@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.matrix.cache.ExchangeStore;
 import org.openlca.core.matrix.index.EnviIndex;
 import org.openlca.core.matrix.index.ImpactIndex;
 import org.openlca.core.matrix.index.TechFlow;
@@ -27,6 +28,24 @@ public class MatrixConfig {
 	public final boolean withUncertainties;
 	public final boolean withCosts;
 	public final boolean withRegionalization;
+
+	/**
+	 * If true, the exchanges of disjoint sets of processes are processed in
+	 * parallel when the matrices are built.
+	 */
+	public final boolean withParallelBuild;
+
+	/**
+	 * If true, the matrix entries are collected as triplets and compressed
+	 * directly into sparse matrices in compressed column format.
+	 */
+	public final boolean withTripletBuild;
+
+	/**
+	 * If true, the matrix entries that depend on formulas are recorded in the
+	 * matrix data; see {@link FormulaCells}.
+	 */
+	public final boolean withFormulaCells;
 	public final AllocationMethod allocationMethod;
 
 	/**
@@ -36,6 +55,12 @@ public class MatrixConfig {
 	public final ImpactIndex impactIndex;
 	public final FormulaInterpreter interpreter;
 
+	/**
+	 * An optional store from which the exchanges are read instead of querying
+	 * the exchange table of the database.
+	 */
+	public final ExchangeStore exchangeStore;
+
 	private MatrixConfig(Builder builder) {
 		this.db = builder.db;
 		this.demand = builder.demand;
@@ -63,12 +88,16 @@ public class MatrixConfig {
 		withUncertainties = builder.withUncertainties;
 		withCosts = builder.withCosts;
 		withRegionalization = builder.withRegionalization;
+		withParallelBuild = builder.withParallelBuild;
+		withTripletBuild = builder.withTripletBuild;
+		withFormulaCells = builder.withFormulaCells;
 		allocationMethod = builder.allocationMethod == null
 			? AllocationMethod.NONE
 			: builder.allocationMethod;
 		subResults = builder.subResults != null
 			? builder.subResults
 			: Collections.emptyMap();
+		exchangeStore = builder.exchangeStore;
 	}
 
 	public static Builder of(IDatabase db, TechIndex techIndex) {
@@ -92,11 +121,15 @@ public class MatrixConfig {
 		private ImpactIndex impacts;
 		private List<ParameterRedef> redefs;
 		private Map<TechFlow, LcaResult> subResults;
+		private ExchangeStore exchangeStore;
 
 		private AllocationMethod allocationMethod;
 		private boolean withUncertainties;
 		private boolean withCosts;
 		private boolean withRegionalization;
+		private boolean withParallelBuild;
+		private boolean withTripletBuild;
+		private boolean withFormulaCells;
 
 		private Builder(IDatabase db, TechIndex techIndex) {
 			this.db = db;
@@ -138,6 +171,36 @@ public class MatrixConfig {
 			return this;
 		}
 
+		/**
+		 * Builds the matrices in parallel. This is useful for large systems
+		 * with many processes. The resulting matrices and indices do not
+		 * depend on the number of threads.
+		 */
+		public Builder withParallelBuild(boolean b) {
+			withParallelBuild = b;
+			return this;
+		}
+
+		/**
+		 * Builds the matrices from triplets instead of hash maps. This reduces
+		 * the memory footprint when building large sparse matrices. The
+		 * matrices are then returned in compressed column format.
+		 */
+		public Builder withTripletBuild(boolean b) {
+			withTripletBuild = b;
+			return this;
+		}
+
+		/**
+		 * Records the matrix entries that depend on formulas, so that the
+		 * matrices can be updated for other parameter redefinitions without
+		 * building them again; see {@link FormulaCells}.
+		 */
+		public Builder withFormulaCells(boolean b) {
+			withFormulaCells = b;
+			return this;
+		}
+
 		public Builder withAllocation(AllocationMethod method) {
 			allocationMethod = method;
 			return this;
@@ -160,6 +223,15 @@ public class MatrixConfig {
 			return this;
 		}
 
+		/**
+		 * Sets the store from which the exchanges of the processes are read;
+		 * see {@link ExchangeStore}.
+		 */
+		public Builder withExchangeStore(ExchangeStore store) {
+			this.exchangeStore = store;
+			return this;
+		}
+
 		public MatrixData build() {
 			var conf = new MatrixConfig(this);
 			var data = new InventoryBuilder(conf).build();
@@ -172,6 +244,7 @@ public class MatrixConfig {
 					data.impactIndex = conf.impactIndex;
 				} else {
 					ImpactBuilder.of(conf, data.enviIndex)
+						.withFormulaCells(data.formulaCells)
 						.build()
 						.addTo(data);
 				}
@@ -2,7 +2,9 @@ package org.openlca.core.matrix;
 
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.BiFunction;
+import java.util.random.RandomGenerator;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.matrix.format.CSCMatrix;
@@ -90,6 +92,13 @@ public class MatrixData {
 	 */
 	public UMatrix impactUncertainties;
 
+	/**
+	 * Contains the matrix entries that depend on formulas. This field is only
+	 * used (not null) when the data were built with formula cells; see
+	 * {@link FormulaCells}.
+	 */
+	public FormulaCells formulaCells;
+
 	private Boolean _hasLibraryLinks;
 
 	public static MatrixConfig.Builder of(IDatabase db, TechIndex techIndex) {
@@ -101,13 +110,23 @@ public class MatrixData {
 	 * the matrix instances may change so you need to be carefully with aliases.
 	 */
 	public void simulate(FormulaInterpreter interpreter) {
+		simulate(interpreter, ThreadLocalRandom.current());
+	}
+
+	/**
+	 * Same as {@link #simulate(FormulaInterpreter)} but draws the random values
+	 * from the given random number generator. The matrices are always
+	 * generated in the same order (technology, intervention, impact matrix),
+	 * so that the generated values are reproducible with a seeded generator.
+	 */
+	public void simulate(FormulaInterpreter interpreter, RandomGenerator random) {
 
 		BiFunction<MatrixReader, UMatrix, Optional<Matrix>> next =
 			(matrix, uncertainties) -> {
 				if (matrix == null || uncertainties == null)
 					return Optional.empty();
 				var m = matrix.asMutable();
-				uncertainties.generate(m, interpreter);
+				uncertainties.generate(m, interpreter, random);
 				return Optional.of(m);
 			};
 
@@ -160,11 +179,25 @@ public class MatrixData {
 	}
 
 	public MatrixData copy() {
+		return copyWith(Copy.of(techMatrix));
+	}
+
+	/**
+	 * Creates a copy of this data that shares the technology matrix with this
+	 * data instead of copying it. This can be used when the technology matrix
+	 * is not modified, e.g. in a simulation where it has no uncertain values.
+	 */
+	public MatrixData copyWithSharedTechMatrix() {
+		return copyWith(techMatrix);
+	}
+
+	private MatrixData copyWith(MatrixReader techMatrix) {
 		var copy = new MatrixData();
+		copy.demand = demand;
 		copy.techIndex = Copy.of(techIndex);
 		copy.enviIndex = Copy.of(enviIndex);
 		copy.impactIndex = Copy.of(impactIndex);
-		copy.techMatrix = Copy.of(techMatrix);
+		copy.techMatrix = techMatrix;
 		copy.enviMatrix = Copy.of(enviMatrix);
 		copy.impactMatrix = Copy.of(impactMatrix);
 		if (costVector != null) {
@@ -173,6 +206,8 @@ public class MatrixData {
 		copy.techUncertainties = Copy.of(techUncertainties);
 		copy.enviUncertainties = Copy.of(enviUncertainties);
 		copy.impactUncertainties = Copy.of(impactUncertainties);
+		// the formula cells are not modified after the data were built
+		copy.formulaCells = formulaCells;
 		copy._hasLibraryLinks = _hasLibraryLinks;
 		return copy;
 	}
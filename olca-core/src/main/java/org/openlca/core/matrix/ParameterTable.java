@@ -1,10 +1,15 @@
 package org.openlca.core.matrix;
 
 import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.NativeSql;
@@ -13,6 +18,8 @@ import org.openlca.core.model.ParameterRedef;
 import org.openlca.core.model.ParameterScope;
 import org.openlca.core.model.UncertaintyType;
 import org.openlca.expressions.FormulaInterpreter;
+import org.openlca.expressions.InterpreterException;
+import org.openlca.expressions.Scope;
 import org.slf4j.LoggerFactory;
 
 import gnu.trove.impl.Constants;
@@ -31,6 +38,20 @@ public class ParameterTable {
 	 */
 	private TLongObjectHashMap<Map<String, NumberGenerator>> numberGens;
 
+	/**
+	 * The parameter bindings of the interpreter in the order in which they were
+	 * applied. These are only recorded for simulation tables so that we can
+	 * create independent copies of such tables.
+	 */
+	private List<Binding> bindings;
+
+	/**
+	 * The compiled parameters of a simulation table, grouped by scope. These
+	 * are the parameters that need to be bound again in each simulation run
+	 * in their evaluation order, starting with the global scope.
+	 */
+	private List<ScopeSlots> compiled;
+
 	private final FormulaInterpreter interpreter = new FormulaInterpreter();
 
 	private ParameterTable() {
@@ -54,6 +75,24 @@ public class ParameterTable {
 		return table.interpreter;
 	}
 
+	/**
+	 * Builds a parameter table from which formula interpreters with different
+	 * parameter redefinitions can be created, e.g. for the variants of a
+	 * project, without scanning the parameters again; see
+	 * {@link #interpreterOf(Collection)}.
+	 */
+	public static ParameterTable of(IDatabase db, Set<Long> contexts) {
+		var table = new ParameterTable();
+		table.bindings = new ArrayList<>();
+		try {
+			table.scan(db, contexts);
+		} catch (Exception e) {
+			var log = LoggerFactory.getLogger(ParameterTable.class);
+			log.error("Failed to scan parameter table", e);
+		}
+		return table;
+	}
+
 	/**
 	 * Builds a parameter table suitable for creating formula interpreters in a
 	 * Monte Carlo simulation.
@@ -65,6 +104,7 @@ public class ParameterTable {
 			Constants.DEFAULT_CAPACITY,
 			Constants.DEFAULT_LOAD_FACTOR,
 			-1L);
+		table.bindings = new ArrayList<>();
 		try {
 			table.scan(db, contexts);
 		} catch (Exception e) {
@@ -72,44 +112,199 @@ public class ParameterTable {
 			log.error("Failed to scan parameter table", e);
 		}
 		table.bindRedefs(redefs);
+		table.compile();
 		return table;
 	}
 
 	/**
 	 * Calculates new random values for the parameters in this table that have an
 	 * uncertainty distribution assigned. It re-binds the values of theses
-	 * parameters in the underlying interpreter with the generated values.
+	 * parameters in the underlying interpreter with the generated values. The
+	 * dependent parameters are evaluated from their compiled formulas and are
+	 * bound as plain numbers, so that the formulas of the matrix cells can be
+	 * evaluated without evaluating the parameter formulas again.
 	 */
 	public FormulaInterpreter simulate() {
-		if (numberGens == null)
+		return simulate(ThreadLocalRandom.current());
+	}
+
+	/**
+	 * Same as {@link #simulate()} but draws the random values from the given
+	 * random number generator.
+	 */
+	public FormulaInterpreter simulate(RandomGenerator random) {
+		if (compiled == null)
 			return interpreter;
-		var it = numberGens.iterator();
-		while (it.hasNext()) {
-			it.advance();
-			long context = it.key();
-			var generators = it.value();
-			var scope = context == 0
+		for (var group : compiled) {
+			var scope = group.context == 0
 				? interpreter.getGlobalScope()
-				: interpreter.getScopeOrGlobal(context);
-			if (generators == null || scope == null)
+				: interpreter.getScopeOrGlobal(group.context);
+			for (var slot : group.slots) {
+				slot.bindTo(scope, random);
+			}
+		}
+		return interpreter;
+	}
+
+	/**
+	 * Returns true if this table contains parameters with uncertainty
+	 * distributions, and thus, the parameter values can change between
+	 * simulation runs.
+	 */
+	public boolean hasUncertainties() {
+		if (numberGens == null)
+			return false;
+		for (var gens : numberGens.valueCollection()) {
+			if (gens != null && !gens.isEmpty())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Creates a copy of this table with its own formula interpreter. The number
+	 * generators are shared with the copy as they are not modified after the
+	 * table was created. This is used in parallel simulations where each
+	 * thread needs to work on its own interpreter.
+	 */
+	public ParameterTable copy() {
+		var copy = new ParameterTable();
+		copy.numberGens = numberGens;
+		copy.compiled = compiled;
+		if (bindings != null) {
+			copy.bindings = new ArrayList<>(bindings);
+			for (var binding : bindings) {
+				binding.applyTo(copy.interpreter);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Creates a new formula interpreter with the parameters of this table and
+	 * applies the given parameter redefinitions. Possible uncertainty
+	 * distributions of the redefinitions are ignored.
+	 */
+	public FormulaInterpreter interpreterOf(Collection<ParameterRedef> redefs) {
+		var table = new ParameterTable();
+		if (bindings != null) {
+			for (var binding : bindings) {
+				binding.applyTo(table.interpreter);
+			}
+		}
+		table.bindRedefs(redefs);
+		return table.interpreter;
+	}
+
+	private void bind(Binding binding) {
+		binding.applyTo(interpreter);
+		if (bindings != null) {
+			bindings.add(binding);
+		}
+	}
+
+	/**
+	 * Compiles the parameters of a simulation table from the final bindings
+	 * and number generators of the scopes. Only parameters with a number
+	 * generator or formula are kept as these are the parameters that can
+	 * change between simulation runs. Within a scope, they are ordered so that
+	 * a formula is evaluated after the parameters it depends on.
+	 */
+	private void compile() {
+		var scopes = new LinkedHashMap<Long, Map<String, Slot>>();
+		scopes.put(0L, new LinkedHashMap<>());
+		for (var binding : bindings) {
+			var name = norm(binding.name);
+			if (name.isEmpty())
 				continue;
+			var slots = scopes.computeIfAbsent(
+				binding.context, $ -> new LinkedHashMap<>());
+			slots.put(name, new Slot(name, binding.isFormula
+				? CompiledFormula.of(binding.formula)
+				: null));
+		}
+
+		// generators of unknown contexts are bound in the global scope
+		numberGens.forEachEntry((context, generators) -> {
+			if (generators == null)
+				return true;
+			var slots = scopes.containsKey(context)
+				? scopes.get(context)
+				: scopes.get(0L);
 			generators.forEach((name, gen) -> {
-				if (gen != null) {
-					scope.bind(name, gen.next());
-				}
+				var key = norm(name);
+				if (gen == null || key.isEmpty())
+					return;
+				slots.computeIfAbsent(key, $ -> new Slot($, null)).gen = gen;
 			});
+			return true;
+		});
+
+		compiled = new ArrayList<>(scopes.size());
+		scopes.forEach((context, slots) -> {
+			var ordered = new ArrayList<Slot>(slots.size());
+			var states = new HashMap<Slot, Boolean>();
+			var path = new ArrayList<Slot>();
+			for (var slot : slots.values()) {
+				visit(slot, slots, states, path, ordered);
+			}
+			ordered.removeIf(slot -> slot.gen == null && slot.formula == null);
+			if (!ordered.isEmpty()) {
+				var group = ordered.toArray(Slot[]::new);
+				compiled.add(new ScopeSlots(context, group));
+			}
+		});
+	}
+
+	/**
+	 * Adds the given slot after its dependencies in the same scope to the
+	 * ordered list. The state of a slot is {@code false} while its
+	 * dependencies are visited and {@code true} when it was added. Slots of a
+	 * cycle are marked, so that the interpreter reports the cycle when they
+	 * are evaluated.
+	 */
+	private static void visit(Slot slot, Map<String, Slot> slots,
+		Map<Slot, Boolean> states, List<Slot> path, List<Slot> ordered) {
+		var state = states.get(slot);
+		if (state != null) {
+			if (!state) {
+				for (int i = path.indexOf(slot); i < path.size(); i++) {
+					path.get(i).cyclic = true;
+				}
+			}
+			return;
 		}
-		return interpreter;
+		states.put(slot, false);
+		path.add(slot);
+		if (slot.gen == null && slot.formula != null) {
+			for (var variable : slot.formula.variables()) {
+				var dep = slots.get(variable);
+				if (dep != null) {
+					visit(dep, slots, states, path, ordered);
+				}
+			}
+		}
+		path.remove(path.size() - 1);
+		states.put(slot, true);
+		ordered.add(slot);
+	}
+
+	private static String norm(String name) {
+		return name == null
+			? ""
+			: name.toLowerCase().trim();
 	}
 
 	private void bindRedefs(Collection<ParameterRedef> redefs) {
 		if (redefs == null)
 			return;
 		for (var redef : redefs) {
-			var scope = redef.contextId == null
-				? interpreter.getGlobalScope()
-				: interpreter.getScopeOrGlobal(redef.contextId);
-			scope.bind(redef.name, redef.value);
+			// redefinitions of unknown contexts are bound in the global scope
+			long scope = redef.contextId != null
+				&& interpreter.getScope(redef.contextId).isPresent()
+				? redef.contextId
+				: 0L;
+			bind(Binding.of(scope, redef.name, redef.value));
 			if (numberGens == null)
 				continue;
 
@@ -146,24 +341,21 @@ public class ParameterTable {
 				? ParameterScope.GLOBAL
 				: ParameterScope.valueOf(_str);
 
-			// load the scope
+			// check the scope
 			long owner = r.getLong(2);
 			if (paramScope == ParameterScope.GLOBAL) {
 				owner = 0L;
 			} else if (!contexts.contains(owner)) {
 				return true;
 			}
-			var scope = owner == 0
-				? interpreter.getGlobalScope()
-				: interpreter.getOrCreate(owner);
 
 			// bind the parameter value or formula
 			var name = r.getString(3);
 			boolean isInput = r.getBoolean(4);
 			if (isInput) {
-				scope.bind(name, r.getDouble(5));
+				bind(Binding.of(owner, name, r.getDouble(5)));
 			} else {
-				scope.bind(name, r.getString(6));
+				bind(Binding.of(owner, name, r.getString(6)));
 			}
 
 			// bind a possible number generator
@@ -203,4 +395,66 @@ public class ParameterTable {
 			throw new RuntimeException(e);
 		}
 	}
+
+	private record ScopeSlots(long context, Slot[] slots) {
+	}
+
+	/**
+	 * A parameter of a scope that is bound again in each simulation run.
+	 */
+	private static class Slot {
+
+		final String name;
+		final CompiledFormula formula;
+		NumberGenerator gen;
+		boolean cyclic;
+
+		Slot(String name, CompiledFormula formula) {
+			this.name = name;
+			this.formula = formula;
+		}
+
+		void bindTo(Scope scope, RandomGenerator random) {
+			if (gen != null) {
+				scope.bind(name, gen.next(random));
+				return;
+			}
+			if (formula == null)
+				return;
+			if (!cyclic) {
+				try {
+					scope.bind(name, formula.eval(scope));
+					return;
+				} catch (InterpreterException ignored) {
+				}
+			}
+			// bind the formula so that the evaluation error is reported
+			// when the parameter is used
+			scope.bind(name, formula.formula());
+		}
+	}
+
+	private record Binding(
+		long context, String name, double value, String formula,
+		boolean isFormula) {
+
+		static Binding of(long context, String name, double value) {
+			return new Binding(context, name, value, null, false);
+		}
+
+		static Binding of(long context, String name, String formula) {
+			return new Binding(context, name, 0, formula, true);
+		}
+
+		void applyTo(FormulaInterpreter interpreter) {
+			var scope = context == 0
+				? interpreter.getGlobalScope()
+				: interpreter.getOrCreate(context);
+			if (isFormula) {
+				scope.bind(name, formula);
+			} else {
+				scope.bind(name, value);
+			}
+		}
+	}
 }
@@ -48,12 +48,18 @@ public interface TechLinker {
 				if (p != null)
 					return p;
 			}
+			return providers().get(e.flowId);
+		}
+
+		// synchronized, as the linker can be called from multiple threads when
+		// the matrices are built in parallel
+		private synchronized TLongObjectHashMap<TechFlow> providers() {
 			if (providers == null) {
-				providers = new TLongObjectHashMap<>();
-				techIndex.each(
-					(i, pp) -> providers.put(pp.flowId(), pp));
+				var map = new TLongObjectHashMap<TechFlow>();
+				techIndex.each((i, pp) -> map.put(pp.flowId(), pp));
+				providers = map;
 			}
-			return providers.get(e.flowId);
+			return providers;
 		}
 	}
 }
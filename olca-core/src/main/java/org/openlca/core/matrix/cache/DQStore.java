@@ -0,0 +1,298 @@
+package org.openlca.core.matrix.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gnu.trove.list.array.TByteArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.IDatabaseListener;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.Descriptor;
+
+/**
+ * A cache of the data quality entries of processes and their exchanges. The
+ * entries are parsed once into byte vectors and stored per process, so that
+ * the entry strings do not need to be parsed again for each data quality
+ * result. Only the processes of the requested tech-indices are loaded.
+ * <p>
+ * The parsed values are the raw scores of the entries, independent from a
+ * data quality system: a value of 0 means that no valid score is available.
+ * Scores that are larger than the score count of the respective data quality
+ * system still need to be ignored by the caller.
+ * <p>
+ * The store that is shared by the calculations on a database is registered as
+ * listener of the database and removes the entry of a process when that
+ * process is modified via the DAOs; it is cleared when data are modified in a
+ * transaction of the database. When the database is modified via native SQL
+ * statements, {@link #invalidate()} needs to be called explicitly. As the
+ * shared store keeps the entries of all requested processes, it is only used
+ * when this is explicitly enabled; see
+ * {@link org.openlca.core.math.data_quality.DQData.Builder#withStore(DQStore)}.
+ */
+public final class DQStore implements IDatabaseListener {
+
+	private final IDatabase db;
+	private final TLongObjectHashMap<Entry> entries = new TLongObjectHashMap<>();
+
+	private DQStore(IDatabase db) {
+		this.db = db;
+	}
+
+	/**
+	 * Returns the data quality store of the given database. The store is
+	 * shared by all calculations on that database.
+	 */
+	public static DQStore of(IDatabase db) {
+		return db.listeners().getOrAdd(DQStore.class, () -> new DQStore(db));
+	}
+
+	/**
+	 * Creates a new store for the given database that is not shared and not
+	 * registered as listener of the database. It should be only used for a
+	 * single calculation.
+	 */
+	public static DQStore create(IDatabase db) {
+		return new DQStore(db);
+	}
+
+	/**
+	 * Removes all entries from the store.
+	 */
+	public synchronized void invalidate() {
+		entries.clear();
+	}
+
+	/**
+	 * Removes the entry of the given process from the store.
+	 */
+	public synchronized void invalidate(long processId) {
+		entries.remove(processId);
+	}
+
+	/**
+	 * Returns the data quality entries of the processes in the given index.
+	 * Processes that are not yet in the store are loaded from the database.
+	 */
+	public synchronized List<Entry> get(TechIndex techIndex) {
+		if (techIndex == null)
+			return new ArrayList<>();
+		var missing = new TLongHashSet();
+		for (long processId : techIndex.getProcessIds()) {
+			if (!entries.containsKey(processId)) {
+				missing.add(processId);
+			}
+		}
+		if (!missing.isEmpty()) {
+			load(missing);
+		}
+		var list = new ArrayList<Entry>();
+		for (long processId : techIndex.getProcessIds()) {
+			var entry = entries.get(processId);
+			if (entry != null) {
+				list.add(entry);
+			}
+		}
+		return list;
+	}
+
+	private void load(TLongHashSet processIds) {
+		var ids = new ArrayList<Long>(processIds.size());
+		processIds.forEach(ids::add);
+		var filter = ids.size() < 1000
+				? " where id in " + CacheUtil.asSql(ids)
+				: "";
+
+		var builders = new TLongObjectHashMap<Builder>();
+		var sql = "select id, f_dq_system, dq_entry, f_exchange_dq_system"
+				+ " from tbl_processes" + filter;
+		NativeSql.on(db).query(sql, r -> {
+			long id = r.getLong(1);
+			if (!processIds.contains(id))
+				return true;
+			var b = new Builder(id);
+			b.dqSystem = r.getLong(2);
+			b.dqValues = parse(r.getString(3));
+			b.exchangeDqSystem = r.getLong(4);
+			builders.put(id, b);
+			return true;
+		});
+
+		// only load the exchanges of processes with an exchange DQ system
+		var withExchangeDQ = new ArrayList<Long>();
+		builders.forEachValue(b -> {
+			if (b.exchangeDqSystem != 0) {
+				withExchangeDQ.add(b.processId);
+			}
+			return true;
+		});
+		if (!withExchangeDQ.isEmpty()) {
+			filter = withExchangeDQ.size() < 1000
+					? " where f_owner in " + CacheUtil.asSql(withExchangeDQ)
+					: "";
+			sql = "select f_owner, f_flow, f_location, dq_entry"
+					+ " from tbl_exchanges" + filter;
+			NativeSql.on(db).query(sql, r -> {
+				var b = builders.get(r.getLong(1));
+				if (b == null || b.exchangeDqSystem == 0)
+					return true;
+				var dqEntry = r.getString(4);
+				if (dqEntry == null)
+					return true;
+				b.add(r.getLong(2), r.getLong(3), parse(dqEntry));
+				return true;
+			});
+		}
+
+		// also store empty entries for IDs that are not processes (e.g. of
+		// sub-systems), so that they are not queried again
+		processIds.forEach(id -> {
+			var b = builders.get(id);
+			entries.put(id, b != null
+					? b.build()
+					: new Builder(id).build());
+			return true;
+		});
+	}
+
+	/**
+	 * Parses the raw scores of the given data quality entry, e.g.
+	 * {@code (1;2;n.a.;4;5)}. Returns {@code null} if the entry is empty.
+	 */
+	static byte[] parse(String entry) {
+		if (entry == null)
+			return null;
+		var raw = entry.trim();
+		if (raw.length() <= 2)
+			return null;
+		var nums = raw.substring(1, raw.length() - 1).split(";");
+		var values = new byte[nums.length];
+		for (int i = 0; i < nums.length; i++) {
+			var num = nums[i].trim();
+			if ("n.a.".equals(num))
+				continue;
+			try {
+				int val = Integer.parseInt(num);
+				if (val > 0 && val <= Byte.MAX_VALUE) {
+					values[i] = (byte) val;
+				}
+			} catch (NumberFormatException ignored) {
+			}
+		}
+		return values;
+	}
+
+	@Override
+	public void modelInserted(Descriptor d) {
+		onChange(d);
+	}
+
+	@Override
+	public void modelUpdated(Descriptor d) {
+		onChange(d);
+	}
+
+	@Override
+	public void modelDeleted(Descriptor d) {
+		onChange(d);
+	}
+
+	@Override
+	public void databaseCleared() {
+		invalidate();
+	}
+
+	private void onChange(Descriptor d) {
+		if (d != null && d.type == ModelType.PROCESS) {
+			invalidate(d.id);
+		}
+	}
+
+	/**
+	 * The data quality entries of a process.
+	 *
+	 * @param processId        the ID of the process
+	 * @param dqSystem         the ID of the process data quality system or 0
+	 * @param dqValues         the raw scores of the process entry or
+	 *                         {@code null} if the process has no entry
+	 * @param exchangeDqSystem the ID of the exchange data quality system or 0
+	 * @param flowIds          the flow IDs of the exchanges with an entry
+	 * @param locationIds      the location IDs of these exchanges, 0 when the
+	 *                         exchange has no location
+	 * @param exchangeValues   the raw scores of the exchanges; the scores of
+	 *                         exchange {@code i} are stored in the positions
+	 *                         {@code i * stride .. (i + 1) * stride - 1}
+	 * @param stride           the maximum number of scores of an exchange entry
+	 */
+	public record Entry(
+			long processId,
+			long dqSystem,
+			byte[] dqValues,
+			long exchangeDqSystem,
+			long[] flowIds,
+			long[] locationIds,
+			byte[] exchangeValues,
+			int stride) {
+
+		/**
+		 * Returns the number of exchanges with a data quality entry.
+		 */
+		public int exchangeCount() {
+			return flowIds.length;
+		}
+
+		/**
+		 * Returns the raw score of the given indicator for the exchange at the
+		 * given position.
+		 */
+		public byte exchangeValue(int exchange, int indicator) {
+			return indicator < stride
+					? exchangeValues[exchange * stride + indicator]
+					: 0;
+		}
+	}
+
+	private static class Builder {
+
+		final long processId;
+		long dqSystem;
+		byte[] dqValues;
+		long exchangeDqSystem;
+
+		final TLongArrayList flowIds = new TLongArrayList();
+		final TLongArrayList locationIds = new TLongArrayList();
+		final List<byte[]> values = new ArrayList<>();
+		int stride;
+
+		Builder(long processId) {
+			this.processId = processId;
+		}
+
+		void add(long flowId, long locationId, byte[] scores) {
+			flowIds.add(flowId);
+			locationIds.add(locationId);
+			values.add(scores);
+			if (scores != null && scores.length > stride) {
+				stride = scores.length;
+			}
+		}
+
+		Entry build() {
+			var flat = new TByteArrayList(values.size() * stride);
+			for (var scores : values) {
+				for (int i = 0; i < stride; i++) {
+					flat.add(scores != null && i < scores.length
+							? scores[i]
+							: 0);
+				}
+			}
+			return new Entry(processId, dqSystem, dqValues, exchangeDqSystem,
+					flowIds.toArray(), locationIds.toArray(), flat.toArray(),
+					stride);
+		}
+	}
+}
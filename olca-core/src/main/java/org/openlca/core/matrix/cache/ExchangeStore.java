@@ -0,0 +1,403 @@
+package org.openlca.core.matrix.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import gnu.trove.list.array.TByteArrayList;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.IDatabaseListener;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.UncertaintyType;
+import org.openlca.core.model.descriptors.Descriptor;
+
+/**
+ * A columnar snapshot of the exchange table that can be used instead of the
+ * {@link ExchangeTable} when many calculations are executed on the same
+ * database. The exchanges are read once from the database and stored in
+ * primitive arrays that are sorted by the owner process, so that the
+ * exchanges of a process can be directly accessed as a slice of these arrays.
+ * <p>
+ * The store is registered as listener of the database and drops its snapshot
+ * when processes, flows, flow properties, unit groups, or currencies are
+ * modified via the DAOs, or when data are modified in a transaction of the
+ * database. When the database is modified via native SQL statements,
+ * {@link #invalidate()} needs to be called explicitly.
+ */
+public final class ExchangeStore implements IDatabaseListener {
+
+	private final IDatabase db;
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Is incremented on each invalidation, so that a snapshot that was read
+	 * while the database was modified is not published.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	private ExchangeStore(IDatabase db) {
+		this.db = db;
+	}
+
+	/**
+	 * Returns the exchange store of the given database. The store is shared by
+	 * all calculations on that database.
+	 */
+	public static ExchangeStore of(IDatabase db) {
+		return db.listeners().getOrAdd(
+			ExchangeStore.class, () -> new ExchangeStore(db));
+	}
+
+	/**
+	 * Drops the current snapshot of the exchanges. A new snapshot is created
+	 * on the next access.
+	 */
+	public void invalidate() {
+		generation.incrementAndGet();
+		snapshot = null;
+	}
+
+	/**
+	 * Returns the number of exchanges in the store.
+	 */
+	public int size() {
+		return snapshot().size();
+	}
+
+	/**
+	 * Calls the given function for each exchange of the processes in the given
+	 * index. A new exchange object is created for each exchange.
+	 */
+	public void each(TechIndex techIndex, Consumer<CalcExchange> fn) {
+		snapshot().each(techIndex, CalcExchange::new, fn);
+	}
+
+	/**
+	 * Calls the given function for each exchange of the given process. A new
+	 * exchange object is created for each exchange.
+	 */
+	public void each(long processId, Consumer<CalcExchange> fn) {
+		snapshot().each(processId, fn);
+	}
+
+	/**
+	 * Calls the given function for each exchange of the processes in the given
+	 * index. Unlike {@link #each(TechIndex, Consumer)}, a single exchange
+	 * object is reused for all exchanges, thus the function must not keep a
+	 * reference to that object.
+	 */
+	public void eachShared(TechIndex techIndex, Consumer<CalcExchange> fn) {
+		var shared = new CalcExchange();
+		snapshot().each(techIndex, () -> shared, fn);
+	}
+
+	private Snapshot snapshot() {
+		var s = snapshot;
+		if (s != null)
+			return s;
+		synchronized (this) {
+			if (snapshot != null)
+				return snapshot;
+			long gen = generation.get();
+			var next = Snapshot.read(db);
+			if (generation.get() == gen) {
+				snapshot = next;
+			}
+			return next;
+		}
+	}
+
+	@Override
+	public void modelInserted(Descriptor d) {
+		onChange(d);
+	}
+
+	@Override
+	public void modelUpdated(Descriptor d) {
+		onChange(d);
+	}
+
+	@Override
+	public void modelDeleted(Descriptor d) {
+		onChange(d);
+	}
+
+	@Override
+	public void databaseCleared() {
+		invalidate();
+	}
+
+	private void onChange(Descriptor d) {
+		if (d == null || d.type == null)
+			return;
+		switch (d.type) {
+			case PROCESS, FLOW, FLOW_PROPERTY, UNIT_GROUP, CURRENCY -> invalidate();
+			default -> {
+			}
+		}
+	}
+
+	private static final byte INPUT = 1;
+	private static final byte AVOIDED = 2;
+	private static final byte WITH_COSTS = 4;
+
+	/**
+	 * The exchange columns, sorted by owner. The exchanges of the process
+	 * {@code processIds[i]} are stored in the positions
+	 * {@code offsets[i] .. offsets[i + 1] - 1}.
+	 */
+	private record Snapshot(
+		long[] processIds,
+		int[] offsets,
+		long[] exchangeIds,
+		long[] flowIds,
+		long[] providerIds,
+		long[] locationIds,
+		double[] conversionFactors,
+		double[] amounts,
+		String[] formulas,
+		double[] costValues,
+		double[] currencyFactors,
+		String[] costFormulas,
+		byte[] flags,
+		byte[] flowTypes,
+		byte[] uncertaintyTypes,
+		double[] parameters) {
+
+		int size() {
+			return exchangeIds.length;
+		}
+
+		void each(TechIndex techIndex, Supplier<CalcExchange> fn,
+			Consumer<CalcExchange> consumer) {
+			for (int i = 0; i < processIds.length; i++) {
+				long processId = processIds[i];
+				if (!techIndex.isProvider(processId))
+					continue;
+				for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+					var e = fn.get();
+					fill(e, processId, k);
+					consumer.accept(e);
+				}
+			}
+		}
+
+		void each(long processId, Consumer<CalcExchange> consumer) {
+			int i = Arrays.binarySearch(processIds, processId);
+			if (i < 0)
+				return;
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				var e = new CalcExchange();
+				fill(e, processId, k);
+				consumer.accept(e);
+			}
+		}
+
+		private void fill(CalcExchange e, long processId, int k) {
+			e.exchangeId = exchangeIds[k];
+			e.processId = processId;
+			e.flowId = flowIds[k];
+			e.flowType = flowTypes[k] < 0
+				? null
+				: FlowType.values()[flowTypes[k]];
+			e.conversionFactor = conversionFactors[k];
+			e.amount = amounts[k];
+			e.formula = formulas[k];
+			byte f = flags[k];
+			e.isInput = (f & INPUT) != 0;
+			e.isAvoided = (f & AVOIDED) != 0;
+			e.defaultProviderId = providerIds[k];
+			e.locationId = locationIds[k];
+
+			if ((f & WITH_COSTS) != 0) {
+				e.costValue = costValues[k];
+				e.costFormula = costFormulas[k];
+				e.currencyFactor = currencyFactors[k];
+			} else {
+				e.costValue = 0;
+				e.costFormula = null;
+				e.currencyFactor = 0;
+			}
+
+			if (uncertaintyTypes[k] >= 0) {
+				e.uncertaintyType = UncertaintyType.values()[uncertaintyTypes[k]];
+				e.parameter1 = parameters[3 * k];
+				e.parameter2 = parameters[3 * k + 1];
+				e.parameter3 = parameters[3 * k + 2];
+			} else {
+				e.uncertaintyType = null;
+				e.parameter1 = 0;
+				e.parameter2 = 0;
+				e.parameter3 = 0;
+			}
+		}
+
+		static Snapshot read(IDatabase db) {
+			var conversions = ConversionTable.create(db);
+			TLongObjectHashMap<FlowType> types = FlowTable.getTypes(db);
+
+			// read the rows in the order of the table
+			var owners = new TLongArrayList();
+			var exchangeIds = new TLongArrayList();
+			var flowIds = new TLongArrayList();
+			var providerIds = new TLongArrayList();
+			var locationIds = new TLongArrayList();
+			var conversionFactors = new TDoubleArrayList();
+			var amounts = new TDoubleArrayList();
+			var costValues = new TDoubleArrayList();
+			var currencyFactors = new TDoubleArrayList();
+			var parameters = new TDoubleArrayList();
+			var flags = new TByteArrayList();
+			var flowTypes = new TByteArrayList();
+			var uncertaintyTypes = new TByteArrayList();
+			var formulas = new ArrayList<String>();
+			var costFormulas = new ArrayList<String>();
+
+			NativeSql.on(db).query(ExchangeTable.query(), r -> {
+				exchangeIds.add(r.getLong(1));
+				owners.add(r.getLong(2));
+				long flowId = r.getLong(3);
+				flowIds.add(flowId);
+				var flowType = types.get(flowId);
+				flowTypes.add(flowType == null ? -1 : (byte) flowType.ordinal());
+
+				double propertyFactor = conversions.getPropertyFactor(r.getLong(4));
+				double unitFactor = conversions.getUnitFactor(r.getLong(5));
+				conversionFactors.add(propertyFactor == 0
+					? 0
+					: unitFactor / propertyFactor);
+
+				amounts.add(r.getDouble(6));
+				formulas.add(r.getString(7));
+				byte f = 0;
+				if (r.getBoolean(8)) {
+					f |= INPUT;
+				}
+				if (r.getBoolean(9)) {
+					f |= AVOIDED;
+				}
+				providerIds.add(r.getLong(10));
+
+				// costs
+				double costValue = r.getDouble(11);
+				String costFormula = r.getString(12);
+				long currency = r.getLong(13);
+				if (!r.wasNull()) {
+					f |= WITH_COSTS;
+					costValues.add(costValue);
+					costFormulas.add(costFormula);
+					currencyFactors.add(conversions.getCurrencyFactor(currency));
+				} else {
+					costValues.add(0);
+					costFormulas.add(null);
+					currencyFactors.add(0);
+				}
+				flags.add(f);
+
+				// uncertainties
+				int uncertaintyType = r.getInt(14);
+				if (!r.wasNull()) {
+					uncertaintyTypes.add((byte) uncertaintyType);
+					parameters.add(r.getDouble(15));
+					parameters.add(r.getDouble(16));
+					parameters.add(r.getDouble(17));
+				} else {
+					uncertaintyTypes.add((byte) -1);
+					parameters.add(0);
+					parameters.add(0);
+					parameters.add(0);
+				}
+
+				locationIds.add(r.getLong(18));
+				return true;
+			});
+
+			// calculate the positions of the rows when sorted by owner
+			int n = owners.size();
+			var processIds = new TLongHashSet(owners).toArray();
+			Arrays.sort(processIds);
+			var offsets = new int[processIds.length + 1];
+			var slots = new int[n];
+			for (int k = 0; k < n; k++) {
+				int i = Arrays.binarySearch(processIds, owners.get(k));
+				slots[k] = i;
+				offsets[i + 1]++;
+			}
+			for (int i = 0; i < processIds.length; i++) {
+				offsets[i + 1] += offsets[i];
+			}
+			var next = Arrays.copyOf(offsets, processIds.length);
+			var positions = new int[n];
+			for (int k = 0; k < n; k++) {
+				positions[k] = next[slots[k]]++;
+			}
+
+			return new Snapshot(
+				processIds,
+				offsets,
+				sorted(exchangeIds.toArray(), positions),
+				sorted(flowIds.toArray(), positions),
+				sorted(providerIds.toArray(), positions),
+				sorted(locationIds.toArray(), positions),
+				sorted(conversionFactors.toArray(), positions),
+				sorted(amounts.toArray(), positions),
+				sorted(formulas.toArray(new String[0]), positions),
+				sorted(costValues.toArray(), positions),
+				sorted(currencyFactors.toArray(), positions),
+				sorted(costFormulas.toArray(new String[0]), positions),
+				sorted(flags.toArray(), positions),
+				sorted(flowTypes.toArray(), positions),
+				sorted(uncertaintyTypes.toArray(), positions),
+				sortedTriples(parameters.toArray(), positions));
+		}
+
+		private static long[] sorted(long[] values, int[] positions) {
+			var s = new long[values.length];
+			for (int k = 0; k < values.length; k++) {
+				s[positions[k]] = values[k];
+			}
+			return s;
+		}
+
+		private static double[] sorted(double[] values, int[] positions) {
+			var s = new double[values.length];
+			for (int k = 0; k < values.length; k++) {
+				s[positions[k]] = values[k];
+			}
+			return s;
+		}
+
+		private static byte[] sorted(byte[] values, int[] positions) {
+			var s = new byte[values.length];
+			for (int k = 0; k < values.length; k++) {
+				s[positions[k]] = values[k];
+			}
+			return s;
+		}
+
+		private static String[] sorted(String[] values, int[] positions) {
+			var s = new String[values.length];
+			for (int k = 0; k < values.length; k++) {
+				s[positions[k]] = values[k];
+			}
+			return s;
+		}
+
+		private static double[] sortedTriples(double[] values, int[] positions) {
+			var s = new double[values.length];
+			for (int k = 0; k < positions.length; k++) {
+				System.arraycopy(values, 3 * k, s, 3 * positions[k], 3);
+			}
+			return s;
+		}
+	}
+}
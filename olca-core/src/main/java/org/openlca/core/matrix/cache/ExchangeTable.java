@@ -77,7 +77,7 @@ public class ExchangeTable {
 		}
 	}
 
-	private static String query() {
+	static String query() {
 		return "SELECT"
 			+ /* 1 */ " id,"
 			+ /* 2 */ " f_owner,"
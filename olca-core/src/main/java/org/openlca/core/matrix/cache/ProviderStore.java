@@ -0,0 +1,690 @@
+package org.openlca.core.matrix.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.openlca.core.database.Derby;
+import org.openlca.core.database.FlowDao;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.IDatabaseListener;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.database.ProcessDao;
+import org.openlca.core.database.ProductSystemDao;
+import org.openlca.core.matrix.index.TechFlow;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.ProcessType;
+import org.openlca.core.model.descriptors.Descriptor;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.openlca.core.model.descriptors.ProcessDescriptor;
+import org.openlca.core.model.descriptors.ProductSystemDescriptor;
+import org.openlca.core.model.descriptors.RootDescriptor;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the providers of product and waste flows in a database: it maps
+ * the IDs of product and waste flows to the processes that have these flows as
+ * product outputs or waste inputs and to the product systems that have these
+ * flows as reference flows. Collecting these providers requires a full scan
+ * of the exchange table, thus, the index is shared by all linking runs on a
+ * database and is also stored in the file storage location of the database.
+ * <p>
+ * The stored index is only used when the ID sequence and the number, maximum
+ * IDs, and last change dates of the processes, product systems, and flows of
+ * the database did not change since it was written. The index is registered
+ * as listener of the database and is updated when processes, product systems,
+ * or flows are modified via the DAOs; it is dropped when data are modified in
+ * a transaction of the database. The updated index is then stored in the
+ * background after a short delay, or when {@link #flush()} is called. When the
+ * database is modified via native SQL statements, {@link #invalidate()} should
+ * be called explicitly. Otherwise, the loaded index is dropped when the
+ * fingerprint of the database changed without a notification of the store,
+ * which is checked in {@link #validate()}.
+ * <p>
+ * The store is not used by default: building it requires a full scan of the
+ * exchange table and writing the stored index; see
+ * {@link org.openlca.core.matrix.linking.LinkingInfo#withProviderStore(boolean)}.
+ */
+public final class ProviderStore implements IDatabaseListener {
+
+	private static final int MAGIC = 0x6F6C7069; // "olpi"
+	private static final String FILE_NAME = "provider_index.bin";
+	private static final int FINGERPRINT_SIZE = 10;
+
+	/**
+	 * The delay in milliseconds after which a changed index is stored. Changes
+	 * within this time are stored together.
+	 */
+	private static final long SAVE_DELAY = 2000;
+	private static ScheduledExecutorService saver;
+
+	private final IDatabase db;
+	private final Object saveLock = new Object();
+	private State state;
+
+	/**
+	 * The fingerprint of the database for which the loaded index is valid, or
+	 * {@code null} when the index was updated via the listener methods and the
+	 * fingerprint needs to be taken again.
+	 */
+	private long[] stateFingerprint;
+	private boolean dirty;
+	private boolean saveScheduled;
+
+	private ProviderStore(IDatabase db) {
+		this.db = db;
+	}
+
+	/**
+	 * Returns the provider store of the given database. The store is shared by
+	 * all linking runs on that database.
+	 */
+	public static ProviderStore of(IDatabase db) {
+		return db.listeners().getOrAdd(
+			ProviderStore.class, () -> new ProviderStore(db));
+	}
+
+	/**
+	 * Returns true if the index is already loaded or if there is a stored index
+	 * that is valid for the current state of the database; thus, if the
+	 * providers can be accessed without a scan of the exchange table.
+	 */
+	public synchronized boolean isAvailable() {
+		if (validate())
+			return true;
+		var file = file();
+		if (file == null || !file.exists())
+			return false;
+		return Arrays.equals(fingerprintOf(file), fingerprint());
+	}
+
+	/**
+	 * Checks if the loaded index is still valid for the current state of the
+	 * database. When the database was modified without notifying the store,
+	 * e.g. via native SQL statements, the index is dropped and this method
+	 * returns false. It also returns false when no index is loaded. This
+	 * requires a few aggregate queries, so it should be called once before a
+	 * sequence of requests and not for each request.
+	 */
+	public synchronized boolean validate() {
+		if (state == null)
+			return false;
+		var fingerprint = fingerprint();
+		if (stateFingerprint == null) {
+			stateFingerprint = fingerprint;
+			return true;
+		}
+		if (Arrays.equals(stateFingerprint, fingerprint))
+			return true;
+		state = null;
+		stateFingerprint = null;
+		dirty = false;
+		deleteFile();
+		return false;
+	}
+
+	/**
+	 * Drops the index from memory and deletes the stored index. A new index is
+	 * created on the next access.
+	 */
+	public void invalidate() {
+		// wait for a running save, so that it cannot restore the file
+		synchronized (saveLock) {
+			synchronized (this) {
+				state = null;
+				stateFingerprint = null;
+				dirty = false;
+				var file = file();
+				if (file != null && file.exists()) {
+					try {
+						Files.delete(file.toPath());
+					} catch (IOException e) {
+						LoggerFactory.getLogger(getClass())
+							.warn("failed to delete provider index " + file, e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the providers of the given product or waste flow. This includes
+	 * processes and product systems.
+	 */
+	public synchronized List<TechFlow> providersOf(long flowId) {
+		return state().providersOf(flowId, true);
+	}
+
+	/**
+	 * Returns the process providers of the given product or waste flow.
+	 */
+	public synchronized List<TechFlow> processProvidersOf(long flowId) {
+		return state().providersOf(flowId, false);
+	}
+
+	/**
+	 * Returns all process providers of product and waste flows.
+	 */
+	public synchronized List<TechFlow> processProviders() {
+		var s = state();
+		var list = new ArrayList<TechFlow>();
+		s.providers.forEachKey(flowId -> {
+			list.addAll(s.providersOf(flowId, false));
+			return true;
+		});
+		return list;
+	}
+
+	/**
+	 * Returns the provider with the given process or product system ID and
+	 * flow ID, or {@code null} if there is no such process or product system or
+	 * flow in the database. Note that this does not check if the provider
+	 * really has the flow as product output or waste input.
+	 */
+	public synchronized TechFlow providerOf(long providerId, long flowId) {
+		var s = state();
+		var flow = s.flows.get(flowId);
+		if (flow == null)
+			return null;
+		var provider = s.providerOf(providerId);
+		return provider != null
+			? TechFlow.of(provider, flow)
+			: null;
+	}
+
+	public synchronized ProcessDescriptor processOf(long processId) {
+		return state().processes.get(processId);
+	}
+
+	public synchronized ProcessType processTypeOf(long processId) {
+		var d = state().processes.get(processId);
+		return d != null ? d.processType : null;
+	}
+
+	/**
+	 * Returns the product or waste flow with the given ID.
+	 */
+	public synchronized FlowDescriptor flowOf(long flowId) {
+		return state().flows.get(flowId);
+	}
+
+	private State state() {
+		if (state == null) {
+			var fingerprint = fingerprint();
+			state = load(fingerprint);
+			stateFingerprint = fingerprint;
+		}
+		return state;
+	}
+
+	/**
+	 * Stores the changes of the index that are not stored yet. This is done
+	 * in the background after the database was modified, but it can be called
+	 * explicitly, e.g. before the database is closed.
+	 */
+	public void flush() {
+		synchronized (saveLock) {
+			synchronized (this) {
+				saveScheduled = false;
+				if (!dirty || state == null || file() == null)
+					return;
+			}
+			try {
+				// the fingerprint is taken before the providers are copied:
+				// when the database is modified in between, the fingerprint is
+				// older than the stored providers and the file is not used
+				var fingerprint = fingerprint();
+				TLongObjectHashMap<TLongArrayList> providers;
+				synchronized (this) {
+					if (!dirty || state == null)
+						return;
+					dirty = false;
+					providers = state.copyProviders();
+				}
+				save(providers, fingerprint);
+			} catch (Exception e) {
+				LoggerFactory.getLogger(getClass())
+					.warn("failed to store provider index", e);
+			}
+		}
+	}
+
+	private void scheduleSave() {
+		if (saveScheduled || file() == null)
+			return;
+		saveScheduled = true;
+		saver().schedule(this::flush, SAVE_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	private static synchronized ScheduledExecutorService saver() {
+		if (saver == null) {
+			saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				var thread = new Thread(runnable, "olca-provider-store");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return saver;
+	}
+
+	@Override
+	public void modelInserted(Descriptor d) {
+		onChange(d, Change.INSERT);
+	}
+
+	@Override
+	public void modelUpdated(Descriptor d) {
+		onChange(d, Change.UPDATE);
+	}
+
+	@Override
+	public void modelDeleted(Descriptor d) {
+		onChange(d, Change.DELETE);
+	}
+
+	@Override
+	public void databaseCleared() {
+		invalidate();
+	}
+
+	private enum Change {
+		INSERT, UPDATE, DELETE
+	}
+
+	private synchronized void onChange(Descriptor d, Change change) {
+		if (d == null || d.type == null)
+			return;
+		switch (d.type) {
+			case PROCESS, PRODUCT_SYSTEM, FLOW -> {
+			}
+			default -> {
+				return;
+			}
+		}
+		if (state == null) {
+			// nothing loaded, but a stored index is outdated now
+			deleteFile();
+			return;
+		}
+		// the fingerprint of the updated index is taken on the next validation
+		stateFingerprint = null;
+		boolean deleted = change == Change.DELETE;
+		switch (d.type) {
+			case PROCESS -> {
+				state.removeProvider(d.id);
+				if (!deleted && d instanceof ProcessDescriptor p) {
+					state.processes.put(p.id, p);
+					state.scanProcess(db, p.id);
+				}
+			}
+			case PRODUCT_SYSTEM -> {
+				state.removeProvider(d.id);
+				if (!deleted && d instanceof ProductSystemDescriptor s) {
+					state.systems.put(s.id, s);
+					state.scanSystem(db, s.id);
+				}
+			}
+			case FLOW -> {
+				if (deleted) {
+					state.removeFlow(d.id);
+				} else if (d instanceof FlowDescriptor f) {
+					// elementary flows are not stored in the index
+					var old = state.flows.get(f.id);
+					var oldType = old != null
+						? old.flowType
+						: FlowType.ELEMENTARY_FLOW;
+					if (change == Change.UPDATE && oldType != f.flowType) {
+						// the providers of the flow may have changed
+						state = null;
+						dirty = false;
+						deleteFile();
+						return;
+					}
+					if (f.flowType != FlowType.ELEMENTARY_FLOW) {
+						state.flows.put(f.id, f);
+					}
+				}
+			}
+			default -> {
+			}
+		}
+		dirty = true;
+		scheduleSave();
+	}
+
+	private State load(long[] fingerprint) {
+		var file = file();
+		if (file != null && file.exists()
+			&& Arrays.equals(fingerprintOf(file), fingerprint)) {
+			var stored = read(file);
+			if (stored != null)
+				return stored;
+		}
+		var fresh = State.scan(db);
+		save(fresh.providers, fingerprint);
+		return fresh;
+	}
+
+	/**
+	 * Returns the file of the stored index, or {@code null} if the index is
+	 * not stored for the database (e.g. for in-memory databases).
+	 */
+	File file() {
+		if (db instanceof Derby derby && derby.isInMemory())
+			return null;
+		var dir = db.getFileStorageLocation();
+		return dir != null
+			? new File(dir, FILE_NAME)
+			: null;
+	}
+
+	private void deleteFile() {
+		var file = file();
+		if (file != null && file.exists()) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Returns a fingerprint of the current database state that is used to
+	 * check if a stored index is still valid. Note that the ID sequence alone
+	 * is not sufficient for this, as IDs are allocated in blocks.
+	 */
+	private long[] fingerprint() {
+		var fp = new long[FINGERPRINT_SIZE];
+		var sql = NativeSql.on(db);
+		var seqQuery = "select seq_count from sequence where seq_name = 'entity_seq'";
+		sql.query(seqQuery, r -> {
+			fp[0] = r.getLong(1);
+			return false;
+		});
+		var tables = new String[]{
+			"tbl_processes", "tbl_product_systems", "tbl_flows"};
+		for (int i = 0; i < tables.length; i++) {
+			int offset = 1 + 3 * i;
+			var query = "select count(*), max(id), max(last_change) from "
+				+ tables[i];
+			sql.query(query, r -> {
+				fp[offset] = r.getLong(1);
+				fp[offset + 1] = r.getLong(2);
+				fp[offset + 2] = r.getLong(3);
+				return false;
+			});
+		}
+		return fp;
+	}
+
+	private long[] fingerprintOf(File file) {
+		try (var in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readInt() != MAGIC)
+				return null;
+			var fp = new long[FINGERPRINT_SIZE];
+			for (int i = 0; i < fp.length; i++) {
+				fp[i] = in.readLong();
+			}
+			return fp;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the given flow -> provider ID mappings. The descriptors are
+	 * loaded from the database when the index is read.
+	 */
+	private void save(
+		TLongObjectHashMap<TLongArrayList> providers, long[] fingerprint) {
+		var file = file();
+		if (file == null)
+			return;
+		try {
+			var tmp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+			try (var out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				for (long v : fingerprint) {
+					out.writeLong(v);
+				}
+				out.writeInt(providers.size());
+				var it = providers.iterator();
+				while (it.hasNext()) {
+					it.advance();
+					var ids = it.value();
+					out.writeLong(it.key());
+					out.writeInt(ids.size());
+					for (int i = 0; i < ids.size(); i++) {
+						out.writeLong(ids.get(i));
+					}
+				}
+			}
+			Files.move(tmp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			LoggerFactory.getLogger(getClass())
+				.warn("failed to write provider index " + file, e);
+		}
+	}
+
+	private State read(File file) {
+		var s = State.descriptors(db);
+		try (var in = new DataInputStream(new BufferedInputStream(
+			new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				return null;
+			in.skipNBytes(8L * FINGERPRINT_SIZE);
+			int flowCount = in.readInt();
+			for (int i = 0; i < flowCount; i++) {
+				long flowId = in.readLong();
+				int n = in.readInt();
+				for (int j = 0; j < n; j++) {
+					s.put(flowId, in.readLong());
+				}
+			}
+			return s;
+		} catch (IOException e) {
+			LoggerFactory.getLogger(getClass())
+				.warn("failed to read provider index " + file, e);
+			return null;
+		}
+	}
+
+	private static class State {
+
+		final TLongObjectHashMap<ProcessDescriptor> processes;
+		final TLongObjectHashMap<ProductSystemDescriptor> systems;
+		final TLongObjectHashMap<FlowDescriptor> flows;
+
+		/**
+		 * Maps the IDs of product and waste flows to the IDs of the processes
+		 * and product systems that provide these flows.
+		 */
+		final TLongObjectHashMap<TLongArrayList> providers;
+
+		/**
+		 * The reverse mapping of {@link #providers}: maps the IDs of the
+		 * processes and product systems to the IDs of their provider flows.
+		 */
+		final TLongObjectHashMap<TLongArrayList> providerFlows;
+
+		private State(
+			TLongObjectHashMap<ProcessDescriptor> processes,
+			TLongObjectHashMap<ProductSystemDescriptor> systems,
+			TLongObjectHashMap<FlowDescriptor> flows) {
+			this.processes = processes;
+			this.systems = systems;
+			this.flows = flows;
+			this.providers = new TLongObjectHashMap<>();
+			this.providerFlows = new TLongObjectHashMap<>();
+		}
+
+		static State descriptors(IDatabase db) {
+			var flows = new TLongObjectHashMap<FlowDescriptor>();
+			for (var f : new FlowDao(db).getDescriptors(
+				FlowType.PRODUCT_FLOW, FlowType.WASTE_FLOW)) {
+				flows.put(f.id, f);
+			}
+			return new State(
+				new ProcessDao(db).descriptorMap(),
+				new ProductSystemDao(db).descriptorMap(),
+				flows);
+		}
+
+		static State scan(IDatabase db) {
+			var log = LoggerFactory.getLogger(ProviderStore.class);
+			log.trace("scan providers of the database");
+			var s = descriptors(db);
+			var sql = NativeSql.on(db);
+			var processQuery = "select f_owner, f_flow, is_input from tbl_exchanges";
+			sql.query(processQuery, r -> {
+				long processId = r.getLong(1);
+				if (!s.processes.containsKey(processId))
+					return true;
+				s.putIfProvider(processId, r.getLong(2), r.getBoolean(3));
+				return true;
+			});
+			var systemQuery = """
+				select s.id, e.f_flow from tbl_product_systems s
+						inner join tbl_exchanges e
+						on s.f_reference_exchange = e.id
+				""";
+			sql.query(systemQuery, r -> {
+				s.put(r.getLong(2), r.getLong(1));
+				return true;
+			});
+			log.trace("{} provider flows mapped", s.providers.size());
+			return s;
+		}
+
+		void scanProcess(IDatabase db, long processId) {
+			var query = "select f_flow, is_input from tbl_exchanges"
+				+ " where f_owner = " + processId;
+			NativeSql.on(db).query(query, r -> {
+				putIfProvider(processId, r.getLong(1), r.getBoolean(2));
+				return true;
+			});
+		}
+
+		void scanSystem(IDatabase db, long systemId) {
+			var query = "select e.f_flow from tbl_product_systems s"
+				+ " inner join tbl_exchanges e"
+				+ " on s.f_reference_exchange = e.id"
+				+ " where s.id = " + systemId;
+			NativeSql.on(db).query(query, r -> {
+				put(r.getLong(1), systemId);
+				return true;
+			});
+		}
+
+		private void putIfProvider(long processId, long flowId, boolean isInput) {
+			var flow = flows.get(flowId);
+			if (flow == null)
+				return;
+			var type = flow.flowType;
+			if ((isInput && type == FlowType.WASTE_FLOW)
+				|| (!isInput && type == FlowType.PRODUCT_FLOW)) {
+				put(flowId, processId);
+			}
+		}
+
+		void put(long flowId, long providerId) {
+			if (!flows.containsKey(flowId))
+				return;
+			var ids = providers.get(flowId);
+			if (ids == null) {
+				ids = new TLongArrayList(2);
+				providers.put(flowId, ids);
+			}
+			if (ids.contains(providerId))
+				return;
+			ids.add(providerId);
+			var flowIds = providerFlows.get(providerId);
+			if (flowIds == null) {
+				flowIds = new TLongArrayList(2);
+				providerFlows.put(providerId, flowIds);
+			}
+			flowIds.add(flowId);
+		}
+
+		TLongObjectHashMap<TLongArrayList> copyProviders() {
+			var copy = new TLongObjectHashMap<TLongArrayList>(providers.size());
+			providers.forEachEntry((flowId, ids) -> {
+				copy.put(flowId, new TLongArrayList(ids));
+				return true;
+			});
+			return copy;
+		}
+
+		void removeProvider(long providerId) {
+			processes.remove(providerId);
+			systems.remove(providerId);
+			var flowIds = providerFlows.remove(providerId);
+			if (flowIds == null)
+				return;
+			flowIds.forEach(flowId -> {
+				var ids = providers.get(flowId);
+				if (ids == null)
+					return true;
+				ids.remove(providerId);
+				if (ids.isEmpty()) {
+					providers.remove(flowId);
+				}
+				return true;
+			});
+		}
+
+		void removeFlow(long flowId) {
+			flows.remove(flowId);
+			var ids = providers.remove(flowId);
+			if (ids == null)
+				return;
+			ids.forEach(providerId -> {
+				var flowIds = providerFlows.get(providerId);
+				if (flowIds != null) {
+					flowIds.remove(flowId);
+				}
+				return true;
+			});
+		}
+
+		RootDescriptor providerOf(long id) {
+			var process = processes.get(id);
+			return process != null
+				? process
+				: systems.get(id);
+		}
+
+		List<TechFlow> providersOf(long flowId, boolean withSystems) {
+			var flow = flows.get(flowId);
+			var ids = providers.get(flowId);
+			if (flow == null || ids == null)
+				return Collections.emptyList();
+			var list = new ArrayList<TechFlow>(ids.size());
+			for (int i = 0; i < ids.size(); i++) {
+				long id = ids.get(i);
+				RootDescriptor provider = withSystems
+					? providerOf(id)
+					: processes.get(id);
+				if (provider != null) {
+					list.add(TechFlow.of(provider, flow));
+				}
+			}
+			return list;
+		}
+	}
+}
@@ -113,6 +113,22 @@ public class CSCMatrix implements MatrixReader {
 				values.toArray(), columnPointers, rowIndices.toArray());
 	}
 
+	/**
+	 * Returns true if the given matrix has the same sparsity pattern as this
+	 * matrix, which means that it has the same shape and the same positions of
+	 * the stored entries. The values of the entries can be different.
+	 */
+	public boolean hasSamePattern(CSCMatrix other) {
+		if (other == null)
+			return false;
+		if (other == this)
+			return true;
+		return rows == other.rows
+				&& columns == other.columns
+				&& Arrays.equals(columnPointers, other.columnPointers)
+				&& Arrays.equals(rowIndices, other.rowIndices);
+	}
+
 	@Override
 	public int columns() {
 		return columns;
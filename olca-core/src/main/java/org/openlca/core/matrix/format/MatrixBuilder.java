@@ -10,6 +10,10 @@ import org.slf4j.LoggerFactory;
  * growing dense matrix block and fast array copying if the fill rate exceeds a
  * specific value. See https://github.com/msrocka/blockm for further
  * information.
+ * <p>
+ * A builder that is created via {@link #ofTriplets()} collects the values as
+ * triplets instead and compresses them directly into a {@link CSCMatrix} when
+ * the matrix is finished via {@link #finishReader()}.
  */
 public class MatrixBuilder {
 
@@ -24,6 +28,11 @@ public class MatrixBuilder {
 	private int denseCols; // we need these because
 	private int denseRows; // dense is null by default
 
+	/**
+	 * Is only set for builders that collect triplets.
+	 */
+	private final TripletBuilder triplets;
+
 	public MatrixBuilder() {
 		this(0.4, 10_000);
 	}
@@ -35,9 +44,34 @@ public class MatrixBuilder {
 	public MatrixBuilder(double maxSparseFileRate, int checkpoint) {
 		this.maxSparseFileRate = maxSparseFileRate;
 		this.checkpoint = checkpoint;
+		this.triplets = null;
+	}
+
+	private MatrixBuilder(TripletBuilder triplets) {
+		this.maxSparseFileRate = 0.4;
+		this.checkpoint = 10_000;
+		this.triplets = triplets;
+	}
+
+	/**
+	 * Creates a builder that collects the matrix entries as triplets in
+	 * primitive arrays instead of a hash map. This needs less memory and is
+	 * faster for large sparse matrices, but the matrix should then be
+	 * finished via {@link #finishReader()}.
+	 */
+	public static MatrixBuilder ofTriplets() {
+		return new MatrixBuilder(new TripletBuilder());
+	}
+
+	public boolean isTripletBuilder() {
+		return triplets != null;
 	}
 
 	public void minSize(int rows, int cols) {
+		if (triplets != null) {
+			triplets.minSize(rows, cols);
+			return;
+		}
 		if (sparse.rows < rows) {
 			sparse.rows = rows;
 		}
@@ -47,6 +81,8 @@ public class MatrixBuilder {
 	}
 
 	public boolean isEmpty() {
+		if (triplets != null)
+			return triplets.isEmpty();
 		return dense == null && sparse.isEmpty();
 	}
 
@@ -56,6 +92,10 @@ public class MatrixBuilder {
 	public void set(int row, int col, double val) {
 		if (row < 0 || col < 0)
 			return;
+		if (triplets != null) {
+			triplets.set(row, col, val);
+			return;
+		}
 		if (row < denseRows && col < denseCols) {
 			dense.set(row, col, val);
 			return;
@@ -86,13 +126,30 @@ public class MatrixBuilder {
 	public void add(int row, int col, double w) {
 		if (w == 0 || row < 0 || col < 0)
 			return;
+		if (triplets != null) {
+			triplets.add(row, col, w);
+			return;
+		}
 		double v = row < denseRows && col < denseCols
 			? dense.get(row, col)
 			: sparse.get(row, col);
 		set(row, col, v + w);
 	}
 
+	/**
+	 * Finishes the matrix. For a triplet builder, this returns the compressed
+	 * column matrix directly (or a dense matrix if the fill rate is high),
+	 * otherwise it is the same as {@link #finish()}.
+	 */
+	public MatrixReader finishReader() {
+		return triplets != null
+			? triplets.finish()
+			: finish();
+	}
+
 	public Matrix finish() {
+		if (triplets != null)
+			return triplets.finish().asMutable();
 		if (dense != null) {
 			mapDense();
 			log.trace("Finish matrix builder with "
@@ -0,0 +1,193 @@
+package org.openlca.core.matrix.format;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A matrix builder that collects the entries of a sparse matrix as triplets
+ * (row, column, value) in growable primitive arrays and compresses them
+ * directly into a {@link CSCMatrix} when the matrix is finished. Compared to
+ * the hash-map based staging of the {@link MatrixBuilder}, this needs only
+ * 16 bytes per entry during the assembly.
+ * <p>
+ * Multiple values for the same cell are summed up, except when a value was
+ * set via {@link #set(int, int, double)}: this replaces the values that were
+ * added to that cell before. Entries that sum up to zero are not stored in
+ * the compressed matrix.
+ */
+public class TripletBuilder {
+
+	private final double maxSparseFillRate;
+
+	private int rows;
+	private int cols;
+	private int size;
+	private int[] rowIndices;
+	private int[] colIndices;
+	private double[] values;
+
+	/**
+	 * Marks the positions of the triplets that were added with {@code set}.
+	 */
+	private final BitSet resets = new BitSet();
+
+	public TripletBuilder() {
+		this(0.4);
+	}
+
+	/**
+	 * Creates a new builder.
+	 *
+	 * @param maxSparseFillRate if the fill rate of the final matrix is larger
+	 *                          than this value, a dense matrix is created
+	 */
+	public TripletBuilder(double maxSparseFillRate) {
+		this.maxSparseFillRate = maxSparseFillRate;
+		rowIndices = new int[1024];
+		colIndices = new int[1024];
+		values = new double[1024];
+	}
+
+	public void minSize(int rows, int cols) {
+		if (this.rows < rows) {
+			this.rows = rows;
+		}
+		if (this.cols < cols) {
+			this.cols = cols;
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of collected triplets.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds the given value to the cell (row, col).
+	 */
+	public void add(int row, int col, double val) {
+		if (val == 0 || row < 0 || col < 0)
+			return;
+		push(row, col, val);
+	}
+
+	/**
+	 * Sets the cell (row, col) to the given value, replacing the values that
+	 * were added to that cell before.
+	 */
+	public void set(int row, int col, double val) {
+		if (row < 0 || col < 0)
+			return;
+		resets.set(size);
+		push(row, col, val);
+	}
+
+	private void push(int row, int col, double val) {
+		if (size == values.length) {
+			int next = size + (size >> 1);
+			rowIndices = Arrays.copyOf(rowIndices, next);
+			colIndices = Arrays.copyOf(colIndices, next);
+			values = Arrays.copyOf(values, next);
+		}
+		rowIndices[size] = row;
+		colIndices[size] = col;
+		values[size] = val;
+		size++;
+		if (row >= rows) {
+			rows = row + 1;
+		}
+		if (col >= cols) {
+			cols = col + 1;
+		}
+	}
+
+	/**
+	 * Creates the matrix from the collected triplets. This is a compressed
+	 * column matrix, or a dense matrix if the fill rate is larger than the
+	 * maximum fill rate of sparse matrices of this builder.
+	 */
+	public MatrixReader finish() {
+		var csc = compress();
+		// double casts to avoid integer overflows
+		double n = (double) rows * (double) cols;
+		if (n > 0 && csc.values.length / n > maxSparseFillRate)
+			return MatrixConverter.dense(csc);
+		return csc;
+	}
+
+	/**
+	 * Sorts the triplets by columns and rows and compresses them into a
+	 * {@link CSCMatrix}. Two stable counting sorts are used for this, so that
+	 * the triplets of the same cell stay in the order in which they were
+	 * added.
+	 */
+	public CSCMatrix compress() {
+
+		// sort by rows
+		var byRow = new int[size];
+		var rowStarts = new int[rows + 1];
+		for (int k = 0; k < size; k++) {
+			rowStarts[rowIndices[k] + 1]++;
+		}
+		for (int i = 0; i < rows; i++) {
+			rowStarts[i + 1] += rowStarts[i];
+		}
+		for (int k = 0; k < size; k++) {
+			byRow[rowStarts[rowIndices[k]]++] = k;
+		}
+
+		// then by columns
+		var order = new int[size];
+		var colStarts = new int[cols + 1];
+		for (int k = 0; k < size; k++) {
+			colStarts[colIndices[k] + 1]++;
+		}
+		for (int j = 0; j < cols; j++) {
+			colStarts[j + 1] += colStarts[j];
+		}
+		var next = Arrays.copyOf(colStarts, cols);
+		for (int k : byRow) {
+			order[next[colIndices[k]]++] = k;
+		}
+
+		// sum up duplicates and drop zeros
+		var columnPointers = new int[cols + 1];
+		var outRows = new int[size];
+		var outValues = new double[size];
+		int nnz = 0;
+		int p = 0;
+		for (int col = 0; col < cols; col++) {
+			columnPointers[col] = nnz;
+			int end = colStarts[col + 1];
+			while (p < end) {
+				int k = order[p];
+				int row = rowIndices[k];
+				double sum = values[k];
+				p++;
+				while (p < end && rowIndices[order[p]] == row) {
+					int q = order[p];
+					sum = resets.get(q)
+						? values[q]
+						: sum + values[q];
+					p++;
+				}
+				if (sum != 0) {
+					outRows[nnz] = row;
+					outValues[nnz] = sum;
+					nnz++;
+				}
+			}
+		}
+		columnPointers[cols] = nnz;
+		return new CSCMatrix(rows, cols,
+			Arrays.copyOf(outValues, nnz),
+			columnPointers,
+			Arrays.copyOf(outRows, nnz));
+	}
+}
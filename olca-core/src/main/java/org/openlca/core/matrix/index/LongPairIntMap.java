@@ -0,0 +1,156 @@
+package org.openlca.core.matrix.index;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map that maps pairs of longs to non-negative
+ * integers. The keys are stored in primitive arrays so that lookups do not
+ * allocate any objects. We use this in the matrix indices to map pairs like
+ * (processId, flowId) or (processId, exchangeId) to positions.
+ * <p>
+ * There is no remove operation, as entries are never removed from these
+ * indices. The map is not thread-safe for modifications.
+ */
+public final class LongPairIntMap {
+
+	private static final int EMPTY = -1;
+
+	private long[] firsts;
+	private long[] seconds;
+	private int[] values;
+	private int mask;
+	private int size;
+
+	public LongPairIntMap() {
+		this(16);
+	}
+
+	public LongPairIntMap(int expectedSize) {
+		int cap = 16;
+		while (cap * 0.75 < expectedSize) {
+			cap <<= 1;
+		}
+		allocate(cap);
+	}
+
+	private void allocate(int cap) {
+		firsts = new long[cap];
+		seconds = new long[cap];
+		values = new int[cap];
+		Arrays.fill(values, EMPTY);
+		mask = cap - 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the value that is mapped to the given pair or -1 if there is no
+	 * such value in this map.
+	 */
+	public int get(long first, long second) {
+		int i = slot(first, second);
+		return values[i];
+	}
+
+	public boolean contains(long first, long second) {
+		return get(first, second) != EMPTY;
+	}
+
+	/**
+	 * Maps the given pair to the given (non-negative) value. Returns the old
+	 * value of that pair or -1 if the pair was not mapped before.
+	 */
+	public int put(long first, long second, int value) {
+		if (value < 0)
+			throw new IllegalArgumentException(
+				"only non-negative values can be stored: " + value);
+		int i = slot(first, second);
+		int old = values[i];
+		values[i] = value;
+		if (old != EMPTY)
+			return old;
+		firsts[i] = first;
+		seconds[i] = second;
+		size++;
+		if (size > (values.length >> 1) + (values.length >> 2)) {
+			grow();
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * Maps the given pair to the given value if it is not mapped yet. Returns
+	 * the current value of the pair or -1 if the given value was added.
+	 */
+	public int putIfAbsent(long first, long second, int value) {
+		int current = get(first, second);
+		if (current != EMPTY)
+			return current;
+		put(first, second, value);
+		return EMPTY;
+	}
+
+	/**
+	 * Calls the given function for each entry of this map.
+	 */
+	public void each(EntryConsumer fn) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != EMPTY) {
+				fn.accept(firsts[i], seconds[i], values[i]);
+			}
+		}
+	}
+
+	public LongPairIntMap copy() {
+		var copy = new LongPairIntMap(1);
+		copy.firsts = firsts.clone();
+		copy.seconds = seconds.clone();
+		copy.values = values.clone();
+		copy.mask = mask;
+		copy.size = size;
+		return copy;
+	}
+
+	private int slot(long first, long second) {
+		int i = mix(first, second) & mask;
+		while (values[i] != EMPTY
+			&& (firsts[i] != first || seconds[i] != second)) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void grow() {
+		var oldFirsts = firsts;
+		var oldSeconds = seconds;
+		var oldValues = values;
+		allocate(oldValues.length << 1);
+		for (int i = 0; i < oldValues.length; i++) {
+			int value = oldValues[i];
+			if (value == EMPTY)
+				continue;
+			int j = slot(oldFirsts[i], oldSeconds[i]);
+			firsts[j] = oldFirsts[i];
+			seconds[j] = oldSeconds[i];
+			values[j] = value;
+		}
+	}
+
+	private static int mix(long first, long second) {
+		long h = first * 0x9E3779B97F4A7C15L + second;
+		h ^= h >>> 32;
+		h *= 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 29));
+	}
+
+	@FunctionalInterface
+	public interface EntryConsumer {
+		void accept(long first, long second, int value);
+	}
+}
@@ -1,8 +1,14 @@
 package org.openlca.core.matrix.index;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -23,6 +29,7 @@ import org.openlca.core.matrix.linking.LinkingInfo;
 import org.openlca.core.model.CalculationSetup;
 import org.openlca.core.model.FlowType;
 import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.descriptors.Descriptor;
 import org.openlca.core.model.descriptors.RootDescriptor;
 
 import gnu.trove.map.hash.TLongObjectHashMap;
@@ -40,18 +47,24 @@ public final class TechIndex implements TechLinker, MatrixIndex<TechFlow> {
 	 * Maps the product-outputs and waste-inputs as (processId, flowId) pairs to an
 	 * ordinal index.
 	 */
-	private final HashMap<TechFlow, Integer> index = new HashMap<>();
+	private final LongPairIntMap index;
 
 	/**
 	 * Contains the product-outputs and waste-inputs in an ordinal list.
 	 */
-	private final ArrayList<TechFlow> providers = new ArrayList<>();
+	private final ArrayList<TechFlow> providers;
 
 	/**
 	 * Maps linked exchanges (keys) as (processId, exchangeId) pairs to the
-	 * respective provider.
+	 * ordinal index of the respective provider.
 	 */
-	private final HashMap<LongPair, TechFlow> links = new HashMap<>();
+	private final LongPairIntMap links;
+
+	/**
+	 * A cached, unmodifiable set of the linked exchanges; it is created on
+	 * demand and dropped when a link is added.
+	 */
+	private Set<LongPair> linkedExchanges;
 
 	/**
 	 * Maps the IDs of the processes and product systems to the list of
@@ -60,9 +73,17 @@ public final class TechIndex implements TechLinker, MatrixIndex<TechFlow> {
 	private final TLongObjectHashMap<List<TechFlow>> processProviders = new TLongObjectHashMap<>();
 
 	public TechIndex() {
+		this(16);
+	}
+
+	private TechIndex(int expectedSize) {
+		index = new LongPairIntMap(expectedSize);
+		providers = new ArrayList<>(expectedSize);
+		links = new LongPairIntMap();
 	}
 
 	public TechIndex(TechFlow first) {
+		this(16);
 		add(first);
 	}
 
@@ -210,8 +231,18 @@ public final class TechIndex implements TechLinker, MatrixIndex<TechFlow> {
 	 */
 	@Override
 	public int of(TechFlow provider) {
-		var idx = index.get(provider);
-		return idx == null ? -1 : idx;
+		if (provider == null)
+			return -1;
+		return index.get(idOf(provider.provider()), idOf(provider.flow()));
+	}
+
+	/**
+	 * Returns the ordinal index of the provider with the given process (or
+	 * product system or result) and flow ID. If there is no such provider in
+	 * this index, -1 is returned.
+	 */
+	public int of(long providerId, long flowId) {
+		return index.get(providerId, flowId);
 	}
 
 	/**
@@ -219,7 +250,7 @@ public final class TechIndex implements TechLinker, MatrixIndex<TechFlow> {
 	 * the given IDs.
 	 */
 	public boolean contains(long processID, long flowID) {
-		return getProvider(processID, flowID) != null;
+		return index.contains(processID, flowID);
 	}
 
 	@Override
@@ -230,14 +261,8 @@ public final class TechIndex implements TechLinker, MatrixIndex<TechFlow> {
 	}
 
 	public TechFlow getProvider(long processId, long flowId) {
-		List<TechFlow> list = processProviders.get(processId);
-		if (list == null)
-			return null;
-		for (TechFlow p : list) {
-			if (p.flowId() == flowId)
-				return p;
-		}
-		return null;
+		int pos = index.get(processId, flowId);
+		return pos < 0 ? null : providers.get(pos);
 	}
 
 	/**
@@ -247,11 +272,11 @@ public final class TechIndex implements TechLinker, MatrixIndex<TechFlow> {
 	 */
 	@Override
 	public int add(TechFlow provider) {
-		var existing = index.get(provider);
-		if (existing != null)
-			return existing;
 		int pos = index.size();
-		index.put(provider, pos);
+		int existing = index.putIfAbsent(
+			idOf(provider.provider()), idOf(provider.flow()), pos);
+		if (existing >= 0)
+			return existing;
 		var list = processProviders.get(provider.providerId());
 		if (list == null) {
 			list = new ArrayList<>();
@@ -308,15 +333,24 @@ public final class TechIndex implements TechLinker, MatrixIndex<TechFlow> {
 	 *                 flowId) pair.
 	 */
 	public void putLink(LongPair exchange, TechFlow provider) {
-		if (links.containsKey(exchange))
+		putLink(exchange.first(), exchange.second(), provider);
+	}
+
+	/**
+	 * Same as {@link #putLink(LongPair, TechFlow)} but with the process and
+	 * exchange ID of the linked exchange as separate values.
+	 */
+	public void putLink(long processId, long exchangeId, TechFlow provider) {
+		if (links.contains(processId, exchangeId))
 			return;
-		add(provider);
-		links.put(exchange, provider);
+		int pos = add(provider);
+		links.put(processId, exchangeId, pos);
+		linkedExchanges = null;
 	}
 
 	@Override
 	public TechFlow providerOf(CalcExchange e) {
-		return getLinkedProvider(LongPair.of(e.processId, e.exchangeId));
+		return getLinkedProvider(e.processId, e.exchangeId);
 	}
 
 	/**
@@ -331,15 +365,44 @@ public final class TechIndex implements TechLinker, MatrixIndex<TechFlow> {
 	 * exchange (product-input or waste-output)
 	 */
 	public TechFlow getLinkedProvider(LongPair exchange) {
-		return links.get(exchange);
+		return exchange != null
+			? getLinkedProvider(exchange.first(), exchange.second())
+			: null;
+	}
+
+	/**
+	 * Returns the linked provider of the exchange with the given process and
+	 * exchange ID or {@code null} if there is no such link in this index.
+	 */
+	public TechFlow getLinkedProvider(long processId, long exchangeId) {
+		int pos = links.get(processId, exchangeId);
+		return pos < 0 ? null : providers.get(pos);
+	}
+
+	/**
+	 * Returns true if the exchange with the given process and exchange ID is
+	 * linked to a provider of this index.
+	 */
+	public boolean isLinked(long processId, long exchangeId) {
+		return links.contains(processId, exchangeId);
 	}
 
 	/**
 	 * Returns all exchanges (product-inputs and waste-outputs) that are linked to
-	 * provider of this index.
+	 * provider of this index. The returned set is unmodifiable and cached until
+	 * the next link is added; use {@link #isLinked(long, long)} to check single
+	 * exchanges.
 	 */
 	public Set<LongPair> getLinkedExchanges() {
-		return links.keySet();
+		var cached = linkedExchanges;
+		if (cached != null)
+			return cached;
+		var set = new HashSet<LongPair>(2 * links.size());
+		links.each((processId, exchangeId, pos)
+			-> set.add(LongPair.of(processId, exchangeId)));
+		cached = Collections.unmodifiableSet(set);
+		linkedExchanges = cached;
+		return cached;
 	}
 
 	/**
@@ -364,13 +427,11 @@ public final class TechIndex implements TechLinker, MatrixIndex<TechFlow> {
 
 	@Override
 	public TechIndex copy() {
-		var copy = new TechIndex();
+		var copy = new TechIndex(providers.size());
 		for (var p : providers) {
 			copy.add(p);
 		}
-		if (!links.isEmpty()) {
-			copy.links.putAll(links);
-		}
+		links.each(copy.links::put);
 		return copy;
 	}
 
@@ -378,4 +439,117 @@ public final class TechIndex implements TechLinker, MatrixIndex<TechFlow> {
 	public Iterator<TechFlow> iterator() {
 		return Collections.unmodifiableList(providers).iterator();
 	}
+
+	private static long idOf(Descriptor d) {
+		return d != null ? d.id : 0;
+	}
+
+	/**
+	 * Writes this index in a compact binary format to the given stream. Only the
+	 * IDs of the providers and links are written; the descriptors are resolved
+	 * from the database when the index is read via
+	 * {@link #readFrom(InputStream, IDatabase)}.
+	 */
+	public void writeTo(OutputStream stream) throws IOException {
+		var out = new DataOutputStream(new BufferedOutputStream(stream));
+		out.writeInt(MAGIC);
+		out.writeInt(providers.size());
+		for (var p : providers) {
+			out.writeByte(typeOf(p.provider()));
+			out.writeLong(p.providerId());
+			out.writeLong(p.flowId());
+		}
+		out.writeInt(links.size());
+		var err = new IOException[1];
+		links.each((processId, exchangeId, pos) -> {
+			if (err[0] != null)
+				return;
+			try {
+				out.writeLong(processId);
+				out.writeLong(exchangeId);
+				out.writeInt(pos);
+			} catch (IOException e) {
+				err[0] = e;
+			}
+		});
+		if (err[0] != null)
+			throw err[0];
+		out.flush();
+	}
+
+	/**
+	 * Reads an index that was written via {@link #writeTo(OutputStream)}. The
+	 * descriptors of the providers and flows are loaded from the given database.
+	 * Returns {@code null} when a provider or flow of the stored index does not
+	 * exist in the database anymore, which means that the stored index is
+	 * outdated.
+	 */
+	public static TechIndex readFrom(InputStream stream, IDatabase db)
+		throws IOException {
+		var in = new DataInputStream(new BufferedInputStream(stream));
+		if (in.readInt() != MAGIC)
+			throw new IOException("not a binary tech-index");
+		int n = in.readInt();
+		var index = new TechIndex(n);
+		TLongObjectHashMap<? extends RootDescriptor> processes = null;
+		TLongObjectHashMap<? extends RootDescriptor> systems = null;
+		TLongObjectHashMap<? extends RootDescriptor> results = null;
+		var flows = new FlowDao(db).descriptorMap();
+		for (int i = 0; i < n; i++) {
+			byte type = in.readByte();
+			long providerId = in.readLong();
+			long flowId = in.readLong();
+			RootDescriptor provider = null;
+			switch (type) {
+				case PROCESS -> {
+					if (processes == null) {
+						processes = new ProcessDao(db).descriptorMap();
+					}
+					provider = processes.get(providerId);
+				}
+				case SYSTEM -> {
+					if (systems == null) {
+						systems = new ProductSystemDao(db).descriptorMap();
+					}
+					provider = systems.get(providerId);
+				}
+				case RESULT -> {
+					if (results == null) {
+						results = new ResultDao(db).descriptorMap();
+					}
+					provider = results.get(providerId);
+				}
+				default -> throw new IOException("invalid provider type: " + type);
+			}
+			var flow = flows.get(flowId);
+			if (provider == null || flow == null)
+				return null;
+			index.add(TechFlow.of(provider, flow));
+		}
+		int linkCount = in.readInt();
+		for (int i = 0; i < linkCount; i++) {
+			long processId = in.readLong();
+			long exchangeId = in.readLong();
+			int pos = in.readInt();
+			if (pos < 0 || pos >= n)
+				throw new IOException("invalid provider position: " + pos);
+			index.links.put(processId, exchangeId, pos);
+		}
+		return index;
+	}
+
+	private static final int MAGIC = 0x6F6C7469; // "olti"
+	private static final byte PROCESS = 0;
+	private static final byte SYSTEM = 1;
+	private static final byte RESULT = 2;
+
+	private static byte typeOf(RootDescriptor d) {
+		if (d == null || d.type == null)
+			return PROCESS;
+		return switch (d.type) {
+			case PRODUCT_SYSTEM -> SYSTEM;
+			case RESULT -> RESULT;
+			default -> PROCESS;
+		};
+	}
 }
@@ -0,0 +1,117 @@
+package org.openlca.core.matrix.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+import org.openlca.npy.NpyByteOrder;
+import org.openlca.npy.NpyDataType;
+import org.openlca.npy.dict.NpyHeaderDict;
+import org.openlca.util.Dirs;
+
+/**
+ * Writes a dense matrix column by column into a npy file in Fortran order,
+ * so that large matrices can be written without holding them in memory. The
+ * file is created with its full size when the writer is opened; columns that
+ * are not written contain zeros. The columns can be written in any order and
+ * from multiple threads. The file can be read with {@link NpyMatrix} or
+ * column-wise with {@link org.openlca.npy.Array2d#readColumn}.
+ */
+public final class NpyColumnWriter implements AutoCloseable {
+
+	private final File file;
+	private final int rows;
+	private final int columns;
+	private final long dataOffset;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+
+	private NpyColumnWriter(File file, int rows, int columns) throws IOException {
+		this.file = file;
+		this.rows = rows;
+		this.columns = columns;
+		var header = NpyHeaderDict.of(NpyDataType.f8)
+			.withByteOrder(NpyByteOrder.LITTLE_ENDIAN)
+			.withFortranOrder(true)
+			.withShape(new int[]{rows, columns})
+			.create()
+			.toNpyHeader();
+		this.dataOffset = header.length;
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+		raf.setLength(0);
+		channel.write(ByteBuffer.wrap(header), 0);
+		raf.setLength(dataOffset + (long) rows * columns * Double.BYTES);
+	}
+
+	/**
+	 * Creates a writer for a matrix with the given dimensions into a npy file
+	 * with the given name in the given folder. An existing file is replaced.
+	 *
+	 * @param folder  the folder of the matrix file
+	 * @param name    the name of the matrix file without file extension
+	 * @param rows    the number of rows of the matrix
+	 * @param columns the number of columns of the matrix
+	 */
+	public static NpyColumnWriter create(
+		File folder, String name, int rows, int columns) {
+		Objects.requireNonNull(folder);
+		Objects.requireNonNull(name);
+		Dirs.createIfAbsent(folder);
+		var file = new File(folder, name + ".npy");
+		try {
+			return new NpyColumnWriter(file, rows, columns);
+		} catch (IOException e) {
+			throw new RuntimeException("failed to create matrix file " + file, e);
+		}
+	}
+
+	public File file() {
+		return file;
+	}
+
+	public int rows() {
+		return rows;
+	}
+
+	public int columns() {
+		return columns;
+	}
+
+	/**
+	 * Writes the values of the column with the given index.
+	 */
+	public void put(int column, double[] values) {
+		if (column < 0 || column >= columns)
+			throw new IndexOutOfBoundsException("column " + column);
+		if (values == null || values.length != rows)
+			throw new IllegalArgumentException(
+				"invalid length of column " + column);
+		var buffer = ByteBuffer.allocate(rows * Double.BYTES)
+			.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asDoubleBuffer().put(values);
+		long position = dataOffset + (long) column * rows * Double.BYTES;
+		try {
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(
+				"failed to write column " + column + " to " + file, e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			channel.force(false);
+			raf.close();
+		} catch (IOException e) {
+			throw new RuntimeException("failed to close matrix file " + file, e);
+		}
+	}
+}
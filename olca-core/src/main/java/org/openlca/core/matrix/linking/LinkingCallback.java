@@ -30,4 +30,13 @@ public interface LinkingCallback {
 	 */
 	List<TechFlow> select(CalcExchange e, List<TechFlow> providerCandidates);
 
+	/**
+	 * Is called by the linker after each expansion step of the supply chain.
+	 *
+	 * @param linked  the number of providers that were already linked
+	 * @param pending the number of providers that are linked next
+	 */
+	default void progress(int linked, int pending) {
+	}
+
 }
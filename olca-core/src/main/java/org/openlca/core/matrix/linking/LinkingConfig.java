@@ -10,6 +10,7 @@ public class LinkingConfig {
 	private ProviderLinking providerLinking = ProviderLinking.PREFER_DEFAULTS;
 	private Double cutoff;
 	private LinkingCallback callback;
+	private boolean parallel;
 
 	public ProcessType preferredType() {
 		return preferredType;
@@ -52,4 +53,18 @@ public class LinkingConfig {
 		this.callback = callback;
 		return this;
 	}
+
+	/**
+	 * Returns true if the providers of the processes in a supply chain level
+	 * should be searched in parallel. Note that the callback of this
+	 * configuration (if present) then needs to be thread-safe.
+	 */
+	public boolean parallel() {
+		return parallel;
+	}
+
+	public LinkingConfig parallel(boolean b) {
+		this.parallel = b;
+		return this;
+	}
 }
@@ -21,7 +21,8 @@ public class LinkingInfo {
 	private final long SMALL_SEQUENCE_LIMIT = 5_000_000L;
 
 	private final IDatabase db;
-	private final List<ProcessDescriptor> processes;
+	private List<ProcessDescriptor> processes;
+	private boolean withProviderStore;
 	private long sequenceCount;
 	private long libraryCount;
 	private long resultCount;
@@ -41,16 +42,17 @@ public class LinkingInfo {
 			return false;
 		});
 
-		processes = new ProcessDao(db).getDescriptors();
-		for (var d : processes) {
-			if (d.isFromLibrary()) {
+		var processQuery = "select library, process_type from tbl_processes";
+		sql.query(processQuery, r -> {
+			if (r.getString(1) != null) {
 				libraryCount++;
-			} else if (d.processType == ProcessType.LCI_RESULT) {
+			} else if (ProcessType.LCI_RESULT.name().equals(r.getString(2))) {
 				resultCount++;
 			} else {
 				unitCount++;
 			}
-		}
+			return true;
+		});
 	}
 
 	public static LinkingInfo of(IDatabase db) {
@@ -61,10 +63,32 @@ public class LinkingInfo {
 		return db;
 	}
 
+	/**
+	 * Returns the descriptors of the processes of the database. They are
+	 * loaded on the first call of this method.
+	 */
 	public List<ProcessDescriptor> processes() {
+		if (processes == null) {
+			processes = new ProcessDao(db).getDescriptors();
+		}
 		return processes;
 	}
 
+	/**
+	 * Enables or disables the use of the shared provider store of the database
+	 * (see {@link org.openlca.core.matrix.cache.ProviderStore}) for linking.
+	 * By default, the store is only used when it is already available, as
+	 * building it requires a scan of the complete exchange table.
+	 */
+	public LinkingInfo withProviderStore(boolean b) {
+		this.withProviderStore = b;
+		return this;
+	}
+
+	public boolean withProviderStore() {
+		return withProviderStore;
+	}
+
 	public boolean preferLazy() {
 		// prefer lazy linking for databases with linked libraries note that the
 		// sequence number is small in this case, but we still want lazy linking
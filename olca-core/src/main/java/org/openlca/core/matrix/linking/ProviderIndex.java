@@ -10,6 +10,7 @@ import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.ProcessDao;
 import org.openlca.core.database.ProductSystemDao;
+import org.openlca.core.matrix.cache.ProviderStore;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.model.FlowType;
 import org.openlca.core.model.descriptors.FlowDescriptor;
@@ -38,7 +39,34 @@ public abstract class ProviderIndex {
 		providers = new TLongObjectHashMap<>();
 	}
 
+	/**
+	 * Constructor for indices that do not use the descriptor maps.
+	 */
+	private ProviderIndex(IDatabase db) {
+		this.db = db;
+		this.processes = null;
+		this.systems = null;
+		this.flows = null;
+		this.providers = null;
+	}
+
+	/**
+	 * Returns an index that is backed by the shared provider store of the
+	 * database if this store is available; otherwise a lazy index is returned.
+	 */
+	public static ProviderIndex of(IDatabase db) {
+		return ProviderStore.of(db).isAvailable()
+			? new StoredIndex(db)
+			: lazy(db);
+	}
+
 	public static ProviderIndex of(LinkingInfo info) {
+		// use the shared provider store only if it is already available or
+		// explicitly enabled, as building it requires a full scan of the
+		// exchange table and writing the stored index
+		if (info.withProviderStore()
+			|| ProviderStore.of(info.db()).isAvailable())
+			return new StoredIndex(info.db());
 		var processes = new TLongObjectHashMap<ProcessDescriptor>(
 			info.processes().size());
 		for (var d : info.processes()) {
@@ -57,6 +85,14 @@ public abstract class ProviderIndex {
 		return new LazyIndex(db, new ProcessDao(db).descriptorMap());
 	}
 
+	/**
+	 * Returns an index that is backed by the shared provider store of the
+	 * database. The store is created if it is not available yet.
+	 */
+	public static ProviderIndex stored(IDatabase db) {
+		return new StoredIndex(db);
+	}
+
 	/**
 	 * Get the TechFlow for the given provider and flow IDs.
 	 *
@@ -194,4 +230,25 @@ public abstract class ProviderIndex {
 				: ps;
 		}
 	}
+
+	private static class StoredIndex extends ProviderIndex {
+
+		private final ProviderStore store;
+
+		StoredIndex(IDatabase db) {
+			super(db);
+			this.store = ProviderStore.of(db);
+			store.validate();
+		}
+
+		@Override
+		public TechFlow of(long providerId, long flowId) {
+			return store.providerOf(providerId, flowId);
+		}
+
+		@Override
+		public List<TechFlow> getProvidersOf(long flowId) {
+			return store.providersOf(flowId);
+		}
+	}
 }
@@ -3,8 +3,10 @@ package org.openlca.core.matrix.linking;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.matrix.index.LongPair;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.cache.ProcessTable;
 import org.openlca.core.model.FlowType;
@@ -13,8 +15,40 @@ import org.openlca.core.model.ProcessType;
 /**
  * Searches for the best provider for a given product input or waste output in
  * the database.
+ * <p>
+ * The provider candidates of a flow are only collected once. Also, when there
+ * is no callback in the linking configuration, the selected provider only
+ * depends on the flow and default provider of an exchange and is also only
+ * searched once for such a combination. The search can be called from
+ * multiple threads, as long as the callback of the configuration (if present)
+ * is thread-safe.
  */
-public record ProviderSearch(ProcessTable processTable, LinkingConfig config) {
+public final class ProviderSearch {
+
+	/**
+	 * Marks the absence of a provider in the selection cache.
+	 */
+	private static final TechFlow NONE = new TechFlow(null, null);
+
+	private final ProcessTable processTable;
+	private final LinkingConfig config;
+	private final ConcurrentHashMap<Long, List<TechFlow>> candidates;
+	private final ConcurrentHashMap<LongPair, TechFlow> selections;
+
+	public ProviderSearch(ProcessTable processTable, LinkingConfig config) {
+		this.processTable = processTable;
+		this.config = config;
+		this.candidates = new ConcurrentHashMap<>();
+		this.selections = new ConcurrentHashMap<>();
+	}
+
+	public ProcessTable processTable() {
+		return processTable;
+	}
+
+	public LinkingConfig config() {
+		return config;
+	}
 
 	/**
 	 * Find the best provider for the given product input or waste output
@@ -23,7 +57,20 @@ public record ProviderSearch(ProcessTable processTable, LinkingConfig config) {
 	public TechFlow find(CalcExchange e) {
 		if (e == null || cancel())
 			return null;
-		List<TechFlow> providers = processTable.getProviders(e.flowId);
+		if (config.callback() != null)
+			return select(e);
+		var key = LongPair.of(e.flowId, e.defaultProviderId);
+		var selected = selections.get(key);
+		if (selected == null) {
+			selected = select(e);
+			selections.put(key, selected != null ? selected : NONE);
+		}
+		return selected != NONE ? selected : null;
+	}
+
+	private TechFlow select(CalcExchange e) {
+		List<TechFlow> providers = candidates.computeIfAbsent(
+				e.flowId, processTable::getProviders);
 		if (providers.isEmpty())
 			return null;
 
@@ -43,7 +90,8 @@ public record ProviderSearch(ProcessTable processTable, LinkingConfig config) {
 		if (providers.size() == 1)
 			return providers.get(0);
 		if (config.callback() != null) {
-			providers = config.callback().select(e, providers);
+			// pass a copy, as the candidate lists are shared
+			providers = config.callback().select(e, new ArrayList<>(providers));
 			if (providers == null || providers.size() == 0)
 				return null;
 			if (providers.size() == 1)
@@ -4,7 +4,6 @@ import java.util.HashSet;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.matrix.cache.ExchangeTable;
-import org.openlca.core.matrix.index.LongPair;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
 import org.openlca.core.model.ProcessType;
@@ -19,7 +18,7 @@ public class SubSystemLinker implements ITechIndexBuilder {
 	private final ExchangeTable exchanges;
 
 	public SubSystemLinker(IDatabase db) {
-		providers = ProviderIndex.lazy(db);
+		providers = ProviderIndex.of(db);
 		exchanges = new ExchangeTable(db);
 	}
 
@@ -44,8 +43,7 @@ public class SubSystemLinker implements ITechIndexBuilder {
 				var provider = providerOf(linkable, refFlow);
 				if (provider == null)
 					continue;
-				var exchange = LongPair.of(linkable.processId(), linkable.exchangeId());
-				index.putLink(exchange, provider);
+				index.putLink(linkable.processId(), linkable.exchangeId(), provider);
 				if (provider.isProcess()) {
 					Long processId = provider.providerId();
 					if (!handled.contains(processId)) {
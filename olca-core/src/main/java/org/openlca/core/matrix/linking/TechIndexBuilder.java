@@ -2,31 +2,47 @@ package org.openlca.core.matrix.linking;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.stream.IntStream;
 
 import org.openlca.core.matrix.CalcExchange;
 import org.openlca.core.matrix.cache.MatrixCache;
-import org.openlca.core.matrix.index.LongPair;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
 import org.openlca.core.model.ProductSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Builds the tech-index of a product system by linking the supply chain of a
+ * reference flow level by level (breadth-first). The exchanges of the
+ * processes of a level are fetched in chunks from the exchange cache. The
+ * providers of the processes of a level can be searched in parallel (see
+ * {@link LinkingConfig#parallel()}); the links are always added in the same
+ * order to the index, so that the result does not depend on this setting.
+ */
 public class TechIndexBuilder implements ITechIndexBuilder {
 
+	/**
+	 * The maximum number of processes for which the exchanges are fetched in
+	 * a single query.
+	 */
+	private static final int FETCH_SIZE = 1000;
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 	private final ProviderSearch providers;
 	private final MatrixCache cache;
 	private final ProductSystem system;
+	private final LinkingConfig config;
 
 	public TechIndexBuilder(MatrixCache cache, ProductSystem system,
 			LinkingConfig config) {
 		this.cache = cache;
 		this.system = system;
+		this.config = config;
 		this.providers = new ProviderSearch(cache.getProcessTable(), config);
 	}
 
@@ -37,33 +53,67 @@ public class TechIndexBuilder implements ITechIndexBuilder {
 		addSystemLinks(index);
 		List<TechFlow> block = new ArrayList<>();
 		block.add(refFlow);
-		var handled = new HashSet<TechFlow>();
+		var queued = new HashSet<TechFlow>();
+		queued.add(refFlow);
+		int linked = 0;
 		while (!block.isEmpty()) {
-			var nextBlock = new ArrayList<TechFlow>();
+			if (isCanceled())
+				break;
 			log.trace("fetch next block with {} entries", block.size());
-			Map<Long, List<CalcExchange>> exchanges = fetchExchanges(block);
-			for (TechFlow recipient : block) {
-				handled.add(recipient);
-				List<CalcExchange> all = exchanges.get(recipient.providerId());
-				List<CalcExchange> candidates = providers
-						.getLinkCandidates(all);
-				for (CalcExchange linkExchange : candidates) {
-					TechFlow provider = providers.find(linkExchange);
-					if (provider == null)
-						continue;
-					LongPair exchange = new LongPair(recipient.providerId(),
-							linkExchange.exchangeId);
-					index.putLink(exchange, provider);
-					if (!handled.contains(provider)
-							&& !nextBlock.contains(provider))
-						nextBlock.add(provider);
+			var exchanges = fetchExchanges(block);
+			var links = linksOf(block, exchanges);
+
+			var nextBlock = new ArrayList<TechFlow>();
+			for (int i = 0; i < block.size(); i++) {
+				var recipient = block.get(i);
+				for (var link : links.get(i)) {
+					index.putLink(recipient.providerId(),
+							link.exchangeId, link.provider);
+					if (queued.add(link.provider)) {
+						nextBlock.add(link.provider);
+					}
 				}
 			}
+			linked += block.size();
 			block = nextBlock;
+			if (config.callback() != null) {
+				config.callback().progress(linked, block.size());
+			}
 		}
 		return index;
 	}
 
+	/**
+	 * Searches the providers of the link candidates of the given recipients.
+	 * The returned list contains the links of the i-th recipient at position
+	 * i.
+	 */
+	private List<List<ProviderLink>> linksOf(
+			List<TechFlow> block, Map<Long, List<CalcExchange>> exchanges) {
+		var links = new ArrayList<List<ProviderLink>>(block.size());
+		for (int i = 0; i < block.size(); i++) {
+			links.add(null);
+		}
+		var range = IntStream.range(0, block.size());
+		if (config.parallel() && block.size() > 1) {
+			range = range.parallel();
+		}
+		range.forEach(i -> {
+			var recipient = block.get(i);
+			var candidates = providers.getLinkCandidates(
+					exchanges.get(recipient.providerId()));
+			var recipientLinks = new ArrayList<ProviderLink>(candidates.size());
+			for (var e : candidates) {
+				var provider = providers.find(e);
+				if (provider != null) {
+					recipientLinks.add(new ProviderLink(e.exchangeId, provider));
+				}
+			}
+			links.set(i, recipientLinks);
+		});
+		return links;
+	}
+
 	private void addSystemLinks(TechIndex index) {
 		if (system == null)
 			return;
@@ -71,25 +121,40 @@ public class TechIndexBuilder implements ITechIndexBuilder {
 			var provider = providers.getProvider(link.providerId, link.flowId);
 			if (provider == null)
 				continue;
-			var exchange = LongPair.of(link.processId, link.exchangeId);
-			index.putLink(exchange, provider);
+			index.putLink(link.processId, link.exchangeId, provider);
 		}
 	}
 
 	private Map<Long, List<CalcExchange>> fetchExchanges(List<TechFlow> block) {
 		if (block.isEmpty())
 			return Collections.emptyMap();
-		Set<Long> processIds = new HashSet<>();
+		var processIds = new ArrayList<Long>(block.size());
+		var seen = new HashSet<Long>(2 * block.size());
 		for (TechFlow provider : block) {
-			processIds.add(provider.providerId());
+			if (seen.add(provider.providerId())) {
+				processIds.add(provider.providerId());
+			}
 		}
 		try {
-			return cache.getExchangeCache().getAll(processIds);
+			var exchangeCache = cache.getExchangeCache();
+			if (processIds.size() <= FETCH_SIZE)
+				return exchangeCache.getAll(processIds);
+			var map = new HashMap<Long, List<CalcExchange>>(2 * processIds.size());
+			for (int i = 0; i < processIds.size(); i += FETCH_SIZE) {
+				int end = Math.min(i + FETCH_SIZE, processIds.size());
+				map.putAll(exchangeCache.getAll(processIds.subList(i, end)));
+			}
+			return map;
 		} catch (Exception e) {
-			Logger log = LoggerFactory.getLogger(getClass());
 			log.error("failed to load exchanges from cache", e);
 			return Collections.emptyMap();
 		}
 	}
 
+	private boolean isCanceled() {
+		return config.callback() != null && config.callback().cancel();
+	}
+
+	private record ProviderLink(long exchangeId, TechFlow provider) {
+	}
 }
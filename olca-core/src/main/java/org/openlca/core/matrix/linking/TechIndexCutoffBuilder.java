@@ -10,7 +10,6 @@ import java.util.Set;
 
 import org.openlca.core.matrix.CalcExchange;
 import org.openlca.core.matrix.cache.MatrixCache;
-import org.openlca.core.matrix.index.LongPair;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
 import org.openlca.core.model.FlowType;
@@ -57,8 +56,7 @@ public class TechIndexCutoffBuilder implements ITechIndexBuilder {
 			var provider = providers.getProvider(link.providerId, link.flowId);
 			if (provider == null)
 				continue;
-			var exchange = LongPair.of(link.processId, link.exchangeId);
-			index.putLink(exchange, provider);
+			index.putLink(link.processId, link.exchangeId, provider);
 		}
 	}
 
@@ -70,9 +68,8 @@ public class TechIndexCutoffBuilder implements ITechIndexBuilder {
 				if (Math.abs(link.demand) < cutoff)
 					continue;
 				Node provider = link.provider;
-				LongPair exchange = LongPair.of(
-					node.flow.providerId(), link.exchangeId);
-				index.putLink(exchange, provider.flow);
+				index.putLink(
+					node.flow.providerId(), link.exchangeId, provider.flow);
 			}
 		}
 	}
@@ -0,0 +1,232 @@
+package org.openlca.core.matrix.solvers;
+
+import java.util.Arrays;
+
+import org.openlca.core.matrix.format.CSCMatrix;
+
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Calculates a fill-reducing ordering of a square sparse matrix $A$ with the
+ * textbook minimum degree algorithm on the graph of $A + A^T$. In each step,
+ * the node with the smallest exact degree is eliminated and its neighbors are
+ * connected to a clique in an explicit elimination graph. Nodes with a very
+ * high degree (like the electricity or transport processes in a technology
+ * matrix) are removed from the graph and placed at the end of the ordering,
+ * as they would only slow down the elimination and would be eliminated last
+ * anyway.
+ * <p>
+ * Note that this is not an approximate minimum degree (AMD) ordering: there
+ * is no quotient graph with element absorption, so the memory of the
+ * elimination graph grows with the fill-in. Thus, the size of the graph is
+ * limited by a budget relative to the number of non-zero entries of $A$. When
+ * this budget is exceeded, the elimination is stopped and the remaining nodes
+ * are appended in the order of their current degrees, which gives more fill-in
+ * but keeps the ordering of large systems in bounded memory and time.
+ */
+final class ExplicitMinimumDegree {
+
+	/**
+	 * The minimum number of edges that the elimination graph can have before
+	 * the elimination is stopped.
+	 */
+	private static final long MIN_EDGE_BUDGET = 1L << 22;
+
+	/**
+	 * The elimination graph can have at most this factor times the number of
+	 * edges of the initial graph (but at least {@link #MIN_EDGE_BUDGET}).
+	 */
+	private static final int EDGE_BUDGET_FACTOR = 10;
+
+	private final int n;
+	private final TIntHashSet[] graph;
+	private long edges;
+
+	// the nodes are stored in doubly linked lists of their degrees
+	private final int[] head;
+	private final int[] next;
+	private final int[] prev;
+	private final int[] degree;
+
+	private ExplicitMinimumDegree(int n) {
+		this.n = n;
+		graph = new TIntHashSet[n];
+		head = new int[n];
+		next = new int[n];
+		prev = new int[n];
+		degree = new int[n];
+		Arrays.fill(head, -1);
+	}
+
+	/**
+	 * Returns the ordering of the columns of the given matrix: the k-th column
+	 * of the ordered matrix is the column {@code order[k]} of the given matrix.
+	 */
+	static int[] order(CSCMatrix a) {
+		return order(a, -1);
+	}
+
+	/**
+	 * Same as {@link #order(CSCMatrix)} but with the given maximum number of
+	 * edges of the elimination graph. If this number is negative, the default
+	 * budget is used.
+	 */
+	static int[] order(CSCMatrix a, long maxEdges) {
+		int n = a.columns;
+		var md = new ExplicitMinimumDegree(n);
+		md.initGraph(a);
+		long budget = maxEdges >= 0
+				? maxEdges
+				: Math.max(MIN_EDGE_BUDGET, EDGE_BUDGET_FACTOR * md.edges);
+		return md.run(budget);
+	}
+
+	private void initGraph(CSCMatrix a) {
+		for (int i = 0; i < n; i++) {
+			graph[i] = new TIntHashSet();
+		}
+		for (int col = 0; col < n; col++) {
+			for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++) {
+				int row = a.rowIndices[p];
+				if (row == col)
+					continue;
+				graph[row].add(col);
+				graph[col].add(row);
+			}
+		}
+		for (var adj : graph) {
+			edges += adj.size();
+		}
+	}
+
+	private int[] run(long maxEdges) {
+		var order = new int[n];
+		int pos = 0;
+
+		// remove the dense nodes; they are appended to the end of the ordering
+		int denseLimit = Math.max(16, (int) (10 * Math.sqrt(n)));
+		var dense = new TIntHashSet();
+		for (int i = 0; i < n; i++) {
+			if (graph[i].size() > denseLimit) {
+				dense.add(i);
+			}
+		}
+		var removed = new boolean[n];
+		if (!dense.isEmpty()) {
+			for (int i = 0; i < n; i++) {
+				if (dense.contains(i)) {
+					removed[i] = true;
+				} else {
+					graph[i].removeAll(dense);
+				}
+			}
+			edges = 0;
+			for (int i = 0; i < n; i++) {
+				if (!removed[i]) {
+					edges += graph[i].size();
+				}
+			}
+		}
+
+		// fill the degree lists
+		for (int i = 0; i < n; i++) {
+			if (removed[i])
+				continue;
+			degree[i] = graph[i].size();
+			insert(i);
+		}
+
+		int minDegree = 0;
+		int remaining = n - dense.size();
+		while (remaining > 0 && edges <= maxEdges) {
+
+			// select the node with the minimum degree
+			while (head[minDegree] < 0) {
+				minDegree++;
+			}
+			int v = head[minDegree];
+			remove(v);
+			removed[v] = true;
+			order[pos++] = v;
+			remaining--;
+
+			// eliminate it: connect the neighbors to a clique
+			var neighbors = graph[v].toArray();
+			graph[v] = null;
+			edges -= neighbors.length;
+			for (int u : neighbors) {
+				var adj = graph[u];
+				int before = adj.size();
+				adj.remove(v);
+				for (int w : neighbors) {
+					if (w != u) {
+						adj.add(w);
+					}
+				}
+				edges += adj.size() - before;
+			}
+
+			// update the degrees of the neighbors
+			for (int u : neighbors) {
+				int d = graph[u].size();
+				if (d == degree[u])
+					continue;
+				remove(u);
+				degree[u] = d;
+				insert(u);
+				if (d < minDegree) {
+					minDegree = d;
+				}
+			}
+		}
+
+		// when the budget was exceeded, append the remaining nodes in the
+		// order of their current degrees
+		for (int d = 0; d < n && remaining > 0; d++) {
+			for (int v = head[d]; v >= 0; v = next[v]) {
+				order[pos++] = v;
+				remaining--;
+			}
+		}
+
+		// append the dense nodes in order of their degrees
+		var denseNodes = dense.toArray();
+		var denseDegrees = new int[n];
+		for (int d : denseNodes) {
+			denseDegrees[d] = graph[d].size();
+		}
+		var sorted = Arrays.stream(denseNodes)
+				.boxed()
+				.sorted((i, j) -> Integer.compare(denseDegrees[i], denseDegrees[j]))
+				.mapToInt(Integer::intValue)
+				.toArray();
+		for (int d : sorted) {
+			order[pos++] = d;
+		}
+		return order;
+	}
+
+	private void insert(int i) {
+		int d = degree[i];
+		int h = head[d];
+		next[i] = h;
+		prev[i] = -1;
+		if (h >= 0) {
+			prev[h] = i;
+		}
+		head[d] = i;
+	}
+
+	private void remove(int i) {
+		int p = prev[i];
+		int nx = next[i];
+		if (p >= 0) {
+			next[p] = nx;
+		} else {
+			head[degree[i]] = nx;
+		}
+		if (nx >= 0) {
+			prev[nx] = p;
+		}
+	}
+}
@@ -50,6 +50,27 @@ public interface Factorization {
 		return x;
 	}
 
+	/**
+	 * Returns true if the symbolic analysis of this factorization can be reused
+	 * when factorizing other matrices with the same sparsity pattern; see
+	 * {@link MatrixSolver#refactorize}. Callers should only keep factorizations
+	 * as patterns for later factorizations when this is true.
+	 */
+	default boolean hasReusableAnalysis() {
+		return false;
+	}
+
+	/**
+	 * Returns a disposed factorization that only contains the symbolic
+	 * analysis of this factorization but not its numeric factors, or
+	 * {@code null} if this factorization has no reusable analysis. Unlike this
+	 * factorization, the returned analysis can be kept as pattern for later
+	 * factorizations independently of the owner of this factorization.
+	 */
+	default Factorization analysis() {
+		return null;
+	}
+
 	/**
 	 * Disposes the factorization (e.g. clears native memory etc.).
 	 */
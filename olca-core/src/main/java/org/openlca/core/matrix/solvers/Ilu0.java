@@ -0,0 +1,123 @@
+package org.openlca.core.matrix.solvers;
+
+import java.util.Arrays;
+
+import org.openlca.core.matrix.format.CSCMatrix;
+
+/**
+ * An incomplete LU factorization without fill-in, ILU(0), that is used as
+ * preconditioner of iterative solvers. The factors have the same sparsity
+ * pattern as the matrix $A$ and are stored in a compressed row format, where
+ * the unit diagonal of L is not stored.
+ */
+final class Ilu0 {
+
+	private final int n;
+	private final int[] rowPointers;
+	private final int[] columnIndices;
+	private final double[] values;
+	private final int[] diagonal;
+
+	private Ilu0(int n, int[] rowPointers, int[] columnIndices,
+			double[] values, int[] diagonal) {
+		this.n = n;
+		this.rowPointers = rowPointers;
+		this.columnIndices = columnIndices;
+		this.values = values;
+		this.diagonal = diagonal;
+	}
+
+	/**
+	 * Calculates the ILU(0) factorization of the given matrix. Returns
+	 * {@code null} when this is not possible because of missing or zero
+	 * diagonal entries.
+	 */
+	static Ilu0 of(CSCMatrix a) {
+		int n = a.rows;
+
+		// transpose the CSC structure into a row format; the column indices
+		// of each row are then sorted
+		var rowPointers = new int[n + 1];
+		for (int p = 0; p < a.columnPointers[n]; p++) {
+			rowPointers[a.rowIndices[p] + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			rowPointers[i + 1] += rowPointers[i];
+		}
+		int nnz = rowPointers[n];
+		var columnIndices = new int[nnz];
+		var values = new double[nnz];
+		var next = Arrays.copyOf(rowPointers, n);
+		for (int col = 0; col < n; col++) {
+			for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++) {
+				int pos = next[a.rowIndices[p]]++;
+				columnIndices[pos] = col;
+				values[pos] = a.values[p];
+			}
+		}
+
+		var diagonal = new int[n];
+		for (int i = 0; i < n; i++) {
+			diagonal[i] = -1;
+			for (int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+				if (columnIndices[p] == i) {
+					diagonal[i] = p;
+					break;
+				}
+			}
+			if (diagonal[i] < 0 || values[diagonal[i]] == 0)
+				return null;
+		}
+
+		// the IKJ variant of the Gaussian elimination, restricted to the
+		// pattern of A
+		var positions = new int[n];
+		Arrays.fill(positions, -1);
+		for (int i = 0; i < n; i++) {
+			int start = rowPointers[i];
+			int end = rowPointers[i + 1];
+			for (int p = start; p < end; p++) {
+				positions[columnIndices[p]] = p;
+			}
+			for (int p = start; p < diagonal[i]; p++) {
+				int k = columnIndices[p];
+				double f = values[p] / values[diagonal[k]];
+				values[p] = f;
+				for (int q = diagonal[k] + 1; q < rowPointers[k + 1]; q++) {
+					int pos = positions[columnIndices[q]];
+					if (pos >= 0) {
+						values[pos] -= f * values[q];
+					}
+				}
+			}
+			for (int p = start; p < end; p++) {
+				positions[columnIndices[p]] = -1;
+			}
+			if (values[diagonal[i]] == 0)
+				return null;
+		}
+
+		return new Ilu0(n, rowPointers, columnIndices, values, diagonal);
+	}
+
+	/**
+	 * Solves $L U z = r$ and writes the result into z.
+	 */
+	void apply(double[] r, double[] z) {
+		for (int i = 0; i < n; i++) {
+			double sum = r[i];
+			for (int p = rowPointers[i]; p < diagonal[i]; p++) {
+				sum -= values[p] * z[columnIndices[p]];
+			}
+			z[i] = sum;
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			double sum = z[i];
+			int diag = diagonal[i];
+			for (int p = diag + 1; p < rowPointers[i + 1]; p++) {
+				sum -= values[p] * z[columnIndices[p]];
+			}
+			z[i] = sum / values[diag];
+		}
+	}
+}
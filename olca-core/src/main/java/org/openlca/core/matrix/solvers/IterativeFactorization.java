@@ -0,0 +1,313 @@
+package org.openlca.core.matrix.solvers;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.math3.exception.ConvergenceException;
+import org.apache.commons.math3.linear.NonSquareMatrixException;
+import org.openlca.core.matrix.format.CSCMatrix;
+
+/**
+ * A "factorization" that solves the equations $A x = b$ with the
+ * preconditioned BiCGSTAB method instead of a direct decomposition of $A$.
+ * Only the matrix $A$ and an ILU(0) preconditioner with the sparsity pattern
+ * of $A$ are stored, which needs a fraction of the memory of a full LU
+ * decomposition. For diagonally dominant technology matrices, the method
+ * typically converges in a few dozen iterations.
+ * <p>
+ * The solutions of the unit vectors, {@link #solve(int, double)}, are kept as
+ * initial guesses for later solutions. When a matrix with the same structure
+ * is refactorized (e.g. in a Monte-Carlo simulation), these solutions are
+ * shared with the new factorization. The number of kept solutions is bounded;
+ * the least recently used solutions are dropped first.
+ */
+public class IterativeFactorization implements Factorization {
+
+	/**
+	 * The maximum number of values of all initial guesses of a factorization;
+	 * with this, the number of kept solutions is {@code MAX_WARM_START_VALUES
+	 * / n} for a matrix with {@code n} rows, but at least 1.
+	 */
+	private static final int MAX_WARM_START_VALUES = 1 << 22;
+
+	private final int n;
+	private final CSCMatrix a;
+	private final Ilu0 preconditioner;
+	private final double tolerance;
+	private final int maxIterations;
+	private final WarmStarts warmStarts;
+	private boolean disposed;
+
+	private IterativeFactorization(CSCMatrix a, double tolerance,
+			int maxIterations, WarmStarts warmStarts) {
+		if (a.rows != a.columns)
+			throw new NonSquareMatrixException(a.rows, a.columns);
+		this.n = a.rows;
+		this.a = a;
+		this.preconditioner = Ilu0.of(a);
+		this.tolerance = tolerance;
+		this.maxIterations = maxIterations;
+		this.warmStarts = warmStarts;
+	}
+
+	/**
+	 * Creates a disposed factorization without matrix that only holds the
+	 * initial guesses; see {@link #analysis()}.
+	 */
+	private IterativeFactorization(IterativeFactorization other) {
+		this.n = other.n;
+		this.a = null;
+		this.preconditioner = null;
+		this.tolerance = other.tolerance;
+		this.maxIterations = other.maxIterations;
+		this.warmStarts = other.warmStarts;
+		this.disposed = true;
+	}
+
+	/**
+	 * Creates an iterative factorization of the given matrix.
+	 *
+	 * @param a             the matrix
+	 * @param tolerance     the relative tolerance of the residual; the
+	 *                      iteration stops when $|b - A x| \le tol |b|$
+	 * @param maxIterations the maximum number of iterations
+	 */
+	public static IterativeFactorization of(
+			CSCMatrix a, double tolerance, int maxIterations) {
+		return new IterativeFactorization(
+				a, tolerance, maxIterations, new WarmStarts(a.rows));
+	}
+
+	/**
+	 * Creates an iterative factorization of the given matrix that shares the
+	 * solutions of the unit vectors of this factorization as initial guesses,
+	 * if the matrices have the same size. The tolerance and the maximum number
+	 * of iterations are the current settings of the solver and not the
+	 * settings of this factorization.
+	 */
+	IterativeFactorization with(
+			CSCMatrix a, double tolerance, int maxIterations) {
+		var starts = a.rows == size()
+				? warmStarts
+				: new WarmStarts(a.rows);
+		return new IterativeFactorization(a, tolerance, maxIterations, starts);
+	}
+
+	@Override
+	public int size() {
+		return n;
+	}
+
+	@Override
+	public boolean hasReusableAnalysis() {
+		return true;
+	}
+
+	@Override
+	public IterativeFactorization analysis() {
+		return new IterativeFactorization(this);
+	}
+
+	@Override
+	public double[] solve(int i, double val) {
+		var start = warmStarts.get(i);
+		double[] x0 = null;
+		if (start != null) {
+			x0 = new double[start.length];
+			for (int k = 0; k < x0.length; k++) {
+				x0[k] = start[k] * val;
+			}
+		}
+		var b = new double[size()];
+		b[i] = val;
+		var x = solve(b, x0);
+		if (val != 0) {
+			var unit = new double[x.length];
+			for (int k = 0; k < x.length; k++) {
+				unit[k] = x[k] / val;
+			}
+			warmStarts.put(i, unit);
+		}
+		return x;
+	}
+
+	@Override
+	public double[] solve(double[] b) {
+		return solve(b, null);
+	}
+
+	/**
+	 * Solves $A x = b$ starting from the given initial guess $x_0$, e.g. the
+	 * solution of a previous calculation with a similar matrix. A good
+	 * initial guess can reduce the number of iterations significantly.
+	 *
+	 * @param b  the right-hand side
+	 * @param x0 the initial guess; can be {@code null}
+	 * @return the solution $x$
+	 * @throws ConvergenceException if the method does not converge within the
+	 *                              maximum number of iterations
+	 */
+	public double[] solve(double[] b, double[] x0) {
+		if (disposed)
+			throw new IllegalStateException("factorization is disposed");
+		int n = size();
+		var x = x0 != null
+				? Arrays.copyOf(x0, n)
+				: new double[n];
+		double bnorm = norm(b);
+		if (bnorm == 0)
+			return new double[n];
+		double limit = tolerance * bnorm;
+
+		// r = b - A x
+		var r = multiply(x);
+		for (int i = 0; i < n; i++) {
+			r[i] = b[i] - r[i];
+		}
+		if (norm(r) <= limit)
+			return x;
+
+		var rhat = Arrays.copyOf(r, n);
+		var p = new double[n];
+		var v = new double[n];
+		var phat = new double[n];
+		var shat = new double[n];
+		var s = new double[n];
+		double rho = 1;
+		double alpha = 1;
+		double omega = 1;
+
+		for (int iteration = 0; iteration < maxIterations; iteration++) {
+			double rhoNext = dot(rhat, r);
+
+			// the shadow residual can become orthogonal to the residual,
+			// especially for sparse right-hand sides like unit vectors; we
+			// then restart the method with the current residual
+			if (Math.abs(rhoNext) <= 1e-30 * norm(rhat) * norm(r)) {
+				System.arraycopy(r, 0, rhat, 0, n);
+				Arrays.fill(p, 0);
+				Arrays.fill(v, 0);
+				rho = alpha = omega = 1;
+				rhoNext = dot(r, r);
+			}
+			double beta = (rhoNext / rho) * (alpha / omega);
+			for (int i = 0; i < n; i++) {
+				p[i] = r[i] + beta * (p[i] - omega * v[i]);
+			}
+
+			precondition(p, phat);
+			multiply(phat, v);
+			double rv = dot(rhat, v);
+			if (rv == 0)
+				throw new ConvergenceException();
+			alpha = rhoNext / rv;
+			for (int i = 0; i < n; i++) {
+				s[i] = r[i] - alpha * v[i];
+			}
+			if (norm(s) <= limit) {
+				for (int i = 0; i < n; i++) {
+					x[i] += alpha * phat[i];
+				}
+				return x;
+			}
+
+			precondition(s, shat);
+			var t = multiply(shat);
+			double tt = dot(t, t);
+			if (tt == 0)
+				throw new ConvergenceException();
+			omega = dot(t, s) / tt;
+			for (int i = 0; i < n; i++) {
+				x[i] += alpha * phat[i] + omega * shat[i];
+				r[i] = s[i] - omega * t[i];
+			}
+			if (norm(r) <= limit)
+				return x;
+			if (omega == 0)
+				throw new ConvergenceException();
+			rho = rhoNext;
+		}
+		throw new ConvergenceException();
+	}
+
+	private void precondition(double[] r, double[] z) {
+		if (preconditioner != null) {
+			preconditioner.apply(r, z);
+		} else {
+			System.arraycopy(r, 0, z, 0, r.length);
+		}
+	}
+
+	private double[] multiply(double[] x) {
+		var y = new double[size()];
+		multiply(x, y);
+		return y;
+	}
+
+	private void multiply(double[] x, double[] y) {
+		Arrays.fill(y, 0);
+		for (int col = 0; col < a.columns; col++) {
+			double xj = x[col];
+			if (xj == 0)
+				continue;
+			for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++) {
+				y[a.rowIndices[p]] += a.values[p] * xj;
+			}
+		}
+	}
+
+	private static double dot(double[] x, double[] y) {
+		double sum = 0;
+		for (int i = 0; i < x.length; i++) {
+			sum += x[i] * y[i];
+		}
+		return sum;
+	}
+
+	private static double norm(double[] x) {
+		return Math.sqrt(dot(x, x));
+	}
+
+	/**
+	 * Marks this factorization as disposed. The initial guesses are kept, so
+	 * that it can be still used as pattern for refactorizations.
+	 */
+	@Override
+	public void dispose() {
+		disposed = true;
+	}
+
+	@Override
+	public boolean isDisposed() {
+		return disposed;
+	}
+
+	/**
+	 * The initial guesses of the unit vectors, with an LRU bound on the
+	 * number of kept solutions.
+	 */
+	private static class WarmStarts {
+
+		private final Map<Integer, double[]> solutions;
+
+		WarmStarts(int n) {
+			int capacity = Math.max(1, MAX_WARM_START_VALUES / Math.max(1, n));
+			solutions = new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Integer, double[]> eldest) {
+					return size() > capacity;
+				}
+			};
+		}
+
+		synchronized double[] get(int i) {
+			return solutions.get(i);
+		}
+
+		synchronized void put(int i, double[] solution) {
+			solutions.put(i, solution);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package org.openlca.core.matrix.solvers;
+
+import org.openlca.core.matrix.format.MatrixReader;
+
+/**
+ * A solver that solves sparse matrices with an iterative method (BiCGSTAB
+ * with an ILU(0) preconditioner) instead of a direct factorization; see
+ * {@link IterativeFactorization}. This can be used for very large technology
+ * matrices where a direct factorization needs too much memory. Dense
+ * matrices and operations like matrix inversions are handled by the
+ * {@link JavaSolver}.
+ * <p>
+ * The solver can be plugged into the calculation via
+ * {@code SolverContext.withSolver}. When it is used with a factorization
+ * pattern (e.g. in simulations or project calculations), the solutions of
+ * the previous factorization are used as initial guesses.
+ */
+public class IterativeSolver extends JavaSolver {
+
+	private double tolerance = 1e-10;
+	private int maxIterations = 1000;
+
+	/**
+	 * Sets the relative tolerance of the residual: the iteration stops when
+	 * $|b - A x| \le tol |b|$. The default value is {@code 1e-10}.
+	 */
+	public IterativeSolver withTolerance(double tolerance) {
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of iterations per solution. The default value
+	 * is {@code 1000}.
+	 */
+	public IterativeSolver withMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+		return this;
+	}
+
+	@Override
+	public double[] solve(MatrixReader a, int idx, double d) {
+		return isSparse(a)
+				? factorize(a).solve(idx, d)
+				: super.solve(a, idx, d);
+	}
+
+	@Override
+	public Factorization factorize(MatrixReader matrix) {
+		return isSparse(matrix)
+				? IterativeFactorization.of(
+						csc(matrix), tolerance, maxIterations)
+				: super.factorize(matrix);
+	}
+
+	@Override
+	public Factorization refactorize(
+			Factorization previous, MatrixReader matrix) {
+		if (!(previous instanceof IterativeFactorization f)
+				|| !isSparse(matrix))
+			return factorize(matrix);
+		return f.with(csc(matrix), tolerance, maxIterations);
+	}
+}
@@ -4,15 +4,22 @@ import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.LUDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
+import org.openlca.core.matrix.format.CSCMatrix;
+import org.openlca.core.matrix.format.HashPointMatrix;
 import org.openlca.core.matrix.format.Matrix;
 import org.openlca.core.matrix.format.JavaMatrix;
 import org.openlca.core.matrix.format.MatrixReader;
 
+/**
+ * A matrix solver in pure Java. Dense matrices are solved with the LU
+ * decomposition of Apache Commons Math; sparse matrices (hash-point and CSC
+ * matrices) are solved with a sparse LU decomposition, see {@link SparseLU}.
+ */
 public class JavaSolver implements MatrixSolver {
 
 	@Override
 	public boolean hasSparseSupport() {
-		return false;
+		return true;
 	}
 
 	@Override
@@ -22,6 +29,8 @@ public class JavaSolver implements MatrixSolver {
 
 	@Override
 	public double[] solve(MatrixReader a, int idx, double d) {
+		if (isSparse(a))
+			return SparseLU.of(csc(a)).solve(idx, d);
 		var A = unwrap(a);
 		var b = new ArrayRealVector(a.rows());
 		b.setEntry(idx, d);
@@ -31,6 +40,10 @@ public class JavaSolver implements MatrixSolver {
 
 	@Override
 	public double[] multiply(MatrixReader m, double[] v) {
+		if (m instanceof CSCMatrix csc)
+			return multiply(csc, v);
+		if (m instanceof HashPointMatrix hpm)
+			return multiply(hpm.compress(), v);
 		var A = unwrap(m);
 		var b = new Array2DRowRealMatrix(v.length, 1);
 		b.setColumn(0, v);
@@ -52,6 +65,30 @@ public class JavaSolver implements MatrixSolver {
 		return new JavaMatrix(c);
 	}
 
+	private static double[] multiply(CSCMatrix m, double[] v) {
+		var r = new double[m.rows];
+		int cols = Math.min(m.columns, v.length);
+		for (int col = 0; col < cols; col++) {
+			double vj = v[col];
+			if (vj == 0)
+				continue;
+			for (int p = m.columnPointers[col]; p < m.columnPointers[col + 1]; p++) {
+				r[m.rowIndices[p]] += m.values[p] * vj;
+			}
+		}
+		return r;
+	}
+
+	static CSCMatrix csc(MatrixReader m) {
+		return m instanceof CSCMatrix csc
+				? csc
+				: CSCMatrix.of(m);
+	}
+
+	static boolean isSparse(MatrixReader m) {
+		return m instanceof CSCMatrix || m instanceof HashPointMatrix;
+	}
+
 	private static RealMatrix unwrap(MatrixReader m) {
 		if (m instanceof JavaMatrix)
 			return ((JavaMatrix) m).getRealMatrix();
@@ -63,7 +100,19 @@ public class JavaSolver implements MatrixSolver {
 
 	@Override
 	public Factorization factorize(MatrixReader matrix) {
-		return LU.of(matrix);
+		return isSparse(matrix)
+				? SparseLU.of(csc(matrix))
+				: LU.of(matrix);
+	}
+
+	@Override
+	public Factorization refactorize(
+			Factorization previous, MatrixReader matrix) {
+		if (!(previous instanceof SparseLU lu) || !isSparse(matrix))
+			return factorize(matrix);
+		var csc = csc(matrix);
+		return lu.refactorize(csc)
+				.orElseGet(() -> SparseLU.of(csc));
 	}
 
 	private static class LU implements Factorization {
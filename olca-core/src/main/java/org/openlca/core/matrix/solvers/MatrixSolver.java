@@ -99,6 +99,31 @@ public interface MatrixSolver {
 
 	Factorization factorize(MatrixReader matrix);
 
+	/**
+	 * Factorizes the given matrix and tries to reuse the symbolic analysis
+	 * (e.g. the fill-reducing ordering and the structure of the factors) of
+	 * the given factorization. This is useful when matrices with the same
+	 * sparsity pattern but different values are factorized, like in
+	 * Monte-Carlo simulations, parameter scenarios, or project variants.
+	 * <p>
+	 * The given factorization is not modified, and it can be already disposed
+	 * when implementations keep the symbolic analysis independent of the
+	 * numeric factors. When the symbolic analysis cannot be reused (e.g. when
+	 * the given factorization was created by another solver or when the
+	 * sparsity pattern of the matrix changed), a full factorization is
+	 * performed. This is also the default implementation of this method.
+	 *
+	 * @param previous a factorization of a matrix with (possibly) the same
+	 *                 sparsity pattern as the given matrix; can be
+	 *                 {@code null}
+	 * @param matrix   the matrix that should be factorized
+	 * @return the factorization of the given matrix
+	 */
+	default Factorization refactorize(
+			Factorization previous, MatrixReader matrix) {
+		return factorize(matrix);
+	}
+
 	/**
 	 * Returns true if this is a native solver. That is a solver linked to a
 	 * platform native high-performance math-library.
@@ -0,0 +1,480 @@
+package org.openlca.core.matrix.solvers;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.apache.commons.math3.linear.NonSquareMatrixException;
+import org.apache.commons.math3.linear.SingularMatrixException;
+import org.openlca.core.matrix.format.CSCMatrix;
+import org.openlca.core.matrix.format.DenseMatrix;
+import org.openlca.core.matrix.format.Matrix;
+import org.openlca.core.matrix.format.MatrixConverter;
+
+/**
+ * A sparse LU factorization $P A Q = L U$ in pure Java. The columns of $A$ are
+ * first ordered with a minimum degree heuristic ($Q$) to reduce the fill-in of
+ * the factors; see {@link ExplicitMinimumDegree}. The factors are then calculated column by column with a
+ * left-looking algorithm (Gilbert-Peierls) with partial pivoting ($P$). The
+ * diagonal entry of a column is preferred as pivot if it is not much smaller
+ * than the largest candidate, which is almost always the case for technology
+ * matrices.
+ * <p>
+ * This is the fallback for sparse matrices when no native libraries are
+ * available. The symbolic analysis (orderings and patterns of the factors) is
+ * kept when the factorization is disposed, so that matrices with the same
+ * sparsity pattern can be refactorized quickly; see {@link #refactorize}.
+ */
+public class SparseLU implements Factorization {
+
+	/**
+	 * The diagonal entry of a column is selected as pivot if its absolute value
+	 * is at least this fraction of the largest candidate.
+	 */
+	private static final double DIAGONAL_TOLERANCE = 0.1;
+
+	/**
+	 * When refactorizing a matrix, the fixed pivot of a column must be at least
+	 * this fraction of the largest candidate, otherwise a full factorization
+	 * with a new pivot sequence is required.
+	 */
+	private static final double REFACTORIZATION_TOLERANCE = 1e-3;
+
+	private final int n;
+
+	// the pattern of the factorized matrix
+	private final int[] aColumnPointers;
+	private final int[] aRowIndices;
+
+	// the column ordering: column k of the ordered matrix is column q[k] of A
+	private final int[] q;
+
+	// pivotRows[k] is the row of A that was selected as pivot in step k, and
+	// pinv[pivotRows[k]] = k
+	private final int[] pivotRows;
+	private final int[] pinv;
+
+	// L has the pivots (= 1) as first entry in each column, the row indices
+	// are the rows of A
+	private final int[] lp;
+	private final int[] li;
+	private double[] lx;
+
+	// U has the diagonal as last entry in each column, the row indices are
+	// the pivot steps
+	private final int[] up;
+	private final int[] ui;
+	private double[] ux;
+
+	private boolean disposed;
+
+	private SparseLU(int n, int[] aColumnPointers, int[] aRowIndices, int[] q,
+			int[] pivotRows, int[] pinv, int[] lp, int[] li, double[] lx,
+			int[] up, int[] ui, double[] ux) {
+		this.n = n;
+		this.aColumnPointers = aColumnPointers;
+		this.aRowIndices = aRowIndices;
+		this.q = q;
+		this.pivotRows = pivotRows;
+		this.pinv = pinv;
+		this.lp = lp;
+		this.li = li;
+		this.lx = lx;
+		this.up = up;
+		this.ui = ui;
+		this.ux = ux;
+	}
+
+	/**
+	 * Factorizes the given matrix.
+	 *
+	 * @throws NonSquareMatrixException if the matrix is not square
+	 * @throws SingularMatrixException  if the matrix is singular
+	 */
+	public static SparseLU of(CSCMatrix a) {
+		if (a.rows != a.columns)
+			throw new NonSquareMatrixException(a.rows, a.columns);
+		var q = ExplicitMinimumDegree.order(a);
+		return new Factorizer(a, q).run();
+	}
+
+	@Override
+	public int size() {
+		return n;
+	}
+
+	@Override
+	public boolean hasReusableAnalysis() {
+		return true;
+	}
+
+	@Override
+	public SparseLU analysis() {
+		var analysis = new SparseLU(n, aColumnPointers, aRowIndices, q,
+				pivotRows, pinv, lp, li, null, up, ui, null);
+		analysis.disposed = true;
+		return analysis;
+	}
+
+	/**
+	 * Factorizes the given matrix with the orderings and the patterns of the
+	 * factors of this factorization. This factorization can be already
+	 * disposed. Returns an empty option if the given matrix has a different
+	 * sparsity pattern or if the pivot sequence of this factorization is not
+	 * numerically stable for the values of the given matrix. In this case, a
+	 * full factorization is required.
+	 */
+	public Optional<SparseLU> refactorize(CSCMatrix a) {
+		if (a.rows != n
+				|| a.columns != n
+				|| !Arrays.equals(a.columnPointers, aColumnPointers)
+				|| !Arrays.equals(a.rowIndices, aRowIndices))
+			return Optional.empty();
+
+		var nlx = new double[li.length];
+		var nux = new double[ui.length];
+		var x = new double[n];
+		for (int k = 0; k < n; k++) {
+
+			// scatter the column into x
+			int col = q[k];
+			for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++) {
+				x[a.rowIndices[p]] = a.values[p];
+			}
+
+			// solve with the already calculated columns of L; the pivotal rows
+			// are stored in topological order in U
+			int uend = up[k + 1] - 1;
+			for (int p = up[k]; p < uend; p++) {
+				int j = ui[p];
+				double xj = x[pivotRows[j]];
+				nux[p] = xj;
+				if (xj == 0)
+					continue;
+				for (int pl = lp[j] + 1; pl < lp[j + 1]; pl++) {
+					x[li[pl]] -= nlx[pl] * xj;
+				}
+			}
+
+			// check the pivot
+			double pivot = x[pivotRows[k]];
+			double max = 0;
+			for (int p = lp[k] + 1; p < lp[k + 1]; p++) {
+				max = Math.max(max, Math.abs(x[li[p]]));
+			}
+			if (pivot == 0
+					|| Math.abs(pivot) < REFACTORIZATION_TOLERANCE * max)
+				return Optional.empty();
+
+			// set the diagonal of U and the column of L
+			nux[uend] = pivot;
+			nlx[lp[k]] = 1;
+			x[pivotRows[k]] = 0;
+			for (int p = lp[k] + 1; p < lp[k + 1]; p++) {
+				int i = li[p];
+				nlx[p] = x[i] / pivot;
+				x[i] = 0;
+			}
+			for (int p = up[k]; p < uend; p++) {
+				x[pivotRows[ui[p]]] = 0;
+			}
+		}
+
+		return Optional.of(new SparseLU(n, aColumnPointers, aRowIndices, q,
+				pivotRows, pinv, lp, li, nlx, up, ui, nux));
+	}
+
+	@Override
+	public double[] solve(double[] b) {
+		if (disposed)
+			throw new IllegalStateException("factorization is disposed");
+
+		// L z = P b; w is indexed by the rows of A
+		var w = Arrays.copyOf(b, n);
+		var z = new double[n];
+		for (int k = 0; k < n; k++) {
+			double zk = w[pivotRows[k]];
+			z[k] = zk;
+			if (zk == 0)
+				continue;
+			for (int p = lp[k] + 1; p < lp[k + 1]; p++) {
+				w[li[p]] -= lx[p] * zk;
+			}
+		}
+
+		// U y = z; y is stored in z
+		for (int k = n - 1; k >= 0; k--) {
+			int diag = up[k + 1] - 1;
+			double yk = z[k] / ux[diag];
+			z[k] = yk;
+			if (yk == 0)
+				continue;
+			for (int p = up[k]; p < diag; p++) {
+				z[ui[p]] -= ux[p] * yk;
+			}
+		}
+
+		// x = Q y
+		var x = new double[n];
+		for (int k = 0; k < n; k++) {
+			x[q[k]] = z[k];
+		}
+		return x;
+	}
+
+	/**
+	 * Solves the equations for all columns of the given matrix in a single
+	 * pass over the factors.
+	 */
+	@Override
+	public Matrix solve(Matrix b) {
+		if (disposed)
+			throw new IllegalStateException("factorization is disposed");
+		int m = b.columns();
+		var w = MatrixConverter.dense(b).data.clone();
+		var z = new double[n * m];
+
+		// L Z = P B
+		for (int k = 0; k < n; k++) {
+			int row = pivotRows[k];
+			for (int j = 0; j < m; j++) {
+				int offset = j * n;
+				double zk = w[offset + row];
+				z[offset + k] = zk;
+				if (zk == 0)
+					continue;
+				for (int p = lp[k] + 1; p < lp[k + 1]; p++) {
+					w[offset + li[p]] -= lx[p] * zk;
+				}
+			}
+		}
+
+		// U Y = Z
+		for (int k = n - 1; k >= 0; k--) {
+			int diag = up[k + 1] - 1;
+			for (int j = 0; j < m; j++) {
+				int offset = j * n;
+				double yk = z[offset + k] / ux[diag];
+				z[offset + k] = yk;
+				if (yk == 0)
+					continue;
+				for (int p = up[k]; p < diag; p++) {
+					z[offset + ui[p]] -= ux[p] * yk;
+				}
+			}
+		}
+
+		// X = Q Y
+		var x = new DenseMatrix(n, m);
+		for (int j = 0; j < m; j++) {
+			int offset = j * n;
+			for (int k = 0; k < n; k++) {
+				x.data[offset + q[k]] = z[offset + k];
+			}
+		}
+		return x;
+	}
+
+	/**
+	 * Releases the numeric factors. The symbolic analysis is kept so that
+	 * this factorization can be still used for refactorizations.
+	 */
+	@Override
+	public void dispose() {
+		lx = null;
+		ux = null;
+		disposed = true;
+	}
+
+	@Override
+	public boolean isDisposed() {
+		return disposed;
+	}
+
+	/**
+	 * Calculates the factors of a matrix with a given column ordering.
+	 */
+	private static class Factorizer {
+
+		private final CSCMatrix a;
+		private final int n;
+		private final int[] q;
+		private final int[] pinv;
+		private final int[] pivotRows;
+
+		private final int[] lp;
+		private int[] li;
+		private double[] lx;
+		private int lnz;
+
+		private final int[] up;
+		private int[] ui;
+		private double[] ux;
+		private int unz;
+
+		// working arrays of the reach calculation
+		private final double[] x;
+		private final int[] xi;
+		private final int[] stack;
+		private final int[] pstack;
+		private final int[] marks;
+
+		Factorizer(CSCMatrix a, int[] q) {
+			this.a = a;
+			this.n = a.columns;
+			this.q = q;
+			pinv = new int[n];
+			Arrays.fill(pinv, -1);
+			pivotRows = new int[n];
+
+			int capacity = 4 * a.values.length + n;
+			lp = new int[n + 1];
+			li = new int[capacity];
+			lx = new double[capacity];
+			up = new int[n + 1];
+			ui = new int[capacity];
+			ux = new double[capacity];
+
+			x = new double[n];
+			xi = new int[n];
+			stack = new int[n];
+			pstack = new int[n];
+			marks = new int[n];
+			Arrays.fill(marks, -1);
+		}
+
+		SparseLU run() {
+			for (int k = 0; k < n; k++) {
+				lp[k] = lnz;
+				up[k] = unz;
+				ensureCapacity(n);
+				int col = q[k];
+				int top = solveColumn(k, col);
+
+				// select the pivot; the pivotal rows go into U
+				int ipiv = -1;
+				double max = -1;
+				for (int p = top; p < n; p++) {
+					int i = xi[p];
+					if (pinv[i] < 0) {
+						double t = Math.abs(x[i]);
+						if (t > max) {
+							max = t;
+							ipiv = i;
+						}
+					} else {
+						ui[unz] = pinv[i];
+						ux[unz++] = x[i];
+					}
+				}
+				if (ipiv < 0 || max <= 0)
+					throw new SingularMatrixException();
+				if (pinv[col] < 0
+						&& Math.abs(x[col]) >= DIAGONAL_TOLERANCE * max) {
+					ipiv = col;
+				}
+
+				// the diagonal of U and the column of L
+				double pivot = x[ipiv];
+				ui[unz] = k;
+				ux[unz++] = pivot;
+				pinv[ipiv] = k;
+				pivotRows[k] = ipiv;
+				li[lnz] = ipiv;
+				lx[lnz++] = 1;
+				for (int p = top; p < n; p++) {
+					int i = xi[p];
+					if (pinv[i] < 0) {
+						li[lnz] = i;
+						lx[lnz++] = x[i] / pivot;
+					}
+					x[i] = 0;
+				}
+			}
+			lp[n] = lnz;
+			up[n] = unz;
+
+			return new SparseLU(n, a.columnPointers, a.rowIndices, q,
+					pivotRows, pinv, lp,
+					Arrays.copyOf(li, lnz), Arrays.copyOf(lx, lnz), up,
+					Arrays.copyOf(ui, unz), Arrays.copyOf(ux, unz));
+		}
+
+		/**
+		 * Solves $L x = A[:, col]$ with the already calculated columns of L.
+		 * The non-zero pattern of x is stored in topological order in
+		 * {@code xi[top..n)} and the top position is returned.
+		 */
+		private int solveColumn(int k, int col) {
+			int top = n;
+			for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++) {
+				int i = a.rowIndices[p];
+				if (marks[i] != k) {
+					top = dfs(i, k, top);
+				}
+			}
+			for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++) {
+				x[a.rowIndices[p]] = a.values[p];
+			}
+			for (int px = top; px < n; px++) {
+				int j = xi[px];
+				int jcol = pinv[j];
+				if (jcol < 0)
+					continue;
+				double xj = x[j];
+				if (xj == 0)
+					continue;
+				for (int p = lp[jcol] + 1; p < lp[jcol + 1]; p++) {
+					x[li[p]] -= lx[p] * xj;
+				}
+			}
+			return top;
+		}
+
+		/**
+		 * A non-recursive depth-first search in the graph of L, starting at
+		 * the given row. The reached rows are pushed in topological order to
+		 * {@code xi[..top)}.
+		 */
+		private int dfs(int start, int k, int top) {
+			int head = 0;
+			stack[0] = start;
+			while (head >= 0) {
+				int j = stack[head];
+				int jcol = pinv[j];
+				if (marks[j] != k) {
+					marks[j] = k;
+					pstack[head] = jcol < 0 ? 0 : lp[jcol] + 1;
+				}
+				boolean done = true;
+				int end = jcol < 0 ? 0 : lp[jcol + 1];
+				for (int p = pstack[head]; p < end; p++) {
+					int i = li[p];
+					if (marks[i] == k)
+						continue;
+					pstack[head] = p + 1;
+					stack[++head] = i;
+					done = false;
+					break;
+				}
+				if (done) {
+					head--;
+					xi[--top] = j;
+				}
+			}
+			return top;
+		}
+
+		private void ensureCapacity(int extra) {
+			if (lnz + extra > li.length) {
+				int size = Math.max(2 * li.length, lnz + extra);
+				li = Arrays.copyOf(li, size);
+				lx = Arrays.copyOf(lx, size);
+			}
+			if (unz + extra > ui.length) {
+				int size = Math.max(2 * ui.length, unz + extra);
+				ui = Arrays.copyOf(ui, size);
+				ux = Arrays.copyOf(ux, size);
+			}
+		}
+	}
+}
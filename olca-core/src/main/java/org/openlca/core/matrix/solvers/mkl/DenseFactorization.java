@@ -1,5 +1,8 @@
 package org.openlca.core.matrix.solvers.mkl;
 
+import org.openlca.core.matrix.format.DenseMatrix;
+import org.openlca.core.matrix.format.Matrix;
+import org.openlca.core.matrix.format.MatrixConverter;
 import org.openlca.core.matrix.solvers.Factorization;
 
 import java.util.Arrays;
@@ -32,6 +35,19 @@ class DenseFactorization implements Factorization {
 		return x;
 	}
 
+	@Override
+	public Matrix solve(Matrix b) {
+		double[] x;
+		if (b instanceof DenseMatrix dense) {
+			x = Arrays.copyOf(dense.data, dense.data.length);
+		} else {
+			x = MatrixConverter.dense(b).data;
+		}
+		int info = MKL.solveDenseFactorization(pointer, b.columns(), x);
+		InfoCode.checkBlas(info);
+		return new DenseMatrix(size, b.columns(), x);
+	}
+
 	@Override
 	public void dispose() {
 		if (isDisposed.get())
@@ -1,5 +1,8 @@
 package org.openlca.core.matrix.uncertainties;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
 import org.openlca.core.model.Copyable;
 import org.openlca.core.model.UncertaintyType;
 import org.openlca.expressions.FormulaInterpreter;
@@ -16,7 +19,29 @@ public interface UCell extends Copyable<UCell> {
 	 * to evaluate them as possibly values of dependent parameters with uncertainty
 	 * distributions may changed.
 	 */
-	double next(FormulaInterpreter interpreter);
+	default double next(FormulaInterpreter interpreter) {
+		return next(interpreter, ThreadLocalRandom.current());
+	}
+
+	/**
+	 * Same as {@link #next(FormulaInterpreter)} but uses the given random
+	 * number generator. A cell has no random state on its own, so the generated
+	 * values are reproducible with a seeded random number generator.
+	 */
+	double next(FormulaInterpreter interpreter, RandomGenerator random);
+
+	/**
+	 * Returns true if the value of this cell is generated from an uncertainty
+	 * distribution.
+	 */
+	boolean hasDistribution();
+
+	/**
+	 * Returns true if the value of this cell is calculated from a formula. In
+	 * this case, the value can change between simulation runs when the
+	 * parameters of that formula have uncertainty distributions.
+	 */
+	boolean hasFormula();
 
 	/**
 	 * Get the uncertainty distribution type of the cell;
@@ -2,12 +2,16 @@ package org.openlca.core.matrix.uncertainties;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.random.RandomGenerator;
 
 import org.openlca.core.math.NumberGenerator;
 import org.openlca.core.matrix.CalcAllocationFactor;
 import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.matrix.CompiledFormula;
 import org.openlca.core.model.UncertaintyType;
 import org.openlca.expressions.FormulaInterpreter;
+import org.openlca.util.Strings;
+import org.slf4j.LoggerFactory;
 
 class UExchangeCell implements UCell {
 
@@ -18,38 +22,78 @@ class UExchangeCell implements UCell {
 	// cell.
 	List<UCell> overlay;
 
-	/*
-	 * TODO: we have to think about stateless functions here; also with a shared
-	 * instance of Random; see also this issue:
-	 * https://github.com/GreenDelta/olca-app/issues/62
-	 */
 	private final NumberGenerator gen;
+	private final CompiledFormula formula;
 
 	UExchangeCell(CalcExchange e, CalcAllocationFactor f) {
+		this(e, f, CompiledFormula.of(e.formula));
+	}
+
+	private UExchangeCell(
+		CalcExchange e, CalcAllocationFactor f, CompiledFormula formula) {
 		this.exchange = e;
 		this.allocationFactor = f;
+		this.formula = formula;
 		gen = e.hasUncertainty()
 			? generator(e)
 			: null;
 	}
 
 	@Override
-	public double next(FormulaInterpreter interpreter) {
-		if (gen != null) {
-			exchange.amount = gen.next();
-		}
+	public double next(FormulaInterpreter interpreter, RandomGenerator random) {
+		double value = gen != null
+			? gen.next(random)
+			: exchange.amount;
 		double af = allocationFactor != null
 			? allocationFactor.force(interpreter)
 			: 1;
-		double amount = exchange.matrixValue(interpreter, af);
+		if (formula != null && interpreter != null) {
+			try {
+				value = formula.eval(
+					interpreter.getScopeOrGlobal(exchange.processId));
+			} catch (Exception e) {
+				var log = LoggerFactory.getLogger(getClass());
+				log.error("Formula evaluation failed, exchange "
+					+ exchange.exchangeId, e);
+			}
+		}
+		double amount = exchange.matrixValueOf(value, af);
 		if (overlay != null) {
 			for (UCell u : overlay) {
-				amount += u.next(interpreter);
+				amount += u.next(interpreter, random);
 			}
 		}
 		return amount;
 	}
 
+	@Override
+	public boolean hasDistribution() {
+		if (gen != null)
+			return true;
+		if (overlay == null)
+			return false;
+		for (var u : overlay) {
+			if (u.hasDistribution())
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean hasFormula() {
+		if (Strings.notEmpty(exchange.formula))
+			return true;
+		if (allocationFactor != null && allocationFactor.hasFormula())
+			return true;
+		if (overlay == null)
+			return false;
+		for (var u : overlay) {
+			if (u.hasFormula())
+				return true;
+		}
+		return false;
+	}
+
 	private static NumberGenerator generator(CalcExchange e) {
 		UncertaintyType t = e.uncertaintyType;
 		if (t == null) {
@@ -98,7 +142,7 @@ class UExchangeCell implements UCell {
 
 	@Override
 	public UExchangeCell copy() {
-		var copy = new UExchangeCell(exchange, allocationFactor);
+		var copy = new UExchangeCell(exchange, allocationFactor, formula);
 		if (overlay != null) {
 			copy.overlay = new ArrayList<>(overlay.size());
 			for (var o : overlay) {
@@ -1,28 +1,59 @@
 package org.openlca.core.matrix.uncertainties;
 
+import java.util.random.RandomGenerator;
+
 import org.openlca.core.math.NumberGenerator;
 import org.openlca.core.matrix.CalcImpactFactor;
+import org.openlca.core.matrix.CompiledFormula;
 import org.openlca.core.model.UncertaintyType;
 import org.openlca.expressions.FormulaInterpreter;
+import org.openlca.util.Strings;
+import org.slf4j.LoggerFactory;
 
 class UImpactCell implements UCell {
 
 	private final CalcImpactFactor factor;
 	private final NumberGenerator gen;
+	private final CompiledFormula formula;
 
 	UImpactCell(CalcImpactFactor factor) {
+		this(factor, CompiledFormula.of(factor.formula));
+	}
+
+	private UImpactCell(CalcImpactFactor factor, CompiledFormula formula) {
 		this.factor = factor;
+		this.formula = formula;
 		gen = factor.hasUncertainty()
 				? generator(factor)
 				: null;
 	}
 
 	@Override
-	public double next(FormulaInterpreter interpreter) {
-		if (gen != null) {
-			factor.amount = gen.next();
+	public double next(FormulaInterpreter interpreter, RandomGenerator random) {
+		double value = gen != null
+				? gen.next(random)
+				: factor.amount;
+		if (formula != null && interpreter != null) {
+			try {
+				value = formula.eval(
+						interpreter.getScopeOrGlobal(factor.imactCategoryId));
+			} catch (Exception e) {
+				var log = LoggerFactory.getLogger(getClass());
+				log.error("Formula evaluation failed for" +
+						" LCIA factor with formula: " + factor.formula, e);
+			}
 		}
-		return factor.matrixValue(interpreter);
+		return factor.matrixValueOf(value);
+	}
+
+	@Override
+	public boolean hasDistribution() {
+		return gen != null;
+	}
+
+	@Override
+	public boolean hasFormula() {
+		return Strings.notEmpty(factor.formula);
 	}
 
 	private static NumberGenerator generator(CalcImpactFactor e) {
@@ -68,6 +99,6 @@ class UImpactCell implements UCell {
 
 	@Override
 	public UCell copy() {
-		return new UImpactCell(factor);
+		return new UImpactCell(factor, formula);
 	}
 }
@@ -1,6 +1,9 @@
 package org.openlca.core.matrix.uncertainties;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 import org.openlca.core.matrix.CalcAllocationFactor;
 import org.openlca.core.matrix.CalcExchange;
@@ -19,6 +22,12 @@ public class UMatrix implements Copyable<UMatrix> {
 
 	private final TIntObjectHashMap<TIntObjectHashMap<UCell>> data;
 
+	/**
+	 * The cells of this matrix in column-major order. This is created on
+	 * demand when values are generated and cleared when new cells are added.
+	 */
+	private Cells cells;
+
 	public UMatrix() {
 		data = new TIntObjectHashMap<>(
 				Constants.DEFAULT_CAPACITY,
@@ -38,6 +47,7 @@ public class UMatrix implements Copyable<UMatrix> {
 
 		var rowm = getRow(row);
 		rowm.put(col, new UImpactCell(i));
+		cells = null;
 	}
 
 	public void add(int row, int col, CalcExchange e) {
@@ -66,6 +76,7 @@ public class UMatrix implements Copyable<UMatrix> {
 		}
 
 		// select the cell
+		cells = null;
 		var rowm = getRow(row);
 		var cell = rowm.get(col);
 
@@ -101,7 +112,51 @@ public class UMatrix implements Copyable<UMatrix> {
 	 * the given matrix.
 	 */
 	public void generate(Matrix m, FormulaInterpreter interpreter) {
-		each((row, col, cell) -> m.set(row, col, cell.next(interpreter)));
+		generate(m, interpreter, ThreadLocalRandom.current());
+	}
+
+	/**
+	 * Generates new values using the given random number generator and sets
+	 * them to the given matrix. The cells are visited in column-major order so
+	 * that the generated values only depend on the state of the random number
+	 * generator and not on the internal layout of this matrix (which can be
+	 * different for copies of a matrix).
+	 */
+	public void generate(
+			Matrix m, FormulaInterpreter interpreter, RandomGenerator random) {
+		if (cells == null) {
+			cells = Cells.of(this);
+		}
+		for (int i = 0; i < cells.values.length; i++) {
+			var val = cells.values[i].next(interpreter, random);
+			m.set(cells.rows[i], cells.columns[i], val);
+		}
+	}
+
+	/**
+	 * Returns true if the values of this matrix can change between simulation
+	 * runs. This is the case when it contains cells with uncertainty
+	 * distributions, or cells with formulas when formula parameters are varied
+	 * in the simulation.
+	 *
+	 * @param withUncertainParameters true if there are formula parameters with
+	 *                                uncertainty distributions
+	 */
+	public boolean isVariable(boolean withUncertainParameters) {
+		var rows = data.iterator();
+		while (rows.hasNext()) {
+			rows.advance();
+			var cols = rows.value().iterator();
+			while (cols.hasNext()) {
+				cols.advance();
+				var cell = cols.value();
+				if (cell.hasDistribution())
+					return true;
+				if (withUncertainParameters && cell.hasFormula())
+					return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -146,4 +201,28 @@ public class UMatrix implements Copyable<UMatrix> {
 		}
 		return copy;
 	}
+
+	private record Cells(int[] rows, int[] columns, UCell[] values) {
+
+		static Cells of(UMatrix m) {
+			var entries = new ArrayList<Entry>();
+			m.each((row, col, cell) -> entries.add(new Entry(row, col, cell)));
+			var array = entries.toArray(new Entry[0]);
+			Arrays.sort(array, (e1, e2) -> e1.col != e2.col
+					? Integer.compare(e1.col, e2.col)
+					: Integer.compare(e1.row, e2.row));
+			int n = array.length;
+			var cells = new Cells(new int[n], new int[n], new UCell[n]);
+			for (int i = 0; i < n; i++) {
+				var e = array[i];
+				cells.rows[i] = e.row;
+				cells.columns[i] = e.col;
+				cells.values[i] = e.cell;
+			}
+			return cells;
+		}
+	}
+
+	private record Entry(int row, int col, UCell cell) {
+	}
 }
@@ -1,21 +1,46 @@
 package org.openlca.core.results;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.matrix.Demand;
 import org.openlca.core.matrix.MatrixData;
+import org.openlca.core.matrix.format.CSCMatrix;
+import org.openlca.core.matrix.format.DenseMatrix;
 import org.openlca.core.matrix.format.MatrixReader;
 import org.openlca.core.matrix.index.ImpactIndex;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.matrix.io.NpyColumnWriter;
+import org.openlca.core.matrix.solvers.Factorization;
 import org.openlca.core.matrix.solvers.MatrixSolver;
 import org.openlca.core.results.providers.SimpleResultProvider;
+import org.openlca.npy.Array2d;
+import org.openlca.npy.NpyHeader;
 import org.openlca.util.Pair;
 
 /**
  * Calculates the (simple) result for each process-product in a given database
  * or a set of matrices.
+ * <p>
+ * By default, the inverse of the technology matrix and the dense products
+ * {@code B * INV} and {@code C * B * INV} are calculated in memory. For large
+ * databases, a blocked mode can be enabled with {@link #withBlocks(File)}: the
+ * technology matrix is then factorized once, the columns of the inverse are
+ * solved in blocks in parallel, and the columns of the inverse {@code INV},
+ * the intensity matrix {@code M = B * INV}, and the impact intensities
+ * {@code LCIA = C * M} are written into npy files in the given folder. The
+ * iteration then reads the columns of the next result from these files, so
+ * that the full matrices are never held in memory. The files are kept open
+ * during the iteration and are closed when the last result was read.
  */
 public class EachOneResult {
 
@@ -28,6 +53,11 @@ public class EachOneResult {
 	private MatrixReader lci;
 	private MatrixReader lcia;
 
+	private MatrixSolver solver;
+	private File folder;
+	private int blockSize = 64;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
 	private EachOneResult(IDatabase db) {
 		this.db = db;
 	}
@@ -42,6 +72,38 @@ public class EachOneResult {
 		return eor;
 	}
 
+	public EachOneResult withSolver(MatrixSolver solver) {
+		this.solver = solver;
+		return this;
+	}
+
+	/**
+	 * Enables the blocked mode in which the result matrices are written into
+	 * npy files in the given folder instead of being calculated in memory.
+	 */
+	public EachOneResult withBlocks(File folder) {
+		this.folder = folder;
+		return this;
+	}
+
+	/**
+	 * Sets the number of columns of the inverse that are solved together in
+	 * the blocked mode. The default is 64.
+	 */
+	public EachOneResult withBlockSize(int blockSize) {
+		this.blockSize = Math.max(1, blockSize);
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads that solve the blocks in parallel in the
+	 * blocked mode. The default is the number of available processors.
+	 */
+	public EachOneResult withThreads(int threads) {
+		this.threads = Math.max(1, threads);
+		return this;
+	}
+
 	public Iterable<Pair<TechFlow, LcaResult>> get() {
 		if (data == null) {
 			var techIndex = TechIndex.of(db);
@@ -49,9 +111,15 @@ public class EachOneResult {
 				.withImpacts(ImpactIndex.of(db))
 				.build();
 		}
-		var solver = MatrixSolver.get();
-		inverse = solver.invert(data.techMatrix);
+		var solver = this.solver != null
+			? this.solver
+			: MatrixSolver.get();
 		diagA = data.techMatrix.diag();
+		if (folder != null) {
+			solveBlocks(solver);
+			return new Iter();
+		}
+		inverse = solver.invert(data.techMatrix);
 		lci = solver.multiply(data.enviMatrix, inverse);
 		if (data.impactMatrix != null) {
 			lcia = solver.multiply(data.impactMatrix, lci);
@@ -59,27 +127,191 @@ public class EachOneResult {
 		return new Iter();
 	}
 
+	private void solveBlocks(MatrixSolver solver) {
+		int n = data.techIndex.size();
+		var enviMatrix = compressed(data.enviMatrix);
+		var impactMatrix = enviMatrix != null
+			? compressed(data.impactMatrix)
+			: null;
+		var factorization = solver.factorize(data.techMatrix);
+		var invWriter = NpyColumnWriter.create(folder, "INV", n, n);
+		var lciWriter = enviMatrix != null
+			? NpyColumnWriter.create(folder, "M", enviMatrix.rows(), n)
+			: null;
+		var lciaWriter = impactMatrix != null
+			? NpyColumnWriter.create(folder, "LCIA", impactMatrix.rows(), n)
+			: null;
+
+		// remove result files of a previous calculation that are not
+		// written in this calculation
+		if (lciWriter == null) {
+			new File(folder, "M.npy").delete();
+		}
+		if (lciaWriter == null) {
+			new File(folder, "LCIA.npy").delete();
+		}
+
+		int blocks = (n + blockSize - 1) / blockSize;
+		var pool = Executors.newFixedThreadPool(
+			Math.max(1, Math.min(threads, blocks)));
+		try {
+			var futures = new ArrayList<Future<?>>(blocks);
+			for (int start = 0; start < n; start += blockSize) {
+				int offset = start;
+				int end = Math.min(n, start + blockSize);
+				futures.add(pool.submit(() -> {
+					var x = solveBlock(factorization, offset, end);
+					for (int j = offset; j < end; j++) {
+						var s = x.getColumn(j - offset);
+						invWriter.put(j, s);
+						if (lciWriter == null)
+							continue;
+						var g = enviMatrix.multiply(s);
+						lciWriter.put(j, g);
+						if (lciaWriter != null) {
+							lciaWriter.put(j, impactMatrix.multiply(g));
+						}
+					}
+				}));
+			}
+			for (var future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("each-one calculation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(
+				"failed to calculate each-one results", e.getCause());
+		} finally {
+			pool.shutdownNow();
+			factorization.dispose();
+			invWriter.close();
+			if (lciWriter != null) {
+				lciWriter.close();
+			}
+			if (lciaWriter != null) {
+				lciaWriter.close();
+			}
+		}
+	}
+
+	/**
+	 * Solves the columns {@code [start, end)} of the inverse.
+	 */
+	private DenseMatrix solveBlock(
+		Factorization factorization, int start, int end) {
+		int n = factorization.size();
+		var identity = new DenseMatrix(n, end - start);
+		for (int j = start; j < end; j++) {
+			identity.set(j, j - start, 1.0);
+		}
+		var x = factorization.solve(identity);
+		return x instanceof DenseMatrix dense
+			? dense
+			: DenseMatrix.of(x);
+	}
+
+	private MatrixReader compressed(MatrixReader matrix) {
+		if (matrix == null)
+			return null;
+		return matrix.isSparse() && !(matrix instanceof CSCMatrix)
+			? CSCMatrix.of(matrix)
+			: matrix;
+	}
+
+	/**
+	 * A result file of the blocked mode. The file is opened and its header is
+	 * read once, so that the columns can be read without opening the file
+	 * again for each result.
+	 */
+	private static class ColumnFile implements Closeable {
+
+		private final File file;
+		private final RandomAccessFile raf;
+		private final NpyHeader header;
+
+		private ColumnFile(File file) throws IOException {
+			this.file = file;
+			this.raf = new RandomAccessFile(file, "r");
+			try {
+				this.header = NpyHeader.read(raf.getChannel());
+			} catch (Exception e) {
+				raf.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Opens the given file, or returns {@code null} if it does not exist.
+		 */
+		static ColumnFile open(File file) {
+			if (file == null || !file.exists())
+				return null;
+			try {
+				return new ColumnFile(file);
+			} catch (IOException e) {
+				throw new RuntimeException("failed to open file " + file, e);
+			}
+		}
+
+		double[] read(int j) {
+			return Array2d.readColumn(raf, header, j)
+				.asDoubleArray()
+				.data();
+		}
+
+		@Override
+		public void close() {
+			try {
+				raf.close();
+			} catch (IOException e) {
+				throw new RuntimeException("failed to close file " + file, e);
+			}
+		}
+	}
+
 	private class Iter implements
 		Iterator<Pair<TechFlow, LcaResult>>,
 		Iterable<Pair<TechFlow, LcaResult>> {
 
+		/**
+		 * The result files of the blocked mode. They are opened with the
+		 * first result and closed after the last result was read.
+		 */
+		private ColumnFile invFile;
+		private ColumnFile lciFile;
+		private ColumnFile lciaFile;
+		private boolean opened;
+
 		@Override
 		public boolean hasNext() {
 			if (data == null || data.techIndex == null)
 				return false;
-			return next < data.techIndex.size();
+			if (next < data.techIndex.size())
+				return true;
+			closeFiles();
+			return false;
 		}
 
 		@Override
 		public Pair<TechFlow, LcaResult> next() {
+			if (folder != null && !opened) {
+				invFile = ColumnFile.open(new File(folder, "INV.npy"));
+				lciFile = ColumnFile.open(new File(folder, "M.npy"));
+				lciaFile = ColumnFile.open(new File(folder, "LCIA.npy"));
+				opened = true;
+			}
 
 			var demand = Demand.of(data.techIndex.at(next), 1.0);
 			var p = SimpleResultProvider.of(demand, data.techIndex)
 				.withFlowIndex(data.enviIndex)
 				.withImpactIndex(data.impactIndex);
 
-			if (inverse != null) {
-				var scalingVector = inverse.getColumn(next);
+			var scalingVector = invFile != null
+				? invFile.read(next)
+				: inverse != null ? inverse.getColumn(next) : null;
+			if (scalingVector != null) {
 				p.withScalingVector(scalingVector);
 
 				if (diagA != null) {
@@ -90,6 +322,12 @@ public class EachOneResult {
 					p.withTotalRequirements(totalRequirements);
 				}
 			}
+			if (lciFile != null) {
+				p.withTotalFlows(lciFile.read(next));
+			}
+			if (lciaFile != null) {
+				p.withTotalImpacts(lciaFile.read(next));
+			}
 			if (lci != null) {
 				p.withTotalFlows(lci.getColumn(next));
 			}
@@ -107,9 +345,23 @@ public class EachOneResult {
 			}
 
 			next++;
+			if (next >= data.techIndex.size()) {
+				closeFiles();
+			}
 			return Pair.of(product, result);
 		}
 
+		private void closeFiles() {
+			for (var file : new ColumnFile[]{invFile, lciFile, lciaFile}) {
+				if (file != null) {
+					file.close();
+				}
+			}
+			invFile = null;
+			lciFile = null;
+			lciaFile = null;
+		}
+
 		private void swapSign(double[] values) {
 			if (values == null)
 				return;
@@ -6,9 +6,8 @@ import java.util.List;
 import java.util.Set;
 
 import org.openlca.core.database.IDatabase;
-import org.openlca.core.math.SystemCalculator;
+import org.openlca.core.math.ProjectCalculator;
 import org.openlca.core.matrix.index.EnviFlow;
-import org.openlca.core.model.CalculationSetup;
 import org.openlca.core.model.Project;
 import org.openlca.core.model.ProjectVariant;
 import org.openlca.core.model.descriptors.ImpactDescriptor;
@@ -21,27 +20,15 @@ public class ProjectResult {
 
 	private final HashMap<ProjectVariant, LcaResult> results = new HashMap<>();
 
+	/**
+	 * Calculates the results of the enabled variants of the given project;
+	 * see {@link ProjectCalculator}.
+	 */
 	public static ProjectResult calculate(Project project, IDatabase db) {
 		var result = new ProjectResult();
 		if (project == null)
 			return result;
-		var calculator = new SystemCalculator(db);
-		for (var v : project.variants) {
-			if (v.isDisabled)
-				continue;
-			var setup = CalculationSetup.of(v.productSystem)
-				.withUnit(v.unit)
-				.withFlowPropertyFactor(v.flowPropertyFactor)
-				.withAmount(v.amount)
-				.withAllocation(v.allocationMethod)
-				.withImpactMethod(project.impactMethod)
-				.withNwSet(project.nwSet)
-				.withParameters(v.parameterRedefs)
-				.withCosts(project.isWithCosts)
-				.withRegionalization(project.isWithRegionalization);
-			var variantResult = calculator.calculate(setup);
-			result.results.put(v, variantResult);
-		}
+		result.results.putAll(new ProjectCalculator(db).calculate(project));
 		return result;
 	}
 
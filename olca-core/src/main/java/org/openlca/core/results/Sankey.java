@@ -46,6 +46,12 @@ public class Sankey<T> {
 	 */
 	private final ResultProvider solution;
 
+	/**
+	 * The builder of this graph which holds the state of the expansion, like
+	 * the remaining provider candidates, for refinements of the graph.
+	 */
+	private Builder<T> builder;
+
 	/**
 	 * Describes a single node in the graph. For a process product in the
 	 * system there can be only one or no node in the resulting graph. Thus,
@@ -119,6 +125,37 @@ public class Sankey<T> {
 		return new Builder<>(ref, result);
 	}
 
+	/**
+	 * Refines this graph with the given cutoff rules. When the rules allow a
+	 * larger graph, i.e. when the minimum share is not larger than the
+	 * minimum share of this graph and the maximum node count is not smaller
+	 * than the current number of nodes, the graph is grown from its remaining
+	 * provider candidates and this graph is returned. Otherwise, a new graph
+	 * is built.
+	 *
+	 * @param maxNodes the maximum number of nodes; a value &lt; 0 means no
+	 *                 limit
+	 * @param minShare the minimum share of the nodes
+	 * @return this or a new graph with the given cutoff rules
+	 */
+	public Sankey<T> refine(int maxNodes, double minShare) {
+		double share = Math.abs(minShare);
+		if (builder == null
+				|| share > builder.minShare
+				|| (maxNodes >= 0 && maxNodes < nodeCount)) {
+			int blockSize = builder != null ? builder.blockSize : 32;
+			return Sankey.of(reference, solution)
+					.withMaximumNodeCount(maxNodes)
+					.withMinimumShare(share)
+					.withBlockSize(blockSize)
+					.build();
+		}
+		builder.minShare = share;
+		builder.maxNodes = maxNodes;
+		builder.grow();
+		return this;
+	}
+
 	/**
 	 * Traverses the graph in breadth-first order starting from the root.
 	 */
@@ -224,9 +261,12 @@ public class Sankey<T> {
 		// cutoff rules
 		private double minShare = 0;
 		private int maxNodes = -1;
+		private int blockSize = 32;
 
 		private final TIntObjectHashMap<Node> handled;
-		private PriorityQueue<Candidate> candidates;
+		private final TIntHashSet queued;
+		private final PriorityQueue<Candidate> candidates;
+		private boolean rootExpanded;
 
 		private Builder(T ref, ResultProvider result) {
 			this.sankey = new Sankey<>(ref, result);
@@ -235,6 +275,12 @@ public class Sankey<T> {
 					Constants.DEFAULT_CAPACITY,
 					Constants.DEFAULT_LOAD_FACTOR,
 					-1);
+			queued = new TIntHashSet(
+					Constants.DEFAULT_CAPACITY,
+					Constants.DEFAULT_LOAD_FACTOR,
+					-1);
+			candidates = new PriorityQueue<>(
+					(c1, c2) -> Double.compare(c2.share, c1.share));
 		}
 
 		/**
@@ -255,6 +301,20 @@ public class Sankey<T> {
 			return this;
 		}
 
+		/**
+		 * The maximum number of nodes that are taken from the candidates with
+		 * the highest shares and expanded together. The solutions of the
+		 * providers of these nodes are then calculated in a single batch. As
+		 * the providers of the nodes of a block are not known when the block
+		 * is selected, a larger block can differ from a strict selection by
+		 * the highest shares when a provider has a larger result than its
+		 * downstream node, e.g. in loops. The default is 32.
+		 */
+		public Builder<T> withBlockSize(int size) {
+			this.blockSize = Math.max(1, size);
+			return this;
+		}
+
 		/**
 		 * Builds the underlying graph of a Sankey diagram.
 		 */
@@ -273,29 +333,63 @@ public class Sankey<T> {
 			var techIndex = result.techIndex();
 			root.product = result.demand().techFlow();
 			root.index = techIndex.of(root.product);
-			root.total = getTotal(root.product);
-			root.direct = getDirect(root.product);
+			root.total = getTotal(root.index);
+			root.direct = getDirect(root.index);
 			root.share = root.total == 0 ? 0 : 1;
 			sankey.nodeCount = 1;
 			handled.put(root.index, root);
+			queued.add(root.index);
+			sankey.builder = this;
+			grow();
+			return sankey;
+		}
 
-			// when the number of nodes is limited, we select the nodes with
-			// the highest contributions
-			if (maxNodes > 0) {
-				candidates = new PriorityQueue<>(
-						(n1, n2) -> Double.compare(n2.share, n1.share));
+		/**
+		 * Adds the candidates with the highest shares to the graph until the
+		 * cutoff rules are reached. The remaining candidates are kept, so that
+		 * the graph can be refined with other cutoff rules later.
+		 */
+		private void grow() {
+			var root = sankey.root;
+			if (root.total == 0 || isFull())
+				return;
+			if (!rootExpanded) {
+				rootExpanded = true;
+				prefetch(List.of(root));
+				expand(root);
 			}
 
-			// expand the graph recursively
-			if (root.total != 0 && (maxNodes < 0 || maxNodes > 1)) {
-				expand(root);
-				fill(root);
+			var block = new ArrayList<Node>(blockSize);
+			while (!candidates.isEmpty() && !isFull()) {
+
+				// select the next block of nodes with the highest shares
+				block.clear();
+				while (block.size() < blockSize && !isFull()) {
+					var next = candidates.peek();
+					if (next == null || next.share < minShare)
+						break;
+					candidates.poll();
+					add(next.handled, next.provider);
+					block.add(next.provider);
+				}
+				if (block.isEmpty())
+					break;
+
+				// calculate the solutions of all providers of the block
+				// together and add them as new candidates
+				prefetch(block);
+				for (var node : block) {
+					expand(node);
+				}
 			}
-			return sankey;
+			fill(root);
 		}
 
-		private double getTotal(TechFlow techFlow) {
-			int techIdx = result.indexOf(techFlow);
+		private boolean isFull() {
+			return maxNodes >= 0 && sankey.nodeCount >= maxNodes;
+		}
+
+		private double getTotal(int techIdx) {
 			if (techIdx < 0)
 				return 0;
 			if (flow != null) {
@@ -314,8 +408,7 @@ public class Sankey<T> {
 			return 0;
 		}
 
-		private double getDirect(TechFlow techFlow) {
-			int techIdx = result.indexOf(techFlow);
+		private double getDirect(int techIdx) {
 			if (techIdx < 0)
 				return 0;
 			if (flow != null) {
@@ -335,59 +428,49 @@ public class Sankey<T> {
 		}
 
 		/**
-		 * Expands recursively the providers of the given node, that was already
-		 * added to the graph, according to the cutoff rules of this builder.
+		 * Adds the providers of the given node, that was already added to the
+		 * graph, as candidates. Providers with a share below the current
+		 * cutoff are also kept as candidates for later refinements.
 		 */
 		private void expand(Node node) {
 			result.iterateTechColumnOf(node.index).eachNonZero((i, $) -> {
-				if (i == node.index)
-					return;
-				var provider = handled.get(i);
-				if (provider != null) {
-					node.providers.add(provider);
+				if (i == node.index || queued.contains(i))
 					return;
-				}
+				queued.add(i);
 
-				// calculate and check the share
-				var product = result.techIndex().at(i);
-				var total = getTotal(product);
+				// calculate the share
+				var total = getTotal(i);
 				if (total == 0)
 					return;
-				var share = Math.abs(total / sankey.root.total);
-				if (share < minShare)
-					return;
-
-				// construct a candidate node
-				provider = new Node();
+				var provider = new Node();
 				provider.index = i;
-				provider.direct = getDirect(product);
 				provider.total = total;
-				provider.product = product;
-				provider.share = share;
-
-				// if there is no limit regarding the
-				// node count, add and expand the node,
-				// use the priority queue otherwise
-				if (candidates != null) {
-					candidates.add(new Candidate(node, provider));
-				} else {
-					add(node, provider);
-					expand(provider);
-				}
+				provider.share = Math.abs(total / sankey.root.total);
+				candidates.add(new Candidate(node, provider));
 			});
+		}
 
-			// we add the candidate with the largest share to
-			// the providers.
-			if (candidates == null || candidates.isEmpty())
-				return;
-			var next = candidates.poll();
-			add(next.handled, next.provider);
-			if (sankey.nodeCount < maxNodes) {
-				expand(next.provider);
+		/**
+		 * Calculates the solutions of the new providers of the given nodes in
+		 * a single batch, as they are required for their total results.
+		 */
+		private void prefetch(List<Node> nodes) {
+			var providers = new TIntHashSet();
+			for (var node : nodes) {
+				result.iterateTechColumnOf(node.index).eachNonZero((i, $) -> {
+					if (i != node.index && !queued.contains(i)) {
+						providers.add(i);
+					}
+				});
+			}
+			if (providers.size() > 1) {
+				result.solutionsOf(providers.toArray());
 			}
 		}
 
 		private void add(Node existing, Node provider) {
+			provider.product = result.techIndex().at(provider.index);
+			provider.direct = getDirect(provider.index);
 			existing.providers.add(provider);
 			handled.put(provider.index, provider);
 			sankey.nodeCount++;
@@ -395,25 +478,26 @@ public class Sankey<T> {
 
 		/**
 		 * Executes the fill phase after the expansion phase: in the expansion phase,
-		 * we add node-provider relations in breadth-first order applying cut-off
-		 * rules. A node k is then maybe not added as provider of a node i because of
-		 * these cut-off rules. But, k is maybe added as provider of a node j later
-		 * because it has a higher upstream contribution there. In the fill phase,
-		 * we then add such missing relations (k, i) of the existing nodes in the
-		 * sub-graph.
+		 * we add node-provider relations in the order of their shares applying
+		 * cut-off rules. A node k is then maybe not added as provider of a node i
+		 * because of these cut-off rules or because it was already added as
+		 * provider of another node j. In the fill phase, we then add such missing
+		 * relations (k, i) of the existing nodes in the sub-graph. Relations that
+		 * were already added are skipped, so that this can be repeated when the
+		 * graph is refined.
 		 */
 		private void fill(Node root) {
 			var queue = new ArrayDeque<Node>();
 			queue.add(root);
-			var queued = new HashSet<Integer>();
-			queued.add(root.index);
+			var visited = new HashSet<Integer>();
+			visited.add(root.index);
 
 			while (!queue.isEmpty()) {
 				var next = queue.poll();
 				var providers = new HashSet<Integer>();
 				for (var provider : next.providers) {
-					if (!queued.contains(provider.index)) {
-						queued.add(provider.index);
+					if (!visited.contains(provider.index)) {
+						visited.add(provider.index);
 						queue.add(provider);
 					}
 					providers.add(provider.index);
@@ -425,8 +509,8 @@ public class Sankey<T> {
 					var node = handled.get(i);
 					if (node == null)
 						return;
-					if (!queued.contains(i)) {
-						queued.add(i);
+					if (!visited.contains(i)) {
+						visited.add(i);
 						queue.add(node);
 					}
 					next.providers.add(node);
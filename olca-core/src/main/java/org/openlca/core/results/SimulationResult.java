@@ -66,11 +66,22 @@ public class SimulationResult implements IResult {
 	public void append(LcaResult r) {
 		if (r == null)
 			return;
-		if (r.hasEnviFlows()) {
-			flowResults.add(r.provider().totalFlows());
+		append(
+				r.hasEnviFlows() ? r.provider().totalFlows() : null,
+				r.hasImpacts() ? r.provider().totalImpacts() : null);
+	}
+
+	/**
+	 * Append the given total LCI and LCIA result vectors of a simulation run
+	 * to this simulation result. Vectors that are `null` are ignored. The
+	 * indices of these vectors must match with the indices of this result.
+	 */
+	public void append(double[] totalFlows, double[] totalImpacts) {
+		if (totalFlows != null) {
+			flowResults.add(totalFlows);
 		}
-		if (r.hasImpacts()) {
-			impactResults.add(r.provider().totalImpacts());
+		if (totalImpacts != null) {
+			impactResults.add(totalImpacts);
 		}
 	}
 
@@ -4,6 +4,8 @@ import org.openlca.core.matrix.index.EnviFlow;
 import org.openlca.core.model.descriptors.ImpactDescriptor;
 import org.openlca.core.results.providers.ResultProvider;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.IntToDoubleFunction;
@@ -26,6 +28,10 @@ public class UpstreamTree {
 	private final IntToDoubleFunction intensity;
 	private final IntToDoubleFunction directResult;
 
+	// volatile, as the node count can be read from other threads while the
+	// tree is expanded, e.g. when evicting trees from a cache
+	private volatile int nodeCount = 1;
+
 	private UpstreamTree(
 			Object ref,
 			ResultProvider r,
@@ -80,6 +86,14 @@ public class UpstreamTree {
 				techIdx -> -provider.directCostsOf(techIdx));
 	}
 
+	/**
+	 * Returns the number of nodes of this tree that were created so far,
+	 * including the root.
+	 */
+	public int nodeCount() {
+		return nodeCount;
+	}
+
 	public List<UpstreamNode> childs(UpstreamNode parent) {
 		if (parent.childs != null)
 			return parent.childs;
@@ -88,6 +102,7 @@ public class UpstreamTree {
 			return parent.childs;
 
 		var requirements = r.techColumnOf(parent.index);
+		prefetch(parent.index, requirements);
 		for (int i = 0; i < requirements.length; i++) {
 			if (i == parent.index)
 				continue;
@@ -106,11 +121,28 @@ public class UpstreamTree {
 			setDirectResult(child);
 			parent.childs.add(child);
 		}
+		nodeCount += parent.childs.size();
 
 		parent.childs.sort((n1, n2) -> Double.compare(n2.result, n1.result));
 		return parent.childs;
 	}
 
+	/**
+	 * Calculates the solutions of the child nodes in a single batch, as they
+	 * are required for the upstream results of these nodes.
+	 */
+	private void prefetch(int parent, double[] requirements) {
+		var childs = new TIntArrayList();
+		for (int i = 0; i < requirements.length; i++) {
+			if (i != parent && requirements[i] != 0) {
+				childs.add(i);
+			}
+		}
+		if (childs.size() > 1) {
+			r.solutionsOf(childs.toArray());
+		}
+	}
+
 	/**
 	 * When the reference of this upstream tree is an input tree we have to
 	 * switch the sign of it.
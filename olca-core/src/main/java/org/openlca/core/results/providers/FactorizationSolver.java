@@ -3,33 +3,51 @@ package org.openlca.core.results.providers;
 import org.openlca.core.matrix.Demand;
 import org.openlca.core.matrix.MatrixData;
 import org.openlca.core.matrix.format.ColumnIterator;
+import org.openlca.core.matrix.format.DenseMatrix;
 import org.openlca.core.matrix.format.Matrix;
 import org.openlca.core.matrix.index.EnviIndex;
 import org.openlca.core.matrix.index.ImpactIndex;
 import org.openlca.core.matrix.index.TechIndex;
 import org.openlca.core.matrix.solvers.Factorization;
 import org.openlca.core.matrix.solvers.MatrixSolver;
+import org.openlca.core.results.providers.cache.CacheStats;
+import org.openlca.core.results.providers.cache.VectorCache;
 
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
 
 public class FactorizationSolver implements ResultProvider {
 
+	/**
+	 * The maximum number of right-hand sides that are solved in a single call
+	 * of the factorization.
+	 */
+	private static final int BLOCK_SIZE = 64;
+
 	private final Demand demand;
 	private final MatrixData data;
 	private final MatrixSolver solver;
 	private final Factorization factorization;
 
+	/**
+	 * Is false when the factorization was provided by the solver context
+	 * without its ownership and, thus, should not be disposed by this solver.
+	 */
+	private final boolean ownsFactorization;
+
 	private final double[] scalingVector;
 	private double[] totalRequirements;
-	private final TIntObjectHashMap<double[]> solutions;
+	private final VectorCache cache;
+	private final VectorCache.Region solutions;
 
 	private Matrix directFlows;
 	private final double[] totalFlows;
-	private final TIntObjectHashMap<double[]> totalFlowsOfOne;
+	private final VectorCache.Region totalFlowsOfOne;
 
 	private Matrix directImpacts;
 	private double[] totalImpacts;
-	private final TIntObjectHashMap<double[]> totalImpactsOfOne;
+	private final VectorCache.Region totalImpactsOfOne;
 
 	private final double[] directCosts;
 	private final double totalCosts;
@@ -38,14 +56,24 @@ public class FactorizationSolver implements ResultProvider {
 		this.demand = context.demand();
 		this.data = context.data();
 		this.solver = context.solver();
-		this.factorization = solver.factorize(data.techMatrix);
+		if (context.factorization() != null) {
+			this.factorization = context.factorization();
+			this.ownsFactorization = context.ownsFactorization();
+		} else {
+			var pattern = context.factorizationPattern();
+			this.factorization = pattern != null
+				? solver.refactorize(pattern, data.techMatrix)
+				: solver.factorize(data.techMatrix);
+			this.ownsFactorization = true;
+		}
 
-		solutions = new TIntObjectHashMap<>();
+		cache = VectorCache.of(context.cachePolicy());
+		solutions = cache.region();
 		totalFlowsOfOne = hasFlows()
-			? new TIntObjectHashMap<>()
+			? cache.region()
 			: null;
 		totalImpactsOfOne = hasImpacts()
-			? new TIntObjectHashMap<>()
+			? cache.region()
 			: null;
 
 		// calculate the scaling vector
@@ -89,6 +117,15 @@ public class FactorizationSolver implements ResultProvider {
 		return data;
 	}
 
+	/**
+	 * Returns the factorization of the technology matrix of this solver. This
+	 * can be used as pattern for the factorization of matrices with the same
+	 * structure; see {@link SolverContext#withFactorizationPattern}.
+	 */
+	public Factorization factorization() {
+		return factorization;
+	}
+
 	@Override
 	public Demand demand() {
 		return demand;
@@ -162,7 +199,61 @@ public class FactorizationSolver implements ResultProvider {
 		if (s != null)
 			return s;
 		s = factorization.solve(techFlow, 1.0);
-		solutions.put(techFlow, s);
+		return solutions.put(techFlow, s);
+	}
+
+	/**
+	 * Calculates the missing solutions of the given technosphere flows with
+	 * multi-column right-hand sides, so that the factorization can solve them
+	 * in blocks instead of column by column. Note that only the dense
+	 * factorizations and the sparse LU decomposition of the Java solver solve
+	 * such a block in a single call; the bindings of the native sparse
+	 * factorizations (UMFPACK, PARDISO) have no multi-column interface, thus
+	 * these factorizations solve the columns of a block one after another.
+	 */
+	@Override
+	public double[][] solutionsOf(int[] techFlows) {
+		var s = new double[techFlows.length][];
+		var missing = new TIntArrayList();
+		var queued = new TIntHashSet();
+		for (int i = 0; i < techFlows.length; i++) {
+			int techFlow = techFlows[i];
+			s[i] = solutions.get(techFlow);
+			if (s[i] == null && queued.add(techFlow)) {
+				missing.add(techFlow);
+			}
+		}
+		if (missing.isEmpty())
+			return s;
+
+		// the solutions are collected separately as they could be already
+		// evicted from the cache when the cache is bounded
+		var solved = new TIntObjectHashMap<double[]>();
+		int n = data.techIndex.size();
+		for (int offset = 0; offset < missing.size(); offset += BLOCK_SIZE) {
+			int cols = Math.min(BLOCK_SIZE, missing.size() - offset);
+			if (cols == 1) {
+				int techFlow = missing.get(offset);
+				var x = factorization.solve(techFlow, 1.0);
+				solved.put(techFlow, solutions.put(techFlow, x));
+				continue;
+			}
+			var b = new DenseMatrix(n, cols);
+			for (int j = 0; j < cols; j++) {
+				b.set(missing.get(offset + j), j, 1.0);
+			}
+			var x = factorization.solve(b);
+			for (int j = 0; j < cols; j++) {
+				int techFlow = missing.get(offset + j);
+				solved.put(techFlow, solutions.put(techFlow, x.getColumn(j)));
+			}
+		}
+
+		for (int i = 0; i < techFlows.length; i++) {
+			if (s[i] == null) {
+				s[i] = solved.get(techFlows[i]);
+			}
+		}
 		return s;
 	}
 
@@ -186,6 +277,11 @@ public class FactorizationSolver implements ResultProvider {
 		return data.enviMatrix.get(flow, product);
 	}
 
+	@Override
+	public ColumnIterator iterateFlowColumnOf(int techFlow) {
+		return ColumnIterator.of(data.enviMatrix, techFlow);
+	}
+
 	private Matrix directFlows() {
 		if (directFlows != null)
 			return directFlows;
@@ -222,8 +318,7 @@ public class FactorizationSolver implements ResultProvider {
 			return totals;
 		var s = solutionOfOne(techFlow);
 		totals = solver.multiply(data.enviMatrix, s);
-		totalFlowsOfOne.put(techFlow, totals);
-		return totals;
+		return totalFlowsOfOne.put(techFlow, totals);
 	}
 
 	@Override
@@ -247,6 +342,11 @@ public class FactorizationSolver implements ResultProvider {
 			: data.impactMatrix.get(indicator, enviFlow);
 	}
 
+	@Override
+	public ColumnIterator iterateImpactColumnOf(int enviFlow) {
+		return ColumnIterator.of(data.impactMatrix, enviFlow);
+	}
+
 	@Override
 	public double[] flowImpactsOf(int enviFlow) {
 		if (totalFlows == null)
@@ -303,8 +403,7 @@ public class FactorizationSolver implements ResultProvider {
 		if (impactFactors == null || g.length == 0)
 			return new double[impactIndex().size()];
 		h = solver.multiply(impactFactors, g);
-		totalImpactsOfOne.put(techFlow, h);
-		return h;
+		return totalImpactsOfOne.put(techFlow, h);
 	}
 
 	@Override
@@ -341,9 +440,15 @@ public class FactorizationSolver implements ResultProvider {
 		return totalCosts;
 	}
 
+	@Override
+	public CacheStats cacheStats() {
+		return cache.stats();
+	}
+
 	@Override
 	public void dispose() {
-		if (!factorization.isDisposed()) {
+		cache.clear();
+		if (ownsFactorization && !factorization.isDisposed()) {
 			factorization.dispose();
 		}
 	}
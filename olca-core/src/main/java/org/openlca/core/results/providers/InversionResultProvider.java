@@ -111,6 +111,11 @@ public class InversionResultProvider implements ResultProvider {
 			: 0;
 	}
 
+	@Override
+	public ColumnIterator iterateFlowColumnOf(int techFlow) {
+		return ColumnIterator.of(r.data().enviMatrix, techFlow);
+	}
+
 	@Override
 	public double[] directFlowsOf(int techFlow) {
 		return r.directFlows() != null
@@ -175,6 +180,11 @@ public class InversionResultProvider implements ResultProvider {
 			: 0;
 	}
 
+	@Override
+	public ColumnIterator iterateImpactColumnOf(int enviFlow) {
+		return ColumnIterator.of(r.data().impactMatrix, enviFlow);
+	}
+
 	@Override
 	public double[] flowImpactsOf(int enviFlow) {
 		var totalInterventions = r.totalFlows();
@@ -1,7 +1,5 @@
 package org.openlca.core.results.providers;
 
-import gnu.trove.impl.Constants;
-import gnu.trove.map.hash.TIntObjectHashMap;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.library.LibMatrix;
 import org.openlca.core.library.reader.LibReaderRegistry;
@@ -17,6 +15,8 @@ import org.openlca.core.matrix.index.ImpactIndex;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
 import org.openlca.core.matrix.solvers.MatrixSolver;
+import org.openlca.core.results.providers.cache.CacheStats;
+import org.openlca.core.results.providers.cache.VectorCache;
 import org.openlca.util.Pair;
 
 import java.util.ArrayDeque;
@@ -37,20 +37,22 @@ public class LazyLibrarySolver implements ResultProvider {
 	private final ResultProvider foregroundSolution;
 	private final MatrixData fullData;
 
+	private final VectorCache cache;
+
 	private double[] scalingVector;
 	private double[] totalRequirements;
-	private final TIntObjectHashMap<double[]> solutions = newCache();
-	private final TIntObjectHashMap<double[]> techColumns = newCache();
+	private final VectorCache.Region solutions;
+	private final VectorCache.Region techColumns;
 
 	private double[] totalFlows;
-	private final TIntObjectHashMap<double[]> flowColumns = newCache();
-	private final TIntObjectHashMap<double[]> directFlows = newCache();
-	private final TIntObjectHashMap<double[]> totalFlowsOfOne = newCache();
+	private final VectorCache.Region flowColumns;
+	private final VectorCache.Region directFlows;
+	private final VectorCache.Region totalFlowsOfOne;
 
 	private double[] totalImpacts;
 	private Matrix flowImpacts;
-	private final TIntObjectHashMap<double[]> directImpacts = newCache();
-	private final TIntObjectHashMap<double[]> totalImpactsOfOne = newCache();
+	private final VectorCache.Region directImpacts;
+	private final VectorCache.Region totalImpactsOfOne;
 
 	private LazyLibrarySolver(SolverContext context) {
 		this.db = context.db();
@@ -64,18 +66,25 @@ public class LazyLibrarySolver implements ResultProvider {
 		this.foregroundSolution = InversionResult.of(context)
 				.calculate()
 				.provider();
+
+		this.cache = VectorCache.of(context.cachePolicy());
+		this.solutions = cache.region();
+		this.techColumns = cache.region();
+		this.flowColumns = cache.region();
+		this.directFlows = cache.region();
+		this.totalFlowsOfOne = cache.region();
+		this.directImpacts = cache.region();
+		this.totalImpactsOfOne = cache.region();
 	}
 
-	private static TIntObjectHashMap<double[]> newCache() {
-		return new TIntObjectHashMap<>(
-				Constants.DEFAULT_CAPACITY,
-				Constants.DEFAULT_LOAD_FACTOR,
-				-1);
+	@Override
+	public CacheStats cacheStats() {
+		return cache.stats();
 	}
 
-	private double[] put(int key, TIntObjectHashMap<double[]> cache, double[] v) {
-		cache.put(key, v);
-		return v;
+	@Override
+	public void dispose() {
+		cache.clear();
 	}
 
 	public static ResultProvider solve(SolverContext context) {
@@ -246,7 +255,7 @@ public class LazyLibrarySolver implements ResultProvider {
 		if (libId == null) {
 			var colF = foregroundData.techMatrix.getColumn(techFlow);
 			System.arraycopy(colF, 0, column, 0, colF.length);
-			return put(techFlow, techColumns, column);
+			return techColumns.put(techFlow, column);
 		}
 
 		// in case of a library product, we need to map
@@ -269,7 +278,7 @@ public class LazyLibrarySolver implements ResultProvider {
 				continue;
 			column[i] = val;
 		}
-		return put(techFlow, techColumns, column);
+		return techColumns.put(techFlow, column);
 	}
 
 	@Override
@@ -343,7 +352,7 @@ public class LazyLibrarySolver implements ResultProvider {
 			}
 		}
 
-		return put(techFlow, solutions, solution);
+		return solutions.put(techFlow, solution);
 	}
 
 	@Override
@@ -381,7 +390,7 @@ public class LazyLibrarySolver implements ResultProvider {
 				var colF = flowMatrixF.getColumn(techFlow);
 				System.arraycopy(colF, 0, column, 0, colF.length);
 			}
-			return put(techFlow, flowColumns, column);
+			return flowColumns.put(techFlow, column);
 		}
 
 		// in case of a library product, we need to map
@@ -390,11 +399,11 @@ public class LazyLibrarySolver implements ResultProvider {
 		var flowIdxB = lib.enviIndex();
 		var techIdxB = lib.techIndex();
 		if (flowIdxB == null || techIdxB == null)
-			return put(techFlow, flowColumns, column);
+			return flowColumns.put(techFlow, column);
 		var jB = techIdxB.of(product);
 		var colB = lib.columnOf(LibMatrix.B, jB);
 		if (colB == null)
-			return put(techFlow, flowColumns, column);
+			return flowColumns.put(techFlow, column);
 
 		for (int iB = 0; iB < colB.length; iB++) {
 			double val = colB[iB];
@@ -407,7 +416,7 @@ public class LazyLibrarySolver implements ResultProvider {
 			column[i] = val;
 		}
 
-		return put(techFlow, flowColumns, column);
+		return flowColumns.put(techFlow, column);
 	}
 
 	@Override
@@ -428,7 +437,7 @@ public class LazyLibrarySolver implements ResultProvider {
 			return EMPTY_VECTOR;
 		var factor = scalingFactorOf(techFlow);
 		flows = scale(unscaled, factor);
-		return put(techFlow, directFlows, flows);
+		return directFlows.put(techFlow, flows);
 	}
 
 	@Override
@@ -493,7 +502,7 @@ public class LazyLibrarySolver implements ResultProvider {
 				totals[i] += gB[iB];
 			}
 		}
-		return put(techFlow, totalFlowsOfOne, totals);
+		return totalFlowsOfOne.put(techFlow, totals);
 	}
 
 	@Override
@@ -647,7 +656,7 @@ public class LazyLibrarySolver implements ResultProvider {
 		if (factors == null || isEmpty(flows))
 			return EMPTY_VECTOR;
 		impacts = solver.multiply(factors, flows);
-		return put(techFlow, directImpacts, impacts);
+		return directImpacts.put(techFlow, impacts);
 	}
 
 	@Override
@@ -660,7 +669,7 @@ public class LazyLibrarySolver implements ResultProvider {
 		if (factors == null || isEmpty(flows))
 			return EMPTY_VECTOR;
 		impacts = solver.multiply(factors, flows);
-		return put(techFlow, totalImpactsOfOne, impacts);
+		return totalImpactsOfOne.put(techFlow, impacts);
 	}
 
 	@Override
@@ -12,6 +12,7 @@ import org.openlca.core.matrix.index.MatrixIndex;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
 import org.openlca.core.model.descriptors.ImpactDescriptor;
+import org.openlca.core.results.providers.cache.CacheStats;
 
 /**
  * The general interface of a result provider. The documentation is based on
@@ -206,6 +207,25 @@ public interface ResultProvider {
 	 */
 	double[] solutionOfOne(int techFlow);
 
+	/**
+	 * Get the solutions of one unit for the given technosphere flows; see
+	 * {@link #solutionOfOne(int)}. Providers that solve the technology matrix
+	 * on demand can calculate these solutions in a single batch, which is much
+	 * faster than calculating them one by one. Thus, algorithms that traverse
+	 * the supply chain should prefetch the solutions of their next nodes via
+	 * this method.
+	 *
+	 * @param techFlows the indices of the technosphere flows
+	 * @return the solutions in the order of the given indices
+	 */
+	default double[][] solutionsOf(int[] techFlows) {
+		var solutions = new double[techFlows.length][];
+		for (int i = 0; i < techFlows.length; i++) {
+			solutions[i] = solutionOfOne(techFlows[i]);
+		}
+		return solutions;
+	}
+
 	/**
 	 * Get the loop factor for the given technosphere flow. The loop factor `lf[j]`
 	 * describes the faction of the total requirements of a technosphere flow `j`
@@ -299,6 +319,15 @@ public interface ResultProvider {
 		return column[flow];
 	}
 
+	/**
+	 * Creates an iterator of the unscaled column `B[:,j]` for the given
+	 * technosphere flow `j`.
+	 */
+	default ColumnIterator iterateFlowColumnOf(int techFlow) {
+		var column = unscaledFlowsOf(techFlow);
+		return new ArrayIterator(column, techFlow);
+	}
+
 	/**
 	 * Returns the direct flow results for the given technosphere flow `j`. This
 	 * is the scaled column `j` of the intervention matrix `B`: `s[j] * B[:,j]`.
@@ -383,6 +412,15 @@ public interface ResultProvider {
 	 */
 	double[] impactFactorsOf(int enviFlow);
 
+	/**
+	 * Creates an iterator of the column `C[:,i]` for the given elementary
+	 * flow `i`.
+	 */
+	default ColumnIterator iterateImpactColumnOf(int enviFlow) {
+		var factors = impactFactorsOf(enviFlow);
+		return new ArrayIterator(factors, enviFlow);
+	}
+
 	/**
 	 * Returns the impact factor (characterisation factor) for the impact category
 	 * `k` and elementary flow `i`. This is the entry `C[k,i] of the impact
@@ -596,6 +634,15 @@ public interface ResultProvider {
 		return value == 0 ? 0 : -value;
 	}
 
+	/**
+	 * Returns the counters of the cache of the vectors that this provider
+	 * calculates on demand. Providers that calculate everything upfront do not
+	 * have such a cache and return empty statistics.
+	 */
+	default CacheStats cacheStats() {
+		return CacheStats.empty();
+	}
+
 	/**
 	 * This method should be implemented by result providers that allocate
 	 * resources that need to be freed up later, like memory outside the JVM of
@@ -5,7 +5,10 @@ import org.openlca.core.database.IDatabase;
 import org.openlca.core.library.reader.LibReaderRegistry;
 import org.openlca.core.matrix.Demand;
 import org.openlca.core.matrix.MatrixData;
+import org.openlca.core.matrix.solvers.Factorization;
+import org.openlca.core.matrix.solvers.IterativeSolver;
 import org.openlca.core.matrix.solvers.MatrixSolver;
+import org.openlca.core.results.providers.cache.CachePolicy;
 
 public class SolverContext {
 
@@ -13,6 +16,10 @@ public class SolverContext {
 	private final MatrixData matrixData;
 	private MatrixSolver solver;
 	private LibReaderRegistry libraries;
+	private Factorization factorization;
+	private boolean ownsFactorization;
+	private Factorization factorizationPattern;
+	private CachePolicy cachePolicy;
 
 	private SolverContext(IDatabase db, MatrixData matrixData) {
 		this.db = db;
@@ -67,6 +74,12 @@ public class SolverContext {
 		return libraries;
 	}
 
+	/**
+	 * Sets the matrix solver of this context. By default, the best available
+	 * solver is used; see {@link MatrixSolver#get()}. For very large systems,
+	 * an {@link IterativeSolver} can be set here, which then also solves the
+	 * technology matrix in the {@link FactorizationSolver}.
+	 */
 	public SolverContext withSolver(MatrixSolver solver) {
 		this.solver = solver;
 		return this;
@@ -78,4 +91,85 @@ public class SolverContext {
 		}
 		return solver;
 	}
+
+	/**
+	 * Sets an existing factorization of the technology matrix of this context.
+	 * Solvers that work with a factorization use this instead of factorizing
+	 * the technology matrix again. This is useful when the same technology
+	 * matrix is solved multiple times, e.g. in a Monte-Carlo simulation where
+	 * only the intervention or impact matrix change. Note that the solvers do
+	 * not take the ownership of such a factorization, thus, it is not disposed
+	 * when the respective result is disposed.
+	 */
+	public SolverContext withFactorization(Factorization factorization) {
+		this.factorization = factorization;
+		this.ownsFactorization = false;
+		return this;
+	}
+
+	/**
+	 * Like {@link #withFactorization} but the solver takes the ownership of
+	 * the given factorization and disposes it when the respective result is
+	 * disposed.
+	 */
+	public SolverContext withOwnedFactorization(Factorization factorization) {
+		this.factorization = factorization;
+		this.ownsFactorization = factorization != null;
+		return this;
+	}
+
+	/**
+	 * Returns true if the solver should dispose the existing factorization of
+	 * this context when its result is disposed.
+	 */
+	public boolean ownsFactorization() {
+		return ownsFactorization;
+	}
+
+	/**
+	 * Returns the existing factorization of the technology matrix of this
+	 * context, or {@code null} if no such factorization was set.
+	 */
+	public Factorization factorization() {
+		return factorization;
+	}
+
+	/**
+	 * Sets the factorization of a matrix that has (probably) the same sparsity
+	 * pattern as the technology matrix of this context, e.g. the factorization
+	 * of a previous simulation run or project variant. Solvers that factorize
+	 * the technology matrix can then try to reuse the symbolic analysis of that
+	 * factorization; see {@link MatrixSolver#refactorize}.
+	 */
+	public SolverContext withFactorizationPattern(Factorization pattern) {
+		this.factorizationPattern = pattern;
+		return this;
+	}
+
+	/**
+	 * Returns the factorization of a matrix with (probably) the same sparsity
+	 * pattern as the technology matrix of this context, or {@code null} if no
+	 * such factorization was set.
+	 */
+	public Factorization factorizationPattern() {
+		return factorizationPattern;
+	}
+
+	/**
+	 * Sets the policy of the caches of result providers that calculate results
+	 * on demand, like the {@link FactorizationSolver}. By default, these caches
+	 * are unbounded, which can be a problem for long-living results that are
+	 * browsed deeply, e.g. in a server application.
+	 */
+	public SolverContext withCachePolicy(CachePolicy policy) {
+		this.cachePolicy = policy;
+		return this;
+	}
+
+	public CachePolicy cachePolicy() {
+		if (cachePolicy == null) {
+			cachePolicy = CachePolicy.unbounded();
+		}
+		return cachePolicy;
+	}
 }
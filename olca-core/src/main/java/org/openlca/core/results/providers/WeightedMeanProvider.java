@@ -9,6 +9,7 @@ import org.openlca.core.matrix.index.EnviIndex;
 import org.openlca.core.matrix.index.ImpactIndex;
 import org.openlca.core.matrix.index.TechIndex;
 import org.openlca.core.matrix.solvers.MatrixSolver;
+import org.openlca.core.results.providers.cache.CacheStats;
 
 /**
  * This class is used to calculate results for the raw-value version of PSILCA
@@ -185,6 +186,11 @@ public class WeightedMeanProvider implements ResultProvider {
 		return r.solutionOfOne(techFlow);
 	}
 
+	@Override
+	public double[][] solutionsOf(int[] techFlows) {
+		return r.solutionsOf(techFlows);
+	}
+
 	@Override
 	public double loopFactorOf(int techFlow) {
 		return r.loopFactorOf(techFlow);
@@ -200,6 +206,11 @@ public class WeightedMeanProvider implements ResultProvider {
 		return r.unscaledFlowsOf(techFlow);
 	}
 
+	@Override
+	public ColumnIterator iterateFlowColumnOf(int techFlow) {
+		return r.iterateFlowColumnOf(techFlow);
+	}
+
 	@Override
 	public double unscaledFlowOf(int flow, int product) {
 		return r.unscaledFlowOf(flow, product);
@@ -225,6 +236,11 @@ public class WeightedMeanProvider implements ResultProvider {
 		return r.totalCosts();
 	}
 
+	@Override
+	public CacheStats cacheStats() {
+		return r.cacheStats();
+	}
+
 	@Override
 	public void dispose() {
 		r.dispose();
@@ -0,0 +1,94 @@
+package org.openlca.core.results.providers.cache;
+
+/**
+ * Defines how result providers cache the vectors that they calculate on
+ * demand (e.g. solutions or total results of single technosphere flows).
+ *
+ * @param maxBytes the byte budget of the cache of a result; when the cached
+ *                 vectors need more memory, entries are evicted
+ * @param eviction the strategy for selecting the entries that are evicted
+ * @param storage  the way how the vectors are stored
+ */
+public record CachePolicy(long maxBytes, Eviction eviction, Storage storage) {
+
+	public enum Eviction {
+
+		/**
+		 * Evicts the least recently used entries first.
+		 */
+		LRU,
+
+		/**
+		 * Evicts the least frequently used entries first. Entries with the
+		 * same number of accesses are evicted in LRU order.
+		 */
+		LFU
+	}
+
+	public enum Storage {
+
+		/**
+		 * Stores the vectors on the heap.
+		 */
+		HEAP,
+
+		/**
+		 * Stores the vectors via soft references on the heap, so that the
+		 * garbage collector can clear them when memory runs low.
+		 */
+		SOFT,
+
+		/**
+		 * Stores the vectors in direct buffers outside the heap. The values
+		 * are copied into a new array when they are read from the cache.
+		 */
+		OFF_HEAP
+	}
+
+	public CachePolicy {
+		if (maxBytes < 0)
+			throw new IllegalArgumentException("maxBytes must be >= 0");
+		if (eviction == null) {
+			eviction = Eviction.LRU;
+		}
+		if (storage == null) {
+			storage = Storage.HEAP;
+		}
+	}
+
+	/**
+	 * A policy without a byte budget, where everything is kept on the heap.
+	 * This is the default policy of the result providers.
+	 */
+	public static CachePolicy unbounded() {
+		return new CachePolicy(Long.MAX_VALUE, Eviction.LRU, Storage.HEAP);
+	}
+
+	/**
+	 * A LRU policy with the given byte budget that stores the vectors on the
+	 * heap.
+	 */
+	public static CachePolicy ofBytes(long maxBytes) {
+		return new CachePolicy(maxBytes, Eviction.LRU, Storage.HEAP);
+	}
+
+	/**
+	 * A LRU policy with the given budget in megabytes that stores the vectors
+	 * on the heap.
+	 */
+	public static CachePolicy ofMegaBytes(long maxMegaBytes) {
+		return ofBytes(maxMegaBytes * 1024 * 1024);
+	}
+
+	public CachePolicy withEviction(Eviction eviction) {
+		return new CachePolicy(maxBytes, eviction, storage);
+	}
+
+	public CachePolicy withStorage(Storage storage) {
+		return new CachePolicy(maxBytes, eviction, storage);
+	}
+
+	public boolean isBounded() {
+		return maxBytes < Long.MAX_VALUE;
+	}
+}
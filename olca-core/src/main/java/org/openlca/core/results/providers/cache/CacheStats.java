@@ -0,0 +1,45 @@
+package org.openlca.core.results.providers.cache;
+
+/**
+ * A snapshot of the counters of a vector cache.
+ *
+ * @param hits      the number of requests that were answered from the cache
+ * @param misses    the number of requests that were not in the cache
+ * @param evictions the number of entries that were evicted because of the
+ *                  byte budget of the cache
+ * @param entries   the current number of entries in the cache
+ * @param bytes     the current (estimated) size of the cached entries
+ */
+public record CacheStats(
+		long hits, long misses, long evictions, int entries, long bytes) {
+
+	private static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0);
+
+	public static CacheStats empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns the fraction of the requests that were answered from the cache.
+	 */
+	public double hitRate() {
+		long requests = hits + misses;
+		return requests == 0
+				? 0
+				: (double) hits / (double) requests;
+	}
+
+	/**
+	 * Returns the sum of the counters of this and the given statistics.
+	 */
+	public CacheStats plus(CacheStats other) {
+		if (other == null)
+			return this;
+		return new CacheStats(
+				hits + other.hits,
+				misses + other.misses,
+				evictions + other.evictions,
+				entries + other.entries,
+				bytes + other.bytes);
+	}
+}
@@ -0,0 +1,294 @@
+package org.openlca.core.results.providers.cache;
+
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of vectors that are calculated on demand by a result provider. The
+ * cache is divided into regions (e.g. one region for the solutions and one
+ * for the total flows of single technosphere flows) that share the byte
+ * budget of the cache policy. When the budget is exceeded, entries of all
+ * regions are evicted according to the eviction strategy of the policy.
+ * <p>
+ * The cache is thread-safe, so that a result can be browsed by multiple
+ * clients in parallel. The entries are stored in a concurrent map, and a lock
+ * is only taken for the eviction order of a bounded cache.
+ */
+public final class VectorCache {
+
+	/**
+	 * The estimated memory overhead of an entry on the heap (the array header
+	 * or buffer objects, the slot object, and the map entry).
+	 */
+	private static final long ENTRY_OVERHEAD = 96;
+
+	private final CachePolicy policy;
+	private final ConcurrentHashMap<Long, Slot> slots = new ConcurrentHashMap<>();
+
+	/**
+	 * The eviction order of the entries; this is only maintained when the
+	 * cache is bounded. Changes of the order, and of the entries of a bounded
+	 * cache, are synchronized on this cache.
+	 */
+	private final TreeSet<Slot> order;
+
+	private final AtomicInteger nextRegion = new AtomicInteger();
+	private final AtomicLong bytes = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private long tick;
+
+	private VectorCache(CachePolicy policy) {
+		this.policy = policy;
+		if (!policy.isBounded()) {
+			order = null;
+		} else {
+			Comparator<Slot> byTick = Comparator.comparingLong(s -> s.tick);
+			order = policy.eviction() == CachePolicy.Eviction.LFU
+					? new TreeSet<>(Comparator.<Slot>comparingInt(s -> s.count)
+					.thenComparing(byTick))
+					: new TreeSet<>(byTick);
+		}
+	}
+
+	public static VectorCache of(CachePolicy policy) {
+		return new VectorCache(policy != null
+				? policy
+				: CachePolicy.unbounded());
+	}
+
+	public CachePolicy policy() {
+		return policy;
+	}
+
+	/**
+	 * Creates a new region of this cache.
+	 */
+	public Region region() {
+		return new Region(nextRegion.getAndIncrement());
+	}
+
+	public CacheStats stats() {
+		return new CacheStats(hits.sum(), misses.sum(), evictions.sum(),
+				slots.size(), bytes.get());
+	}
+
+	/**
+	 * Removes all entries from the cache. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		for (var slot : slots.values()) {
+			remove(slot);
+		}
+	}
+
+	private double[] get(long key) {
+		var slot = slots.get(key);
+		if (slot == null) {
+			misses.increment();
+			return null;
+		}
+		var values = slot.values();
+		if (values == null) {
+			// a soft reference was cleared
+			if (order != null) {
+				synchronized (this) {
+					remove(slot);
+				}
+			} else {
+				remove(slot);
+			}
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		if (order != null) {
+			synchronized (this) {
+				// the slot could have been evicted in the meantime
+				if (order.remove(slot)) {
+					slot.tick = tick++;
+					slot.count++;
+					order.add(slot);
+				}
+			}
+		}
+		return values;
+	}
+
+	private void put(long key, double[] values) {
+		var slot = switch (policy.storage()) {
+			case HEAP -> new HeapSlot(key, values);
+			case SOFT -> new SoftSlot(key, values);
+			case OFF_HEAP -> new OffHeapSlot(key, values);
+		};
+		if (slot.size > policy.maxBytes())
+			return;
+		if (order == null) {
+			var old = slots.put(key, slot);
+			bytes.addAndGet(old != null ? slot.size - old.size : slot.size);
+			return;
+		}
+
+		synchronized (this) {
+			var old = slots.get(key);
+			if (old != null) {
+				remove(old);
+			}
+			while (!order.isEmpty()
+					&& bytes.get() + slot.size > policy.maxBytes()) {
+				remove(order.first());
+				evictions.increment();
+			}
+			slot.tick = tick++;
+			slots.put(key, slot);
+			order.add(slot);
+			bytes.addAndGet(slot.size);
+		}
+	}
+
+	private synchronized void clearRegion(long region) {
+		for (var slot : slots.values()) {
+			if ((slot.key >>> 32) == region) {
+				remove(slot);
+			}
+		}
+	}
+
+	/**
+	 * Removes the given slot if it is still in the cache. For a bounded cache,
+	 * this must be called while holding the lock of the cache.
+	 */
+	private void remove(Slot slot) {
+		if (!slots.remove(slot.key, slot))
+			return;
+		if (order != null) {
+			order.remove(slot);
+		}
+		bytes.addAndGet(-slot.size);
+	}
+
+	/**
+	 * A region of the cache in which the vectors are stored by integer keys
+	 * (e.g. the indices of technosphere flows).
+	 */
+	public final class Region {
+
+		private final long id;
+
+		private Region(int id) {
+			this.id = id;
+		}
+
+		/**
+		 * Returns the cached vector of the given key or {@code null} if there
+		 * is no such vector in the cache.
+		 */
+		public double[] get(int key) {
+			return VectorCache.this.get(keyOf(key));
+		}
+
+		/**
+		 * Puts the given vector into the cache and returns it. Note that the
+		 * vector is not cached when it is larger than the byte budget of the
+		 * cache.
+		 */
+		public double[] put(int key, double[] values) {
+			if (values != null) {
+				VectorCache.this.put(keyOf(key), values);
+			}
+			return values;
+		}
+
+		/**
+		 * Removes all entries of this region from the cache.
+		 */
+		public void clear() {
+			clearRegion(id);
+		}
+
+		private long keyOf(int key) {
+			return (id << 32) | (key & 0xffffffffL);
+		}
+	}
+
+	private static abstract class Slot {
+
+		final long key;
+		final long size;
+		long tick;
+		int count;
+
+		Slot(long key, long size) {
+			this.key = key;
+			this.size = size;
+		}
+
+		abstract double[] values();
+	}
+
+	private static class HeapSlot extends Slot {
+
+		private final double[] values;
+
+		HeapSlot(long key, double[] values) {
+			super(key, ENTRY_OVERHEAD + 8L * values.length);
+			this.values = values;
+		}
+
+		@Override
+		double[] values() {
+			return values;
+		}
+	}
+
+	private static class SoftSlot extends Slot {
+
+		private final SoftReference<double[]> ref;
+
+		SoftSlot(long key, double[] values) {
+			super(key, ENTRY_OVERHEAD + 8L * values.length);
+			this.ref = new SoftReference<>(values);
+		}
+
+		@Override
+		double[] values() {
+			return ref.get();
+		}
+	}
+
+	private static class OffHeapSlot extends Slot {
+
+		private final DoubleBuffer buffer;
+
+		OffHeapSlot(long key, double[] values) {
+			this(key, ByteBuffer.allocateDirect(8 * values.length)
+					.order(ByteOrder.nativeOrder()));
+			buffer.put(values);
+		}
+
+		/**
+		 * The size of an off-heap slot is the capacity of its native buffer
+		 * plus the overhead of the objects on the heap.
+		 */
+		private OffHeapSlot(long key, ByteBuffer bytes) {
+			super(key, ENTRY_OVERHEAD + bytes.capacity());
+			buffer = bytes.asDoubleBuffer();
+		}
+
+		@Override
+		double[] values() {
+			var values = new double[buffer.capacity()];
+			buffer.get(0, values);
+			return values;
+		}
+	}
+}
@@ -1,32 +1,73 @@
 package org.openlca.core.services;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.library.reader.LibReaderRegistry;
+import org.openlca.core.math.BatchCalculator;
+import org.openlca.core.math.BatchResult;
 import org.openlca.core.math.SystemCalculator;
+import org.openlca.core.matrix.solvers.Factorization;
 import org.openlca.core.model.CalculationSetup;
 import org.openlca.core.results.LcaResult;
+import org.openlca.core.results.providers.FactorizationSolver;
+import org.openlca.core.results.providers.cache.CachePolicy;
+import org.openlca.core.results.providers.cache.CacheStats;
 import org.slf4j.LoggerFactory;
 
 public class CalculationQueue {
 
+	/**
+	 * The maximum number of calculation targets for which the symbolic
+	 * analyses of the factorizations are kept.
+	 */
+	private static final int MAX_PATTERNS = 32;
+
 	private final IDatabase db;
 	private final ConcurrentMap<String, ResultState> states;
 	private final ExecutorService threads;
+
+	/**
+	 * Contains the symbolic analyses of the factorizations of the last
+	 * calculations of the calculation targets (product systems or processes).
+	 * Repeated calculations of the same target, e.g. with different parameter
+	 * values, can then reuse these analyses. Only the analyses are stored
+	 * and not the factorizations of the results, so that the numeric factors
+	 * are released when a result is disposed. The least recently used
+	 * analyses are removed when there are more than {@link #MAX_PATTERNS}
+	 * targets.
+	 */
+	private final Map<Long, Factorization> patterns;
+	private final List<Consumer<String>> disposeListeners;
 	private LibReaderRegistry libraries;
+	private CachePolicy cachePolicy;
 	private Cleaner cleaner;
 
 	public CalculationQueue(IDatabase db, int threadCount) {
 		this.db = db;
 		threads = Executors.newFixedThreadPool(threadCount);
 		states = new ConcurrentHashMap<>();
+		patterns = Collections.synchronizedMap(
+				new LinkedHashMap<>(16, 0.75f, true) {
+					@Override
+					protected boolean removeEldestEntry(
+							Map.Entry<Long, Factorization> eldest) {
+						return size() > MAX_PATTERNS;
+					}
+				});
+		disposeListeners = new CopyOnWriteArrayList<>();
 	}
 
 	public CalculationQueue withLibraries(LibReaderRegistry libraries) {
@@ -34,6 +75,42 @@ public class CalculationQueue {
 		return this;
 	}
 
+	/**
+	 * Sets the cache policy of the results of this queue. With a bounded
+	 * policy, the memory of the results that are browsed on demand is limited,
+	 * so that many results can be hosted concurrently.
+	 */
+	public CalculationQueue withCachePolicy(CachePolicy policy) {
+		this.cachePolicy = policy;
+		return this;
+	}
+
+	/**
+	 * Registers a function that is called with the ID of a calculation or
+	 * result when this queue disposes it, explicitly or after a timeout. Data
+	 * that are attached to a result, like cached graphs, can be released
+	 * then.
+	 */
+	public void onDispose(Consumer<String> fn) {
+		if (fn != null) {
+			disposeListeners.add(fn);
+		}
+	}
+
+	/**
+	 * Returns the sum of the cache counters of the results that are currently
+	 * hosted by this queue.
+	 */
+	public CacheStats cacheStats() {
+		var stats = CacheStats.empty();
+		for (var state : states.values()) {
+			if (state.isReady()) {
+				stats = stats.plus(state.result().provider().cacheStats());
+			}
+		}
+		return stats;
+	}
+
 	public static CalculationQueue of(ServerConfig config) {
 		var db = config.db();
 		var queue = new CalculationQueue(db, config.threadCount());
@@ -44,6 +121,16 @@ public class CalculationQueue {
 		if (config.timeout() > 0) {
 			queue.withTimeout(config.timeout(), TimeUnit.MINUTES);
 		}
+		var cache = config.args().get("-cache");
+		if (cache != null) {
+			try {
+				var mb = Long.parseLong(cache);
+				queue.withCachePolicy(CachePolicy.ofMegaBytes(mb));
+			} catch (NumberFormatException e) {
+				LoggerFactory.getLogger(CalculationQueue.class)
+						.error("invalid cache size: {}", cache);
+			}
+		}
 		return queue;
 	}
 
@@ -86,6 +173,15 @@ public class CalculationQueue {
 				: next;
 	}
 
+	/**
+	 * Returns true when this queue hosts a calculation or result with the
+	 * given ID. Unlike {@link #get(String)}, this does not update the time
+	 * stamp of that calculation.
+	 */
+	public boolean contains(String id) {
+		return id != null && states.containsKey(id);
+	}
+
 	/**
 	 * Removes the calculation or result with the given ID. If the calculation
 	 * was scheduled, it will not be performed.
@@ -93,7 +189,14 @@ public class CalculationQueue {
 	public void dispose(String id) {
 		var state = states.remove(id);
 		if (state != null) {
-			state.dispose();
+			disposed(id, state);
+		}
+	}
+
+	private void disposed(String id, ResultState state) {
+		state.dispose();
+		for (var fn : disposeListeners) {
+			fn.accept(id);
 		}
 	}
 
@@ -121,6 +224,17 @@ public class CalculationQueue {
 		return state;
 	}
 
+	/**
+	 * Calculates the total results of the given scenarios of a setup directly,
+	 * without scheduling a result; see {@link BatchCalculator}.
+	 */
+	public BatchResult calculateBatch(
+			CalculationSetup setup, List<BatchCalculator.Scenario> scenarios) {
+		return new BatchCalculator(db)
+				.withLibraries(libraries)
+				.calculate(Objects.requireNonNull(setup), scenarios);
+	}
+
 	public ResultState nextSimulation(String id) {
 		var state = states.get(id);
 		if (state == null || state.isEmpty() || state.simulator() == null)
@@ -145,9 +259,7 @@ public class CalculationQueue {
 				if (state.simulator() != null) {
 					result = state.simulator().nextRun();
 				} else {
-					result = new SystemCalculator(db)
-							.withLibraries(libraries)
-							.calculate(state.setup());
+					result = calculate(state.setup());
 				}
 				var nextState = state.updateResult(result);
 				states.put(state.id(), nextState);
@@ -158,6 +270,23 @@ public class CalculationQueue {
 		});
 	}
 
+	private LcaResult calculate(CalculationSetup setup) {
+		var target = setup.target();
+		long targetId = target != null ? target.id : 0L;
+		var result = new SystemCalculator(db)
+				.withLibraries(libraries)
+				.withFactorizationPattern(patterns.get(targetId))
+				.withCachePolicy(cachePolicy)
+				.calculate(setup);
+		if (result.provider() instanceof FactorizationSolver solver) {
+			var analysis = solver.factorization().analysis();
+			if (analysis != null) {
+				patterns.put(targetId, analysis);
+			}
+		}
+		return result;
+	}
+
 	private static class Cleaner extends Thread {
 
 		private final CalculationQueue queue;
@@ -190,9 +319,9 @@ public class CalculationQueue {
 				long limit = System.currentTimeMillis() - timeout;
 				for (var e : queue.states.entrySet()) {
 					var state = e.getValue();
-					if (state.time() < limit) {
-						queue.states.remove(e.getKey(), e.getValue());
-						state.dispose();
+					if (state.time() < limit
+							&& queue.states.remove(e.getKey(), state)) {
+						queue.disposed(e.getKey(), state);
 					}
 				}
 			}
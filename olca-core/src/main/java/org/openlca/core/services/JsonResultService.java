@@ -3,22 +3,35 @@ package org.openlca.core.services;
 import static org.openlca.core.services.JsonUtil.*;
 import static org.openlca.core.services.Util.*;
 
+import java.util.ArrayList;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import com.google.gson.JsonPrimitive;
 import org.openlca.core.database.CurrencyDao;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.io.DbEntityResolver;
+import org.openlca.core.math.BatchCalculator;
+import org.openlca.core.math.BatchResult;
+import org.openlca.core.matrix.Demand;
 import org.openlca.core.matrix.NwSetTable;
 import org.openlca.core.matrix.index.TechFlow;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactDescriptor;
+import org.openlca.core.model.descriptors.RootDescriptor;
 import org.openlca.core.results.LcaResult;
 import org.openlca.core.results.Sankey;
 import org.openlca.core.results.TechFlowValue;
 import org.openlca.core.results.UpstreamTree;
 import org.openlca.jsonld.Json;
+import org.openlca.jsonld.input.ParameterReader;
 import org.openlca.jsonld.output.JsonRefs;
 
 import com.google.gson.JsonArray;
@@ -27,12 +40,28 @@ import org.openlca.util.Strings;
 
 public class JsonResultService {
 
+	/**
+	 * The maximum number of nodes of the cached upstream trees.
+	 */
+	private static final int MAX_UPSTREAM_NODES = 500_000;
+
 	private final IDatabase db;
 	private final CalculationQueue queue;
+	private final ConcurrentMap<String, CachedSankey> sankeys;
+	private final UpstreamTreeCache upstreamTrees;
 
 	private JsonResultService(ServerConfig config) {
 		this.db = Objects.requireNonNull(config.db());
 		this.queue = CalculationQueue.of(config);
+		this.sankeys = new ConcurrentHashMap<>();
+		this.upstreamTrees = new UpstreamTreeCache(MAX_UPSTREAM_NODES);
+
+		// release the graphs and trees of results that are disposed by the
+		// queue, e.g. after a timeout
+		queue.onDispose(id -> {
+			sankeys.remove(id);
+			upstreamTrees.remove(id);
+		});
 	}
 
 	public static JsonResultService of(ServerConfig config) {
@@ -63,9 +92,106 @@ public class JsonResultService {
 		}
 	}
 
+	/**
+	 * Calculates the total results of a batch of scenarios for a setup. In
+	 * addition to the fields of a calculation setup, the request contains an
+	 * array {@code scenarios} with objects that have an {@code amount} of the
+	 * reference flow and optional {@code parameters} that are applied after
+	 * the parameters of the setup. Instead of the reference flow, a scenario
+	 * can demand another product or waste flow of the system with a
+	 * {@code techFlow}; the {@code amount} is then given in the reference
+	 * unit of that flow. The results are returned directly as matrices with
+	 * the scenarios as columns.
+	 */
+	public Response<JsonObject> calculateBatch(JsonObject setup) {
+		try {
+			var resolver = DbEntityResolver.of(db);
+			var r = JsonCalculationSetup.readFrom(setup, resolver);
+			if (r.hasError())
+				return Response.error(r.error());
+			var array = Json.getArray(setup, "scenarios");
+			if (array == null || array.isEmpty())
+				return Response.error("no scenarios provided");
+			var scenarios = new ArrayList<BatchCalculator.Scenario>();
+			for (var e : array) {
+				if (!e.isJsonObject())
+					continue;
+				var obj = e.getAsJsonObject();
+				var params = ParameterReader.readRedefs(
+						Json.getArray(obj, "parameters"), resolver);
+				var techFlowObj = Json.getObject(obj, "techFlow");
+				if (techFlowObj != null) {
+					var techFlow = resolveTechFlow(techFlowObj);
+					if (techFlow == null)
+						return Response.error("invalid tech-flow in scenario: "
+								+ techFlowObj);
+					var amount = Json.getDouble(obj, "amount").orElse(1.0);
+					scenarios.add(BatchCalculator.Scenario.of(
+							Demand.of(techFlow, amount), params));
+					continue;
+				}
+				var amount = Json.getDouble(obj, "amount")
+						.orElse(r.setup().amount());
+				scenarios.add(BatchCalculator.Scenario.of(amount, params));
+			}
+			var batch = queue.calculateBatch(r.setup(), scenarios);
+			return Response.of(encodeBatch(batch));
+		} catch (Exception e) {
+			return Response.error(e);
+		}
+	}
+
+	/**
+	 * Resolves the provider (a process or product system) and flow of the
+	 * given tech-flow object from the database.
+	 */
+	private TechFlow resolveTechFlow(JsonObject obj) {
+		var id = TechFlowId.of(obj).orElse(null);
+		if (id == null)
+			return null;
+		var flow = db.getDescriptor(Flow.class, id.flowId());
+		if (!(flow instanceof FlowDescriptor f))
+			return null;
+		RootDescriptor provider = db.getDescriptor(Process.class, id.providerId());
+		if (provider == null) {
+			provider = db.getDescriptor(ProductSystem.class, id.providerId());
+		}
+		return provider != null
+				? TechFlow.of(provider, f)
+				: null;
+	}
+
+	private JsonObject encodeBatch(BatchResult batch) {
+		var refs = JsonRefs.of(db);
+		var obj = new JsonObject();
+		Json.put(obj, "scenarios", batch.size());
+		if (batch.enviIndex() != null) {
+			Json.put(obj, "enviFlows", encodeArray(
+					batch.enviIndex(), enviFlow -> encodeEnviFlow(enviFlow, refs)));
+			Json.put(obj, "totalFlows", encodeRows(batch.totalFlows()));
+		}
+		if (batch.impactIndex() != null) {
+			Json.put(obj, "impactCategories", encodeArray(
+					batch.impactIndex(), refs::asRef));
+			Json.put(obj, "totalImpacts", encodeRows(batch.totalImpacts()));
+		}
+		if (batch.totalCosts() != null) {
+			var costs = new JsonArray(batch.totalCosts().length);
+			for (var c : batch.totalCosts()) {
+				costs.add(c);
+			}
+			Json.put(obj, "totalCosts", costs);
+		}
+		return obj;
+	}
+
 	public Response<JsonObject> nextSimulationOf(String resultId) {
 		try {
 			var state = queue.nextSimulation(resultId);
+
+			// the cached graphs and trees belong to the replaced result
+			sankeys.remove(resultId);
+			upstreamTrees.remove(resultId);
 			return Response.of(encodeState(state));
 		} catch (Exception e) {
 			return Response.error(e);
@@ -545,8 +671,8 @@ public class JsonResultService {
 			String resultId, String path, EnviFlowId enviFlowId) {
 		return withResult(resultId, result -> enviFlowOf(result, enviFlowId)
 				.map(enviFlow -> {
-					var tree = UpstreamTree.of(result.provider(), enviFlow);
-					return getUpstreamNodes(path, tree);
+					return getUpstreamNodes(resultId, result, enviFlow, path,
+							() -> UpstreamTree.of(result.provider(), enviFlow));
 				}));
 	}
 
@@ -554,27 +680,43 @@ public class JsonResultService {
 			String resultId, String path, String impactId) {
 		return withResult(resultId, result -> impactCategoryOf(result, impactId)
 				.map(impact -> {
-					var tree = UpstreamTree.of(result.provider(), impact);
-					return getUpstreamNodes(path, tree);
+					return getUpstreamNodes(resultId, result, impact, path,
+							() -> UpstreamTree.of(result.provider(), impact));
 				}));
 	}
 
 	public Response<JsonArray> getUpstreamCostsOf(String resultId, String path) {
 		return withResult(resultId, result -> {
-			var tree = UpstreamTree.costsOf(result.provider());
-			var nodes = getUpstreamNodes(path, tree);
+			var nodes = getUpstreamNodes(
+					resultId, result, UpstreamTreeCache.COSTS, path,
+					() -> UpstreamTree.costsOf(result.provider()));
 			return Response.of(nodes);
 		});
 	}
 
-	private JsonArray getUpstreamNodes(String path, UpstreamTree tree) {
-		var nodes = UpstreamPath.parse(path).selectChilds(tree);
+	/**
+	 * Selects the nodes of the given path from the cached upstream tree of the
+	 * given result and reference. The nodes on the path are expanded only
+	 * once; following requests for deeper paths reuse them.
+	 */
+	private JsonArray getUpstreamNodes(String resultId, LcaResult result,
+			Object ref, String path, Supplier<UpstreamTree> init) {
 		var refs = JsonRefs.of(db);
-		return encodeArray(nodes, node -> encodeUpstreamNode(node, refs));
+		var upstreamPath = UpstreamPath.parse(path);
+		return upstreamTrees.apply(resultId, result, ref, init, tree -> {
+			var nodes = upstreamPath.selectChilds(tree);
+			return encodeArray(nodes, node -> encodeUpstreamNode(node, refs));
+		});
 	}
 
 	// endregion
 
+	/**
+	 * Returns the graph of a Sankey diagram of a result. The last graph of a
+	 * result is kept, so that a following request for the same reference with
+	 * a larger node count or a smaller minimum share refines that graph
+	 * instead of building a new one.
+	 */
 	public Response<JsonObject> getSankeyGraph(String resultId, JsonObject req) {
 		return withResult(resultId, result -> {
 
@@ -588,17 +730,27 @@ public class JsonResultService {
 			if (!r.hasImpact() && !r.hasFlow())
 				return Response.error("no impact category or flow provided");
 
-			// build the Sankey diagram
-			var config = r.hasImpact()
-					? Sankey.of(r.impact(), result.provider())
-					: Sankey.of(r.flow(), result.provider());
-			var sankey = config.withMaximumNodeCount(r.maxNodes())
-					.withMinimumShare(r.minShare())
-					.build();
-
-			// convert the graph
-			var json = JsonSankeyGraph.of(sankey,JsonRefs.of(db));
-			return Response.of(json);
+			// build or refine the Sankey diagram and convert the graph; this
+			// is done in the lock of the cached graph of the result, so that
+			// requests for other results are not blocked
+			Object ref = r.hasImpact() ? r.impact() : r.flow();
+			var cached = sankeys.computeIfAbsent(resultId, $ -> new CachedSankey());
+			synchronized (cached) {
+				if (cached.result == result
+						&& cached.sankey != null
+						&& Objects.equals(cached.sankey.reference, ref)) {
+					cached.sankey = cached.sankey.refine(r.maxNodes(), r.minShare());
+				} else {
+					var config = r.hasImpact()
+							? Sankey.of(r.impact(), result.provider())
+							: Sankey.of(r.flow(), result.provider());
+					cached.result = result;
+					cached.sankey = config.withMaximumNodeCount(r.maxNodes())
+							.withMinimumShare(r.minShare())
+							.build();
+				}
+				return Response.of(JsonSankeyGraph.of(cached.sankey, JsonRefs.of(db)));
+			}
 		});
 	}
 
@@ -616,11 +768,20 @@ public class JsonResultService {
 	private <T> Response<T> withResult(
 			String resultId, Function<LcaResult, Response<T>> fn) {
 		var res = resultOf(queue, resultId);
-		if (res.isEmpty())
+		if (res.isEmpty()) {
 			return Response.empty();
-		return res.isError()
-				? Response.error(res.error())
-				: fn.apply(res.value());
+		}
+		if (res.isError())
+			return Response.error(res.error());
+		var response = fn.apply(res.value());
+
+		// when the result was disposed while the request was handled, a graph
+		// or tree could have been cached after the queue notified this service
+		if (!queue.contains(resultId)) {
+			sankeys.remove(resultId);
+			upstreamTrees.remove(resultId);
+		}
+		return response;
 	}
 
 	private <T> Response<T> withResultOfTechFlow(
@@ -654,4 +815,12 @@ public class JsonResultService {
 				: Response.error("no LCIA category exists for ID=" + impactId);
 	}
 
+	/**
+	 * The Sankey graph of a result. The graph is built and refined in the
+	 * lock of this object.
+	 */
+	private static class CachedSankey {
+		private LcaResult result;
+		private Sankey<?> sankey;
+	}
 }
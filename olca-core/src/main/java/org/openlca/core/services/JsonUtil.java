@@ -2,6 +2,7 @@ package org.openlca.core.services;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import org.openlca.core.matrix.format.DenseMatrix;
 import org.openlca.core.matrix.index.EnviFlow;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.linking.LinkingConfig;
@@ -162,4 +163,21 @@ final class JsonUtil {
 		}
 		return array;
 	}
+
+	/**
+	 * Encodes the rows of the given matrix as arrays of numbers.
+	 */
+	static JsonArray encodeRows(DenseMatrix matrix) {
+		var rows = new JsonArray();
+		if (matrix == null)
+			return rows;
+		for (int i = 0; i < matrix.rows; i++) {
+			var row = new JsonArray(matrix.columns);
+			for (int j = 0; j < matrix.columns; j++) {
+				row.add(matrix.get(i, j));
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
 }
@@ -92,5 +92,8 @@ record ResultState(
 		if (result != null) {
 			result.dispose();
 		}
+		if (simulator != null) {
+			simulator.dispose();
+		}
 	}
 }
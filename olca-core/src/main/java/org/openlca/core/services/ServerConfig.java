@@ -52,6 +52,12 @@ import org.slf4j.LoggerFactory;
  * 	disposed by the user. A value of <=0 means that no timeout should be
  * 	applied; defaults to 0.
  *
+ * 	-cache <megabytes>
+ * 	The memory budget in megabytes of the cache of each result. Results that
+ * 	are calculated on demand keep the calculated vectors in such a cache and
+ * 	evict the least recently used vectors when the budget is exceeded. If this
+ * 	parameter is not provided, the caches are unbounded.
+ *
  *  --readonly <true | false>?
  *  If this flag is set, the server will run in readonly mode and modifying the
  *  database will not be possible.
@@ -0,0 +1,120 @@
+package org.openlca.core.services;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openlca.core.results.LcaResult;
+import org.openlca.core.results.UpstreamTree;
+
+/**
+ * Caches the upstream trees of results by result ID and reference (flow,
+ * impact category, or costs). The nodes of an upstream tree are expanded on
+ * demand and kept in the tree, so that requests for deeper paths of a cached
+ * tree only expand the nodes at the end of the path.
+ * <p>
+ * The memory of the cache is bounded by the total number of nodes of the
+ * cached trees: when this number is exceeded, the least recently used trees
+ * are removed. Requests on the same tree are synchronized on that tree, as
+ * the expansion of the nodes is not thread-safe.
+ * <p>
+ * The cache holds only weak references to the results, which are used to
+ * detect trees of replaced results. However, a tree references the result
+ * provider from which it expands its nodes. Thus, the trees of a result must
+ * be removed when that result is disposed; see {@link #remove(String)}.
+ */
+class UpstreamTreeCache {
+
+	/**
+	 * The reference of the cost trees.
+	 */
+	static final Object COSTS = "costs";
+
+	private final int maxNodes;
+	private final LinkedHashMap<Key, Entry> trees;
+
+	UpstreamTreeCache(int maxNodes) {
+		this.maxNodes = maxNodes;
+		this.trees = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Applies the given function on the cached upstream tree of the given
+	 * result and reference. If there is no such tree, or if the cached tree
+	 * belongs to another result with the same ID (e.g. the next run of a
+	 * simulation), the tree is created with the given supplier.
+	 */
+	<T> T apply(String resultId, LcaResult result, Object ref,
+			Supplier<UpstreamTree> init, Function<UpstreamTree, T> fn) {
+		var key = new Key(resultId, ref);
+		var entry = get(key, result);
+		if (entry == null) {
+			// the tree is created outside of the lock as this can take some
+			// time; when another thread installed a tree in the meantime, we
+			// use that tree
+			entry = put(key, new Entry(new WeakReference<>(result), init.get()));
+		}
+		T value;
+		synchronized (entry.tree) {
+			value = fn.apply(entry.tree);
+		}
+		evict(key);
+		return value;
+	}
+
+	private synchronized Entry get(Key key, LcaResult result) {
+		var entry = trees.get(key);
+		return entry != null && entry.isOf(result)
+				? entry
+				: null;
+	}
+
+	private synchronized Entry put(Key key, Entry entry) {
+		var current = trees.get(key);
+		if (current != null && current.isOf(entry.result.get()))
+			return current;
+		trees.put(key, entry);
+		return entry;
+	}
+
+	/**
+	 * Removes the trees of the result with the given ID.
+	 */
+	synchronized void remove(String resultId) {
+		trees.keySet().removeIf(key -> key.resultId.equals(resultId));
+	}
+
+	/**
+	 * Removes the least recently used trees, but not the tree with the given
+	 * key, until the number of nodes is within the limit.
+	 */
+	private synchronized void evict(Key current) {
+		long count = 0;
+		for (var entry : trees.values()) {
+			count += entry.tree.nodeCount();
+		}
+		if (count <= maxNodes)
+			return;
+		var keys = new ArrayList<>(trees.keySet());
+		for (var key : keys) {
+			if (count <= maxNodes)
+				break;
+			if (key.equals(current))
+				continue;
+			var removed = trees.remove(key);
+			count -= removed.tree.nodeCount();
+		}
+	}
+
+	private record Key(String resultId, Object ref) {
+	}
+
+	private record Entry(WeakReference<LcaResult> result, UpstreamTree tree) {
+
+		boolean isOf(LcaResult r) {
+			return r != null && result.get() == r;
+		}
+	}
+}
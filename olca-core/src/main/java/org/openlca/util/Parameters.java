@@ -1,23 +1,27 @@
 package org.openlca.util;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ImpactCategoryDao;
 import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.ParameterDao;
 import org.openlca.core.database.ProcessDao;
-import org.openlca.core.database.ProductSystemDao;
-import org.openlca.core.database.ProjectDao;
+import org.openlca.core.database.usage.ParameterIndex;
+import org.openlca.core.database.usage.ParameterIndex.Field;
+import org.openlca.core.database.usage.ParameterIndex.Ref;
 import org.openlca.core.model.ImpactCategory;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.Parameter;
 import org.openlca.core.model.ParameterScope;
 import org.openlca.core.model.ParameterizedEntity;
 import org.openlca.core.model.Process;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.Project;
 import org.openlca.core.model.Version;
 import org.openlca.core.model.descriptors.RootDescriptor;
 import org.openlca.expressions.FormulaInterpreter;
@@ -114,31 +118,19 @@ public class Parameters {
 	public static List<RootDescriptor> findRedefOwners(
 			Parameter param, ParameterizedEntity owner, IDatabase db) {
 
-		var sql = "select f_owner, name, f_context from tbl_parameter_redefs";
-		var redefOwners = new TLongHashSet();
-		NativeSql.on(db).query(sql, r -> {
-			if (!eq(param.name, r.getString(2)))
-				return true;
-			long contextID = r.getLong(3);
-			if (owner.id != contextID)
-				return true;
-			redefOwners.add(r.getLong(1));
-			return true;
-		});
-
-		// collect project and product system descriptors
-		swapRedefOwners(db, redefOwners);
-		var projects = new ProjectDao(db)
-				.getDescriptors()
-				.stream()
-				.filter(d -> redefOwners.contains(d.id));
-		var systems = new ProductSystemDao(db)
-				.getDescriptors()
-				.stream()
-				.filter(d -> redefOwners.contains(d.id));
-		return Stream
-				.concat(projects, systems)
-				.collect(Collectors.toList());
+		var systems = new HashSet<Long>();
+		var projects = new HashSet<Long>();
+		for (var ref : localRedefsOf(param.name, owner, db)) {
+			if (ref.type() == ModelType.PRODUCT_SYSTEM) {
+				systems.add(ref.owner());
+			} else {
+				projects.add(ref.owner());
+			}
+		}
+		var owners = new ArrayList<RootDescriptor>();
+		owners.addAll(db.getDescriptors(Project.class, projects));
+		owners.addAll(db.getDescriptors(ProductSystem.class, systems));
+		return owners;
 	}
 
 	/**
@@ -181,6 +173,9 @@ public class Parameters {
 		swapRedefOwners(db, redefOwners);
 		incVersions(redefOwners, "tbl_product_systems", db);
 		incVersions(redefOwners, "tbl_projects", db);
+		if (!redefOwners.isEmpty()) {
+			ParameterIndex.of(db).invalidate();
+		}
 
 		// rename in local parameter formulas
 		for (var p : owner.parameters) {
@@ -344,6 +339,7 @@ public class Parameters {
 		swapRedefOwners(db, updatedOwners);
 		incVersions(updatedOwners, "tbl_product_systems", db);
 		incVersions(updatedOwners, "tbl_projects", db);
+		ParameterIndex.of(db).invalidate();
 
 		db.clearCache();
 
@@ -388,6 +384,21 @@ public class Parameters {
 		NativeSql.on(db).query(sql, swapOwner);
 	}
 
+	/**
+	 * Returns the references of the redefinitions of the given local parameter
+	 * in product systems and projects from the parameter index.
+	 */
+	private static List<Ref> localRedefsOf(
+			String name, ParameterizedEntity owner, IDatabase db) {
+		var refs = new ArrayList<Ref>();
+		for (var ref : ParameterIndex.of(db).get(name)) {
+			if (ref.field() == Field.REDEFINITION && ref.context() == owner.id) {
+				refs.add(ref);
+			}
+		}
+		return refs;
+	}
+
 	/**
 	 * Returns true if both parameter names are equivalent regarding the formula
 	 * interpreter.
@@ -0,0 +1,84 @@
+package org.openlca.core.database.usage;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.usage.ParameterIndex.Field;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.Parameter;
+import org.openlca.core.model.ParameterRedef;
+import org.openlca.core.model.ParameterRedefSet;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProductSystem;
+
+public class ParameterIndexTest {
+
+	private final IDatabase db = Tests.getDb();
+
+	@Test
+	public void testIncrementalUpdates() {
+		var index = ParameterIndex.of(db);
+		assertSame(index, ParameterIndex.of(db));
+
+		var global = db.insert(Parameter.global("idx_global", 1));
+		var refs = index.get("IDX_Global");
+		assertEquals(1, refs.size());
+		var def = refs.get(0);
+		assertEquals(ModelType.PARAMETER, def.type());
+		assertEquals(Field.DEFINITION, def.field());
+		assertEquals(global.id, def.owner());
+
+		// a process with a local formula and a product system with a
+		// redefinition of the global parameter
+		var process = new Process();
+		process.parameters.add(Parameter.process("idx_local", "2 * idx_global"));
+		process = db.insert(process);
+		var system = new ProductSystem();
+		var redefs = new ParameterRedefSet();
+		redefs.parameters.add(new ParameterRedef());
+		redefs.parameters.get(0).name = "idx_global";
+		system.parameterSets.add(redefs);
+		system = db.insert(system);
+
+		refs = index.get("idx_global");
+		assertEquals(3, refs.size());
+		var processId = process.id;
+		var systemId = system.id;
+		assertTrue(refs.stream().anyMatch(ref -> ref.owner() == processId
+				&& ref.field() == Field.PARAMETER_FORMULA));
+		assertTrue(refs.stream().anyMatch(ref -> ref.owner() == systemId
+				&& ref.field() == Field.REDEFINITION
+				&& ref.context() == 0));
+		assertTrue(index.localDefinitionsOf("idx_local").contains(processId));
+
+		// update the formula
+		process.parameters.get(0).formula = "42";
+		process = db.update(process);
+		assertEquals(2, index.get("idx_global").size());
+		assertTrue(index.localDefinitionsOf("idx_local").contains(processId));
+
+		db.delete(system, process);
+		assertEquals(1, index.get("idx_global").size());
+		assertTrue(index.get("idx_local").isEmpty());
+		db.delete(global);
+		assertTrue(index.get("idx_global").isEmpty());
+	}
+
+	@Test
+	public void testInvalidateOnTransaction() {
+		var index = ParameterIndex.of(db);
+		var process = db.insert(new Process());
+		assertTrue(index.get("idx_tx").isEmpty());
+
+		process.parameters.add(Parameter.process("idx_local", "2 * idx_tx"));
+		var merged = new Process[1];
+		var p = process;
+		db.transaction(em -> merged[0] = em.merge(p));
+		var refs = index.get("idx_tx");
+		assertEquals(1, refs.size());
+		assertEquals(merged[0].id, refs.get(0).owner());
+		db.delete(merged[0]);
+	}
+}
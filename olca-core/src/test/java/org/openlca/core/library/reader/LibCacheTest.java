@@ -0,0 +1,92 @@
+package org.openlca.core.library.reader;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.library.LibMatrix;
+import org.openlca.core.library.Library;
+import org.openlca.core.matrix.format.CSCMatrix;
+import org.openlca.core.matrix.format.DenseMatrix;
+import org.openlca.core.matrix.io.NpyMatrix;
+import org.openlca.util.Dirs;
+
+public class LibCacheTest {
+
+	private static Library lib;
+
+	@BeforeClass
+	public static void setup() throws Exception {
+		var dir = Files.createTempDirectory("_olca_").toFile();
+		NpyMatrix.write(dir, "A", DenseMatrix.of(new double[][]{
+				{1.0, -0.5},
+				{1.0, -1.0}
+		}));
+		NpyMatrix.write(dir, "B", CSCMatrix.of(DenseMatrix.of(new double[][]{
+				{0.0, 2.0},
+				{0.0, 0.0},
+				{3.0, 0.0}
+		})));
+		lib = Library.of(dir);
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		LibCache.shared().invalidate(lib);
+		Dirs.delete(lib.folder());
+	}
+
+	@Test
+	public void testSharedColumns() {
+		var r1 = CachingLibReader.of(DirectLibReader.of(lib, Tests.getDb()));
+		var r2 = CachingLibReader.of(DirectLibReader.of(lib, Tests.getDb()));
+		var column = r1.columnOf(LibMatrix.A, 1);
+		assertArrayEquals(new double[]{-0.5, -1.0}, column, 1e-10);
+
+		// the second reader should get the column from the shared cache
+		long hits = LibCache.shared().stats().hits();
+		assertSame(column, r2.columnOf(LibMatrix.A, 1));
+		assertEquals(hits + 1, LibCache.shared().stats().hits());
+
+		var diag = r1.diagonalOf(LibMatrix.A);
+		assertArrayEquals(new double[]{1.0, -1.0}, diag, 1e-10);
+		assertSame(diag, r2.diagonalOf(LibMatrix.A));
+	}
+
+	@Test
+	public void testInvalidate() {
+		var r = CachingLibReader.of(DirectLibReader.of(lib, Tests.getDb()));
+		r.columnOf(LibMatrix.A, 0);
+		assertNotNull(LibCache.shared().columnOf(lib, LibMatrix.A, 0));
+		LibCache.shared().invalidate(lib);
+		assertNull(LibCache.shared().columnOf(lib, LibMatrix.A, 0));
+	}
+
+	@Test
+	public void testSharedSparseMatrices() {
+		var r1 = mappedReader();
+		var r2 = mappedReader();
+		var column = r1.columnOf(LibMatrix.B, 0);
+		assertArrayEquals(new double[]{0.0, 0.0, 3.0}, column, 1e-10);
+
+		// the sparse matrix is read once and shared by the readers
+		var matrix = r1.matrixOf(LibMatrix.B);
+		assertTrue(matrix instanceof CSCMatrix);
+		assertSame(matrix, r2.matrixOf(LibMatrix.B));
+		assertSame(matrix, LibCache.shared().sparseMatrixOf(lib, LibMatrix.B));
+		assertArrayEquals(new double[]{2.0, 0.0, 0.0},
+				r2.columnOf(LibMatrix.B, 1), 1e-10);
+
+		// dense matrices are not read as sparse matrices
+		assertNull(LibCache.shared().sparseMatrixOf(lib, LibMatrix.A));
+	}
+
+	private LibReader mappedReader() {
+		var mapped = MappedLibReader.of(DirectLibReader.of(lib, Tests.getDb()));
+		return CachingLibReader.of(mapped, mapped);
+	}
+}
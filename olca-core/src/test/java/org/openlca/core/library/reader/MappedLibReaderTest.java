@@ -0,0 +1,92 @@
+package org.openlca.core.library.reader;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.library.LibMatrix;
+import org.openlca.core.library.Library;
+import org.openlca.core.matrix.format.DenseMatrix;
+import org.openlca.core.matrix.io.NpyMatrix;
+import org.openlca.npy.Npy;
+import org.openlca.npy.NpyDoubleArray;
+import org.openlca.util.Dirs;
+
+public class MappedLibReaderTest {
+
+	private static MappedLibReader r;
+
+	@BeforeClass
+	public static void setup() throws Exception {
+		var dir = Files.createTempDirectory("_olca_").toFile();
+		var data = new double[][]{
+				{1.0, 2.0, 3.0},
+				{4.0, 5.0, 6.0},
+				{7.0, 8.0, 9.0}
+		};
+		NpyMatrix.write(dir, "A", DenseMatrix.of(data));
+
+		// B in row-major order
+		Npy.write(new File(dir, "B.npy"), NpyDoubleArray.rowOrderOf(
+				new double[]{1.0, 2.0, 3.0, 4.0, 5.0, 6.0}, 2, 3));
+		r = MappedLibReader.of(
+				DirectLibReader.of(Library.of(dir), Tests.getDb()));
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		r.dispose();
+		Dirs.delete(r.library().folder());
+	}
+
+	@Test
+	public void testColumnMajor() {
+		var m = LibMatrix.A;
+		assertArrayEquals(a(2.0, 5.0, 8.0), r.columnOf(m, 1), 1e-16);
+		assertArrayEquals(a(7.0, 8.0, 9.0), r.rowOf(m, 2), 1e-16);
+		assertArrayEquals(a(1.0, 5.0, 9.0), r.diagonalOf(m), 1e-16);
+
+		var buffer = r.columnBufferOf(m, 2);
+		assertTrue(buffer.isReadOnly());
+		assertEquals(3, buffer.remaining());
+		assertEquals(6.0, buffer.get(1), 1e-16);
+	}
+
+	@Test
+	public void testRowMajor() {
+		var m = LibMatrix.B;
+		assertArrayEquals(a(3.0, 6.0), r.columnOf(m, 2), 1e-16);
+		assertArrayEquals(a(4.0, 5.0, 6.0), r.rowOf(m, 1), 1e-16);
+		assertArrayEquals(a(1.0, 5.0), r.diagonalOf(m), 1e-16);
+		assertEquals(5.0, r.columnBufferOf(m, 1).get(1), 1e-16);
+	}
+
+	@Test
+	public void testMissingMatrix() {
+		assertNull(r.columnOf(LibMatrix.C, 0));
+		assertNull(r.rowOf(LibMatrix.C, 0));
+		assertNull(r.columnBufferOf(LibMatrix.C, 0));
+	}
+
+	@Test
+	public void testNotCached() {
+		// columns of mapped matrices are not copied into the caches
+		var caching = CachingLibReader.of(r, r);
+		var m = LibMatrix.A;
+		var column = caching.columnOf(m, 1);
+		assertArrayEquals(a(2.0, 5.0, 8.0), column, 1e-16);
+		assertNotSame(column, caching.columnOf(m, 1));
+		assertNull(LibCache.shared().columnOf(r.library(), m, 1));
+		assertArrayEquals(a(1.0, 5.0, 9.0), caching.diagonalOf(m), 1e-16);
+		assertNull(LibCache.shared().diagonalOf(r.library(), m));
+	}
+
+	private double[] a(double... values) {
+		return values;
+	}
+}
@@ -0,0 +1,110 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openlca.core.TestProcess;
+import org.openlca.core.TestSystem;
+import org.openlca.core.Tests;
+import org.openlca.core.matrix.Demand;
+import org.openlca.core.matrix.index.TechFlow;
+import org.openlca.core.model.CalculationSetup;
+import org.openlca.core.model.ParameterRedef;
+
+public class BatchCalculatorTest {
+
+	@Test
+	public void testAmountsAndParameters() {
+		var db = Tests.getDb();
+		var q = TestProcess
+				.refProduct("bc_q", 1, "kg")
+				.elemOut("bc_e", 1, "kg")
+				.get();
+		var p = TestProcess
+				.refProduct("bc_p", 1, "kg")
+				.prodIn("bc_q", 1, "kg")
+				.elemOut("bc_e", 1, "kg")
+				.param("bc_x", 1)
+				.with(process -> {
+					TestProcess.findExchange(process, "bc_q").formula = "2 * bc_x";
+					TestProcess.findExchange(process, "bc_e").formula = "bc_x";
+				})
+				.get();
+		var system = TestSystem.of(p).link(q).get();
+		var param = p.parameters.get(0);
+
+		// e = amount * (x + 2 * x); scenarios with the same redefinitions
+		// share their matrices
+		double[] xs = {1, 2, 2, 3, 1};
+		double[] amounts = {1, 2, 0.5, 1, 4};
+		var scenarios = new ArrayList<BatchCalculator.Scenario>();
+		for (int i = 0; i < xs.length; i++) {
+			var redefs = i == 0
+					? List.<ParameterRedef>of()
+					: List.of(ParameterRedef.of(param, p, xs[i]));
+			scenarios.add(BatchCalculator.Scenario.of(amounts[i], redefs));
+		}
+
+		var setup = CalculationSetup.of(system);
+		var batch = new BatchCalculator(db)
+				.withThreads(2)
+				.calculate(setup, scenarios);
+		assertEquals(xs.length, batch.size());
+		assertNotNull(batch.enviIndex());
+		assertEquals(1, batch.enviIndex().size());
+		assertNull(batch.totalImpacts());
+		for (int i = 0; i < xs.length; i++) {
+			assertEquals(3 * xs[i] * amounts[i],
+					batch.totalFlows().get(0, i), 1e-10);
+		}
+
+		// compare with a single calculation
+		var single = new SystemCalculator(db).calculate(
+				setup.withAmount(2)
+						.withParameters(List.of(ParameterRedef.of(param, p, 3))));
+		var flow = single.enviIndex().at(0);
+		assertEquals(18, single.getTotalFlowValueOf(flow), 1e-10);
+		single.dispose();
+
+		db.delete(system, p, q);
+	}
+
+	@Test
+	public void testDemands() {
+		var db = Tests.getDb();
+		var q = TestProcess
+				.refProduct("bcd_q", 1, "kg")
+				.elemOut("bcd_e", 1, "kg")
+				.get();
+		var p = TestProcess
+				.refProduct("bcd_p", 1, "kg")
+				.prodIn("bcd_q", 2, "kg")
+				.elemOut("bcd_e", 1, "kg")
+				.param("bcd_x", 1)
+				.with(process -> TestProcess.findExchange(
+						process, "bcd_e").formula = "bcd_x")
+				.get();
+		var system = TestSystem.of(p).link(q).get();
+		var param = p.parameters.get(0);
+		var redefs = List.of(ParameterRedef.of(param, p, 4));
+
+		// the scenarios of a matrix set demand different products and are
+		// solved together
+		var scenarios = List.of(
+				BatchCalculator.Scenario.of(2),
+				BatchCalculator.Scenario.of(Demand.of(TechFlow.of(q), 3)),
+				BatchCalculator.Scenario.of(Demand.of(TechFlow.of(p), 1), redefs),
+				BatchCalculator.Scenario.of(Demand.of(TechFlow.of(q), 5), redefs));
+		var batch = new BatchCalculator(db)
+				.calculate(CalculationSetup.of(system), scenarios);
+		double[] expected = {2 * 3, 3, 4 + 2, 5};
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], batch.totalFlows().get(0, i), 1e-10);
+		}
+
+		db.delete(system, p, q);
+	}
+}
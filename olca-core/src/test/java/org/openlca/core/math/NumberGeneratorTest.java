@@ -14,6 +14,24 @@ public class NumberGeneratorTest {
 			assertEquals(5.0, genDiscrete.next(), 1e-16);
 	}
 
+	@Test
+	public void testReproducibleStreams() {
+		var gen = NumberGenerator.logNormal(5, 1.5);
+		var streams = RandomStreams.of(42);
+		var r1 = streams.run(7);
+		var r2 = RandomStreams.of(42).run(7);
+		var r3 = streams.run(8);
+		boolean differs = false;
+		for (int i = 0; i < 100; i++) {
+			double next = gen.next(r1);
+			assertEquals(next, gen.next(r2), 0);
+			if (next != gen.next(r3)) {
+				differs = true;
+			}
+		}
+		assertTrue(differs);
+	}
+
 	@Test
 	public void testNormal() {
 		var gen = NumberGenerator.normal(5, 1);
@@ -1,17 +1,26 @@
 package org.openlca.core.math;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.openlca.core.TestProcess;
 import org.openlca.core.TestSystem;
 import org.openlca.core.Tests;
+import org.openlca.core.matrix.cache.ExchangeStore;
+import org.openlca.core.matrix.format.MatrixReader;
 import org.openlca.core.matrix.index.EnviFlow;
+import org.openlca.core.matrix.solvers.Factorization;
+import org.openlca.core.matrix.solvers.JavaSolver;
+import org.openlca.core.model.ParameterRedef;
 import org.openlca.core.model.Process;
 import org.openlca.core.model.Project;
 import org.openlca.core.model.ProjectVariant;
+import org.openlca.core.results.LcaResult;
 import org.openlca.core.results.ProjectResult;
 import org.openlca.core.results.ResultItemOrder;
 
@@ -61,4 +70,158 @@ public class ProjectCalculationTest {
 		assertEquals(4, icount.get());
 		result.dispose();
 	}
+
+	@Test
+	public void testParameterVariants() {
+		var db = Tests.getDb();
+		var q = TestProcess
+				.refProduct("pv_q", 1, "kg")
+				.elemOut("pv_e", 1, "kg")
+				.get();
+		var p = TestProcess
+				.refProduct("pv_p", 1, "kg")
+				.prodIn("pv_q", 1, "kg")
+				.elemOut("pv_e", 1, "kg")
+				.param("pv_x", 1)
+				.with(process -> {
+					TestProcess.findExchange(process, "pv_q").formula = "2 * pv_x";
+					TestProcess.findExchange(process, "pv_e").formula = "pv_x";
+				})
+				.get();
+		var system = TestSystem.of(p).link(q).get();
+
+		// variants with the same system but different parameter values and
+		// amounts; e = amount * (x + 2 * x)
+		var project = new Project();
+		double[] xs = {1, 2, 3, 4};
+		double[] amounts = {1, 2, 1, 0.5};
+		for (int i = 0; i < xs.length; i++) {
+			var v = ProjectVariant.of("v" + i, system);
+			v.amount = amounts[i];
+			var redef = ParameterRedef.of(p.parameters.get(0), p, xs[i]);
+			v.parameterRedefs.add(redef);
+			project.variants.add(v);
+		}
+
+		var result = ProjectResult.calculate(project, db);
+		assertEquals(xs.length, result.getVariants().size());
+		for (int i = 0; i < xs.length; i++) {
+			var v = project.variants.get(i);
+			var r = result.getResult(v);
+			var flow = r.enviIndex().at(0);
+			assertEquals(3 * xs[i] * amounts[i],
+					r.getTotalFlowValueOf(flow), 1e-10);
+		}
+		result.dispose();
+		db.delete(system, p, q);
+	}
+
+	@Test
+	public void testShareFactorization() {
+		var db = Tests.getDb();
+		var q = TestProcess
+				.refProduct("sf_q", 1, "kg")
+				.elemOut("sf_e", 1, "kg")
+				.get();
+		var p = TestProcess
+				.refProduct("sf_p", 1, "kg")
+				.prodIn("sf_q", 2, "kg")
+				.elemOut("sf_e", 1, "kg")
+				.param("sf_x", 1)
+				.with(process -> TestProcess.findExchange(
+						process, "sf_e").formula = "sf_x")
+				.get();
+		var system = TestSystem.of(p).link(q).get();
+
+		// only the intervention matrix depends on a parameter, thus, the
+		// variants only differ in their demands and intervention matrices;
+		// e = amount * (x + 2)
+		var project = new Project();
+		double[] xs = {1, 2, 3, 4};
+		double[] amounts = {1, 2, 1, 0.5};
+		for (int i = 0; i < xs.length; i++) {
+			var v = ProjectVariant.of("v" + i, system);
+			v.amount = amounts[i];
+			var redef = ParameterRedef.of(p.parameters.get(0), p, xs[i]);
+			v.parameterRedefs.add(redef);
+			project.variants.add(v);
+		}
+
+		var factorizations = new ArrayList<Factorization>();
+		var solver = new JavaSolver() {
+			@Override
+			public synchronized Factorization factorize(MatrixReader matrix) {
+				var f = super.factorize(matrix);
+				factorizations.add(f);
+				return f;
+			}
+		};
+		var results = new ProjectCalculator(db)
+				.withSolver(solver)
+				.calculate(project);
+		assertEquals(1, factorizations.size());
+		for (int i = 0; i < xs.length; i++) {
+			var r = results.get(project.variants.get(i));
+			var flow = r.enviIndex().at(0);
+			assertEquals((xs[i] + 2) * amounts[i],
+					r.getTotalFlowValueOf(flow), 1e-10);
+		}
+
+		// the factorization is disposed with the last result
+		var f = factorizations.get(0);
+		results.get(project.variants.get(0)).dispose();
+		assertFalse(f.isDisposed());
+		results.values().forEach(LcaResult::dispose);
+		assertTrue(f.isDisposed());
+		db.delete(system, p, q);
+	}
+
+	@Test
+	public void testMultipleFormulaExchanges() {
+		var db = Tests.getDb();
+		var p = TestProcess
+				.refProduct("pf_p", 1, "kg")
+				.elemOut("pf_e1", 1, "kg")
+				.elemOut("pf_e2", 1, "kg")
+				.elemOut("pf_e3", 1, "kg")
+				.param("pf_x", 1)
+				.with(process -> {
+					TestProcess.findExchange(process, "pf_e1").formula = "pf_x";
+					TestProcess.findExchange(process, "pf_e2").formula = "2 * pf_x";
+					TestProcess.findExchange(process, "pf_e3").formula = "3 * pf_x";
+				})
+				.get();
+		var system = TestSystem.of(p).get();
+
+		var project = new Project();
+		double[] xs = {1, 2, 5};
+		for (int i = 0; i < xs.length; i++) {
+			var v = ProjectVariant.of("v" + i, system);
+			v.amount = 1;
+			var redef = ParameterRedef.of(p.parameters.get(0), p, xs[i]);
+			v.parameterRedefs.add(redef);
+			project.variants.add(v);
+		}
+
+		// each flow must be evaluated with its own formula, also when the
+		// exchanges are read from the exchange store
+		var results = new ProjectCalculator(db)
+				.withExchangeStore(ExchangeStore.of(db))
+				.calculate(project);
+		for (int i = 0; i < xs.length; i++) {
+			var r = results.get(project.variants.get(i));
+			assertEquals(3, r.enviIndex().size());
+			for (var flow : r.enviIndex()) {
+				double factor = switch (flow.flow().name) {
+					case "pf_e1" -> 1;
+					case "pf_e2" -> 2;
+					default -> 3;
+				};
+				assertEquals(factor * xs[i],
+						r.getTotalFlowValueOf(flow), 1e-10);
+			}
+		}
+		results.values().forEach(LcaResult::dispose);
+		db.delete(system, p);
+	}
 }
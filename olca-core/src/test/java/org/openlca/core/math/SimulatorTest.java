@@ -1,9 +1,13 @@
 package org.openlca.core.math;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.openlca.core.Tests;
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.matrix.format.MatrixReader;
+import org.openlca.core.matrix.solvers.Factorization;
 import org.openlca.core.matrix.solvers.JavaSolver;
 import org.openlca.core.model.CalculationSetup;
 import org.openlca.core.model.Flow;
@@ -64,4 +68,145 @@ public class SimulatorTest {
 		db.delete(method, gwp, system, process, p, ch4, mass, units);
 	}
 
+	@Test
+	public void testParallelRuns() {
+		var units = db.insert(UnitGroup.of("Mass units", "kg"));
+		var mass = db.insert(FlowProperty.of("Mass", units));
+		var co2 = db.insert(Flow.elementary("CO2", mass));
+		var p = db.insert(Flow.product("p", mass));
+
+		var process = Process.of("P", p);
+		var param = Parameter.process("param", 1);
+		param.uncertainty = Uncertainty.uniform(1, 2);
+		process.parameters.add(param);
+		process.output(co2, 1).formula = "2 * param";
+		db.insert(process);
+		var system = db.insert(ProductSystem.of(process));
+
+		var setup = CalculationSetup.of(system)
+				.withSimulationRuns(100);
+		var simulator = Simulator.create(setup, db)
+				.withSolver(new JavaSolver())
+				.withThreads(4);
+		simulator.pinnedProducts.add(simulator.getTechIndex().at(0));
+
+		Assert.assertEquals(100, simulator.nextRuns(100));
+		var result = simulator.getResult();
+		Assert.assertEquals(100, result.getNumberOfRuns());
+		var flow = result.enviIndex().at(0);
+		var product = simulator.getTechIndex().at(0);
+		var values = result.getAll(flow);
+		var upstream = result.getAllUpstream(product, flow);
+		for (int i = 0; i < 100; i++) {
+			double val = values[i];
+			Assert.assertTrue(val >= 2 && val <= 4);
+			Assert.assertEquals(val, upstream[i], 1e-10);
+		}
+
+		db.delete(system, process, p, co2, mass, units);
+	}
+
+	@Test
+	public void testSeededRuns() {
+		var units = db.insert(UnitGroup.of("Mass units", "kg"));
+		var mass = db.insert(FlowProperty.of("Mass", units));
+		var co2 = db.insert(Flow.elementary("CO2", mass));
+		var p = db.insert(Flow.product("p", mass));
+
+		var process = Process.of("P", p);
+		var param = Parameter.process("param", 1);
+		param.uncertainty = Uncertainty.uniform(1, 2);
+		process.parameters.add(param);
+		process.output(co2, 1).uncertainty = Uncertainty.normal(1, 0.1);
+		process.input(p, 0.5).formula = "0.5 * param / 2";
+		db.insert(process);
+		var system = db.insert(ProductSystem.of(process));
+		var setup = CalculationSetup.of(system)
+				.withSimulationRuns(50);
+
+		// sequential runs
+		var seq = Simulator.create(setup, db)
+				.withSolver(new JavaSolver())
+				.withSeed(42);
+		for (int i = 0; i < 50; i++) {
+			Assert.assertNotNull(seq.nextRun());
+		}
+
+		// parallel runs, split into two ranges
+		var par = Simulator.create(setup, db)
+				.withSolver(new JavaSolver())
+				.withSeed(42)
+				.withThreads(3);
+		Assert.assertEquals(20, par.nextRuns(20));
+		Assert.assertEquals(30, par.nextRuns(30));
+
+		// replay a single run
+		var replay = Simulator.create(setup, db)
+				.withSolver(new JavaSolver())
+				.withSeed(42)
+				.withRunIndex(33);
+		replay.nextRun();
+
+		var flow = seq.getEnviIndex().at(0);
+		var expected = seq.getResult().getAll(flow);
+		var actual = par.getResult().getAll(flow);
+		Assert.assertArrayEquals(expected, actual, 0);
+		Assert.assertEquals(
+				expected[33], replay.getResult().get(flow, 0), 0);
+
+		db.delete(system, process, p, co2, mass, units);
+	}
+
+	@Test
+	public void testReuseFactorization() {
+		var units = db.insert(UnitGroup.of("Mass units", "kg"));
+		var mass = db.insert(FlowProperty.of("Mass", units));
+		var co2 = db.insert(Flow.elementary("CO2", mass));
+		var p = db.insert(Flow.product("p", mass));
+		var q = db.insert(Flow.product("q", mass));
+
+		var procQ = Process.of("Q", q);
+		procQ.output(co2, 1).uncertainty = Uncertainty.uniform(1, 2);
+		db.insert(procQ);
+		var procP = Process.of("P", p);
+		procP.input(q, 2);
+		db.insert(procP);
+		var system = ProductSystem.of(procP);
+		system.link(procQ, procP);
+		db.insert(system);
+
+		var factorizations = new AtomicInteger();
+		var solver = new JavaSolver() {
+			@Override
+			public Factorization factorize(MatrixReader matrix) {
+				factorizations.incrementAndGet();
+				return super.factorize(matrix);
+			}
+		};
+		var setup = CalculationSetup.of(system)
+				.withSimulationRuns(10);
+		var simulator = Simulator.create(setup, db)
+				.withSolver(solver);
+		for (int i = 0; i < 10; i++) {
+			var r = simulator.nextRun();
+			double val = r.provider().totalFlows()[0];
+			Assert.assertTrue(val >= 2 && val <= 4);
+		}
+		Assert.assertEquals(1, factorizations.get());
+		simulator.dispose();
+
+		// the workers of a parallel simulation share the factorization
+		factorizations.set(0);
+		var parallel = Simulator.create(setup, db)
+				.withSolver(solver)
+				.withThreads(4);
+		Assert.assertEquals(40, parallel.nextRuns(40));
+		for (double val : parallel.getResult().getAll(parallel.getEnviIndex().at(0))) {
+			Assert.assertTrue(val >= 2 && val <= 4);
+		}
+		Assert.assertEquals(1, factorizations.get());
+		parallel.dispose();
+
+		db.delete(system, procP, procQ, q, p, co2, mass, units);
+	}
 }
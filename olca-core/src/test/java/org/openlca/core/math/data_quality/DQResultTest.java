@@ -146,6 +146,15 @@ public class DQResultTest {
 		assertArrayEquals(a(2, 3, 3, 3, 4), r(dqResult, impact));
 		assertArrayEquals(a(4, 4, 3, 2, 2), r(dqResult, process1, impact));
 		assertArrayEquals(a(2, 2, 3, 4, 4), r(dqResult, process2, impact));
+
+		// aggregation with the maximum
+		dqSetup.aggregationType = AggregationType.MAXIMUM;
+		dqResult = DQResult.of(db, dqSetup, result);
+		assertArrayEquals(a(5, 4, 3, 4, 5), r(dqResult, eFlow1));
+		assertArrayEquals(a(5, 4, 3, 4, 5), r(dqResult, eFlow2));
+		assertArrayEquals(a(5, 4, 3, 4, 5), r(dqResult, impact));
+		assertArrayEquals(a(5, 4, 3, 4, 5), r(dqResult, process1, impact));
+		assertArrayEquals(a(5, 4, 3, 4, 5), r(dqResult, process2, impact));
 	}
 
 	private int[] r(DQResult dq, Flow flow) {
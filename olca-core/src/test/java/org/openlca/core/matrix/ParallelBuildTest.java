@@ -0,0 +1,108 @@
+package org.openlca.core.matrix;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.matrix.cache.ExchangeStore;
+import org.openlca.core.matrix.format.MatrixConverter;
+import org.openlca.core.matrix.index.TechFlow;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.Parameter;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.RootEntity;
+import org.openlca.core.model.UnitGroup;
+
+public class ParallelBuildTest {
+
+	private static final IDatabase db = Tests.getDb();
+	private static final List<RootEntity> entities = new ArrayList<>();
+	private static TechIndex index;
+
+	@BeforeClass
+	public static void setup() {
+		var units = db.insert(UnitGroup.of("Mass units", "kg"));
+		var mass = db.insert(FlowProperty.of("Mass", units));
+		entities.add(units);
+		entities.add(mass);
+		var elems = new ArrayList<Flow>();
+		for (int i = 0; i < 7; i++) {
+			elems.add(db.insert(Flow.elementary("e" + i, mass)));
+		}
+		var products = new ArrayList<Flow>();
+		for (int i = 0; i < 30; i++) {
+			products.add(db.insert(Flow.product("p" + i, mass)));
+		}
+
+		var processes = new ArrayList<Process>();
+		for (int i = 0; i < 30; i++) {
+			var process = Process.of("p" + i, products.get(i));
+			process.parameters.add(Parameter.process("f", i + 1));
+			if (i < 29) {
+				var input = process.input(products.get(i + 1), 1);
+				input.formula = "0.5 * f";
+			}
+			process.output(elems.get((i * 3) % 7), i);
+			processes.add(db.insert(process));
+		}
+
+		entities.addAll(elems);
+		entities.addAll(products);
+		entities.addAll(processes);
+		index = new TechIndex(TechFlow.of(processes.get(0)));
+		for (int i = 1; i < processes.size(); i++) {
+			index.add(TechFlow.of(processes.get(i)));
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		for (int i = entities.size() - 1; i >= 0; i--) {
+			db.delete(entities.get(i));
+		}
+	}
+
+	@Test
+	public void testSameMatrices() {
+		var seq = build(false, false);
+		var par = build(true, false);
+		var parStore = build(true, true);
+
+		assertArrayEquals(
+			MatrixConverter.dense(seq.techMatrix).data,
+			MatrixConverter.dense(par.techMatrix).data, 1e-16);
+		assertEquals(-0.5 * 3, par.techMatrix.get(3, 2), 1e-16);
+
+		// the same flows with the same values
+		assertEquals(seq.enviIndex.size(), par.enviIndex.size());
+		seq.enviIndex.each((i, flow) -> {
+			int j = par.enviIndex.of(flow);
+			assertTrue(j >= 0);
+			assertArrayEquals(
+				seq.enviMatrix.getRow(i), par.enviMatrix.getRow(j), 1e-16);
+		});
+
+		// the row assignment of the parallel build is deterministic
+		par.enviIndex.each((i, flow) ->
+			assertEquals(i, parStore.enviIndex.of(flow)));
+		assertArrayEquals(
+			MatrixConverter.dense(par.enviMatrix).data,
+			MatrixConverter.dense(parStore.enviMatrix).data, 1e-16);
+	}
+
+	private MatrixData build(boolean parallel, boolean withStore) {
+		return MatrixData.of(db, index)
+			.withDemand(Demand.of(index.at(0), 1))
+			.withParallelBuild(parallel)
+			.withExchangeStore(withStore ? ExchangeStore.of(db) : null)
+			.build();
+	}
+}
@@ -1,8 +1,11 @@
 package org.openlca.core.matrix;
 
 import static java.util.Collections.emptySet;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.Collections;
 
@@ -21,6 +24,7 @@ import org.openlca.core.model.Process;
 import org.openlca.core.model.Uncertainty;
 import org.openlca.core.model.UncertaintyType;
 import org.openlca.expressions.FormulaInterpreter;
+import org.openlca.expressions.InterpreterException;
 
 public class ParameterTableTest {
 
@@ -225,4 +229,51 @@ public class ParameterTableTest {
 		assertTrue(ppInp > 1000);
 		assertEquals(3 * ppInp, scope.get().eval("dep_param"), 1e-6);
 	}
+
+	@Test
+	public void testCompiledDependencies() throws Exception {
+		var db = Tests.getDb();
+		db.insert(Parameter.global("chain_c", "chain_b + inp_param"));
+		db.insert(Parameter.global("chain_b", "2 * dep_param"));
+		db.insert(Parameter.global("cycle_x", "cycle_y + 1"));
+		db.insert(Parameter.global("cycle_y", "cycle_x + 1"));
+
+		var table = ParameterTable.forSimulation(db, emptySet(), emptySet());
+		for (int i = 0; i < 10; i++) {
+			var fi = table.simulate();
+			double inp = fi.eval("inp_param");
+			assertEquals(5 * inp, fi.eval("chain_c"), 1e-6);
+		}
+
+		// cycles are reported by the interpreter
+		var fi = table.simulate();
+		try {
+			fi.eval("cycle_x");
+			fail("cycle not detected");
+		} catch (InterpreterException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testInvalidFormulas() throws Exception {
+		var valid = CompiledFormula.of("2 * X");
+		assertTrue(valid.isCompiled());
+		assertArrayEquals(new String[]{"x"}, valid.variables());
+
+		// syntax errors and invalid characters are not compiled, and the
+		// evaluation error is reported by the scope
+		var interpreter = new FormulaInterpreter();
+		for (var f : new String[]{"2 * (x", "2 § x"}) {
+			var formula = CompiledFormula.of(f);
+			assertFalse(formula.isCompiled());
+			assertEquals(0, formula.variables().length);
+			try {
+				formula.eval(interpreter.getGlobalScope());
+				fail(f + " should not be evaluated");
+			} catch (InterpreterException e) {
+				// expected
+			}
+		}
+	}
 }
@@ -0,0 +1,111 @@
+package org.openlca.core.matrix.cache;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.matrix.index.TechFlow;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.model.DQIndicator;
+import org.openlca.core.model.DQScore;
+import org.openlca.core.model.DQSystem;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.UnitGroup;
+
+public class DQStoreTest {
+
+	private final IDatabase db = Tests.getDb();
+	private UnitGroup units;
+	private FlowProperty mass;
+	private Flow product;
+	private Flow elem;
+	private DQSystem dqSystem;
+	private Process process;
+
+	@Before
+	public void setup() {
+		units = db.insert(UnitGroup.of("Mass units", "kg"));
+		mass = db.insert(FlowProperty.of("Mass", units));
+		product = db.insert(Flow.product("p", mass));
+		elem = db.insert(Flow.elementary("e", mass));
+		dqSystem = new DQSystem();
+		for (int i = 1; i <= 3; i++) {
+			var indicator = new DQIndicator();
+			indicator.position = i;
+			dqSystem.indicators.add(indicator);
+			for (int j = 1; j <= 5; j++) {
+				var score = new DQScore();
+				score.position = j;
+				indicator.scores.add(score);
+			}
+		}
+		dqSystem = db.insert(dqSystem);
+		process = Process.of("p", product);
+		process.dqSystem = dqSystem;
+		process.dqEntry = "(1;2;3)";
+		process.exchangeDqSystem = dqSystem;
+		process.input(elem, 2).dqEntry = "(3; n.a.;5)";
+		process = db.insert(process);
+	}
+
+	@After
+	public void tearDown() {
+		db.delete(process, dqSystem, product, elem, mass, units);
+	}
+
+	@Test
+	public void testParse() {
+		assertNull(DQStore.parse(null));
+		assertNull(DQStore.parse("()"));
+		assertArrayEquals(new byte[]{1, 0, 3, 0},
+				DQStore.parse("(1;n.a.; 3 ;x)"));
+	}
+
+	@Test
+	public void testGetAndInvalidate() {
+		var store = DQStore.of(db);
+		assertSame(store, DQStore.of(db));
+		var index = new TechIndex(TechFlow.of(process));
+
+		var entries = store.get(index);
+		assertEquals(1, entries.size());
+		var entry = entries.get(0);
+		assertEquals(process.id, entry.processId());
+		assertEquals(dqSystem.id, entry.dqSystem());
+		assertArrayEquals(new byte[]{1, 2, 3}, entry.dqValues());
+		assertEquals(1, entry.exchangeCount());
+		assertEquals(elem.id, entry.flowIds()[0]);
+		assertEquals(3, entry.exchangeValue(0, 0));
+		assertEquals(0, entry.exchangeValue(0, 1));
+		assertEquals(5, entry.exchangeValue(0, 2));
+		assertEquals(0, entry.exchangeValue(0, 3));
+
+		// the entry is cached
+		assertSame(entry, store.get(index).get(0));
+
+		// an update of the process removes the entry
+		process.dqEntry = "(2;2;2)";
+		process = db.update(process);
+		var next = store.get(index).get(0);
+		assertNotSame(entry, next);
+		assertArrayEquals(new byte[]{2, 2, 2}, next.dqValues());
+	}
+
+	@Test
+	public void testInvalidateOnTransaction() {
+		var store = DQStore.of(db);
+		var index = new TechIndex(TechFlow.of(process));
+		assertArrayEquals(new byte[]{1, 2, 3}, store.get(index).get(0).dqValues());
+
+		process.dqEntry = "(3;3;3)";
+		var merged = new Process[1];
+		db.transaction(em -> merged[0] = em.merge(process));
+		process = merged[0];
+		assertArrayEquals(new byte[]{3, 3, 3}, store.get(index).get(0).dqValues());
+	}
+}
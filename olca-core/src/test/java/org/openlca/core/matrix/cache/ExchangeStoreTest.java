@@ -0,0 +1,141 @@
+package org.openlca.core.matrix.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.matrix.Demand;
+import org.openlca.core.matrix.MatrixData;
+import org.openlca.core.matrix.index.TechFlow;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.Uncertainty;
+import org.openlca.core.model.UnitGroup;
+
+public class ExchangeStoreTest {
+
+	private final IDatabase db = Tests.getDb();
+	private UnitGroup units;
+	private FlowProperty mass;
+	private Flow product;
+	private Flow elem;
+	private Process process;
+
+	@Before
+	public void setup() {
+		units = db.insert(UnitGroup.of("Mass units", "kg"));
+		mass = db.insert(FlowProperty.of("Mass", units));
+		product = db.insert(Flow.product("p", mass));
+		elem = db.insert(Flow.elementary("e", mass));
+		process = Process.of("p", product);
+		var input = process.input(elem, 2);
+		input.formula = "1 + 1";
+		input.uncertainty = Uncertainty.triangle(1, 2, 3);
+		process = db.insert(process);
+	}
+
+	@After
+	public void tearDown() {
+		db.delete(process, product, elem, mass, units);
+	}
+
+	@Test
+	public void testSameAsTable() {
+		var store = ExchangeStore.of(db);
+		assertSame(store, ExchangeStore.of(db));
+		var index = new TechIndex(TechFlow.of(process));
+
+		var expected = new ArrayList<CalcExchange>();
+		new ExchangeTable(db).each(index, expected::add);
+		var actual = new ArrayList<CalcExchange>();
+		store.each(index, actual::add);
+		assertEquals(2, expected.size());
+		assertEqual(expected, actual);
+	}
+
+	@Test
+	public void testInvalidateOnUpdate() {
+		var store = ExchangeStore.of(db);
+		var index = new TechIndex(TechFlow.of(process));
+		assertEquals(2, count(store, index));
+
+		var flow = process.quantitativeReference.flow;
+		process.output(flow, 1);
+		process = db.update(process);
+		assertEquals(3, count(store, index));
+	}
+
+	@Test
+	public void testInvalidateOnTransaction() {
+		var store = ExchangeStore.of(db);
+		var index = new TechIndex(TechFlow.of(process));
+		assertEquals(2, count(store, index));
+
+		// the same as in a JSON-LD import: the process is merged in a
+		// transaction and not via the DAO
+		var flow = process.quantitativeReference.flow;
+		process.output(flow, 1);
+		var merged = new Process[1];
+		db.transaction(em -> merged[0] = em.merge(process));
+		process = merged[0];
+		assertEquals(3, count(store, index));
+	}
+
+	@Test
+	public void testMatrixData() {
+		var index = new TechIndex(TechFlow.of(process));
+		var expected = MatrixData.of(db, index)
+			.withDemand(Demand.of(index.at(0), 1))
+			.build();
+		var actual = MatrixData.of(db, index)
+			.withDemand(Demand.of(index.at(0), 1))
+			.withExchangeStore(ExchangeStore.of(db))
+			.build();
+		assertArrayEquals(
+			expected.techMatrix.getColumn(0),
+			actual.techMatrix.getColumn(0), 1e-16);
+		assertArrayEquals(
+			expected.enviMatrix.getColumn(0),
+			actual.enviMatrix.getColumn(0), 1e-16);
+		assertEquals(-2, actual.enviMatrix.get(0, 0), 1e-16);
+	}
+
+	private int count(ExchangeStore store, TechIndex index) {
+		int[] count = {0};
+		store.eachShared(index, e -> count[0]++);
+		return count[0];
+	}
+
+	private void assertEqual(List<CalcExchange> expected, List<CalcExchange> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (var e : expected) {
+			var a = actual.stream()
+				.filter(x -> x.exchangeId == e.exchangeId)
+				.findAny()
+				.orElseThrow();
+			assertEquals(e.processId, a.processId);
+			assertEquals(e.flowId, a.flowId);
+			assertEquals(e.flowType, a.flowType);
+			assertEquals(e.isInput, a.isInput);
+			assertEquals(e.isAvoided, a.isAvoided);
+			assertEquals(e.amount, a.amount, 1e-16);
+			assertEquals(e.formula, a.formula);
+			assertEquals(e.conversionFactor, a.conversionFactor, 1e-16);
+			assertEquals(e.uncertaintyType, a.uncertaintyType);
+			assertEquals(e.parameter1, a.parameter1, 1e-16);
+			assertEquals(e.parameter2, a.parameter2, 1e-16);
+			assertEquals(e.parameter3, a.parameter3, 1e-16);
+			assertEquals(e.defaultProviderId, a.defaultProviderId);
+			assertEquals(e.locationId, a.locationId);
+		}
+	}
+}
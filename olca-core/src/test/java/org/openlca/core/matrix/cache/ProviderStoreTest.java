@@ -0,0 +1,142 @@
+package org.openlca.core.matrix.cache;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.database.Derby;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.matrix.index.TechFlow;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProcessType;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.UnitGroup;
+import org.openlca.util.Dirs;
+
+public class ProviderStoreTest {
+
+	private final IDatabase db = Tests.getDb();
+	private UnitGroup units;
+	private FlowProperty mass;
+	private Flow product;
+	private Flow waste;
+	private Process p1;
+
+	@Before
+	public void setup() {
+		units = db.insert(UnitGroup.of("Mass units", "kg"));
+		mass = db.insert(FlowProperty.of("Mass", units));
+		product = db.insert(Flow.product("product", mass));
+		waste = db.insert(Flow.waste("waste", mass));
+		p1 = Process.of("p1", product);
+		p1.processType = ProcessType.LCI_RESULT;
+		p1 = db.insert(p1);
+	}
+
+	@After
+	public void tearDown() {
+		db.delete(p1, waste, product, mass, units);
+	}
+
+	@Test
+	public void testIncrementalUpdates() {
+		var store = ProviderStore.of(db);
+		assertSame(store, ProviderStore.of(db));
+		assertEquals(ProcessType.LCI_RESULT, store.processTypeOf(p1.id));
+		assertEquals(1, store.providersOf(product.id).size());
+		assertEquals(TechFlow.of(p1), store.providersOf(product.id).get(0));
+		assertTrue(store.providersOf(waste.id).isEmpty());
+
+		// a new process and a product system
+		var p2 = Process.of("p2", product);
+		var treatment = Process.of("treatment", waste);
+		p2 = db.insert(p2);
+		treatment = db.insert(treatment);
+		var system = db.insert(ProductSystem.of(p2));
+		assertEquals(3, store.providersOf(product.id).size());
+		assertEquals(2, store.processProvidersOf(product.id).size());
+		assertEquals(TechFlow.of(treatment),
+			store.providerOf(treatment.id, waste.id));
+		assertEquals(1, store.providersOf(waste.id).size());
+
+		// remove the waste output of the treatment process
+		db.delete(system);
+		db.delete(treatment);
+		assertTrue(store.providersOf(waste.id).isEmpty());
+		assertEquals(2, store.providersOf(product.id).size());
+		db.delete(p2);
+		assertEquals(1, store.providersOf(product.id).size());
+	}
+
+	@Test
+	public void testValidate() {
+		var store = ProviderStore.of(db);
+		store.invalidate();
+		assertFalse(store.validate());
+		assertEquals(1, store.providersOf(product.id).size());
+		assertTrue(store.validate());
+
+		// a process that is added via native SQL is not reported to the store
+		var p2 = db.insert(Process.of("p2", product));
+		assertEquals(2, store.providersOf(product.id).size());
+		assertTrue(store.validate());
+		NativeSql.on(db).runUpdate(
+			"delete from tbl_exchanges where f_owner = " + p2.id);
+		NativeSql.on(db).runUpdate(
+			"delete from tbl_processes where id = " + p2.id);
+		assertFalse(store.validate());
+		assertEquals(1, store.providersOf(product.id).size());
+		assertTrue(store.validate());
+	}
+
+	@Test
+	public void testStoredIndex() throws Exception {
+		assertNull(ProviderStore.of(db).file()); // in-memory database
+
+		var dir = Files.createTempDirectory("olca_test_db").toFile();
+		assertTrue(dir.delete());
+		try (var fileDb = new Derby(dir)) {
+			var units = fileDb.insert(UnitGroup.of("Mass units", "kg"));
+			var mass = fileDb.insert(FlowProperty.of("Mass", units));
+			var product = fileDb.insert(Flow.product("product", mass));
+			var p1 = fileDb.insert(Process.of("p1", product));
+			var store = ProviderStore.of(fileDb);
+			assertFalse(store.isAvailable());
+			assertEquals(1, store.processProvidersOf(product.id).size());
+			assertTrue(store.file().exists());
+
+			// a new store should read the stored index
+			fileDb.listeners().remove(store);
+			var next = ProviderStore.of(fileDb);
+			assertNotSame(store, next);
+			assertTrue(next.isAvailable());
+			assertEquals(TechFlow.of(p1), next.processProvidersOf(product.id).get(0));
+
+			// the stored index is invalid when a process was added while no
+			// store was registered
+			fileDb.listeners().remove(next);
+			fileDb.insert(Process.of("p2", product));
+			assertFalse(ProviderStore.of(fileDb).isAvailable());
+			assertEquals(2, ProviderStore.of(fileDb).providersOf(product.id).size());
+
+			// changes of a registered store are stored on flush and not when
+			// the index is read
+			var current = ProviderStore.of(fileDb);
+			fileDb.insert(Process.of("p3", product));
+			assertEquals(3, current.providersOf(product.id).size());
+			current.flush();
+			fileDb.listeners().remove(current);
+			var reloaded = ProviderStore.of(fileDb);
+			assertTrue(reloaded.isAvailable());
+			assertEquals(3, reloaded.providersOf(product.id).size());
+		}
+		Dirs.delete(dir.getAbsolutePath());
+	}
+}
@@ -4,6 +4,8 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class CSCMatrixTest {
@@ -160,6 +162,26 @@ public class CSCMatrixTest {
 		}
 	}
 
+	@Test
+	public void testSamePattern() {
+		var a = CSCMatrix.of(new double[][]{
+				{1, 0, 2},
+				{0, 3, 0},
+				{4, 0, 5}});
+		var b = CSCMatrix.of(new double[][]{
+				{6, 0, 7},
+				{0, 8, 0},
+				{9, 0, 1}});
+		var c = CSCMatrix.of(new double[][]{
+				{1, 0, 2},
+				{0, 3, 0},
+				{4, 1, 5}});
+		assertTrue(a.hasSamePattern(b));
+		assertTrue(b.hasSamePattern(a));
+		assertFalse(a.hasSamePattern(c));
+		assertFalse(a.hasSamePattern(null));
+	}
+
 	private double[] v(double... vals) {
 		return vals;
 	}
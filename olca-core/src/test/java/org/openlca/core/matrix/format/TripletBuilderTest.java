@@ -0,0 +1,169 @@
+package org.openlca.core.matrix.format;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.matrix.Demand;
+import org.openlca.core.matrix.MatrixData;
+import org.openlca.core.matrix.index.TechFlow;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.UnitGroup;
+
+public class TripletBuilderTest {
+
+	@Test
+	public void testSparseDiagonal() {
+		int size = 1_000_000;
+		var b = new TripletBuilder();
+		for (int i = 0; i < size; i++) {
+			b.set(i, i, i);
+		}
+		var m = b.finish();
+		assertEquals(CSCMatrix.class, m.getClass());
+		assertEquals(size, m.rows());
+		assertEquals(size, m.columns());
+		for (int i = 0; i < size; i++) {
+			assertEquals(i, m.get(i, i), 1e-16);
+		}
+		// the zero at (0, 0) is not stored
+		assertEquals(size - 1, ((CSCMatrix) m).values.length);
+	}
+
+	@Test
+	public void testCompress() {
+		var b = new TripletBuilder();
+		b.add(2, 1, 3);
+		b.add(0, 1, 1);
+		b.add(2, 1, 4);
+		b.add(1, 0, 2);
+		b.add(0, 0, 5);
+		b.add(1, 1, 6);
+		b.add(1, 1, -6);
+		b.minSize(3, 3);
+		var m = b.compress();
+		assertEquals(3, m.rows);
+		assertEquals(3, m.columns);
+		assertArrayEquals(new int[]{0, 2, 4, 4}, m.columnPointers);
+		assertArrayEquals(new int[]{0, 1, 0, 2}, m.rowIndices);
+		assertArrayEquals(new double[]{5, 2, 1, 7}, m.values, 1e-16);
+	}
+
+	@Test
+	public void testSetOverridesAdd() {
+		var b = new TripletBuilder();
+		b.add(0, 0, 1);
+		b.add(0, 0, 2);
+		b.set(0, 0, 42);
+		b.add(0, 0, 1);
+		b.add(1, 1, 1);
+		b.set(1, 1, 0);
+		var m = b.compress();
+		assertEquals(43, m.get(0, 0), 1e-16);
+		assertEquals(0, m.get(1, 1), 1e-16);
+		assertEquals(1, m.values.length);
+	}
+
+	@Test
+	public void testDense() {
+		var b = new TripletBuilder();
+		for (int row = 0; row < 50; row++) {
+			for (int col = 0; col < 30; col++) {
+				b.add(row, col, 1 + row * col);
+			}
+		}
+		var m = b.finish();
+		assertEquals(DenseMatrix.class, m.getClass());
+		for (int row = 0; row < 50; row++) {
+			for (int col = 0; col < 30; col++) {
+				assertEquals(1 + row * col, m.get(row, col), 1e-16);
+			}
+		}
+	}
+
+	@Test
+	public void testSameAsMatrixBuilder() {
+		var rand = new Random(42);
+		var hash = new MatrixBuilder();
+		var triplets = MatrixBuilder.ofTriplets();
+		assertTrue(triplets.isTripletBuilder());
+		for (int i = 0; i < 10_000; i++) {
+			int row = rand.nextInt(500);
+			int col = rand.nextInt(500);
+			double val = rand.nextDouble();
+			if (i % 100 == 0) {
+				hash.set(row, col, val);
+				triplets.set(row, col, val);
+			} else {
+				hash.add(row, col, val);
+				triplets.add(row, col, val);
+			}
+		}
+		hash.minSize(600, 600);
+		triplets.minSize(600, 600);
+		var expected = hash.finish();
+		var m = triplets.finishReader();
+		assertEquals(CSCMatrix.class, m.getClass());
+		assertEquals(expected.rows(), m.rows());
+		assertEquals(expected.columns(), m.columns());
+		for (int row = 0; row < m.rows(); row++) {
+			for (int col = 0; col < m.columns(); col++) {
+				assertEquals(expected.get(row, col), m.get(row, col), 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void testInventoryMatrices() {
+		var db = Tests.getDb();
+		var units = db.insert(UnitGroup.of("Mass units", "kg"));
+		var mass = db.insert(FlowProperty.of("Mass", units));
+		var elem = db.insert(Flow.elementary("e", mass));
+		var products = new ArrayList<Flow>();
+		for (int i = 0; i < 5; i++) {
+			products.add(db.insert(Flow.product("p" + i, mass)));
+		}
+		var processes = new ArrayList<Process>();
+		for (int i = 0; i < 5; i++) {
+			var process = Process.of("p" + i, products.get(i));
+			if (i < 4) {
+				process.input(products.get(i + 1), 0.5);
+			}
+			process.output(elem, i + 1);
+			processes.add(db.insert(process));
+		}
+		var index = new TechIndex(TechFlow.of(processes.get(0)));
+		for (int i = 1; i < processes.size(); i++) {
+			index.add(TechFlow.of(processes.get(i)));
+		}
+
+		var expected = MatrixData.of(db, index)
+				.withDemand(Demand.of(index.at(0), 1))
+				.build();
+		var triplets = MatrixData.of(db, index)
+				.withDemand(Demand.of(index.at(0), 1))
+				.withTripletBuild(true)
+				.build();
+		assertEquals(CSCMatrix.class, triplets.techMatrix.getClass());
+		assertArrayEquals(
+				MatrixConverter.dense(expected.techMatrix).data,
+				MatrixConverter.dense(triplets.techMatrix).data, 1e-16);
+		assertArrayEquals(
+				MatrixConverter.dense(expected.enviMatrix).data,
+				MatrixConverter.dense(triplets.enviMatrix).data, 1e-16);
+
+		for (int i = processes.size() - 1; i >= 0; i--) {
+			db.delete(processes.get(i));
+		}
+		products.forEach(db::delete);
+		db.delete(elem, mass, units);
+	}
+}
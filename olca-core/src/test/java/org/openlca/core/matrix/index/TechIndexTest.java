@@ -0,0 +1,118 @@
+package org.openlca.core.matrix.index;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.UnitGroup;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.openlca.core.model.descriptors.ProcessDescriptor;
+
+public class TechIndexTest {
+
+	@Test
+	public void testLongPairIntMap() {
+		var map = new LongPairIntMap();
+		int n = 10_000;
+		for (int i = 0; i < n; i++) {
+			assertEquals(-1, map.put(i, -i, i));
+		}
+		assertEquals(n, map.size());
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, map.get(i, -i));
+			assertEquals(-1, map.get(-i, i + 1));
+		}
+		assertEquals(42, map.putIfAbsent(42, -42, 1));
+		assertEquals(42, map.put(42, -42, 1));
+		assertEquals(1, map.get(42, -42));
+		assertEquals(n, map.size());
+
+		var copy = map.copy();
+		copy.put(-1, -1, 7);
+		assertEquals(n + 1, copy.size());
+		assertFalse(map.contains(-1, -1));
+		var sum = new long[1];
+		map.each((first, second, value) -> sum[0] += first + second);
+		assertEquals(0, sum[0]);
+	}
+
+	@Test
+	public void testPrimitiveLookups() {
+		var index = new TechIndex();
+		for (int i = 1; i <= 100; i++) {
+			assertEquals(i - 1, index.add(techFlow(i, 1000 + i)));
+		}
+		assertEquals(5, index.add(techFlow(6, 1006)));
+		assertEquals(100, index.size());
+		assertEquals(41, index.of(42, 1042));
+		assertEquals(41, index.of(techFlow(42, 1042)));
+		assertEquals(-1, index.of(42, 1043));
+		assertEquals(1042, index.getProvider(42, 1042).flowId());
+		assertNull(index.getProvider(1042, 42));
+
+		index.putLink(500, 501, techFlow(42, 1042));
+		index.putLink(LongPair.of(500, 501), techFlow(43, 1043));
+		index.putLink(500, 502, techFlow(101, 1101));
+		assertEquals(101, index.size());
+		assertTrue(index.hasLinks());
+		assertEquals(42, index.getLinkedProvider(500, 501).providerId());
+		assertEquals(101, index.getLinkedProvider(
+			LongPair.of(500, 502)).providerId());
+		assertNull(index.getLinkedProvider(501, 500));
+		assertEquals(2, index.getLinkedExchanges().size());
+		assertSame(index.getLinkedExchanges(), index.getLinkedExchanges());
+		assertTrue(index.isLinked(500, 502));
+		assertFalse(index.isLinked(501, 500));
+		index.putLink(500, 503, techFlow(42, 1042));
+		assertEquals(3, index.getLinkedExchanges().size());
+
+		var copy = index.copy();
+		assertEquals(101, copy.size());
+		assertEquals(42, copy.getLinkedProvider(500, 501).providerId());
+	}
+
+	@Test
+	public void testBinaryIO() throws IOException {
+		var db = Tests.getDb();
+		var units = db.insert(UnitGroup.of("Mass units", "kg"));
+		var mass = db.insert(FlowProperty.of("Mass", units));
+		var p1 = db.insert(Flow.product("p1", mass));
+		var p2 = db.insert(Flow.product("p2", mass));
+		var q1 = db.insert(Process.of("q1", p1));
+		var q2 = db.insert(Process.of("q2", p2));
+
+		var index = new TechIndex(TechFlow.of(q1));
+		index.putLink(q1.id, 4711, TechFlow.of(q2));
+		var out = new ByteArrayOutputStream();
+		index.writeTo(out);
+
+		var copy = TechIndex.readFrom(
+			new ByteArrayInputStream(out.toByteArray()), db);
+		assertNotNull(copy);
+		assertEquals(2, copy.size());
+		assertEquals(TechFlow.of(q1), copy.at(0));
+		assertEquals(TechFlow.of(q2), copy.at(1));
+		assertEquals("q2", copy.getLinkedProvider(q1.id, 4711).provider().name);
+
+		// the stored index is outdated when a provider was deleted
+		db.delete(q2);
+		assertNull(TechIndex.readFrom(
+			new ByteArrayInputStream(out.toByteArray()), db));
+		db.delete(q1, p2, p1, mass, units);
+	}
+
+	private TechFlow techFlow(long processId, long flowId) {
+		var process = new ProcessDescriptor();
+		process.id = processId;
+		var flow = new FlowDescriptor();
+		flow.id = flowId;
+		return TechFlow.of(process, flow);
+	}
+}
@@ -0,0 +1,44 @@
+package org.openlca.core.matrix.io.npy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.openlca.core.matrix.format.DenseMatrix;
+import org.openlca.core.matrix.io.NpyColumnWriter;
+import org.openlca.core.matrix.io.NpyMatrix;
+import org.openlca.npy.Array2d;
+import org.openlca.util.Dirs;
+
+public class NpyColumnWriterTest {
+
+	@Test
+	public void testWriteColumns() throws Exception {
+		var dir = Files.createTempDirectory("_olca_tests").toFile();
+		var columns = new double[][]{
+			{1, 2},
+			{3, 4},
+			{5, 6}};
+		try (var writer = NpyColumnWriter.create(dir, "M", 2, 3)) {
+			// write the columns in reverse order
+			for (int j = columns.length - 1; j >= 0; j--) {
+				writer.put(j, columns[j]);
+			}
+		}
+
+		var m = (DenseMatrix) NpyMatrix.read(dir, "M").orElseThrow();
+		assertEquals(2, m.rows());
+		assertEquals(3, m.columns());
+		for (int j = 0; j < columns.length; j++) {
+			assertArrayEquals(columns[j], m.getColumn(j), 1e-16);
+			var col = Array2d.readColumn(new File(dir, "M.npy"), j)
+				.asDoubleArray()
+				.data();
+			assertArrayEquals(columns[j], col, 1e-16);
+		}
+		Dirs.delete(dir);
+	}
+}
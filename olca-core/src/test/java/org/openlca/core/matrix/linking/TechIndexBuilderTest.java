@@ -0,0 +1,140 @@
+package org.openlca.core.matrix.linking;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.matrix.index.TechFlow;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.RootEntity;
+import org.openlca.core.model.UnitGroup;
+
+public class TechIndexBuilderTest {
+
+	private static final IDatabase db = Tests.getDb();
+	private static final List<RootEntity> entities = new ArrayList<>();
+	private static TechFlow refFlow;
+
+	/**
+	 * Creates a binary tree of processes where process i has the products of
+	 * process 2i + 1 and 2i + 2 as inputs. In addition, all processes have
+	 * an input of the product of the last process.
+	 */
+	@BeforeClass
+	public static void setup() {
+		var units = db.insert(UnitGroup.of("Mass units", "kg"));
+		var mass = db.insert(FlowProperty.of("Mass", units));
+		entities.add(units);
+		entities.add(mass);
+		int n = 63;
+		var products = new ArrayList<Flow>();
+		for (int i = 0; i < n; i++) {
+			products.add(db.insert(Flow.product("p" + i, mass)));
+		}
+		entities.addAll(products);
+		var processes = new ArrayList<Process>();
+		for (int i = 0; i < n; i++) {
+			var process = Process.of("p" + i, products.get(i));
+			if (2 * i + 2 < n) {
+				process.input(products.get(2 * i + 1), 1);
+				process.input(products.get(2 * i + 2), 1);
+			}
+			if (i < n - 1) {
+				process.input(products.get(n - 1), 0.1);
+			}
+			processes.add(db.insert(process));
+		}
+		entities.addAll(processes);
+		refFlow = TechFlow.of(processes.get(0));
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		for (int i = entities.size() - 1; i >= 0; i--) {
+			db.delete(entities.get(i));
+		}
+	}
+
+	@Test
+	public void testSequentialAndParallel() {
+		var seq = build(new LinkingConfig());
+		var par = build(new LinkingConfig().parallel(true));
+		assertEquals(63, seq.size());
+		assertEquals(2 * 31 + 62, seq.getLinkedExchanges().size());
+		assertEquals(seq.size(), par.size());
+		for (int i = 0; i < seq.size(); i++) {
+			assertEquals(seq.at(i), par.at(i));
+		}
+		assertEquals(seq.getLinkedExchanges(), par.getLinkedExchanges());
+		for (var exchange : seq.getLinkedExchanges()) {
+			assertEquals(
+				seq.getLinkedProvider(exchange),
+				par.getLinkedProvider(exchange));
+		}
+	}
+
+	@Test
+	public void testProgressAndCancel() {
+		var steps = new AtomicInteger();
+		var lastLinked = new AtomicInteger();
+		var progress = new Callback() {
+			@Override
+			public void progress(int linked, int pending) {
+				steps.incrementAndGet();
+				lastLinked.set(linked);
+			}
+		};
+		var index = build(new LinkingConfig().callback(progress));
+		assertEquals(63, index.size());
+		assertEquals(63, lastLinked.get());
+		assertTrue(steps.get() >= 6);
+
+		// cancel after the first level
+		var cancel = new Callback() {
+			private boolean canceled;
+
+			@Override
+			public boolean cancel() {
+				return canceled;
+			}
+
+			@Override
+			public void progress(int linked, int pending) {
+				canceled = true;
+			}
+		};
+		index = build(new LinkingConfig().callback(cancel));
+		assertEquals(4, index.size());
+	}
+
+	private TechIndex build(LinkingConfig config) {
+		var cache = MatrixCache.createLazy(db);
+		return new TechIndexBuilder(cache, null, config).build(refFlow);
+	}
+
+	private static class Callback implements LinkingCallback {
+
+		@Override
+		public boolean cancel() {
+			return false;
+		}
+
+		@Override
+		public List<TechFlow> select(
+			CalcExchange e, List<TechFlow> providerCandidates) {
+			return providerCandidates;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package org.openlca.core.matrix.solvers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.exception.ConvergenceException;
+import org.junit.Test;
+import org.openlca.core.matrix.format.CSCMatrix;
+import org.openlca.core.matrix.format.DenseMatrix;
+import org.openlca.core.matrix.format.HashPointMatrix;
+
+public class IterativeSolverTest {
+
+	private final IterativeSolver solver = new IterativeSolver()
+			.withTolerance(1e-12);
+
+	@Test
+	public void testRandomSystem() {
+		var m = randomTechMatrix(500, 42);
+		var expected = SparseLU.of(m).solve(3, 2.0);
+		var f = solver.factorize(m);
+		assertTrue(f instanceof IterativeFactorization);
+		assertArrayEquals(expected, f.solve(3, 2.0), 1e-8);
+	}
+
+	@Test
+	public void testWarmStart() {
+		var m = randomTechMatrix(200, 7);
+		var f = IterativeFactorization.of(m, 1e-12, 1);
+		var b = new double[200];
+		b[0] = 1.0;
+
+		// with a single iteration, only the exact solution as initial guess
+		// passes the convergence check
+		var x = SparseLU.of(m).solve(b);
+		assertArrayEquals(x, f.solve(b, x), 1e-10);
+	}
+
+	@Test
+	public void testRefactorize() {
+		var a = randomTechMatrix(200, 1);
+		var b = randomTechMatrix(200, 2);
+		var f = solver.factorize(a);
+		f.solve(5, 1.0);
+		f.dispose();
+
+		var g = solver.refactorize(f, b);
+		assertTrue(g instanceof IterativeFactorization);
+		assertArrayEquals(
+				SparseLU.of(b).solve(5, 1.0), g.solve(5, 1.0), 1e-8);
+	}
+
+	@Test
+	public void testRefactorizeWithNewSettings() {
+		var a = randomTechMatrix(200, 1);
+		var b = randomTechMatrix(200, 2);
+		var solver = new IterativeSolver()
+				.withTolerance(1e-12)
+				.withMaxIterations(1);
+		var f = solver.factorize(a);
+		assertThrows(ConvergenceException.class, () -> f.solve(5, 1.0));
+
+		// the refactorization must use the changed settings of the solver
+		solver.withMaxIterations(1000);
+		var g = solver.refactorize(f, b);
+		assertArrayEquals(
+				SparseLU.of(b).solve(5, 1.0), g.solve(5, 1.0), 1e-8);
+	}
+
+	@Test
+	public void testDenseFallback() {
+		var m = DenseMatrix.of(new double[][] {
+				{ 1.0, -0.5 },
+				{ -1.0, 1.0 } });
+		assertFalse(solver.factorize(m) instanceof IterativeFactorization);
+		var x = solver.solve(m, 0, 0.5);
+		assertArrayEquals(new double[] { 1.0, 1.0 }, x, 1e-10);
+	}
+
+	/**
+	 * Creates a diagonally dominant matrix with the structure of a
+	 * technology matrix.
+	 */
+	private CSCMatrix randomTechMatrix(int n, long seed) {
+		var rand = new Random(seed);
+		var m = new HashPointMatrix(n, n);
+		for (int i = 0; i < n; i++) {
+			m.set(i, i, 1.0);
+			for (int k = 0; k < 4; k++) {
+				int j = rand.nextInt(n);
+				if (j != i) {
+					m.set(j, i, -0.2 * rand.nextDouble());
+				}
+			}
+		}
+		return m.compress();
+	}
+}
@@ -0,0 +1,156 @@
+package org.openlca.core.matrix.solvers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.linear.SingularMatrixException;
+import org.junit.Test;
+import org.openlca.core.matrix.format.CSCMatrix;
+import org.openlca.core.matrix.format.DenseMatrix;
+import org.openlca.core.matrix.format.HashPointMatrix;
+import org.openlca.core.matrix.format.MatrixConverter;
+
+public class SparseLUTest {
+
+	@Test
+	public void testSingleSolution() {
+		var csc = CSCMatrix.of(new double[][] {
+				{ 2.0, 3.0, 0.0, 0.0, 0.0 },
+				{ 3.0, 0.0, 4.0, 0.0, 6.0 },
+				{ 0.0, -1.0, -3.0, 2.0, 0.0 },
+				{ 0.0, 0.0, 1.0, 0.0, 0.0 },
+				{ 0.0, 4.0, 2.0, 0.0, 1.0 } });
+		var lu = SparseLU.of(csc);
+		double[] x = lu.solve(new double[] { 8., 45., -3., 3., 19. });
+		assertArrayEquals(new double[] { 1., 2., 3., 4., 5. }, x, 1e-10);
+	}
+
+	@Test
+	public void testSolveMatrix() {
+		var csc = CSCMatrix.of(new double[][] {
+				{ 1.0, -0.5, 0.0 },
+				{ -0.2, 1.0, 0.0 },
+				{ 0.0, -1.0, 1.0 } });
+		var lu = SparseLU.of(csc);
+		var b = new DenseMatrix(3, 2);
+		b.set(0, 0, 1.0);
+		b.set(2, 1, 2.0);
+		var x = lu.solve(b);
+		assertArrayEquals(lu.solve(b.getColumn(0)), x.getColumn(0), 1e-12);
+		assertArrayEquals(lu.solve(b.getColumn(1)), x.getColumn(1), 1e-12);
+	}
+
+	@Test(expected = SingularMatrixException.class)
+	public void testSingular() {
+		var csc = CSCMatrix.of(new double[][] {
+				{ 1.0, 2.0, 0.0 },
+				{ 2.0, 4.0, 0.0 },
+				{ 0.0, 0.0, 1.0 } });
+		SparseLU.of(csc);
+	}
+
+	@Test
+	public void testRandomSystem() {
+		var rand = new Random(42);
+		int n = 300;
+		var m = new HashPointMatrix(n, n);
+		for (int i = 0; i < n; i++) {
+			m.set(i, i, 1.0);
+			for (int k = 0; k < 3; k++) {
+				int j = rand.nextInt(n);
+				if (j != i) {
+					m.set(i, j, -0.5 * rand.nextDouble());
+				}
+			}
+		}
+		var b = new double[n];
+		b[7] = 1.0;
+
+		var expected = new JavaSolver().solve(MatrixConverter.dense(m), 7, 1.0);
+		var x = SparseLU.of(m.compress()).solve(b);
+		assertArrayEquals(expected, x, 1e-10);
+	}
+
+	@Test
+	public void testRefactorize() {
+		var a = CSCMatrix.of(new double[][] {
+				{ 1.0, -0.5, 0.0 },
+				{ 0.0, 1.0, -0.2 },
+				{ -0.1, 0.0, 1.0 } });
+		var lu = SparseLU.of(a);
+		lu.dispose();
+		assertTrue(lu.isDisposed());
+
+		var b = CSCMatrix.of(new double[][] {
+				{ 2.0, -0.5, 0.0 },
+				{ 0.0, 1.5, -0.4 },
+				{ -0.3, 0.0, 1.0 } });
+		var refactorized = lu.refactorize(b).orElseThrow();
+		var full = SparseLU.of(b);
+		double[] rhs = { 1.0, 2.0, 3.0 };
+		assertArrayEquals(full.solve(rhs), refactorized.solve(rhs), 1e-12);
+
+		// a different pattern requires a full factorization
+		var c = CSCMatrix.of(new double[][] {
+				{ 1.0, 0.0, 0.0 },
+				{ 0.0, 1.0, -0.2 },
+				{ -0.1, 0.0, 1.0 } });
+		assertFalse(lu.refactorize(c).isPresent());
+	}
+
+	@Test
+	public void testAnalysis() {
+		var a = CSCMatrix.of(new double[][] {
+				{ 1.0, -0.5, 0.0 },
+				{ 0.0, 1.0, -0.2 },
+				{ -0.1, 0.0, 1.0 } });
+		var lu = SparseLU.of(a);
+		var analysis = lu.analysis();
+		assertTrue(analysis.isDisposed());
+		assertFalse(lu.isDisposed());
+
+		// the analysis can be used for refactorizations independently of
+		// the factorization
+		lu.dispose();
+		var b = CSCMatrix.of(new double[][] {
+				{ 2.0, -0.5, 0.0 },
+				{ 0.0, 1.5, -0.4 },
+				{ -0.3, 0.0, 1.0 } });
+		double[] rhs = { 1.0, 2.0, 3.0 };
+		assertArrayEquals(SparseLU.of(b).solve(rhs),
+				analysis.refactorize(b).orElseThrow().solve(rhs), 1e-12);
+	}
+
+	@Test
+	public void testOrderingBudget() {
+		var rand = new Random(42);
+		int n = 300;
+		var m = new HashPointMatrix(n, n);
+		for (int i = 0; i < n; i++) {
+			m.set(i, i, 1.0);
+			for (int k = 0; k < 3; k++) {
+				int j = rand.nextInt(n);
+				if (j != i) {
+					m.set(i, j, -0.5 * rand.nextDouble());
+				}
+			}
+		}
+
+		// when the elimination graph exceeds the budget, the ordering is
+		// completed with the remaining nodes and is still a permutation
+		var csc = m.compress();
+		for (long budget : new long[] { 0, 500, -1 }) {
+			var order = ExplicitMinimumDegree.order(csc, budget);
+			assertEquals(n, order.length);
+			var seen = new boolean[n];
+			for (int i : order) {
+				assertFalse(seen[i]);
+				seen[i] = true;
+			}
+		}
+	}
+}
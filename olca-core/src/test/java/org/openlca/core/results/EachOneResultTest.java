@@ -0,0 +1,79 @@
+package org.openlca.core.results;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.openlca.core.TestProcess;
+import org.openlca.core.TestSystem;
+import org.openlca.core.Tests;
+import org.openlca.core.matrix.MatrixData;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.matrix.solvers.JavaSolver;
+import org.openlca.core.model.CalculationSetup;
+import org.openlca.core.model.ImpactCategory;
+import org.openlca.core.model.ImpactMethod;
+import org.openlca.util.Dirs;
+
+public class EachOneResultTest {
+
+	@Test
+	public void testBlockedMode() throws Exception {
+		var db = Tests.getDb();
+		var q = TestProcess
+				.refProduct("eor_q", 1, "kg")
+				.elemOut("eor_e", 2, "kg")
+				.get();
+		var p = TestProcess
+				.refProduct("eor_p", 1, "kg")
+				.prodIn("eor_q", 0.5, "kg")
+				.elemOut("eor_e", 1, "kg")
+				.get();
+		var system = TestSystem.of(p).link(q).get();
+		var indicator = ImpactCategory.of("eor_i");
+		indicator.factor(TestProcess.findExchange(q, "eor_e").flow, 3);
+		var method = ImpactMethod.of("eor_m");
+		method.add(indicator);
+		db.insert(indicator, method);
+		var setup = CalculationSetup.of(system).withImpactMethod(method);
+		var data = MatrixData.of(db, TechIndex.of(db, setup))
+				.withSetup(setup)
+				.build();
+
+		var expected = new ArrayList<double[]>();
+		var expectedImpacts = new ArrayList<double[]>();
+		for (var pair : EachOneResult.of(db, data)
+				.withSolver(new JavaSolver())
+				.get()) {
+			expected.add(pair.second.provider().totalFlows());
+			expectedImpacts.add(pair.second.provider().totalImpacts());
+		}
+
+		var dir = Files.createTempDirectory("_olca_tests").toFile();
+		int i = 0;
+		for (var pair : EachOneResult.of(db, data)
+				.withSolver(new JavaSolver())
+				.withBlocks(dir)
+				.withBlockSize(1)
+				.withThreads(2)
+				.get()) {
+			var flows = pair.second.provider().totalFlows();
+			assertArrayEquals(expected.get(i), flows, 1e-10);
+			var impacts = pair.second.provider().totalImpacts();
+			assertArrayEquals(expectedImpacts.get(i), impacts, 1e-10);
+			i++;
+		}
+		assertEquals(2, i);
+
+		// e = 1 + 0.5 * 2 for one unit of p
+		int pIdx = data.techIndex.of(p.id, p.quantitativeReference.flow.id);
+		assertEquals(2.0, expected.get(pIdx)[0], 1e-10);
+		assertEquals(6.0, expectedImpacts.get(pIdx)[0], 1e-10);
+		assertTrue(new File(dir, "LCIA.npy").exists());
+		Dirs.delete(dir);
+		db.delete(system, p, q, method, indicator);
+	}
+}
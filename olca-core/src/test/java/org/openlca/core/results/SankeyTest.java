@@ -67,6 +67,55 @@ public class SankeyTest {
 		Assert.assertEquals(3, visited.get());
 	}
 
+	@Test
+	public void testRefine() {
+		var data = new MatrixData();
+		data.demand = Demand.of(product(1), 1.0);
+		data.techIndex = new TechIndex(product(1));
+		for (int i = 2; i <= 4; i++) {
+			data.techIndex.add(product(i));
+		}
+		data.techMatrix = JavaMatrix.of(new double[][]{
+				{1.0, 0.0, 0.0, 0.0},
+				{-1.0, 1.0, 0.0, 0.0},
+				{-1.0, 0.0, 1.0, 0.0},
+				{0.0, 0.0, -1.0, 1.0},
+		});
+		data.enviIndex = EnviIndex.create();
+		var flow = new FlowDescriptor();
+		flow.id = 42;
+		data.enviIndex.add(EnviFlow.outputOf(flow));
+		data.enviMatrix = JavaMatrix.of(new double[][]{
+				{1.0, 4.0, 2.0, 1.0},
+		});
+		var result = LcaResult.of(Tests.getDb(), data).provider();
+		var ref = data.enviIndex.at(0);
+
+		// totals: 1 -> 8, 2 -> 4, 3 -> 3, 4 -> 1
+		var sankey = Sankey.of(ref, result)
+				.withMaximumNodeCount(2)
+				.withMinimumShare(0.2)
+				.withBlockSize(1)
+				.build();
+		Assert.assertEquals(2, sankey.nodeCount);
+		Assert.assertEquals(1, sankey.root.providers.size());
+		Assert.assertEquals(1, sankey.root.providers.get(0).index);
+
+		// growing the node count refines the same graph
+		var refined = sankey.refine(10, 0.2);
+		Assert.assertSame(sankey, refined);
+		Assert.assertEquals(3, refined.nodeCount);
+		refined = sankey.refine(-1, 0);
+		Assert.assertSame(sankey, refined);
+		Assert.assertEquals(4, refined.nodeCount);
+		Assert.assertEquals(2, sankey.root.providers.size());
+
+		// a larger minimum share requires a new graph
+		var rebuilt = sankey.refine(-1, 0.2);
+		Assert.assertNotSame(sankey, rebuilt);
+		Assert.assertEquals(3, rebuilt.nodeCount);
+	}
+
 	private TechFlow product(int i) {
 		var process = new ProcessDescriptor();
 		process.id = i;
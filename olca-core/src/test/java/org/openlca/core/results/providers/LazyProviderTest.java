@@ -7,6 +7,7 @@ import org.openlca.core.matrix.MatrixData;
 import org.openlca.core.matrix.format.HashPointMatrix;
 import org.openlca.core.matrix.index.TechFlow;
 import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.matrix.solvers.JavaSolver;
 import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
 
@@ -31,6 +32,32 @@ public class LazyProviderTest {
 				new double[]{1.0, 1.0, 1.0}, scaling, 1e-10);
 	}
 
+	@Test
+	public void testSolutionsOf() {
+		var data = new MatrixData();
+		data.techMatrix = HashPointMatrix.of(new double[][]{
+				{1.0, 0.0, 0.0},
+				{-1.0, 1.0, 0.0},
+				{0.0, -1.0, 1.0},
+		});
+		data.techIndex = new TechIndex(product(1));
+		data.techIndex.add(product(2));
+		data.techIndex.add(product(3));
+		data.demand = Demand.of(data.techIndex.at(0), 1.0);
+
+		// the batched solutions must be equal to the single solutions, also
+		// for duplicate tech-flows in the request
+		var context = SolverContext.of(data).withSolver(new JavaSolver());
+		var batched = FactorizationSolver.solve(context);
+		var single = FactorizationSolver.solve(context);
+		int[] techFlows = {2, 1, 2, 0};
+		var solutions = batched.solutionsOf(techFlows);
+		for (int i = 0; i < techFlows.length; i++) {
+			Assert.assertArrayEquals(
+					single.solutionOfOne(techFlows[i]), solutions[i], 1e-10);
+		}
+	}
+
 	private TechFlow product(int i) {
 		var process = new ProcessDescriptor();
 		process.id = i;
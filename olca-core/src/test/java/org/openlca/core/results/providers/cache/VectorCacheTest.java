@@ -0,0 +1,148 @@
+package org.openlca.core.results.providers.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class VectorCacheTest {
+
+	/**
+	 * The size of an entry with a vector of 10 values.
+	 */
+	private final long entrySize = 96 + 80;
+
+	@Test
+	public void testLRU() {
+		var cache = VectorCache.of(CachePolicy.ofBytes(2 * entrySize));
+		var region = cache.region();
+		region.put(1, new double[10]);
+		region.put(2, new double[10]);
+		assertNotNull(region.get(1));
+		region.put(3, new double[10]);
+
+		// 2 was the least recently used entry
+		assertNull(region.get(2));
+		assertNotNull(region.get(1));
+		assertNotNull(region.get(3));
+
+		var stats = cache.stats();
+		assertEquals(3, stats.hits());
+		assertEquals(1, stats.misses());
+		assertEquals(1, stats.evictions());
+		assertEquals(2, stats.entries());
+		assertEquals(2 * entrySize, stats.bytes());
+	}
+
+	@Test
+	public void testLFU() {
+		var policy = CachePolicy.ofBytes(2 * entrySize)
+				.withEviction(CachePolicy.Eviction.LFU);
+		var cache = VectorCache.of(policy);
+		var region = cache.region();
+		region.put(1, new double[10]);
+		region.put(2, new double[10]);
+		region.get(1);
+		region.get(1);
+		region.get(2);
+		region.put(3, new double[10]);
+
+		// 2 was used less frequently than 1
+		assertNull(region.get(2));
+		assertNotNull(region.get(1));
+	}
+
+	@Test
+	public void testSharedBudget() {
+		var cache = VectorCache.of(CachePolicy.ofBytes(2 * entrySize));
+		var a = cache.region();
+		var b = cache.region();
+		a.put(1, new double[10]);
+		b.put(1, new double[10]);
+		b.put(2, new double[10]);
+		assertNull(a.get(1));
+		assertNotNull(b.get(1));
+		assertNotNull(b.get(2));
+	}
+
+	@Test
+	public void testOversizedEntry() {
+		var cache = VectorCache.of(CachePolicy.ofBytes(entrySize));
+		var region = cache.region();
+		var v = new double[100];
+		assertArrayEquals(v, region.put(1, v), 0);
+		assertNull(region.get(1));
+		assertEquals(0, cache.stats().entries());
+	}
+
+	@Test
+	public void testOffHeap() {
+		var policy = CachePolicy.ofMegaBytes(1)
+				.withStorage(CachePolicy.Storage.OFF_HEAP);
+		var region = VectorCache.of(policy).region();
+		var v = new double[]{1, 2, 3};
+		region.put(42, v);
+		var cached = region.get(42);
+		assertNotSame(v, cached);
+		assertArrayEquals(v, cached, 0);
+	}
+
+	@Test
+	public void testOffHeapSize() {
+		var policy = CachePolicy.ofBytes(2 * entrySize)
+				.withStorage(CachePolicy.Storage.OFF_HEAP);
+		var cache = VectorCache.of(policy);
+		var region = cache.region();
+		region.put(1, new double[10]);
+		region.put(2, new double[3]);
+
+		// the entries are accounted with the capacities of their buffers
+		assertEquals(entrySize + 96 + 24, cache.stats().bytes());
+		region.put(3, new double[10]);
+		assertNull(region.get(1));
+		assertEquals(2, cache.stats().entries());
+		assertEquals(entrySize + 96 + 24, cache.stats().bytes());
+	}
+
+	@Test
+	public void testParallelAccess() throws Exception {
+		var cache = VectorCache.of(CachePolicy.ofBytes(50 * entrySize));
+		var region = cache.region();
+		var errors = new AtomicInteger();
+		var threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					int key = (i * 7 + offset) % 100;
+					var v = region.get(key);
+					if (v == null) {
+						v = new double[10];
+						v[0] = key;
+						region.put(key, v);
+					}
+					if (v[0] != key) {
+						errors.incrementAndGet();
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (var thread : threads) {
+			thread.join();
+		}
+
+		// the byte count must match the entries after concurrent evictions
+		assertEquals(0, errors.get());
+		var stats = cache.stats();
+		assertEquals(stats.entries() * entrySize, stats.bytes());
+		assertTrue(stats.bytes() <= 50 * entrySize);
+		assertEquals(8000, stats.hits() + stats.misses());
+	}
+}
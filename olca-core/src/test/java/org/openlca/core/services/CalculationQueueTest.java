@@ -1,10 +1,14 @@
 package org.openlca.core.services;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -83,4 +87,32 @@ public class CalculationQueueTest {
 		}
 	}
 
+	@Test
+	public void testDisposeListener() throws Exception {
+		var queue = new CalculationQueue(db, 1);
+		Set<String> disposed = ConcurrentHashMap.newKeySet();
+		queue.onDispose(disposed::add);
+		var setup = CalculationSetup.of(process);
+
+		// explicit disposal
+		var first = queue.schedule(setup).id();
+		assertTrue(queue.contains(first));
+		queue.dispose(first);
+		assertFalse(queue.contains(first));
+		assertTrue(disposed.contains(first));
+
+		// disposal after a timeout; we wait until the result is ready, so
+		// that the calculation has finished before the timeout is set
+		var second = queue.schedule(setup).id();
+		while (queue.get(second).isScheduled()) {
+			Thread.sleep(50);
+		}
+		queue.withTimeout(200, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 50 && !disposed.contains(second); i++) {
+			Thread.sleep(100);
+		}
+		assertTrue(disposed.contains(second));
+		assertFalse(queue.contains(second));
+		queue.shutdown();
+	}
 }
@@ -0,0 +1,117 @@
+package org.openlca.core.services;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.matrix.Demand;
+import org.openlca.core.matrix.MatrixData;
+import org.openlca.core.matrix.format.JavaMatrix;
+import org.openlca.core.matrix.index.EnviFlow;
+import org.openlca.core.matrix.index.EnviIndex;
+import org.openlca.core.matrix.index.TechFlow;
+import org.openlca.core.matrix.index.TechIndex;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.openlca.core.model.descriptors.ProcessDescriptor;
+import org.openlca.core.results.LcaResult;
+import org.openlca.core.results.UpstreamTree;
+
+public class UpstreamTreeCacheTest {
+
+	@Test
+	public void testReuseAndEvict() {
+		var result = chain();
+		var flow = result.enviIndex().at(0);
+		var cache = new UpstreamTreeCache(4);
+
+		// expand the chain 1 -> 2 -> 3 step by step on the same tree
+		var tree = cache.apply("r1", result, flow,
+				() -> UpstreamTree.of(result.provider(), flow), t -> t);
+		for (int depth = 0; depth < 2; depth++) {
+			var node = tree.root;
+			for (int i = 0; i < depth; i++) {
+				node = tree.childs(node).get(0);
+			}
+			var parent = node;
+			var same = cache.apply("r1", result, flow,
+					() -> fail(), t -> {
+						t.childs(parent);
+						return t;
+					});
+			assertSame(tree, same);
+		}
+		assertEquals(3, tree.nodeCount());
+
+		// the tree of another result with the same ID is replaced
+		var other = chain();
+		var next = cache.apply("r1", other, flow,
+				() -> UpstreamTree.of(other.provider(), flow), t -> t);
+		assertNotSame(tree, next);
+
+		// the least recently used tree is evicted when the node limit is
+		// exceeded
+		next.childs(next.root);
+		next.childs(next.childs(next.root).get(0));
+		var costs = cache.apply("r2", other, UpstreamTreeCache.COSTS,
+				() -> UpstreamTree.costsOf(other.provider()), t -> {
+					t.childs(t.root);
+					t.childs(t.childs(t.root).get(0));
+					return t;
+				});
+		assertSame(costs, cache.apply("r2", other, UpstreamTreeCache.COSTS,
+				() -> fail(), t -> t));
+		var created = new boolean[1];
+		cache.apply("r1", other, flow, () -> {
+			created[0] = true;
+			return UpstreamTree.of(other.provider(), flow);
+		}, t -> t);
+		assertTrue(created[0]);
+
+		cache.remove("r2");
+		created[0] = false;
+		cache.apply("r2", other, UpstreamTreeCache.COSTS, () -> {
+			created[0] = true;
+			return UpstreamTree.costsOf(other.provider());
+		}, t -> t);
+		assertTrue(created[0]);
+	}
+
+	private UpstreamTree fail() {
+		throw new AssertionError("tree should be cached");
+	}
+
+	/**
+	 * A chain of three processes 1 -> 2 -> 3 where process 1 is the root.
+	 */
+	private LcaResult chain() {
+		var data = new MatrixData();
+		data.demand = Demand.of(product(1), 1.0);
+		data.techIndex = new TechIndex(product(1));
+		data.techIndex.add(product(2));
+		data.techIndex.add(product(3));
+		data.techMatrix = JavaMatrix.of(new double[][]{
+				{1.0, 0.0, 0.0},
+				{-1.0, 1.0, 0.0},
+				{0.0, -1.0, 1.0},
+		});
+		data.enviIndex = EnviIndex.create();
+		var flow = new FlowDescriptor();
+		flow.id = 42;
+		data.enviIndex.add(EnviFlow.outputOf(flow));
+		data.enviMatrix = JavaMatrix.of(new double[][]{
+				{1.0, 2.0, 3.0},
+		});
+		data.costVector = new double[]{1.0, 1.0, 1.0};
+		return LcaResult.of(Tests.getDb(), data);
+	}
+
+	private TechFlow product(int i) {
+		var process = new ProcessDescriptor();
+		process.id = i;
+		process.name = "process " + i;
+		var flow = new FlowDescriptor();
+		flow.id = i;
+		flow.name = "product " + i;
+		return TechFlow.of(process, flow);
+	}
+}
@@ -11,6 +11,8 @@ import org.openlca.core.Tests;
 import org.openlca.core.database.BaseDao;
 import org.openlca.core.database.Daos;
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.database.usage.ParameterIndex;
 import org.openlca.core.model.AllocationFactor;
 import org.openlca.core.model.AllocationMethod;
 import org.openlca.core.model.Exchange;
@@ -323,6 +325,28 @@ public class ParameterRenameTest {
 				.forEach(formula -> Assert.assertEquals("2 * new_param", formula));
 	}
 
+	@Test
+	public void testRenameAfterNativeUpdate() {
+		var global = db.insert(Parameter.global("native_param", 42));
+		var process = new Process();
+		process.parameter("dep", "42");
+		put(process);
+
+		// the formula is changed without notifying the parameter index
+		ParameterIndex.of(db).get("native_param");
+		var dep = process.parameters.get(0);
+		NativeSql.on(db).runUpdate("update tbl_parameters set formula = "
+				+ "'2 * native_param' where id = " + dep.id);
+
+		global = Parameters.rename(db, global, "native_global");
+		process = reload(process);
+		Assert.assertEquals("2 * native_global",
+				process.parameters.get(0).formula);
+		Assert.assertFalse(ParameterIndex.of(db).get("native_global").isEmpty());
+		drop(process);
+		drop(global);
+	}
+
 	@SuppressWarnings("unchecked")
 	private <T extends RefEntity> void put(T e) {
 		var dao = (BaseDao<T>) Daos.base(db, e.getClass());
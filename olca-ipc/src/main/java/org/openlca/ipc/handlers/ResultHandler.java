@@ -33,6 +33,15 @@ public class ResultHandler {
 		return Responses.of(state, req);
 	}
 
+	@Rpc("result/batch")
+	public RpcResponse calculateBatch(RpcRequest req) {
+		var obj = req.requireJsonObject();
+		if (!obj.isValue())
+			return Responses.of(obj, req);
+		var batch = results.calculateBatch(obj.value());
+		return Responses.of(batch, req);
+	}
+
 	@Rpc("result/simulate/next")
 	public RpcResponse simulateNext(RpcRequest req) {
 		return ResultRequest.of(req, rr -> results.nextSimulationOf(rr.id()));